@@ -0,0 +1,188 @@
+/**
+ * This class represents the activity controller of an agent. Once the belief
+ * of the swarm has stayed on the same side of the decision thresholds, never
+ * changing by more than QUIESCENT_EPSILON from a main loop pass to the next,
+ * for QUIESCENT_WINDOW time steps, the agent is quiescent: nothing new is
+ * being learned, so the main loop, the broadcasts and the observations slow
+ * down, saving CPU, battery and airtime. The belief of the swarm keeps
+ * wandering with the observations, each moving it by a fraction of
+ * QUIESCENT_EPSILON, so while quiescent it is also compared with the belief
+ * the agent became quiescent at: a slow drift wakes the agent once it adds up
+ * to more than QUIESCENT_DRIFT. A significant change wakes the agent up at
+ * once, back to full rate: a threshold crossed, a belief of an agent, its own
+ * included, moving the belief of the swarm by more than QUIESCENT_EPSILON, or
+ * an action change, started or heard, that the side of the thresholds the
+ * swarm is on does not account for. On phi the continuation decisions keep
+ * stopping the action and starting it again, so the swarm can be quiescent
+ * while acting.
+ * <p>
+ * The loops of the agent pause with pause(), that returns at once when the
+ * agent is woken up.
+ */
+public class ActivityController {
+
+	/* False to always run at full rate */
+	private volatile boolean isEnabled = true;
+
+	private volatile boolean isQuiescent;
+
+	/*
+	 * The belief of the swarm and its side of the thresholds at the previous
+	 * pass, NaN to start over, and the time they are stable since
+	 */
+	private double lastBelief = Double.NaN;
+	private int lastZone;
+	private int stableSince;
+
+	/* The belief of the swarm when the agent became quiescent */
+	private double quiescentBelief;
+
+	/* Number of times the agent became quiescent */
+	private int quiescentPeriods;
+
+	/* The parameters of the agent */
+	private AgentParameters.Holder parameters;
+
+	/**
+	 * Initialise the controller, at full rate
+	 *
+	 * @param parameters
+	 *            the parameters of the agent
+	 */
+	public ActivityController(AgentParameters.Holder parameters) {
+		this.parameters = parameters;
+	}
+
+	/**
+	 * Observe the belief of the swarm, making the agent quiescent once it is
+	 * stable for long enough, waking it up otherwise
+	 * 
+	 * @param time
+	 *            the agent time step
+	 * @param swarmBelief
+	 *            the belief of the swarm
+	 * @param zone
+	 *            the side of the decision thresholds the swarm is on: 1 for
+	 *            phi, -1 for not phi, 0 for neither
+	 */
+	public synchronized void observe(int time, double swarmBelief, int zone) {
+		AgentParameters snapshot = parameters.get();
+		if (Double.isNaN(lastBelief) || zone != lastZone
+				|| Math.abs(swarmBelief - lastBelief) > snapshot.getQuiescentEpsilon()
+				|| (isQuiescent && Math.abs(swarmBelief - quiescentBelief) > snapshot.getQuiescentDrift())) {
+			/* Starting over from this belief */
+			stableSince = time;
+			wakeUp();
+		} else if (isEnabled && !isQuiescent && time - stableSince >= snapshot.getQuiescentWindow()) {
+			isQuiescent = true;
+			quiescentBelief = swarmBelief;
+			quiescentPeriods++;
+		}
+		lastBelief = swarmBelief;
+		lastZone = zone;
+	}
+
+	/**
+	 * Record the change of the belief of an agent, waking this agent up if it
+	 * moves the belief of the swarm by more than QUIESCENT_EPSILON
+	 * 
+	 * @param oldBelief
+	 *            the belief the agent held before
+	 * @param newBelief
+	 *            the belief the agent holds now
+	 */
+	public void beliefChanged(double oldBelief, double newBelief) {
+		AgentParameters snapshot = parameters.get();
+		if (Math.abs(newBelief - oldBelief) / snapshot.getSwarmSize() > snapshot.getQuiescentEpsilon())
+			wake();
+	}
+
+	/**
+	 * Record an action change, made by this agent or heard, waking the agent
+	 * up unless the swarm is on a side of the decision thresholds that
+	 * accounts for it: on phi any, as the continuation decisions stop the
+	 * action and the agents start it again, on not phi a stop
+	 * 
+	 * @param isActing
+	 *            the action state of the change
+	 */
+	public synchronized void actionChanged(boolean isActing) {
+		if (Double.isNaN(lastBelief) || lastZone == 0 || (lastZone < 0 && isActing))
+			wake();
+	}
+
+	/**
+	 * Check whether the main loop must run its next pass at once, though the
+	 * agent is quiescent: on phi, until the agent starts the action again
+	 * 
+	 * @param isActing
+	 *            the action state of this agent
+	 * @return true if the next pass is due at once
+	 */
+	public synchronized boolean isPassDue(boolean isActing) {
+		return lastZone > 0 && !isActing;
+	}
+
+	/**
+	 * Wake the agent up, back to full rate, measuring the stability of the
+	 * belief of the swarm from scratch
+	 */
+	public synchronized void wake() {
+		lastBelief = Double.NaN;
+		wakeUp();
+	}
+
+	/**
+	 * Pause the calling loop if the agent is quiescent, until the time passes
+	 * or the agent is woken up
+	 * 
+	 * @param millis
+	 *            the milliseconds to pause for
+	 */
+	public synchronized void pause(long millis) {
+		long deadline = System.currentTimeMillis() + millis;
+		long remaining = millis;
+		try {
+			while (isQuiescent && remaining > 0) {
+				wait(remaining);
+				remaining = deadline - System.currentTimeMillis();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return true if the agent is quiescent
+	 */
+	public boolean isQuiescent() {
+		return isQuiescent;
+	}
+
+	/**
+	 * @return the number of times the agent became quiescent
+	 */
+	public synchronized int getQuiescentPeriods() {
+		return quiescentPeriods;
+	}
+
+	/**
+	 * Enable or disable the slowing down of a stable agent
+	 * 
+	 * @param isEnabled
+	 *            false to always run at full rate
+	 */
+	public synchronized void setEnabled(boolean isEnabled) {
+		this.isEnabled = isEnabled;
+		if (!isEnabled)
+			wakeUp();
+	}
+
+	/* Back to full rate, releasing the loops paused */
+	private void wakeUp() {
+		if (isQuiescent) {
+			isQuiescent = false;
+			notifyAll();
+		}
+	}
+}
@@ -1,14 +1,18 @@
+import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
 import java.net.Socket;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import com.digi.xbee.api.XBeeDevice;
-import com.digi.xbee.api.exceptions.TimeoutException;
 import com.digi.xbee.api.exceptions.XBeeException;
 
 import uk.ac.mdx.cs.asip.JMirtoRobot;
@@ -18,7 +22,8 @@ import uk.ac.mdx.cs.asip.JMirtoRobot;
  * <ul>
  * <li>Move in the environment;</li>
  * <li>Evaluate a binary physical property of the point in space they are in,
- * building a local belief about how much of environment has the same property;
+ * building a local belief about how much of environment has the same property,
+ * and possibly of further properties, only estimated, from the same readings;
  * </li>
  * <li>Communicate its belief to neighbours, and receive other agents' belief;
  * </li>
@@ -44,8 +49,69 @@ public class Agent {
 		ONE, ZERO;
 	}
 
-	/* True if the agent is acting */
-	private volatile boolean isActionInProgress;
+	/**
+	 * The values of this enumeration type are used to represent how the agent
+	 * estimates the belief of the swarm:
+	 * <ul>
+	 * <li>BELIEF_TABLE : averaging the belief table, assuming a neutral belief
+	 * for the unknown agents;</li>
+	 * <li>PUSH_SUM : by push-sum gossip, with constant state and message size
+	 * whatever the swarm size.</li>
+	 * </ul>
+	 */
+	public static enum AggregationMode {
+		BELIEF_TABLE, PUSH_SUM;
+	}
+
+	/**
+	 * The values of this enumeration type are used to represent how the agent
+	 * decides to start or stop the action:
+	 * <ul>
+	 * <li>THRESHOLDS : when the estimation of the swarm belief crosses the
+	 * belief thresholds;</li>
+	 * <li>SPRT : when the sequential probability ratio test over its own
+	 * observations and the confidence of the received beliefs meets the error
+	 * bound. The beliefs are then over the observations held from the first
+	 * one, for the action to start with an estimation of the state of the
+	 * world rather than with neutral beliefs.</li>
+	 * </ul>
+	 */
+	public static enum DecisionMode {
+		THRESHOLDS, SPRT;
+	}
+
+	/**
+	 * The values of this enumeration type are used to represent how the agent
+	 * explores the floor (see ExplorationStrategy):
+	 * <ul>
+	 * <li>FIXED : forward for a fixed time, then a spin of fixed length;</li>
+	 * <li>LEVY : forward for heavy-tailed times, then a spin of random
+	 * length;</li>
+	 * <li>CORRELATED : forward for short times, then a small random change of
+	 * direction;</li>
+	 * <li>DISPERSION : as CORRELATED, but turning away when the signal of the
+	 * closest neighbour grows stronger.</li>
+	 * </ul>
+	 */
+	public static enum ExplorationMode {
+		FIXED, LEVY, CORRELATED, DISPERSION;
+	}
+
+	/** Signal strength meaning no frame has been heard */
+	public static final int NO_SIGNAL = Integer.MIN_VALUE;
+
+	/* The current parameters of this agent, starting from the ones of the process */
+	private final AgentParameters.Holder parameterHolder = new AgentParameters.Holder(AgentParameters.get());
+
+	/*
+	 * Whether the agent is acting and broadcasting an action change, the
+	 * change heard meanwhile and d, changed by the main loop, the motion
+	 * control and the receiver with atomic transitions
+	 */
+	private final AgentState state = new AgentState(false, -1, parameterHolder);
+
+	/* Serialises the reports of the action state, made from several threads */
+	private final Object actionReports = new Object();
 
 	/* Enable debug prints */
 	private boolean debug = true;
@@ -53,29 +119,87 @@ public class Agent {
 	/* Enable xbee debug prints */
 	private boolean debugXBEE = false;
 
+	/* Enable recording of the inputs in traceFile */
+	private boolean recordTrace = false;
+
+	/* The file to record the inputs trace to */
+	private String traceFile = "/home/pi/agent.trace";
+
+	/* Main loop pause of the agents with no robot, in milliseconds */
+	private static final long VIRTUAL_LOOP_PAUSE = 5;
+
 	/* Integer identifier, taken from the xbee address */
 	private Integer ID;
 
-	/* Random number generator */
-	private Random random;
+	/* Identifier of the swarm, first byte of the frames sent and accepted */
+	private byte swarmID = AgentParameters.SWARM_ID;
+
+	/*
+	 * Number of times this agent started before, stamped on its beliefs so
+	 * that they supersede the ones of its previous runs, whose time stamps
+	 * may be higher
+	 */
+	private int incarnation;
+
+	/* Clock, sensors and random number generator */
+	private AgentInputs inputs;
+
+	/* Recorder of the inputs, null if not recording */
+	private TraceRecorder recorder;
 
 	/* Internal time counter */
 	private volatile int time;
 
-	/* Timer for action broadcast */
-	private Integer actionBroadcastTime;
+	/* Last clock reading in seconds, to increase the time counter */
+	private long realTime;
+
+	/*
+	 * The last action change heard, as its origin ID in the high half and its
+	 * sequence number in the low half, set before the state for a pending
+	 * change to be relayed with it
+	 */
+	private volatile long nextActionChange;
+
+	/* Origin and sequence number of the action change being broadcast */
+	private volatile int actionOriginID;
+	private volatile int actionSequence;
 
-	/* Writing proxy for isActionInProgress, coming from message reads */
-	private volatile Boolean nextActionState;
+	/*
+	 * The action state word when the broadcast of the action change started,
+	 * carried by its action messages, and the time it started, -1 for none
+	 */
+	private long actionBroadcastState;
+	private int actionBroadcastStart = -1;
+
+	/* Sequence number of the last action change started by this agent */
+	private int ownActionSequence;
+
+	/* Action messages still to send for the action change being broadcast */
+	private int actionRepeats;
+
+	/*
+	 * Last action change heard from each origin, as its sequence number in the
+	 * high half and the time it was heard in the low half
+	 */
+	private Map<Integer, Long> heardActionChanges = new HashMap<>();
 
-	/* 1:broadcasting action, 0:broadcasting beliefs */
-	private StateCode stateCode;
+	/* The probability of relaying an action change heard */
+	private double actionRelayProbability = getParameters().getActionRelayProbability();
 
-	/* The robot that this agent controls */
-	private JMirtoRobot robot;
+	/* The number of action messages sent when relaying an action change */
+	private int actionRelayRepeats = getParameters().getActionRelayRepeats();
 
-	/* The communication module */
-	private XBeeDevice xBee;
+	/* The commands to the robot that this agent controls, null if none */
+	private RobotCommands robot;
+
+	/* The radio, null if messages are passed by the caller */
+	private Transport transport;
+
+	/*
+	 * Milliseconds the main loop and the motion control pause for at every
+	 * pass, to share the CPU with the other agent processes on the host
+	 */
+	private long loopPause;
 
 	/* To start/stop the agent */
 	private volatile boolean canMove;
@@ -83,14 +207,41 @@ public class Agent {
 	/* To start/stop broadcasting */
 	private volatile boolean isBroadcasting;
 
-	/* To store binary observations on the environment */
-	private boolean[] memory;
+	/* The number of floor properties judged, the first being phi */
+	private int propertyCount = AgentParameters.PROPERTY_IR_THRESHOLDS.length;
+
+	/*
+	 * To store binary observations on the environment, memory[property][i]
+	 * being the i-th observation of the property
+	 */
+	private boolean[][] memory;
+
+	/* The number of true observations in the memory of each property */
+	private int[] observedCounts;
 
 	/* To always update the oldest observation once memory is full */
 	private int lastMemoryWrite;
 
-	/* Estimation of the world state (when acting) */
-	private volatile float d;
+	/* The number of observations in the memory, under its size only after it grew */
+	private int memoryFill;
+
+	/* Guards the memory, replaced when resized, with its counts and positions */
+	private final Object memoryLock = new Object();
+
+	/* The parameters this agent was last adapted to */
+	private AgentParameters parameters = getParameters();
+
+	/* The file to save the parameters received to, null if not saved */
+	private String parametersFile;
+
+	/* The local beliefs on every property, rebuilt at every main loop pass */
+	private float[] localBeliefs;
+
+	/*
+	 * What the swarm believes of every property, as last checked: 1 if it
+	 * holds, -1 if it does not, 0 if undecided
+	 */
+	private byte[] propertyDecisions;
 
 	/* Estimation of cells that will be cleaned in this step (when acting) */
 	private double c;
@@ -98,6 +249,39 @@ public class Agent {
 	/* Map to store the local beliefs */
 	private Map<Integer, AgentBelief> beliefTable = Collections.synchronizedMap(new HashMap<>());
 
+	/* The beliefs on every property, null if only phi is judged */
+	private PropertyTable propertyTable;
+
+	/*
+	 * Other agents' beliefs still to relay and the number of times they will
+	 * be, in the order they were learned
+	 */
+	private LinkedHashMap<Integer, Integer> relayBudgets = new LinkedHashMap<>();
+
+	/* The number of times a freshly learned belief is relayed */
+	private int relayBudget = getParameters().getRelayBudget();
+
+	/* How the belief of the swarm is estimated */
+	private AggregationMode aggregationMode = AgentParameters.AGGREGATION_MODE;
+
+	/* Estimation of the swarm belief in AggregationMode.PUSH_SUM */
+	private PushSumEstimator pushSum = new PushSumEstimator(parameterHolder);
+
+	/* How the action is started or stopped */
+	private DecisionMode decisionMode = AgentParameters.DECISION_MODE;
+
+	/* Test over this agent's observations since the last action change */
+	private SequentialTest sequentialTest = new SequentialTest(parameterHolder);
+
+	/* How the floor is explored */
+	private ExplorationMode explorationMode = AgentParameters.EXPLORATION_MODE;
+
+	/* Slows the agent down while the belief of the swarm is stable */
+	private ActivityController activity = new ActivityController(parameterHolder);
+
+	/* Strongest signal heard since the exploration last took it, in dBm */
+	private AtomicInteger strongestSignal = new AtomicInteger(NO_SIGNAL);
+
 	/* Socket to send action state to a supervisor node */
 	private Socket socket;
 
@@ -111,6 +295,12 @@ public class Agent {
 	 */
 	private boolean isBeliefValid;
 
+	/* Checkpoint file to survive reboots, null if it could not be opened */
+	private BeliefCheckpoint checkpoint;
+
+	/* Time of the last checkpoint written */
+	private int lastCheckpointTime;
+
 	/**
 	 * Initialise an agent, also connecting it to the robot and the XBee
 	 * communication module.
@@ -118,10 +308,21 @@ public class Agent {
 	 * @param parameters the parameters to initialise this agent with
 	 */
 	public Agent(AgentParameters parameters) throws XBeeException {
+		/*
+		 * Starting with the parameters given, the ones received saved for the
+		 * next start. The robot runs with the parameters of its agent
+		 */
+		AgentParameters.set(parameters);
+		parameterHolder.set(parameters);
+		this.parametersFile = AgentParameters.PARAMETERS_FILE;
+
 		/* Connecting with the rest of the robot (sensors/motors) */
-		robot = new JMirtoRobot();
-		robot.initialize("/dev/ttyAMA0");
-		robot.setup();
+		JMirtoRobot mirto = new JMirtoRobot();
+		mirto.initialize("/dev/ttyAMA0");
+		mirto.setup();
+
+		/* Writing the commands asynchronously, the redundant ones dropped */
+		robot = new RobotCommands(new MirtoLink(mirto));
 
 		System.out.println("Robot initialized");
 
@@ -131,54 +332,176 @@ public class Agent {
 		robot.writeLCDLine("cleaning program", 3);
 
 		/* Initializing the Xbee module */
-		xBee = new XBeeDevice("/dev/ttyUSB0", 9600);
-		while (!xBee.isOpen()) {
-			xBee.open();
-			xBee.addDataListener(new MessageReceiver(this));
-		}
+		transport = new XBeeTransport("/dev/ttyUSB0", 9600, this);
 
 		System.out.println("XBEE initialized");
 
-		/* Opening the socket */
-		try {
-			socket = new Socket(AgentParameters.SUPERVISOR_IP, AgentParameters.PORT_NUMBER);
-			out = new ObjectOutputStream(socket.getOutputStream());
-			System.out.println("Socket initialized, supervisor online");
-		} catch (Exception e) {
-			System.out.println("Supervisor offline");
-			System.err.println(e.getMessage());
-		}
-
 		/* The agent ID is the XBee's 16 bit address */
-		this.ID = Integer.parseInt(xBee.get16BitAddress().toString(), 16);
+		this.ID = transport.getAddress();
 
 		System.out.println("This agent ID is " + this.ID);
 
-		this.random = new Random();
+		this.incarnation = nextIncarnation(AgentParameters.INCARNATION_FILE);
+
+		this.inputs = new RobotInputs(robot);
+		if (recordTrace) {
+			try {
+				recorder = new TraceRecorder(inputs, traceFile);
+				inputs = recorder;
+				System.out.println("Recording inputs trace to " + traceFile);
+			} catch (IOException e) {
+				System.out.println("Cannot record inputs trace");
+				System.err.println(e.getMessage());
+			}
+		}
+
+		initialise();
 
 		/*
-		 * Set isActionInProgress to false and writes "not acting" on the screen
+		 * Warm restart from a recent checkpoint. Not when recording, so that
+		 * the trace holds all the inputs leading to the agent state
 		 */
-		this.stopAction();
+		try {
+			checkpoint = new BeliefCheckpoint(AgentParameters.CHECKPOINT_FILE, getParameters().getMemorySize());
+			if (recorder == null && checkpoint.read(getParameters().getCheckpointMaxAge() * 1000L))
+				restoreCheckpoint();
+			else
+				System.out.println("No recent checkpoint, starting from scratch");
+		} catch (IOException e) {
+			System.out.println("Checkpoint file unavailable");
+			System.err.println(e.getMessage());
+		}
+		this.lastCheckpointTime = this.time;
+
+		/* Receiving messages once the agent state is ready */
+		transport.setReceiver(new MessageReceiver(this));
+
+		connectSupervisor(getParameters().getSupervisorIP());
+	}
+
+	/**
+	 * Initialise an agent with no robot and no communication module attached,
+	 * to run its logic on the given inputs only (e.g. when replaying a trace or
+	 * simulating a swarm). Messages must be passed to a MessageReceiver by the
+	 * caller. Debug prints are disabled, as many agents may run in one process
+	 * 
+	 * @param ID
+	 *            the ID of the agent
+	 * @param inputs
+	 *            the inputs of the agent
+	 */
+	protected Agent(int ID, AgentInputs inputs) {
+		this.ID = ID;
+		this.inputs = inputs;
+		this.debug = false;
+		initialise();
+		this.realTime = secondsTime();
+	}
+
+	/**
+	 * Initialise an agent with no robot attached, broadcasting on the given
+	 * radio, to run many agents as processes of the same host. The main loop
+	 * and the motion control pause at every pass to share the CPU
+	 * 
+	 * @param transport
+	 *            the radio of the agent, whose address is the agent ID
+	 * @param inputs
+	 *            the inputs of the agent
+	 */
+	protected Agent(Transport transport, AgentInputs inputs) {
+		this(transport.getAddress(), inputs);
+		this.transport = transport;
+		this.loopPause = VIRTUAL_LOOP_PAUSE;
+		transport.setReceiver(new MessageReceiver(this));
+	}
+
+	/* Initialise the agent logic state */
+	private void initialise() {
+		/* Not acting, writing "not acting" on the screen */
+		this.state.reset(false, -1);
+		this.actionChanged();
 
 		this.canMove = false;
 		this.isBroadcasting = false;
 
 		this.time = 0;
 
-		this.actionBroadcastTime = -1;
-
-		this.nextActionState = null;
+		this.actionRepeats = 0;
 
-		this.memory = new boolean[AgentParameters.MEMORY_SIZE];
-		Arrays.fill(this.memory, false);
+		checkPropertyCount(propertyCount);
+		this.memory = new boolean[propertyCount][getParameters().getMemorySize()];
+		this.observedCounts = new int[propertyCount];
+		this.localBeliefs = new float[propertyCount];
+		this.propertyDecisions = new byte[propertyCount];
+		this.propertyTable = propertyCount > 1 ? new PropertyTable(propertyCount, parameterHolder) : null;
 
 		this.lastMemoryWrite = -1;
-
-		this.setStateCode(StateCode.ZERO);
+		this.memoryFill = 0;
 
 		this.isBeliefValid = false;
+	}
+
+	/*
+	 * Reads the number of times the agent started before from a file, and
+	 * writes it back increased, returning 0 if the file cannot be used
+	 */
+	private static int nextIncarnation(String fileName) {
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "rwd")) {
+			int incarnation = file.length() >= 4 ? file.readInt() + 1 : 0;
+			file.seek(0);
+			file.writeInt(incarnation);
+			System.out.println("Incarnation " + incarnation);
+			return incarnation;
+		} catch (IOException e) {
+			System.out.println("Incarnation file unavailable");
+			System.err.println(e.getMessage());
+			return 0;
+		}
+	}
+
+	/* Restores memory, belief table and action state from the checkpoint read */
+	private void restoreCheckpoint() {
+		this.time = checkpoint.getTime();
+		/* The checkpoint holds the observations of phi only */
+		synchronized (memoryLock) {
+			if (propertyCount == 1) {
+				System.arraycopy(checkpoint.getMemory(), 0, this.memory[0], 0, this.memory[0].length);
+				for (boolean observation : this.memory[0])
+					this.observedCounts[0] += observation ? 1 : 0;
+				this.lastMemoryWrite = checkpoint.getLastMemoryWrite();
+				this.isBeliefValid = checkpoint.isBeliefValid();
+				this.memoryFill = isBeliefValid ? memory[0].length : lastMemoryWrite + 1;
+			}
+		}
+		this.beliefTable.putAll(checkpoint.getBeliefTable());
 
+		if (checkpoint.isActionInProgress()) {
+			state.reset(true, checkpoint.getD());
+			actionChanged();
+		}
+
+		System.out.println("Restored checkpoint: time " + this.time + ", " + this.beliefTable.size() + " beliefs, "
+				+ (isActionInProgress() ? "acting" : "not acting"));
+	}
+
+	/* Writes a checkpoint if CHECKPOINT_INTERVAL time steps have passed */
+	private void writeCheckpoint() {
+		if (checkpoint == null || time - lastCheckpointTime < getParameters().getCheckpointInterval())
+			return;
+
+		lastCheckpointTime = time;
+		saveCheckpoint();
+	}
+
+	/* Writes a checkpoint of the current memory, belief table and action state */
+	private void saveCheckpoint() {
+		long word = state.get();
+		synchronized (memoryLock) {
+			synchronized (this.beliefTable) {
+				checkpoint.write(time, memory[0], lastMemoryWrite, isBeliefValid, beliefTable, AgentState.isActing(word),
+						AgentState.getD(word));
+			}
+		}
 	}
 
 	/**
@@ -189,26 +512,103 @@ public class Agent {
 	 * @param speedM2 the speed of the second motor
 	 */
 	protected void setMotors(int speedM1, int speedM2) {
+		if (robot == null)
+			return;
 		if ((speedM1 == 0 && speedM2 == 0)
 				|| (canMove && speedM1 > -255 && speedM1 < 255 && speedM2 > -255 && speedM2 < 255))
 			robot.setMotors(speedM1, speedM2);
 	}
 
 	/**
-	 * Write an observation of the world in the memory
+	 * Write an observation of the world in the memory, for every property
 	 * 
-	 * @param cellRead
-	 *            the boolean value read in this point in space
+	 * @param cellsRead
+	 *            the boolean values of the properties read in this point in
+	 *            space, phi first, the properties missing being false
+	 */
+	protected void writeToMemory(boolean[] cellsRead) {
+		synchronized (memoryLock) {
+			int size = memory[0].length;
+			lastMemoryWrite = (lastMemoryWrite + 1) % size;
+			memoryFill = Math.min(memoryFill + 1, size);
+
+			// setting flag when the memory is full for the first time
+			if (lastMemoryWrite == size - 1)
+				isBeliefValid = true;
+
+			for (int property = 0; property < propertyCount; property++) {
+				boolean cellRead = property < cellsRead.length && cellsRead[property];
+				/* Keeping the counts, replacing the oldest observation */
+				if (memory[property][lastMemoryWrite] != cellRead)
+					observedCounts[property] += cellRead ? 1 : -1;
+				memory[property][lastMemoryWrite] = cellRead;
+			}
+		}
+		sequentialTest.observe(cellsRead[0]);
+	}
+
+	/*
+	 * Adapts the agent to a new snapshot of the parameters, in the main loop:
+	 * resizing the memory, keeping its latest observations, and taking the
+	 * relaying parameters changed. The belief table is kept whole, the swarm
+	 * size only weighting the agents not heard from
 	 */
-	protected void writeToMemory(boolean cellRead) {
-		lastMemoryWrite = (lastMemoryWrite + 1) % AgentParameters.MEMORY_SIZE;
+	private void parametersChanged(AgentParameters latest) {
+		AgentParameters previous = parameters;
+		parameters = latest;
+
+		resizeMemory(latest.getMemorySize());
+		if (latest.getActionRelayProbability() != previous.getActionRelayProbability())
+			actionRelayProbability = latest.getActionRelayProbability();
+		if (latest.getActionRelayRepeats() != previous.getActionRelayRepeats())
+			actionRelayRepeats = latest.getActionRelayRepeats();
+		if (latest.getRelayBudget() != previous.getRelayBudget())
+			relayBudget = latest.getRelayBudget();
+
+		/* The thresholds may have moved, measuring the stability from scratch */
+		activity.wake();
+		debugMsg("Running with " + latest);
+	}
 
-		// setting flag when the memory is full for the first time
-		if (lastMemoryWrite == AgentParameters.MEMORY_SIZE - 1)
-			isBeliefValid = true;
+	/*
+	 * Resizes the memory to a number of observations, keeping the latest ones
+	 * in order. A memory grown holds fewer observations than its size until
+	 * they are made; a memory shrunk is full, making the belief valid
+	 */
+	private void resizeMemory(int size) {
+		synchronized (memoryLock) {
+			int oldSize = memory[0].length;
+			if (size == oldSize)
+				return;
+			int kept = Math.min(memoryFill, size);
+			boolean[][] resized = new boolean[propertyCount][size];
+			for (int property = 0; property < propertyCount; property++) {
+				observedCounts[property] = 0;
+				for (int i = 0; i < kept; i++) {
+					boolean observation = memory[property][(lastMemoryWrite - (kept - 1 - i) + oldSize) % oldSize];
+					resized[property][i] = observation;
+					observedCounts[property] += observation ? 1 : 0;
+				}
+			}
+			memory = resized;
+			lastMemoryWrite = kept - 1;
+			memoryFill = kept;
+			if (kept == size)
+				isBeliefValid = true;
+		}
+		System.out.println("Memory resized to " + size + " observations");
 
-		synchronized (this.memory) {
-			memory[lastMemoryWrite] = cellRead;
+		/* The checkpoint slots are sized by the memory, both written at once */
+		if (checkpoint != null) {
+			try {
+				checkpoint = new BeliefCheckpoint(AgentParameters.CHECKPOINT_FILE, size);
+				saveCheckpoint();
+				saveCheckpoint();
+			} catch (IOException e) {
+				checkpoint = null;
+				System.out.println("Checkpoint file unavailable");
+				System.err.println(e.getMessage());
+			}
 		}
 	}
 
@@ -218,54 +618,224 @@ public class Agent {
 	 * If the estimation on the state of the world minus the cells cleaned on
 	 * this step is over the target threshold, keep acting. Otherwise, not all
 	 * the swarm must keep acting (less than c cells are necessary to reach the
-	 * target) so a stochastical decision is made.
+	 * target) so a stochastical decision is made. The decision is dropped if
+	 * another transition of the action state, e.g. an action change heard,
+	 * happened meanwhile, as it is newer.
 	 */
 	private void actingContinuationDecision() {
-		if (isActionInProgress) {
+		long word = state.get();
+		if (AgentState.isActing(word)) {
+			AgentEvents.ContinuationEvent event = new AgentEvents.ContinuationEvent();
+			event.begin();
+			float dBefore = AgentState.getD(word);
+			float d = dBefore;
+			AgentState.Transition transition;
+			String branch;
+
 			/* Rate of cells the swarm will clean */
-			c = (AgentParameters.ACTIVATION_RATE * AgentParameters.SWARM_DENSITY * d);
+			AgentParameters parameters = getParameters();
+			double target = parameters.getTargetThreshold();
+			c = (parameters.getActivationRate() * parameters.getSwarmDensity() * d);
 
-			if (d < AgentParameters.TARGET_THRESHOLD) {
+			if (d < target) {
 				this.debugMsg("Stopping action from continuation decision");
-				stopAction();
+				branch = "stopBelowTarget";
+				transition = AgentState.Transition.CONTINUATION_STOP;
 				d = -1;
-			} else if (d - c > AgentParameters.TARGET_THRESHOLD) {
+			} else if (d - c > target) {
 				this.debugMsg("Keep acting deterministically from continuation decision");
+				branch = "keepDeterministic";
+				transition = AgentState.Transition.CONTINUE;
 				d = (float) (d - c);
-			} else if (random.nextFloat() < (d - AgentParameters.TARGET_THRESHOLD) / c) {
+			} else if (inputs.nextFloat() < (d - target) / c) {
 				this.debugMsg("Keep acting stochastically from continuation decision");
-				d = (float) ((float) (d - c) * ((d - AgentParameters.TARGET_THRESHOLD) / c));
+				branch = "keepStochastic";
+				transition = AgentState.Transition.CONTINUE;
+				d = (float) ((float) (d - c) * ((d - target) / c));
 			} else {
 				this.debugMsg("Stop acting stochastically from continuation decision");
-				stopAction();
+				branch = "stopStochastic";
+				transition = AgentState.Transition.CONTINUATION_STOP;
 				d = -1;
 			}
-			this.debugMsg("d = " + d);
+
+			int now = time;
+			if (state.apply(word, transition, d, now)) {
+				transitionApplied(word, AgentState.next(word, transition, d, now, parameters.getActionBroadcastTime()),
+						transition, 0);
+				this.debugMsg("d = " + d);
+			} else {
+				branch = "overtaken";
+				d = getD();
+				this.debugMsg("Continuation decision overtaken by another transition");
+			}
+
+			event.end();
+			if (event.shouldCommit()) {
+				event.branch = branch;
+				event.dBefore = dBefore;
+				event.dAfter = d;
+				event.c = c;
+				event.commit();
+			}
 		}
 	}
 
 	/**
 	 * Adds a belief to the belief table, if not present or present with an
-	 * older time stamp
+	 * older incarnation or time stamp
+	 * 
+	 * @param otherAgentID
+	 *            the ID of the agent that originated the belief
+	 * @param incarnation
+	 *            the incarnation of the agent when it created the belief
+	 * @param timeStamp
+	 *            the time the belief was created
+	 * @param belief
+	 *            the value of the belief
+	 */
+	protected void addBelief(Integer otherAgentID, Integer incarnation, Integer timeStamp, Float belief) {
+		addBelief(otherAgentID, incarnation, timeStamp, belief, 0f);
+	}
+
+	/**
+	 * Adds a belief with its confidence to the belief table, if not present or
+	 * present with an older incarnation or time stamp
 	 * 
 	 * @param otherAgentID
 	 *            the ID of the agent that originated the belief
+	 * @param incarnation
+	 *            the incarnation of the agent when it created the belief
 	 * @param timeStamp
 	 *            the time the belief was created
 	 * @param belief
 	 *            the value of the belief
+	 * @param confidence
+	 *            the log-likelihood ratio of the observations behind the
+	 *            belief
 	 */
-	protected void addBelief(Integer otherAgentID, Integer timeStamp, Float belief) {
-		if (belief < 0 || belief > 1)
+	protected void addBelief(Integer otherAgentID, Integer incarnation, Integer timeStamp, Float belief,
+			Float confidence) {
+		if (belief < 0 || belief > 1 || otherAgentID.equals(ID))
 			return;
 
-		if (!beliefTable.containsKey(otherAgentID)) {
-			// inserting if not present
-			beliefTable.put(otherAgentID, new AgentBelief(timeStamp, belief));
-		} else if (beliefTable.get(otherAgentID).getTimeStamp() < timeStamp) {
-			// inserting if present with an older timestamp
-			beliefTable.put(otherAgentID, new AgentBelief(timeStamp, belief));
+		boolean isFresh = false;
+		double oldBelief = getParameters().getNeutralBeliefDegree();
+		synchronized (beliefTable) {
+			AgentBelief old = beliefTable.get(otherAgentID);
+			if (old == null) {
+				// inserting if not present
+				beliefTable.put(otherAgentID, new AgentBelief(incarnation, timeStamp, belief, confidence));
+				isFresh = true;
+			} else if (old.isOlderThan(incarnation, timeStamp)) {
+				// inserting if present from an older incarnation or with an older timestamp
+				beliefTable.put(otherAgentID, new AgentBelief(incarnation, timeStamp, belief, confidence));
+				oldBelief = old.getBelief();
+				isFresh = true;
+			}
+		}
+		if (isFresh)
+			activity.beliefChanged(oldBelief, belief);
+
+		/* Queuing fresh beliefs to relay them, most recent last */
+		if (isFresh && relayBudget > 0) {
+			synchronized (relayBudgets) {
+				relayBudgets.remove(otherAgentID);
+				relayBudgets.put(otherAgentID, relayBudget);
+			}
+		}
+	}
+
+	/**
+	 * Adds the beliefs of an agent on every property, if not present or present
+	 * with an older incarnation or time stamp. The belief on phi is also added
+	 * to the belief table, with its confidence
+	 * 
+	 * @param otherAgentID
+	 *            the ID of the agent that originated the beliefs
+	 * @param incarnation
+	 *            the incarnation of the agent when it created the beliefs
+	 * @param timeStamp
+	 *            the time the beliefs were created
+	 * @param beliefs
+	 *            the values of the beliefs, phi first
+	 * @param count
+	 *            the number of beliefs in beliefs
+	 * @param confidence
+	 *            the log-likelihood ratio of the observations of phi behind
+	 *            the beliefs
+	 */
+	protected void addBeliefs(int otherAgentID, int incarnation, int timeStamp, float[] beliefs, int count,
+			float confidence) {
+		if (count == 0 || otherAgentID == ID)
+			return;
+		for (int property = 0; property < count; property++) {
+			if (beliefs[property] < 0 || beliefs[property] > 1)
+				return;
 		}
+
+		if (propertyTable != null)
+			propertyTable.put(otherAgentID, incarnation, timeStamp, beliefs, count);
+		addBelief(otherAgentID, incarnation, timeStamp, beliefs[0], confidence);
+	}
+
+	/**
+	 * Applies a push-sum message: remembers the sender as a neighbour and, if
+	 * this agent is the target, adds the half pair received
+	 * 
+	 * @param senderID
+	 *            the ID of the agent that sent the message
+	 * @param epoch
+	 *            the epoch of the sender
+	 * @param targetID
+	 *            the ID of the agent the half pair is for
+	 * @param sum
+	 *            the half sum sent
+	 * @param weight
+	 *            the half weight sent
+	 */
+	protected void addPushSum(int senderID, int epoch, int targetID, double sum, double weight) {
+		if (senderID == ID)
+			return;
+		pushSum.heard(senderID);
+		if (targetID == ID)
+			pushSum.absorb(epoch, sum, weight);
+	}
+
+	/**
+	 * Choose the other agent's belief to relay next: the most recently learned
+	 * one that has not been relayed RELAY_BUDGET times yet
+	 * 
+	 * @return the ID of the agent whose belief should be relayed, null if
+	 *         there is none
+	 */
+	protected Integer nextRelayID() {
+		synchronized (relayBudgets) {
+			Integer relayID = null;
+			Iterator<Integer> IDs = relayBudgets.keySet().iterator();
+			while (IDs.hasNext())
+				relayID = IDs.next();
+
+			if (relayID != null) {
+				int budget = relayBudgets.get(relayID) - 1;
+				if (budget > 0)
+					relayBudgets.put(relayID, budget);
+				else
+					relayBudgets.remove(relayID);
+			}
+			return relayID;
+		}
+	}
+
+	/**
+	 * Set the number of times a freshly learned belief is relayed, 0 to
+	 * disable relaying
+	 * 
+	 * @param relayBudget
+	 *            the number of times a freshly learned belief is relayed
+	 */
+	protected void setRelayBudget(int relayBudget) {
+		this.relayBudget = relayBudget;
 	}
 
 	/**
@@ -273,8 +843,11 @@ public class Agent {
 	 * actingContinuationDecision() to check if the action should continue
 	 */
 	protected void action() {
+		if (recorder != null)
+			recorder.recordAction();
 		/* Middle C for half a second */
-		this.robot.playNote(256, 500);
+		if (this.robot != null)
+			this.robot.playNote(256, 500);
 		actingContinuationDecision();
 	}
 
@@ -283,44 +856,223 @@ public class Agent {
 	 * the action if necessary
 	 */
 	protected void checkDistKnowledge() {
-		double accumulator = 0;
+		AgentEvents.DecisionCheckEvent checkEvent = new AgentEvents.DecisionCheckEvent();
+		checkEvent.begin();
+
+		AgentParameters parameters = getParameters();
+		double swarmBelief;
+		double swarmConfidence = 0;
+		int beliefCount = 0;
+
+		if (aggregationMode == AggregationMode.PUSH_SUM) {
+			swarmBelief = pushSum.getEstimate();
+		} else {
+			double accumulator = 0;
+
+			/* Adding the known agents' beliefs */
+			Integer[] IDs = beliefTable.keySet().toArray(new Integer[0]);
+			beliefCount = IDs.length;
+			for (int beliefIndex = 0; beliefIndex < IDs.length; beliefIndex++) {
+				AgentBelief belief = beliefTable.get(IDs[beliefIndex]);
+				accumulator += belief.getBelief();
+				swarmConfidence += belief.getConfidence();
+			}
+
+			/* Assuming a neutral value for the unknown agents' belief */
+			accumulator += parameters.getNeutralBeliefDegree() * (parameters.getSwarmSize() - IDs.length);
 
-		/* Adding the known agents' beliefs */
-		Integer[] IDs = beliefTable.keySet().toArray(new Integer[0]);
-		for (int beliefIndex = 0; beliefIndex < IDs.length; beliefIndex++) {
-			accumulator += beliefTable.get(IDs[beliefIndex]).getBelief();
+			/* Averaging */
+			swarmBelief = accumulator / parameters.getSwarmSize();
 		}
 
-		/* Assuming a neutral value for the unknown agents' belief */
-		accumulator += AgentParameters.NEUTRAL_BELIEF_DEGREE * (AgentParameters.SWARM_SIZE - IDs.length);
+		boolean isPhi, isNotPhi;
+		if (decisionMode == DecisionMode.SPRT) {
+			/* The observations of the agents are independent, summing their ratios */
+			if (aggregationMode == AggregationMode.PUSH_SUM)
+				swarmConfidence = sequentialTest.getLogLikelihoodRatio();
+			isPhi = swarmConfidence >= sequentialTest.upperBound();
+			isNotPhi = swarmConfidence <= sequentialTest.lowerBound();
+		} else {
+			isPhi = swarmBelief > parameters.getPhiBeliefThreshold();
+			isNotPhi = swarmBelief < parameters.getNotPhiBeliefThreshold();
+		}
+
+		activity.observe(time, swarmBelief, isPhi ? 1 : (isNotPhi ? -1 : 0));
 
-		/* Averaging */
-		double swarmBelief = accumulator / AgentParameters.SWARM_SIZE;
+		/* The other properties judged as phi without the test, their confidence not being sent */
+		propertyDecisions[0] = (byte) (isPhi ? 1 : (isNotPhi ? -1 : 0));
+		for (int property = 1; property < propertyCount; property++) {
+			double belief = propertyTable.swarmBelief(property, parameters.getSwarmSize());
+			propertyDecisions[property] = (byte) (belief > parameters.getPhiBeliefThreshold() ? 1
+					: (belief < parameters.getNotPhiBeliefThreshold() ? -1 : 0));
+		}
 
-		/* Starting/stopping action accordingly */
-		if (!isActionInProgress && swarmBelief > AgentParameters.PHI_BELIEF_THRESHOLD) {
-			this.debugMsg("Starting action from table");
-			startAction();
-			d = (float) swarmBelief;
-			this.debugMsg("d = " + d);
-			setStateCode(StateCode.ONE);
-		} else if (isActionInProgress && swarmBelief < AgentParameters.NOT_PHI_BELIEF_THRESHOLD) {
-			this.debugMsg("Stopping action from table");
-			stopAction();
-			setStateCode(StateCode.ONE);
-			d = -1;
+		checkEvent.end();
+		if (checkEvent.shouldCommit()) {
+			checkEvent.swarmBelief = swarmBelief;
+			checkEvent.swarmConfidence = swarmConfidence;
+			checkEvent.beliefCount = beliefCount;
+			checkEvent.isPhi = isPhi;
+			checkEvent.isNotPhi = isNotPhi;
+			checkEvent.commit();
+		}
+
+		/*
+		 * The estimation of the state of the world to act with. The test
+		 * accepts phi from a few observations per agent, the swarm belief
+		 * then being rough: phi being accepted, the rate of cells with phi is
+		 * taken to be at least PHI_BELIEF_THRESHOLD
+		 */
+		double d = swarmBelief;
+		if (decisionMode == DecisionMode.SPRT)
+			d = Math.max(swarmBelief, parameters.getPhiBeliefThreshold());
+
+		/* Starting/stopping action accordingly, unless a transition got there first */
+		if (isPhi && transition(AgentState.Transition.DECIDE_START, (float) d, 0)) {
+			this.debugMsg("Started action from table");
+			this.debugMsg("d = " + (float) d);
+			commitDecisionEvent("start", swarmBelief, swarmConfidence);
+		} else if (isNotPhi && transition(AgentState.Transition.DECIDE_STOP, -1, 0)) {
+			this.debugMsg("Stopped action from table");
+			commitDecisionEvent("stop", swarmBelief, swarmConfidence);
+		}
+	}
+
+	/* Records an action started or stopped from the belief table */
+	private void commitDecisionEvent(String outcome, double swarmBelief, double swarmConfidence) {
+		AgentEvents.DecisionEvent event = new AgentEvents.DecisionEvent();
+		if (event.shouldCommit()) {
+			event.outcome = outcome;
+			event.swarmBelief = swarmBelief;
+			event.swarmConfidence = swarmConfidence;
+			event.commit();
 		}
 	}
 
 	/**
-	 * Broadcast the data passed as parameter
+	 * Broadcast the data passed as parameter, without waiting for the transmit
+	 * status. Blocks while too many frames are waiting for their status
 	 * 
 	 * @param data
 	 *            the data to broadcast
 	 */
-	protected void broadcast(byte[] data) throws TimeoutException, XBeeException {
-		if (isBroadcasting)
-			xBee.sendBroadcastData(data);
+	protected void broadcast(byte[] data) throws IOException {
+		if (!isBroadcasting || transport == null)
+			return;
+
+		AgentEvents.RadioSendEvent event = new AgentEvents.RadioSendEvent();
+		event.begin();
+		boolean succeeded = false;
+		try {
+			transport.broadcast(data);
+			succeeded = true;
+		} finally {
+			event.end();
+			if (event.shouldCommit()) {
+				event.messageType = AgentEvents.messageType(data);
+				event.size = data.length;
+				event.succeeded = succeeded;
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * Connect to a supervisor, sending it the action state and then the
+	 * telemetry of this agent
+	 * 
+	 * @param host
+	 *            the address of the supervisor, optionally followed by :port
+	 */
+	protected void connectSupervisor(String host) {
+		/* Opening the socket */
+		try {
+			String[] address = host.split(":", 2);
+			socket = new Socket(address[0],
+					address.length > 1 ? Integer.parseInt(address[1]) : AgentParameters.PORT_NUMBER);
+			out = new ObjectOutputStream(socket.getOutputStream());
+			System.out.println("Socket initialized, supervisor online");
+		} catch (Exception e) {
+			System.out.println("Supervisor offline");
+			System.err.println(e.getMessage());
+			return;
+		}
+
+		sendToSupervisor(new ActionState(this.getId(), isActionInProgress() ? 1 : 0));
+		sendToSupervisor(new ParameterAck(this.getId(), getParameters()));
+
+		/* Streaming the telemetry to the supervisor in background */
+		Thread telemetryThread = new Thread(new TelemetrySender(this));
+		telemetryThread.setDaemon(true);
+		telemetryThread.start();
+
+		/* Applying the parameters the supervisor pushes in background */
+		Socket supervisorSocket = socket;
+		Thread parametersThread = new Thread(() -> readSupervisor(supervisorSocket), "supervisorReader");
+		parametersThread.setDaemon(true);
+		parametersThread.start();
+	}
+
+	/* Applies the parameters pushed by the supervisor, until the socket closes */
+	private void readSupervisor(Socket socket) {
+		try {
+			ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
+			while (true) {
+				Object received = in.readObject();
+				if (received instanceof AgentParameters)
+					applyParameters((AgentParameters) received);
+			}
+		} catch (EOFException e) {
+			// supervisor gone
+		} catch (IOException | ClassNotFoundException e) {
+			if (!socket.isClosed())
+				System.err.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * Apply a snapshot of the parameters, if newer than the current one of
+	 * this agent; on a robot, it is saved to start with it the next time and
+	 * the robot runs with it too. The main loop adapts the agent
+	 * to it at its next pass. The supervisor, if connected, is answered with
+	 * the snapshot now current
+	 * 
+	 * @param next
+	 *            the snapshot of the parameters
+	 */
+	protected void applyParameters(AgentParameters next) {
+		if (parameterHolder.set(next)) {
+			System.out.println("Received " + next);
+			if (parametersFile != null) {
+				AgentParameters.set(next);
+				next.save(parametersFile);
+			}
+			/* Not waiting for a quiescent main loop to adapt */
+			activity.wake();
+		}
+		sendToSupervisor(new ParameterAck(this.getId(), getParameters()));
+	}
+
+	/**
+	 * @return the current parameters of this agent, that the main loop
+	 *         adapts the agent to at its next pass
+	 */
+	public AgentParameters getParameters() {
+		return parameterHolder.get();
+	}
+
+	/**
+	 * Pause the calling loop, if this agent shares the CPU with other agent
+	 * processes
+	 */
+	protected void pause() {
+		if (loopPause > 0) {
+			try {
+				Thread.sleep(loopPause);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
 	}
 
 	/**
@@ -380,54 +1132,197 @@ public class Agent {
 		isBroadcasting = false;
 	}
 
-	/* Start the action and communicates to the supervisor  */
-	private void startAction() {
-		this.isActionInProgress = true;
-		/* Communicate on the socket that the action is starting */
-		if (this.socket != null && this.socket.isConnected()) {
-			try {
-				this.out.writeObject(new ActionState(this.getId(), 1));
-				this.out.flush();
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
+	/*
+	 * Applies a transition of the action state and its effects, returning
+	 * false if it had none. A broadcast started by the transition relays the
+	 * action change passed, as its origin ID in the high half and its sequence
+	 * number in the low half, unless decided by this agent
+	 */
+	private boolean transition(AgentState.Transition transition, float d, long change) {
+		int now = time;
+		long before = state.apply(transition, d, now);
+		long after = AgentState.next(before, transition, d, now, getParameters().getActionBroadcastTime());
+		return transitionApplied(before, after, transition, change);
+	}
+
+	/*
+	 * The effects of a transition of the action state from a word to the
+	 * next, returning false if it had none
+	 */
+	private boolean transitionApplied(long before, long after, AgentState.Transition transition, long change) {
+		if (after == before)
+			return false;
+
+		/* A new broadcast, started now or when the previous one expired */
+		if (AgentState.isBroadcasting(after) && (!AgentState.isBroadcasting(before)
+				|| AgentState.getBroadcastStart(after) != AgentState.getBroadcastStart(before))) {
+			if (transition == AgentState.Transition.DECIDE_START || transition == AgentState.Transition.DECIDE_STOP)
+				originateActionChange(after);
+			else
+				relayActionChange((int) (change >> 32), (int) change, after);
 		}
-		this.robot.writeLCDLine("CLEANING", 0);
-		this.debugMsg("ACTION STARTED");
+
+		if (AgentState.isActing(after) != AgentState.isActing(before))
+			actionChanged();
+		return true;
 	}
 
-	/* Stop the action and communicates to the supervisor  */
-	private void stopAction() {
-		/* Communicate on the socket that the action is ending */
-		if (this.socket != null && this.socket.isConnected()) {
-			this.isActionInProgress = false;
+	/*
+	 * Reports the action started or stopped to the supervisor and on the
+	 * screen. Reports from different threads are serialised and tell the
+	 * current state, so the last one is right whatever their order
+	 */
+	private void actionChanged() {
+		this.activity.actionChanged(isActionInProgress());
+		/* The world is about to change, testing it again */
+		this.sequentialTest.reset();
+		synchronized (actionReports) {
+			boolean isActing = isActionInProgress();
+			/* Communicate on the socket that the action is starting or ending */
+			this.sendToSupervisor(new ActionState(this.getId(), isActing ? 1 : 0));
+			if (this.robot != null)
+				this.robot.writeLCDLine(isActing ? "CLEANING" : "NOT CLEANING", 0);
+			this.debugMsg(isActing ? "ACTION STARTED" : "ACTION ENDED");
+		}
+	}
+
+	/**
+	 * Send an object to the supervisor, if connected. Writes from different
+	 * threads are serialised
+	 * 
+	 * @param message the object to send
+	 * @return false if the object could not be sent
+	 */
+	protected boolean sendToSupervisor(Object message) {
+		if (this.socket == null || !this.socket.isConnected())
+			return false;
+		AgentEvents.SupervisorReportEvent event = new AgentEvents.SupervisorReportEvent();
+		event.begin();
+		boolean succeeded = false;
+		synchronized (this.out) {
 			try {
-				this.out.writeObject(new ActionState(this.getId(), 0));
+				this.out.writeObject(message);
+				/* Not keeping references to the objects sent */
+				this.out.reset();
 				this.out.flush();
+				succeeded = true;
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
 		}
-		this.robot.writeLCDLine("NOT CLEANING", 0);
-		this.debugMsg("ACTION ENDED");
+		event.end();
+		if (event.shouldCommit()) {
+			event.reportType = message.getClass().getSimpleName();
+			event.succeeded = succeeded;
+			event.commit();
+		}
+		return succeeded;
+	}
+
+	/**
+	 * Apply an action change heard, from the calling thread. If the agent is
+	 * in state ZERO it is applied at once, and relayed if it changes the
+	 * action state. If the agent is in state ONE, when it will be back to
+	 * state ZERO the last change heard will be applied
+	 * 
+	 * @param isActing the action state of the change
+	 * @param d the estimation of the state of the world of the change, -1 if
+	 *        not acting
+	 * @param originID the ID of the agent that started the action change
+	 * @param sequence the origin's sequence number of the action change
+	 */
+	protected void hearActionChange(boolean isActing, float d, int originID, int sequence) {
+		long change = ((long) originID << 32) | (sequence & 0xffffffffL);
+		this.nextActionChange = change;
+		transition(isActing ? AgentState.Transition.HEAR_START : AgentState.Transition.HEAR_STOP, d, change);
+		/* Going on at full rate, unless the swarm settled on this change */
+		this.activity.actionChanged(isActing);
+	}
+
+	/**
+	 * Check if an action change was not heard yet, remembering it. An action
+	 * change is new if its sequence number is greater than the last one heard
+	 * from the same origin, or if the origin was not heard for
+	 * ACTION_DEDUP_TIME time steps (e.g. as it restarted)
+	 * 
+	 * @param originID the ID of the agent that started the action change
+	 * @param sequence the origin's sequence number of the action change
+	 * @return true if the action change is new
+	 */
+	protected boolean isNewActionChange(int originID, int sequence) {
+		if (originID == ID)
+			return false;
+		synchronized (heardActionChanges) {
+			Long heard = heardActionChanges.get(originID);
+			if (heard != null && sequence <= (int) (heard >> 32)
+					&& time - (int) (long) heard <= getParameters().getActionDedupTime())
+				return false;
+			heardActionChanges.put(originID, ((long) sequence << 32) | (time & 0xffffffffL));
+			return true;
+		}
 	}
 
 	/**
-	 * Set the next action state. Will have effect only when the agent is in
-	 * state ZERO. If the agent is in state ONE, when it will be back to state
-	 * ZERO the last value passed to this method will be set as the action state
+	 * Take one of the action messages to send for the action change being
+	 * broadcast, if any is left. The origin and sequence number of the change
+	 * are set under the lock of this agent, so they can be read with the
+	 * message taken by holding it
 	 * 
-	 * @param actionState the desired next action state
+	 * @return the action state word the message must carry, the one of the
+	 *         start of the broadcast whatever the continuation decisions did
+	 *         since, 0 if no action message should be sent (the word of a
+	 *         broadcast is never 0)
 	 */
-	protected void setNextActionState(boolean actionState) {
-		this.nextActionState = actionState;
+	protected synchronized long takeActionRepeat() {
+		/* Not sending the previous change once a new broadcast started */
+		long word = state.get();
+		if (!AgentState.isBroadcasting(word) || AgentState.getBroadcastStart(word) != actionBroadcastStart
+				|| actionRepeats == 0)
+			return 0;
+		actionRepeats--;
+		return actionBroadcastState;
+	}
+
+	/**
+	 * @return the ID of the agent that started the action change being
+	 *         broadcast
+	 */
+	public int getActionOriginID() {
+		return actionOriginID;
+	}
+
+	/**
+	 * @return the origin's sequence number of the action change being
+	 *         broadcast
+	 */
+	public int getActionSequence() {
+		return actionSequence;
+	}
+
+	/**
+	 * Set how the action changes heard are relayed
+	 * 
+	 * @param probability the probability of relaying an action change heard
+	 * @param repeats the number of action messages sent when relaying
+	 */
+	protected void setActionRelay(double probability, int repeats) {
+		this.actionRelayProbability = probability;
+		this.actionRelayRepeats = repeats;
 	}
 
 	/**
 	 * @return the state code of this agent
 	 */
 	public StateCode getStateCode() {
-		return stateCode;
+		return AgentState.isBroadcasting(state.get()) ? StateCode.ONE : StateCode.ZERO;
+	}
+
+	/**
+	 * @return the action state word of this agent, to read several of its
+	 *         fields at once (see AgentState)
+	 */
+	public long getActionState() {
+		return state.get();
 	}
 
 	/**
@@ -438,6 +1333,185 @@ public class Agent {
 		return isBeliefValid;
 	}
 
+	/**
+	 * @return true if the local belief estimates the rate of cells with phi
+	 *         over the observations held: once valid, or from the first
+	 *         observation in the SPRT decision mode, whose test decides
+	 *         before the memory fills up
+	 */
+	public boolean isBeliefEstimated() {
+		return isBeliefValid || (decisionMode == DecisionMode.SPRT && memoryFill > 0);
+	}
+
+	/**
+	 * @return how this agent estimates the belief of the swarm
+	 */
+	public AggregationMode getAggregationMode() {
+		return aggregationMode;
+	}
+
+	/**
+	 * Set how this agent estimates the belief of the swarm
+	 * 
+	 * @param aggregationMode
+	 *            how this agent estimates the belief of the swarm
+	 */
+	protected void setAggregationMode(AggregationMode aggregationMode) {
+		this.aggregationMode = aggregationMode;
+	}
+
+	/**
+	 * @return how this agent decides to start or stop the action
+	 */
+	public DecisionMode getDecisionMode() {
+		return decisionMode;
+	}
+
+	/**
+	 * Set how this agent decides to start or stop the action
+	 * 
+	 * @param decisionMode
+	 *            how this agent decides to start or stop the action
+	 */
+	protected void setDecisionMode(DecisionMode decisionMode) {
+		this.decisionMode = decisionMode;
+	}
+
+	/**
+	 * @return how this agent explores the floor
+	 */
+	public ExplorationMode getExplorationMode() {
+		return explorationMode;
+	}
+
+	/**
+	 * Set how this agent explores the floor. Effective from the next motion
+	 * start
+	 * 
+	 * @param explorationMode
+	 *            how this agent explores the floor
+	 */
+	protected void setExplorationMode(ExplorationMode explorationMode) {
+		this.explorationMode = explorationMode;
+	}
+
+	/**
+	 * Record the signal strength a frame was received with, as a hint of the
+	 * proximity of its sender
+	 * 
+	 * @param signalStrength
+	 *            the signal strength, in dBm
+	 */
+	protected void recordSignal(int signalStrength) {
+		strongestSignal.accumulateAndGet(signalStrength, Math::max);
+	}
+
+	/**
+	 * Take the strongest signal heard since the last call
+	 * 
+	 * @return the strongest signal strength, in dBm, NO_SIGNAL if no frame
+	 *         was received with a signal strength
+	 */
+	protected int takeStrongestSignal() {
+		return strongestSignal.getAndSet(NO_SIGNAL);
+	}
+
+	/**
+	 * @return the controller slowing this agent down while the belief of the
+	 *         swarm is stable
+	 */
+	public ActivityController getActivity() {
+		return activity;
+	}
+
+	/**
+	 * @return the push-sum estimation of the swarm belief of this agent
+	 */
+	protected PushSumEstimator getPushSum() {
+		return pushSum;
+	}
+
+	/**
+	 * @return the number of floor properties this agent judges, the first
+	 *         being phi
+	 */
+	public int getPropertyCount() {
+		return propertyCount;
+	}
+
+	/**
+	 * Set the number of floor properties this agent judges, e.g. to simulate
+	 * properties with no sensor reading them. Must be called before the first
+	 * observation
+	 * 
+	 * @param propertyCount
+	 *            the number of floor properties, the first being phi
+	 */
+	protected void setPropertyCount(int propertyCount) {
+		checkPropertyCount(propertyCount);
+		this.propertyCount = propertyCount;
+		synchronized (memoryLock) {
+			this.memory = new boolean[propertyCount][memory[0].length];
+			this.observedCounts = new int[propertyCount];
+		}
+		this.localBeliefs = new float[propertyCount];
+		this.propertyDecisions = new byte[propertyCount];
+		this.propertyTable = propertyCount > 1 ? new PropertyTable(propertyCount, parameterHolder) : null;
+	}
+
+	/* Rejects more properties than a frame holds the beliefs on */
+	private static void checkPropertyCount(int propertyCount) {
+		if (propertyCount < 1 || propertyCount > MessageSender.MAX_PROPERTIES)
+			throw new IllegalArgumentException("An agent judges 1 to " + MessageSender.MAX_PROPERTIES
+					+ " floor properties, not " + propertyCount);
+	}
+
+	/**
+	 * What the swarm believes of a property, as of the last check of the
+	 * distributed knowledge: phi as decided, the other properties by their
+	 * swarm belief against the belief thresholds
+	 * 
+	 * @param property
+	 *            the property, 0 for phi
+	 * @return 1 if the property holds, -1 if it does not, 0 if undecided
+	 */
+	public int getPropertyDecision(int property) {
+		return propertyDecisions[property];
+	}
+
+	/**
+	 * @return the beliefs of the agents on every property, null if this agent
+	 *         judges phi only
+	 */
+	protected PropertyTable getPropertyTable() {
+		return propertyTable;
+	}
+
+	/**
+	 * The belief of the swarm on a property, as known by this agent: the
+	 * average of the beliefs known, assuming a neutral belief for the agents
+	 * not heard from
+	 * 
+	 * @param property
+	 *            the property, 0 for phi
+	 * @return the belief of the swarm on the property
+	 */
+	public double getSwarmBelief(int property) {
+		AgentParameters parameters = getParameters();
+		if (propertyTable != null)
+			return propertyTable.swarmBelief(property, parameters.getSwarmSize());
+
+		double accumulator = 0;
+		int beliefCount;
+		synchronized (beliefTable) {
+			beliefCount = beliefTable.size();
+			for (AgentBelief belief : beliefTable.values())
+				accumulator += belief.getBelief();
+		}
+		accumulator += parameters.getNeutralBeliefDegree() * (parameters.getSwarmSize() - beliefCount);
+		return accumulator / parameters.getSwarmSize();
+	}
+
 	/**
 	 * @return the belief table of this agent
 	 */
@@ -449,7 +1523,7 @@ public class Agent {
 	 * @return the action state of this agent
 	 */
 	protected boolean isActionInProgress() {
-		return isActionInProgress;
+		return AgentState.isActing(state.get());
 	}
 
 	/**
@@ -465,28 +1539,66 @@ public class Agent {
 	public Integer getId() {
 		return ID;
 	}
+
+	/**
+	 * @return the identifier of the swarm of this agent
+	 */
+	public byte getSwarmID() {
+		return swarmID;
+	}
+
+	/**
+	 * Set the identifier of the swarm of this agent, e.g. to run several
+	 * swarms on the same radio channel
+	 * 
+	 * @param swarmID
+	 *            the identifier of the swarm
+	 */
+	protected void setSwarmID(byte swarmID) {
+		this.swarmID = swarmID;
+	}
+
+	/**
+	 * @return the number of times this agent started before
+	 */
+	public int getIncarnation() {
+		return incarnation;
+	}
+
+	/**
+	 * Set the number of times this agent started before, e.g. to simulate a
+	 * restart. Must be called before the first main loop pass
+	 * 
+	 * @param incarnation
+	 *            the number of times this agent started before
+	 */
+	protected void setIncarnation(int incarnation) {
+		this.incarnation = incarnation;
+	}
 	
 	/**
-	 * @return the robot this agent is attached to
+	 * @return the clock, sensors and random number generator of this agent
 	 * */
-	protected JMirtoRobot getRobot() {
-		return robot;
+	protected AgentInputs getInputs() {
+		return inputs;
 	}
 
 	/**
-	 * Set the estimation of the state of the world d
+	 * Record a frame received by this agent, if recording the inputs
 	 * 
-	 * @param d the estimation of the state of the world
-	 * */
-	protected void setD(float d) {
-		this.d = d;
+	 * @param data
+	 *            the raw content of the frame
+	 */
+	protected void recordFrame(byte[] data) {
+		if (recorder != null)
+			recorder.recordFrame(data);
 	}
 
 	/**
 	 * @return the estimation of the state of the world d
 	 * */
 	public float getD() {
-		return d;
+		return AgentState.getD(state.get());
 	}
 
 	/*
@@ -497,8 +1609,14 @@ public class Agent {
 
 		stopMotion();
 		setMotors(0, 0);
+		if (robot != null) {
+			/* Writing the commands still queued, the motors stop first */
+			robot.close();
+			System.out.println(robot.getStatistics());
+		}
 		stopBroadcasting();
-		xBee.close();
+		transport.close();
+		System.out.println(transport.getStatistics());
 		if (socket != null) {
 			try {
 				socket.close();
@@ -507,28 +1625,41 @@ public class Agent {
 			}
 		}
 
+		if (recorder != null)
+			recorder.close();
+
 		System.out.println("...NOW");
 	}
 
 	/*
-	 * Sets the agent's state code, also setting the action broadcast timer if
-	 * the passed code is StateCode.ONE
+	 * Broadcasts an action change decided by this agent, for the whole
+	 * ACTION_BROADCAST_TIME, from the action state word starting the broadcast
 	 */
-	private void setStateCode(StateCode code) {
-		this.stateCode = code;
-		if (stateCode == StateCode.ONE) {
-			setActionBroadcastTime();
-		}
+	private synchronized void originateActionChange(long broadcastState) {
+		actionOriginID = ID;
+		actionSequence = ++ownActionSequence;
+		actionRepeats = Integer.MAX_VALUE;
+		actionBroadcastState = broadcastState;
+		actionBroadcastStart = AgentState.getBroadcastStart(broadcastState);
 	}
 
-	/* Records the time of action broadcasting start */
-	private void setActionBroadcastTime() {
-		this.actionBroadcastTime = this.time;
+	/*
+	 * Relays an action change heard, with probability actionRelayProbability
+	 * and actionRelayRepeats times, while the broadcast started by the given
+	 * action state word holds the new action state for ACTION_BROADCAST_TIME
+	 * anyway
+	 */
+	private synchronized void relayActionChange(int originID, int sequence, long broadcastState) {
+		actionOriginID = originID;
+		actionSequence = sequence;
+		actionRepeats = inputs.nextFloat() < actionRelayProbability ? actionRelayRepeats : 0;
+		actionBroadcastState = broadcastState;
+		actionBroadcastStart = AgentState.getBroadcastStart(broadcastState);
 	}
 
-	/* Returns the internal nanoTime() in seconds */
+	/* Returns the inputs' nanoTime() in seconds */
 	private int secondsTime() {
-		return (int) (System.nanoTime() / 1000000000);
+		return (int) (inputs.nanoTime() / 1000000000);
 	}
 
 	/**
@@ -538,13 +1669,34 @@ public class Agent {
 		return time;
 	}
 
-	/* Entry point to the application */
-	public static void main(String args[]) throws XBeeException {
+	/**
+	 * Run an agent on a robot or, with --udp as first argument, an agent with
+	 * no robot on a virtual floor, using UDP multicast as radio. The options
+	 * of the latter are key=value pairs, with their default:
+	 * <ul>
+	 * <li>id : the agent ID, required;</li>
+	 * <li>floor : the ratio of cells with the property, 0.8;</li>
+	 * <li>loss : the probability of losing a frame received, 0;</li>
+	 * <li>latency : the delivery latency in milliseconds, 0;</li>
+	 * <li>baud : the emulated XBee baud rate, 0 for no limit, 9600;</li>
+	 * <li>group and port : the multicast group, UDP_GROUP and UDP_PORT;</li>
+	 * <li>supervisor : the address of a supervisor to connect to, optionally
+	 * followed by :port, none;</li>
+	 * <li>incarnation : the file counting the starts of the agent,
+	 * {@code agent-<id>.incarnation} in the temporary directory;</li>
+	 * <li>swarm : the swarm ID, SWARM_ID.</li>
+	 * </ul>
+	 */
+	public static void main(String args[]) throws XBeeException, IOException {
 		/* Creating the agent */
-		Agent thisAgent = new Agent(new AgentParameters());
+		Agent thisAgent;
+		if (args.length > 0 && args[0].equals("--udp"))
+			thisAgent = virtualAgent(Arrays.copyOfRange(args, 1, args.length));
+		else
+			thisAgent = new Agent(AgentParameters.load(AgentParameters.PARAMETERS_FILE));
 		
 		/* Recording the initial time */
-		long realTime = thisAgent.secondsTime();
+		thisAgent.realTime = thisAgent.secondsTime();
 
 		/* Starting motion and broadcast */
 		thisAgent.startMotion();
@@ -563,63 +1715,125 @@ public class Agent {
 		});
 
 		while (true) {
-			/* Increasing time and debug printing*/
-			if (thisAgent.secondsTime() > realTime) {
-				thisAgent.timeIncrease();
-				realTime = thisAgent.secondsTime();
-
-				thisAgent.debugMsg("\n");
-				thisAgent.debugMsg("Agent " + thisAgent.ID + " - Belief Table:");
+			thisAgent.step();
+			thisAgent.pause();
+			if (!thisAgent.activity.isPassDue(thisAgent.isActionInProgress()))
+				thisAgent.activity.pause(thisAgent.getParameters().getQuiescentLoopPause());
+		}
+	}
 
-				for (Integer beliefID : thisAgent.beliefTable.keySet())
-					thisAgent.debugMsg(beliefID + " " + thisAgent.beliefTable.get(beliefID).getBelief());
+	/* Creates an agent with no robot, on a UDP multicast radio */
+	private static Agent virtualAgent(String[] args) throws IOException {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			String[] pair = arg.split("=", 2);
+			if (pair.length == 2)
+				options.put(pair[0], pair[1]);
+		}
+		if (!options.containsKey("id"))
+			throw new IllegalArgumentException("Missing id=<agent ID>");
+
+		Transport transport = new UdpMulticastTransport(Integer.parseInt(options.get("id")),
+				options.getOrDefault("group", AgentParameters.UDP_GROUP),
+				Integer.parseInt(options.getOrDefault("port", "" + AgentParameters.UDP_PORT)),
+				Double.parseDouble(options.getOrDefault("loss", "0")),
+				Integer.parseInt(options.getOrDefault("latency", "0")),
+				Integer.parseInt(options.getOrDefault("baud", "9600")));
+		Agent agent = new Agent(transport,
+				new VirtualRobotInputs(Double.parseDouble(options.getOrDefault("floor", "0.8"))));
+		System.out.println("This agent ID is " + agent.getId());
+		agent.setSwarmID(Byte.parseByte(options.getOrDefault("swarm", "" + AgentParameters.SWARM_ID)));
+		agent.setIncarnation(nextIncarnation(options.getOrDefault("incarnation",
+				new File(System.getProperty("java.io.tmpdir"), "agent-" + agent.getId() + ".incarnation").getPath())));
+
+		if (options.containsKey("supervisor"))
+			agent.connectSupervisor(options.get("supervisor"));
+		return agent;
+	}
 
-				thisAgent.debugMsg(thisAgent.isActionInProgress ? "ACTING" : "NOT ACTING");
+	/**
+	 * Run one pass of the agent main loop: updating the time and the local
+	 * belief, applying the action changes received and checking for
+	 * distributed knowledge
+	 */
+	protected void step() {
+		/* Increasing time and debug printing*/
+		if (secondsTime() > realTime) {
+			timeIncrease();
+			realTime = secondsTime();
+
+			debugMsg("\n");
+			debugMsg("Agent " + ID + " - Belief Table:");
+
+			/* The receiver adds beliefs concurrently */
+			synchronized (beliefTable) {
+				for (Integer beliefID : beliefTable.keySet())
+					debugMsg(beliefID + " " + beliefTable.get(beliefID).getBelief());
 			}
 
-			/* Adding the local belief to the table */
-			synchronized (thisAgent.memory) {
-				float localBelief = 0;
-				for (boolean observation : thisAgent.memory) {
-					if (observation)
-						localBelief++;
-				}
-				localBelief = localBelief / AgentParameters.MEMORY_SIZE;
-				thisAgent.beliefTable.put(thisAgent.ID, new AgentBelief(thisAgent.time, localBelief));
-			}
+			for (int property = 1; property < propertyCount; property++)
+				debugMsg("Property " + property + " swarm belief " + getSwarmBelief(property) + ", decision "
+						+ propertyDecisions[property]);
 
-			/* Stopping action broadcast after ACTION_BROADCAST_TIME seconds */
-			if (thisAgent.stateCode == StateCode.ONE
-					&& thisAgent.time - thisAgent.actionBroadcastTime > AgentParameters.ACTION_BROADCAST_TIME) {
-				thisAgent.setStateCode(StateCode.ZERO);
-				thisAgent.actionBroadcastTime = -1;
-			}
+			debugMsg(isActionInProgress() ? "ACTING" : "NOT ACTING");
 
-			/* Setting action state from messages */
-			if (thisAgent.stateCode == StateCode.ZERO && thisAgent.nextActionState != null) {
-				if (thisAgent.nextActionState != thisAgent.isActionInProgress) {
-
-					if (thisAgent.nextActionState) {
-						thisAgent.debugMsg("Starting action from code 1 message");
-						thisAgent.startAction();
-					} else {
-						thisAgent.stopAction();
-						thisAgent.debugMsg("Stopping action from code 1 message");
-					}
-					thisAgent.setStateCode(StateCode.ONE);
-					thisAgent.debugMsg("d = " + thisAgent.getD());
-				}
-				thisAgent.nextActionState = null;
+			writeCheckpoint();
+
+			if (recorder != null)
+				recorder.flush();
+		}
+
+		/* Adapting to the parameters received since the last pass */
+		AgentParameters latest = getParameters();
+		if (latest != parameters)
+			parametersChanged(latest);
+
+		/* Adding the local belief to the table */
+		synchronized (memoryLock) {
+			/* Over the observations held, once valid: a memory grown stays valid while filling up */
+			int observations = isBeliefEstimated() ? memoryFill : memory[0].length;
+			float localBelief = (float) observedCounts[0] / observations;
+			AgentBelief previous = beliefTable.put(ID,
+					new AgentBelief(incarnation, time, localBelief, (float) sequentialTest.getLogLikelihoodRatio()));
+			if (previous != null)
+				activity.beliefChanged(previous.getBelief(), localBelief);
+
+			/* The beliefs on every property, neutral until valid as the ones sent */
+			if (propertyTable != null) {
+				for (int property = 0; property < propertyCount; property++)
+					localBeliefs[property] = isBeliefValid
+							? (float) observedCounts[property] / observations
+							: (float) latest.getNeutralBeliefDegree();
+				propertyTable.set(ID, incarnation, time, localBeliefs, propertyCount);
 			}
 
-			/*
-			 * if state code = 0, checkDistKnowledge. Can change
-			 * isActionInProgress directly
-			 */
-			if (thisAgent.stateCode == StateCode.ZERO) {
-				thisAgent.checkDistKnowledge();
+			if (aggregationMode == AggregationMode.PUSH_SUM) {
+				pushSum.setLocalBelief(isBeliefValid ? localBelief : latest.getNeutralBeliefDegree());
+				pushSum.tick(time);
 			}
 		}
+
+		/*
+		 * Stopping action broadcast after ACTION_BROADCAST_TIME seconds, then
+		 * applying the action change heard meanwhile, if any. The changes heard
+		 * in state ZERO are applied by the receiver
+		 */
+		transition(AgentState.Transition.EXPIRE, 0, nextActionChange);
+
+		/* if state code = 0, checkDistKnowledge, that can start or stop the action */
+		if (getStateCode() == StateCode.ZERO) {
+			checkDistKnowledge();
+		}
+	}
+
+	/**
+	 * Enable or disable the debug prints
+	 * 
+	 * @param debug
+	 *            true to enable the debug prints
+	 */
+	protected void setDebug(boolean debug) {
+		this.debug = debug;
 	}
 
 	/** To write debug messages */
@@ -1,10 +1,14 @@
 /**
- * This class represents an agent's local belief, enclosing a time stamp and a
- * belief value
+ * This class represents an agent's local belief, enclosing the incarnation of
+ * the agent that created it, a time stamp, a belief value and the confidence
+ * the agent has in it. As the time stamps start over when an agent restarts,
+ * beliefs are ordered by incarnation first, then by time stamp
  */
 public class AgentBelief {
+	private int incarnation;
 	private int timeStamp;
 	private float belief;
+	private float confidence;
 
 	/**
 	 * Initialise the belief
@@ -15,8 +19,36 @@ public class AgentBelief {
 	 *            the value of the belief
 	 */
 	public AgentBelief(int timeStamp, float belief) {
+		this(0, timeStamp, belief, 0);
+	}
+
+	/**
+	 * Initialise the belief with a confidence
+	 * 
+	 * @param incarnation
+	 *            the number of times the agent that created the belief had
+	 *            started before
+	 * @param timeStamp
+	 *            the time the belief was created
+	 * @param belief
+	 *            the value of the belief
+	 * @param confidence
+	 *            the log-likelihood ratio of the observations behind the
+	 *            belief, positive values being in favour of phi
+	 */
+	public AgentBelief(int incarnation, int timeStamp, float belief, float confidence) {
+		this.incarnation = incarnation;
 		this.timeStamp = timeStamp;
 		this.belief = belief;
+		this.confidence = confidence;
+	}
+
+	/**
+	 * @return the number of times the agent that created the belief had
+	 *         started before
+	 */
+	public int getIncarnation() {
+		return incarnation;
 	}
 
 	/**
@@ -32,4 +64,23 @@ public class AgentBelief {
 	public double getBelief() {
 		return belief;
 	}
+
+	/**
+	 * @return the log-likelihood ratio of the observations behind the belief
+	 */
+	public double getConfidence() {
+		return confidence;
+	}
+
+	/**
+	 * @param incarnation
+	 *            the incarnation of another belief of the same agent
+	 * @param timeStamp
+	 *            the time stamp of the other belief
+	 * @return true if this belief was created before the other one, by an
+	 *         earlier incarnation or earlier in the same incarnation
+	 */
+	public boolean isOlderThan(int incarnation, int timeStamp) {
+		return this.incarnation < incarnation || (this.incarnation == incarnation && this.timeStamp < timeStamp);
+	}
 }
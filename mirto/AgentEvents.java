@@ -0,0 +1,166 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * This class groups the JDK Flight Recorder events of the agent. They cost
+ * next to nothing unless a recording enables them, e.g. with the settings in
+ * tools/mirto.jfc:
+ * <ul>
+ * <li>java -XX:StartFlightRecording=settings=mirto.jfc,filename=agent.jfr
+ * Agent</li>
+ * </ul>
+ * The fields are only set once the event is known to be committed, and the
+ * duration of each event is the time spent in what it describes
+ */
+public final class AgentEvents {
+
+	private AgentEvents() {
+	}
+
+	/**
+	 * Evaluation of the belief table for distributed knowledge. As it runs at
+	 * every main loop pass, mirto.jfc only records the slow ones
+	 */
+	@Name("mirto.DecisionCheck")
+	@Label("Distributed Knowledge Check")
+	@Category({ "MIRTO", "Decisions" })
+	public static class DecisionCheckEvent extends Event {
+
+		@Label("Swarm Belief")
+		public double swarmBelief;
+
+		@Label("Swarm Confidence")
+		@Description("The sum of the log-likelihood ratios, in the sequential probability ratio test decision mode")
+		public double swarmConfidence;
+
+		@Label("Beliefs Known")
+		public int beliefCount;
+
+		@Label("Phi")
+		public boolean isPhi;
+
+		@Label("Not Phi")
+		public boolean isNotPhi;
+	}
+
+	/** Action started or stopped by a distributed knowledge check */
+	@Name("mirto.Decision")
+	@Label("Distributed Knowledge Decision")
+	@Category({ "MIRTO", "Decisions" })
+	public static class DecisionEvent extends Event {
+
+		@Label("Outcome")
+		@Description("start or stop")
+		public String outcome;
+
+		@Label("Swarm Belief")
+		public double swarmBelief;
+
+		@Label("Swarm Confidence")
+		public double swarmConfidence;
+	}
+
+	/** Decision to continue the action or not */
+	@Name("mirto.Continuation")
+	@Label("Acting Continuation Decision")
+	@Category({ "MIRTO", "Decisions" })
+	public static class ContinuationEvent extends Event {
+
+		@Label("Branch")
+		@Description("stopBelowTarget, keepDeterministic, keepStochastic, stopStochastic"
+				+ " or overtaken, if another transition happened meanwhile")
+		public String branch;
+
+		@Label("Estimation Before")
+		public double dBefore;
+
+		@Label("Estimation After")
+		public double dAfter;
+
+		@Label("Cells Cleaned")
+		public double c;
+	}
+
+	/** Frame handed to the radio, lasting as long as the sender is blocked */
+	@Name("mirto.RadioSend")
+	@Label("Radio Send")
+	@Category({ "MIRTO", "Radio" })
+	public static class RadioSendEvent extends Event {
+
+		@Label("Message Type")
+		@Description("belief, action or pushSum")
+		public String messageType;
+
+		@Label("Size")
+		@DataAmount
+		public int size;
+
+		@Label("Succeeded")
+		public boolean succeeded;
+	}
+
+	/** Frame received, lasting as long as its effects take to apply */
+	@Name("mirto.RadioReceive")
+	@Label("Radio Receive")
+	@Category({ "MIRTO", "Radio" })
+	public static class RadioReceiveEvent extends Event {
+
+		@Label("Message Type")
+		@Description("belief, action, pushSum or bad")
+		public String messageType;
+
+		@Label("Size")
+		@DataAmount
+		public int size;
+	}
+
+	/** Object written to the supervisor socket */
+	@Name("mirto.SupervisorReport")
+	@Label("Supervisor Report")
+	@Category({ "MIRTO", "Supervisor" })
+	public static class SupervisorReportEvent extends Event {
+
+		@Label("Report Type")
+		public String reportType;
+
+		@Label("Succeeded")
+		public boolean succeeded;
+	}
+
+	/** Phase of the random walk */
+	@Name("mirto.MotionPhase")
+	@Label("Motion Phase")
+	@Category({ "MIRTO", "Motion" })
+	public static class MotionPhaseEvent extends Event {
+
+		@Label("Phase")
+		@Description("forward, turn, wallTurn or action")
+		public String phase;
+	}
+
+	/**
+	 * @param data
+	 *            the content of a frame, the swarm ID followed by the message
+	 * @return the type of the message in the frame
+	 */
+	public static String messageType(byte[] data) {
+		if (data.length < 2)
+			return "bad";
+		switch (data[1]) {
+		case '0':
+			return "belief";
+		case '1':
+			return "action";
+		case '2':
+			return "pushSum";
+		case '3':
+			return "beliefs";
+		default:
+			return "bad";
+		}
+	}
+}
@@ -0,0 +1,32 @@
+/**
+ * This interface represents the source of every non-deterministic input the
+ * agent logic depends on: the clock, the robot sensors and the random draws.
+ * Messages received are the only other input, and are pushed to the agent by
+ * the MessageReceiver.
+ */
+public interface AgentInputs {
+
+	/**
+	 * @return the current time in nanoseconds, as System.nanoTime()
+	 */
+	long nanoTime();
+
+	/**
+	 * @param sensor
+	 *            the index of the infrared sensor
+	 * @return the value read by the infrared sensor
+	 */
+	int getIR(int sensor);
+
+	/**
+	 * @param bumper
+	 *            the index of the bumper
+	 * @return true if the bumper is pressed, false otherwise
+	 */
+	boolean isPressed(int bumper);
+
+	/**
+	 * @return a random float uniformly distributed between 0 and 1
+	 */
+	float nextFloat();
+}
@@ -1,40 +1,606 @@
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
 /**
- * This class contains several final and static parameters that should be common
- * to every agent deployed
+ * This class contains the parameters that should be common to every agent
+ * deployed. The ones fixed by the deployment (the radio, the files, the robot
+ * calibration and the modes) are final and static constants. The tuning ones
+ * (see Key) are held by an immutable snapshot with a version: the current
+ * snapshot, returned by get(), is swapped atomically by set() for one with a
+ * higher version, e.g. pushed by the supervisor, so the agents are tuned with
+ * no restart. A reader needing several parameters to agree takes the snapshot
+ * once and reads them from it.
+ * <p>
+ * Every agent holds its own current snapshot (see Holder), starting from the
+ * one of the process: the agents simulated in one process are tuned one by
+ * one, as the robots are.
  */
-public class AgentParameters {
-	/** The rate of cells with phi over the which phi is considered true for the world */
-	public static final double PHI_BELIEF_THRESHOLD = 0.75;
+public class AgentParameters implements Serializable {
+
+	private static final long serialVersionUID = 3317064812951340418L;
+
+	/**
+	 * The values of this enumeration type are the tuning parameters, with
+	 * their default value, the range they are checked against and whether they
+	 * are whole numbers. New keys go last, as the snapshots saved and sent hold
+	 * the values by position
+	 */
+	public static enum Key {
+		/** The rate of cells with phi over the which phi is considered true for the world */
+		PHI_BELIEF_THRESHOLD(0.75, 0, 1, false),
+
+		/** The rate of cells with phi under the which not phi is considered true for the world */
+		NOT_PHI_BELIEF_THRESHOLD(0.55, 0, 1, false),
+
+		/** The number of agents deployed */
+		SWARM_SIZE(5, 1, 65536, true),
+
+		/** The time steps to broadcast an action state change for */
+		ACTION_BROADCAST_TIME(15, 1, 3600, true),
+
+		/** The probability of an agent relaying an action change it hears */
+		ACTION_RELAY_PROBABILITY(1, 0, 1, false),
+
+		/** The number of action messages an agent relaying an action change sends */
+		ACTION_RELAY_REPEATS(5, 0, 100, true),
+
+		/** The number of cells observation to remember */
+		MEMORY_SIZE(10, 1, 1000, true),
+
+		/** The ratio of agents that are expected to start acting */
+		ACTIVATION_RATE(1, 0, 100, false),
+
+		/** The ratio of agents per world cell */
+		SWARM_DENSITY(0.05, 0, 1, false),
+
+		/**
+		 * The rate of cells with phi that should remain after an action, NaN
+		 * for the neutral belief degree
+		 */
+		TARGET_THRESHOLD(Double.NaN, 0, 1, false),
+
+		/** The number of times an agent relays another agent's fresh belief */
+		RELAY_BUDGET(3, 0, 100, true),
+
+		/** The time steps of a push-sum epoch, after which the estimation restarts */
+		PUSH_SUM_EPOCH(10, 1, 3600, true),
+
+		/**
+		 * The metres a robot must travel between two observations, for them
+		 * to be of different parts of the floor
+		 */
+		SAMPLE_DISTANCE(0.15, 0, 10, false),
+
+		/** The signal strength in dBm above which a neighbour is considered close */
+		NEAR_SIGNAL(-45, -120, 0, true),
+
+		/**
+		 * The time steps the belief of the swarm must be stable for before an
+		 * agent becomes quiescent, slowing down
+		 */
+		QUIESCENT_WINDOW(30, 1, 86400, true),
+
+		/**
+		 * The change of the belief of the swarm from a main loop pass to the
+		 * next that wakes a quiescent agent up
+		 */
+		QUIESCENT_EPSILON(0.06, 0, 1, false),
 
-	/** The rate of cells with phi under the which not phi is considered true for the world */
-	public static final double NOT_PHI_BELIEF_THRESHOLD = 0.55;
+		/**
+		 * The change of the belief of the swarm since the agent became
+		 * quiescent that wakes it up
+		 */
+		QUIESCENT_DRIFT(0.15, 0, 1, false),
 
-	/** The assumed belief for unknown agents */
-	public static final double NEUTRAL_BELIEF_DEGREE = (PHI_BELIEF_THRESHOLD + NOT_PHI_BELIEF_THRESHOLD) / 2;
+		/** The milliseconds a quiescent agent pauses its main loop for at every pass */
+		QUIESCENT_LOOP_PAUSE(200, 0, 10000, true),
 
-	/** The number of agents deployed */
-	public static final double SWARM_SIZE = 5;
+		/** The milliseconds a quiescent agent pauses for after every broadcast */
+		QUIESCENT_BROADCAST_PAUSE(200, 0, 10000, true),
+
+		/** The seconds between two observations of a quiescent agent */
+		QUIESCENT_SAMPLE_INTERVAL(2, 0, 60, false),
+
+		/** The minimum milliseconds between two writes of a line of the LCD screen */
+		LCD_LINE_INTERVAL(500, 0, 10000, true),
+
+		/** The probability of a wrong decision accepted in DecisionMode.SPRT */
+		SPRT_ERROR_BOUND(0.01, 0.000001, 0.5, false),
+
+		/** The time steps between two checkpoints */
+		CHECKPOINT_INTERVAL(5, 1, 3600, true),
+
+		/** The maximum age in seconds of a checkpoint to restore it on startup */
+		CHECKPOINT_MAX_AGE(300, 0, 86400, true);
+
+		private final double defaultValue;
+		private final double min;
+		private final double max;
+		private final boolean isInteger;
+
+		private Key(double defaultValue, double min, double max, boolean isInteger) {
+			this.defaultValue = defaultValue;
+			this.min = min;
+			this.max = max;
+			this.isInteger = isInteger;
+		}
+	}
+
+	/** The key of the address of the supervisor, the only tuning parameter that is not a number */
+	public static final String SUPERVISOR_IP_KEY = "SUPERVISOR_IP";
+
+	/* A host name or address, optionally followed by :port */
+	private static final Pattern SUPERVISOR_ADDRESS = Pattern.compile("[A-Za-z0-9.-]+(:[0-9]{1,5})?");
+
+	/**
+	 * The identifier of the swarm, first byte of every frame, so that swarms
+	 * sharing a room ignore each other's frames
+	 */
+	public static final byte SWARM_ID = 1;
 
 	/**
-	 * The time steps to broadcast an action state change for
+	 * The infrared values over which a cell has each of the floor properties
+	 * judged, the first being phi, the property the action depends on. The
+	 * other properties are only estimated, each decided on against the belief
+	 * thresholds. At most MessageSender.MAX_PROPERTIES, for the beliefs of an
+	 * agent to fit in a frame
 	 */
-	public static final int ACTION_BROADCAST_TIME = 15;
+	public static final int[] PROPERTY_IR_THRESHOLDS = { 130 };
+
+	/** How the agents estimate the belief of the swarm */
+	public static final Agent.AggregationMode AGGREGATION_MODE = Agent.AggregationMode.BELIEF_TABLE;
 
-	/** The number of cells observation to remember */
-	public static final int MEMORY_SIZE = 10;
+	/** How the agents decide to start or stop the action */
+	public static final Agent.DecisionMode DECISION_MODE = Agent.DecisionMode.THRESHOLDS;
 
-	/** The ratio of agents that are expected to start acting */
-	public static final double ACTIVATION_RATE = 1;
+	/** How the agents explore the floor */
+	public static final Agent.ExplorationMode EXPLORATION_MODE = Agent.ExplorationMode.FIXED;
 
-	/** The ratio of agents per world cell */
-	public static final double SWARM_DENSITY = 0.05;
+	/** The seconds a robot takes to spin a full turn at the motion control turning speed */
+	public static final double FULL_TURN_TIME = 2;
 
-	/** The rate of cells with phi that should remain after an action */
-	public static final double TARGET_THRESHOLD = NEUTRAL_BELIEF_DEGREE;
+	/** The metres per second a robot goes forward with the motors at the motion control speed */
+	public static final double FORWARD_SPEED = 0.15;
 
 	/** The port number to communicate the acting state */
 	public static final int PORT_NUMBER = 1025;
 
-	/** The IP address of the supervisor machine */
-	public static final String SUPERVISOR_IP = "10.3.219.138";
+	/** The multicast group of the agents with no XBee module */
+	public static final String UDP_GROUP = "239.255.42.1";
+
+	/** The UDP port of the agents with no XBee module */
+	public static final int UDP_PORT = 9750;
+
+	/** The file counting the starts of the agent, for its beliefs' incarnation */
+	public static final String INCARNATION_FILE = "/home/pi/agent.incarnation";
+
+	/** The file to checkpoint the memory and the belief table to */
+	public static final String CHECKPOINT_FILE = "/home/pi/agent.checkpoint";
+
+	/** The file keeping the last parameters received, to start with them */
+	public static final String PARAMETERS_FILE = "/home/pi/agent.parameters";
+
+	/**
+	 * This class represents the current snapshot of the parameters of an
+	 * agent, or of the process, swapped atomically for newer ones
+	 */
+	public static class Holder {
+
+		private final AtomicReference<AgentParameters> current;
+
+		/**
+		 * Initialise the holder
+		 *
+		 * @param parameters
+		 *            the first snapshot
+		 */
+		public Holder(AgentParameters parameters) {
+			this.current = new AtomicReference<>(parameters);
+		}
+
+		/**
+		 * @return the current snapshot
+		 */
+		public AgentParameters get() {
+			return current.get();
+		}
+
+		/**
+		 * Make a snapshot the current one, if its version is higher than the
+		 * current one's
+		 *
+		 * @param parameters
+		 *            the new snapshot
+		 * @return false if the current snapshot is as new or newer, and was
+		 *         kept
+		 */
+		public boolean set(AgentParameters parameters) {
+			while (true) {
+				AgentParameters previous = current.get();
+				if (parameters.version <= previous.version)
+					return false;
+				if (current.compareAndSet(previous, parameters))
+					return true;
+			}
+		}
+	}
+
+	/* The current snapshot of the process */
+	private static final Holder process = new Holder(new AgentParameters());
+
+	/* The version, higher for newer snapshots, 0 for the defaults */
+	private long version;
+
+	/* The values of the tuning parameters, by key */
+	private double[] values;
+
+	/* The IP address of the supervisor machine */
+	private String supervisorIP;
+
+	/**
+	 * Initialise the snapshot of the default parameters, version 0
+	 */
+	public AgentParameters() {
+		this.version = 0;
+		this.values = new double[Key.values().length];
+		for (Key key : Key.values())
+			this.values[key.ordinal()] = key.defaultValue;
+		this.supervisorIP = "10.3.219.138";
+	}
+
+	/**
+	 * @return the current snapshot of the process, that the agents start from
+	 *         and the robot runs with
+	 */
+	public static AgentParameters get() {
+		return process.get();
+	}
+
+	/**
+	 * Make a snapshot the current one of the process, if its version is higher
+	 * than the current one's
+	 *
+	 * @param parameters
+	 *            the new snapshot
+	 * @return false if the current snapshot is as new or newer, and was kept
+	 */
+	public static boolean set(AgentParameters parameters) {
+		return process.set(parameters);
+	}
+
+	/**
+	 * A new snapshot with some parameters changed
+	 *
+	 * @param version
+	 *            the version of the new snapshot
+	 * @param changes
+	 *            the values of the parameters changed, by key (see Key and
+	 *            SUPERVISOR_IP_KEY)
+	 * @return the new snapshot
+	 * @throws IllegalArgumentException
+	 *             if a key is unknown, or a value is not a number, is out of
+	 *             its range or leaves the thresholds the wrong way round, or
+	 *             the address of the supervisor is not host[:port]
+	 */
+	public AgentParameters with(long version, Map<String, String> changes) {
+		AgentParameters next = withVersion(version);
+		for (Map.Entry<String, String> change : changes.entrySet()) {
+			if (change.getKey().equals(SUPERVISOR_IP_KEY)) {
+				String address = change.getValue().trim();
+				if (!SUPERVISOR_ADDRESS.matcher(address).matches()
+						|| (address.contains(":") && Integer.parseInt(address.split(":")[1]) > 65535))
+					throw new IllegalArgumentException(SUPERVISOR_IP_KEY + " must be host[:port]");
+				next.supervisorIP = address;
+				continue;
+			}
+			Key key;
+			double value;
+			try {
+				key = Key.valueOf(change.getKey());
+				value = Double.parseDouble(change.getValue());
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Bad parameter " + change.getKey() + "=" + change.getValue());
+			}
+			/* NaN for the default of TARGET_THRESHOLD */
+			boolean isDefault = Double.isNaN(key.defaultValue) && Double.isNaN(value);
+			if (!isDefault && (!(value >= key.min && value <= key.max) || (key.isInteger && value != Math.rint(value))))
+				throw new IllegalArgumentException(change.getKey() + " must be " + (key.isInteger ? "a whole number " : "")
+						+ "between " + key.min + " and " + key.max);
+			next.values[key.ordinal()] = value;
+		}
+		if (next.getNotPhiBeliefThreshold() > next.getPhiBeliefThreshold())
+			throw new IllegalArgumentException("NOT_PHI_BELIEF_THRESHOLD must not be over PHI_BELIEF_THRESHOLD");
+		return next;
+	}
+
+	/**
+	 * @param version
+	 *            the version of the new snapshot
+	 * @return a new snapshot with the same parameters and another version, e.g.
+	 *         to roll a snapshot back as a newer one
+	 */
+	public AgentParameters withVersion(long version) {
+		AgentParameters next = new AgentParameters();
+		next.version = version;
+		next.values = values.clone();
+		next.supervisorIP = supervisorIP;
+		return next;
+	}
+
+	/**
+	 * Read a snapshot saved, falling back to the defaults
+	 *
+	 * @param fileName
+	 *            the file the snapshot was saved to
+	 * @return the snapshot saved, or the defaults if it cannot be read
+	 */
+	public static AgentParameters load(String fileName) {
+		try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(fileName))) {
+			AgentParameters parameters = (AgentParameters) in.readObject();
+			if (parameters.values.length != Key.values().length)
+				throw new IOException("Parameters saved by another version");
+			System.out.println("Parameters version " + parameters.version + " loaded");
+			return parameters;
+		} catch (IOException | ClassNotFoundException | ClassCastException e) {
+			System.out.println("No parameters saved, starting with the defaults");
+			return new AgentParameters();
+		}
+	}
+
+	/**
+	 * Save this snapshot, to start with it the next time
+	 *
+	 * @param fileName
+	 *            the file to save to
+	 */
+	public void save(String fileName) {
+		try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(fileName))) {
+			out.writeObject(this);
+		} catch (IOException e) {
+			System.out.println("Cannot save the parameters");
+			System.err.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * @return the version of this snapshot, higher for newer ones
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @param key
+	 *            a tuning parameter
+	 * @return its value
+	 */
+	public double get(Key key) {
+		return values[key.ordinal()];
+	}
+
+	/**
+	 * @return the value of Key.PHI_BELIEF_THRESHOLD
+	 */
+	public double getPhiBeliefThreshold() {
+		return get(Key.PHI_BELIEF_THRESHOLD);
+	}
+
+	/**
+	 * @return the value of Key.NOT_PHI_BELIEF_THRESHOLD
+	 */
+	public double getNotPhiBeliefThreshold() {
+		return get(Key.NOT_PHI_BELIEF_THRESHOLD);
+	}
+
+	/**
+	 * @return the assumed belief for unknown agents, halfway between the
+	 *         thresholds
+	 */
+	public double getNeutralBeliefDegree() {
+		return (getPhiBeliefThreshold() + getNotPhiBeliefThreshold()) / 2;
+	}
+
+	/**
+	 * @return the value of Key.SWARM_SIZE
+	 */
+	public double getSwarmSize() {
+		return get(Key.SWARM_SIZE);
+	}
+
+	/**
+	 * @return the value of Key.ACTION_BROADCAST_TIME
+	 */
+	public int getActionBroadcastTime() {
+		return (int) get(Key.ACTION_BROADCAST_TIME);
+	}
+
+	/**
+	 * @return the value of Key.ACTION_RELAY_PROBABILITY
+	 */
+	public double getActionRelayProbability() {
+		return get(Key.ACTION_RELAY_PROBABILITY);
+	}
+
+	/**
+	 * @return the value of Key.ACTION_RELAY_REPEATS
+	 */
+	public int getActionRelayRepeats() {
+		return (int) get(Key.ACTION_RELAY_REPEATS);
+	}
+
+	/**
+	 * @return the time steps after which an action change heard is forgotten,
+	 *         twice the broadcast time
+	 */
+	public int getActionDedupTime() {
+		return 2 * getActionBroadcastTime();
+	}
+
+	/**
+	 * @return the value of Key.MEMORY_SIZE
+	 */
+	public int getMemorySize() {
+		return (int) get(Key.MEMORY_SIZE);
+	}
+
+	/**
+	 * @return the value of Key.ACTIVATION_RATE
+	 */
+	public double getActivationRate() {
+		return get(Key.ACTIVATION_RATE);
+	}
+
+	/**
+	 * @return the value of Key.SWARM_DENSITY
+	 */
+	public double getSwarmDensity() {
+		return get(Key.SWARM_DENSITY);
+	}
+
+	/**
+	 * @return the rate of cells with phi that should remain after an action,
+	 *         by default the neutral belief degree
+	 */
+	public double getTargetThreshold() {
+		double target = get(Key.TARGET_THRESHOLD);
+		return Double.isNaN(target) ? getNeutralBeliefDegree() : target;
+	}
+
+	/**
+	 * @return the value of Key.RELAY_BUDGET
+	 */
+	public int getRelayBudget() {
+		return (int) get(Key.RELAY_BUDGET);
+	}
+
+	/**
+	 * @return the value of Key.PUSH_SUM_EPOCH
+	 */
+	public int getPushSumEpoch() {
+		return (int) get(Key.PUSH_SUM_EPOCH);
+	}
+
+	/**
+	 * @return the value of Key.SAMPLE_DISTANCE
+	 */
+	public double getSampleDistance() {
+		return get(Key.SAMPLE_DISTANCE);
+	}
+
+	/**
+	 * @return the value of Key.NEAR_SIGNAL
+	 */
+	public int getNearSignal() {
+		return (int) get(Key.NEAR_SIGNAL);
+	}
+
+	/**
+	 * @return the value of Key.QUIESCENT_WINDOW
+	 */
+	public int getQuiescentWindow() {
+		return (int) get(Key.QUIESCENT_WINDOW);
+	}
+
+	/**
+	 * @return the value of Key.QUIESCENT_EPSILON
+	 */
+	public double getQuiescentEpsilon() {
+		return get(Key.QUIESCENT_EPSILON);
+	}
+
+	/**
+	 * @return the value of Key.QUIESCENT_DRIFT
+	 */
+	public double getQuiescentDrift() {
+		return get(Key.QUIESCENT_DRIFT);
+	}
+
+	/**
+	 * @return the value of Key.QUIESCENT_LOOP_PAUSE
+	 */
+	public long getQuiescentLoopPause() {
+		return (long) get(Key.QUIESCENT_LOOP_PAUSE);
+	}
+
+	/**
+	 * @return the value of Key.QUIESCENT_BROADCAST_PAUSE
+	 */
+	public long getQuiescentBroadcastPause() {
+		return (long) get(Key.QUIESCENT_BROADCAST_PAUSE);
+	}
+
+	/**
+	 * @return the value of Key.QUIESCENT_SAMPLE_INTERVAL
+	 */
+	public double getQuiescentSampleInterval() {
+		return get(Key.QUIESCENT_SAMPLE_INTERVAL);
+	}
+
+	/**
+	 * @return the value of Key.LCD_LINE_INTERVAL
+	 */
+	public long getLcdLineInterval() {
+		return (long) get(Key.LCD_LINE_INTERVAL);
+	}
+
+	/**
+	 * @return the value of Key.SPRT_ERROR_BOUND
+	 */
+	public double getSprtErrorBound() {
+		return get(Key.SPRT_ERROR_BOUND);
+	}
+
+	/**
+	 * @return the value of SUPERVISOR_IP_KEY
+	 */
+	public String getSupervisorIP() {
+		return supervisorIP;
+	}
+
+	/**
+	 * @return the value of Key.CHECKPOINT_INTERVAL
+	 */
+	public int getCheckpointInterval() {
+		return (int) get(Key.CHECKPOINT_INTERVAL);
+	}
+
+	/**
+	 * @return the value of Key.CHECKPOINT_MAX_AGE
+	 */
+	public int getCheckpointMaxAge() {
+		return (int) get(Key.CHECKPOINT_MAX_AGE);
+	}
+
+	/**
+	 * @return the snapshot as a JSON object, the version and every parameter
+	 *         by key
+	 */
+	public String toJson() {
+		StringBuilder json = new StringBuilder("{\"version\":").append(version);
+		for (Key key : Key.values()) {
+			double value = get(key);
+			json.append(",\"").append(key).append("\":");
+			if (Double.isNaN(value))
+				json.append("null");
+			else if (key.isInteger)
+				json.append((long) value);
+			else
+				json.append(value);
+		}
+		/* The address needs no escaping, checked by with() */
+		return json.append(",\"").append(SUPERVISOR_IP_KEY).append("\":\"").append(supervisorIP).append("\"}")
+				.toString();
+	}
+
+	@Override
+	public String toString() {
+		return "parameters version " + version;
+	}
 }
@@ -0,0 +1,287 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class represents the action state of an agent as a single word: whether
+ * the agent is acting, whether it is broadcasting an action change (state code
+ * ONE) and since when, the action change heard while broadcasting, applied
+ * once the broadcast is over, and the estimation d of the state of the world.
+ * The main loop, the motion control and the receiver change it from their own
+ * threads, each applying a transition the moment its trigger arrives.
+ * <p>
+ * A transition computes the next word from the current one with next(), the
+ * transition table, and swaps it in with compare-and-set, retrying if another
+ * thread changed the word in between, so no update is lost and no thread ever
+ * sees half a transition. The table being a pure function of the word, the
+ * caller can tell from the word it replaced what the transition did, e.g.
+ * whether the agent started acting.
+ * <p>
+ * From the lowest bit, the word holds d as float bits (32 bits), the time the
+ * broadcast started (28 bits), whether broadcasting (1 bit), whether acting
+ * (1 bit) and the action change pending (2 bits).
+ */
+public class AgentState {
+
+	/**
+	 * The values of this enumeration type are used to represent the
+	 * transitions of the action state:
+	 * <ul>
+	 * <li>DECIDE_START : the belief of the swarm calls for the action; if not
+	 * acting nor broadcasting, starts acting with the given d and broadcasting
+	 * the change;</li>
+	 * <li>DECIDE_STOP : the belief of the swarm calls for no action; if acting
+	 * and not broadcasting, stops acting and broadcasting the change;</li>
+	 * <li>CONTINUE : the continuation decision keeps acting; if acting, sets
+	 * the given d;</li>
+	 * <li>CONTINUATION_STOP : the continuation decision stops acting; if
+	 * acting, stops with no broadcast;</li>
+	 * <li>HEAR_START : an action change to acting is heard, with its d; if not
+	 * broadcasting it is applied at once, starting a broadcast if it changes
+	 * the action state, otherwise it is pending;</li>
+	 * <li>HEAR_STOP : as HEAR_START, for an action change to not acting;</li>
+	 * <li>EXPIRE : if broadcasting since more than ACTION_BROADCAST_TIME time
+	 * steps, stops broadcasting and applies the pending action change, if
+	 * any, as if heard.</li>
+	 * </ul>
+	 */
+	public static enum Transition {
+		DECIDE_START, DECIDE_STOP, CONTINUE, CONTINUATION_STOP, HEAR_START, HEAR_STOP, EXPIRE;
+	}
+
+	/* Fields of the word */
+	private static final long D_MASK = 0xffffffffL;
+	private static final int TIME_SHIFT = 32;
+	private static final int TIME_MASK = 0xfffffff;
+	private static final long BROADCASTING = 1L << 60;
+	private static final long ACTING = 1L << 61;
+	private static final int PENDING_SHIFT = 62;
+
+	/* The action changes pending */
+	private static final int NONE = 0;
+	private static final int PENDING_START = 1;
+	private static final int PENDING_STOP = 2;
+
+	private final AtomicLong word;
+
+	/* The parameters of the agent, null for the ones of the process */
+	private final AgentParameters.Holder parameters;
+
+	/**
+	 * Initialise the state, not broadcasting, with the parameters of the
+	 * process
+	 *
+	 * @param isActing
+	 *            true if acting
+	 * @param d
+	 *            the estimation of the state of the world
+	 */
+	public AgentState(boolean isActing, float d) {
+		this(isActing, d, null);
+	}
+
+	/**
+	 * Initialise the state, not broadcasting
+	 *
+	 * @param isActing
+	 *            true if acting
+	 * @param d
+	 *            the estimation of the state of the world
+	 * @param parameters
+	 *            the parameters of the agent
+	 */
+	public AgentState(boolean isActing, float d, AgentParameters.Holder parameters) {
+		this.word = new AtomicLong(word(isActing, false, 0, d, NONE));
+		this.parameters = parameters;
+	}
+
+	/**
+	 * @return the current word, to read its fields together
+	 */
+	public long get() {
+		return word.get();
+	}
+
+	/**
+	 * Replace the state, not broadcasting, e.g. when restoring a checkpoint
+	 *
+	 * @param isActing
+	 *            true if acting
+	 * @param d
+	 *            the estimation of the state of the world
+	 */
+	public void reset(boolean isActing, float d) {
+		word.set(word(isActing, false, 0, d, NONE));
+	}
+
+	/**
+	 * Apply a transition to the current word
+	 *
+	 * @param transition
+	 *            the transition
+	 * @param d
+	 *            the d of the transition, if any
+	 * @param time
+	 *            the agent time step
+	 * @return the word replaced, equal to the current one if the transition
+	 *         had no effect
+	 */
+	public long apply(Transition transition, float d, int time) {
+		while (true) {
+			long current = word.get();
+			long next = next(current, transition, d, time, getBroadcastTime());
+			if (next == current || word.compareAndSet(current, next))
+				return current;
+		}
+	}
+
+	/**
+	 * Apply a transition computed from a word read before, only if the word is
+	 * still current, e.g. for a decision drawing random numbers, that must not
+	 * be retried
+	 *
+	 * @param expected
+	 *            the word the transition was computed from
+	 * @param transition
+	 *            the transition
+	 * @param d
+	 *            the d of the transition, if any
+	 * @param time
+	 *            the agent time step
+	 * @return false if another transition changed the word since
+	 */
+	public boolean apply(long expected, Transition transition, float d, int time) {
+		long next = next(expected, transition, d, time, getBroadcastTime());
+		return next == expected ? word.get() == expected : word.compareAndSet(expected, next);
+	}
+
+	/* The time steps to broadcast an action state change for */
+	private int getBroadcastTime() {
+		return (parameters == null ? AgentParameters.get() : parameters.get()).getActionBroadcastTime();
+	}
+
+	/**
+	 * The transition table, with the parameters of the process
+	 *
+	 * @param word
+	 *            the current word
+	 * @param transition
+	 *            the transition
+	 * @param d
+	 *            the d of the transition, if any
+	 * @param time
+	 *            the agent time step
+	 * @return the next word, equal to the current one if the transition has
+	 *         no effect
+	 */
+	public static long next(long word, Transition transition, float d, int time) {
+		return next(word, transition, d, time, AgentParameters.get().getActionBroadcastTime());
+	}
+
+	/**
+	 * The transition table
+	 *
+	 * @param word
+	 *            the current word
+	 * @param transition
+	 *            the transition
+	 * @param d
+	 *            the d of the transition, if any
+	 * @param time
+	 *            the agent time step
+	 * @param broadcastTime
+	 *            the time steps to broadcast an action state change for
+	 * @return the next word, equal to the current one if the transition has
+	 *         no effect
+	 */
+	public static long next(long word, Transition transition, float d, int time, int broadcastTime) {
+		boolean isActing = isActing(word);
+		boolean isBroadcasting = isBroadcasting(word);
+
+		switch (transition) {
+		case DECIDE_START:
+			return isActing || isBroadcasting ? word : word(true, true, time, d, NONE);
+		case DECIDE_STOP:
+			return !isActing || isBroadcasting ? word : word(false, true, time, -1, NONE);
+		case CONTINUE:
+			return isActing ? withD(word, d) : word;
+		case CONTINUATION_STOP:
+			return isActing ? withD(word & ~ACTING, -1) : word;
+		case HEAR_START:
+		case HEAR_STOP:
+			/* The d heard is taken anyway, even when pending */
+			boolean isStart = transition == Transition.HEAR_START;
+			float heardD = isStart ? d : -1;
+			if (isBroadcasting)
+				return word(isActing, true, getBroadcastStart(word), heardD, isStart ? PENDING_START : PENDING_STOP);
+			return isStart == isActing ? withD(word, heardD) : word(isStart, true, time, heardD, NONE);
+		case EXPIRE:
+			if (!isBroadcasting || ((time - getBroadcastStart(word)) & TIME_MASK) <= broadcastTime)
+				return word;
+			int pending = (int) (word >>> PENDING_SHIFT);
+			if (pending == NONE || (pending == PENDING_START) == isActing)
+				return word(isActing, false, 0, getD(word), NONE);
+			/* Relaying the change heard while broadcasting */
+			return word(pending == PENDING_START, true, time, getD(word), NONE);
+		default:
+			return word;
+		}
+	}
+
+	/**
+	 * @param word
+	 *            a word
+	 * @return true if the agent is acting
+	 */
+	public static boolean isActing(long word) {
+		return (word & ACTING) != 0;
+	}
+
+	/**
+	 * @param word
+	 *            a word
+	 * @return true if the agent is broadcasting an action change, in state
+	 *         code ONE
+	 */
+	public static boolean isBroadcasting(long word) {
+		return (word & BROADCASTING) != 0;
+	}
+
+	/**
+	 * @param word
+	 *            a word
+	 * @return true if an action change heard waits for the broadcast to be
+	 *         over
+	 */
+	public static boolean isPending(long word) {
+		return (word >>> PENDING_SHIFT) != NONE;
+	}
+
+	/**
+	 * @param word
+	 *            a word
+	 * @return the time step the broadcast started, modulo 2^28, if
+	 *         broadcasting
+	 */
+	public static int getBroadcastStart(long word) {
+		return (int) (word >>> TIME_SHIFT) & TIME_MASK;
+	}
+
+	/**
+	 * @param word
+	 *            a word
+	 * @return the estimation of the state of the world d
+	 */
+	public static float getD(long word) {
+		return Float.intBitsToFloat((int) word);
+	}
+
+	/* Packs the fields of a word */
+	private static long word(boolean isActing, boolean isBroadcasting, int broadcastStart, float d, int pending) {
+		return ((long) pending << PENDING_SHIFT) | (isActing ? ACTING : 0) | (isBroadcasting ? BROADCASTING : 0)
+				| ((long) (broadcastStart & TIME_MASK) << TIME_SHIFT) | (Float.floatToIntBits(d) & D_MASK);
+	}
+
+	/* Replaces the d of a word */
+	private static long withD(long word, float d) {
+		return (word & ~D_MASK) | (Float.floatToIntBits(d) & D_MASK);
+	}
+}
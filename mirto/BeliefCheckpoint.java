@@ -0,0 +1,254 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * This class represents a small memory-mapped file holding the last checkpoint
+ * of an agent's observation memory, belief table and action state, so that
+ * the agent can restart from it after a reboot or a crash.
+ * <p>
+ * The file holds two slots, written alternately: a checkpoint never
+ * overwrites the last complete one. Each slot is in the form:
+ * <ul>
+ * <li>sequence number, wall clock time, payload length, CRC32 of all of
+ * them and of the payload;</li>
+ * <li>payload: time, last memory write, belief validity, action state, d,
+ * observations and belief table entries (ID, incarnation, time stamp and
+ * belief).</li>
+ * </ul>
+ * A slot torn by a crash fails the CRC check, and the other slot is used.
+ */
+public class BeliefCheckpoint {
+
+	/* Maximum number of belief table entries stored */
+	private static final int MAX_BELIEFS = 64;
+
+	/* Bytes of each belief table entry */
+	private static final int BELIEF_SIZE = 16;
+
+	/* Bytes before the payload of each slot */
+	private static final int HEADER_SIZE = 8 + 8 + 4 + 4;
+
+	/* The file mapped in memory */
+	private MappedByteBuffer buffer;
+
+	/* Size in bytes of each of the two slots */
+	private int slotSize;
+
+	/* To build the payload before copying it in a slot */
+	private ByteBuffer payload;
+
+	/* Sequence number of the last checkpoint written or read */
+	private long sequence;
+
+	/* Restored values */
+	private int time;
+	private int lastMemoryWrite;
+	private boolean isBeliefValid;
+	private boolean isActionInProgress;
+	private float d;
+	private boolean[] memory;
+	private Map<Integer, AgentBelief> beliefTable;
+
+	/**
+	 * Open (or create) the checkpoint file
+	 *
+	 * @param fileName
+	 *            the path of the checkpoint file
+	 * @param memorySize
+	 *            the number of observations in the memory
+	 */
+	public BeliefCheckpoint(String fileName, int memorySize) throws IOException {
+		int payloadSize = 4 + 4 + 1 + 1 + 4 + 4 + memorySize + 4 + MAX_BELIEFS * BELIEF_SIZE;
+		this.slotSize = HEADER_SIZE + payloadSize;
+		this.payload = ByteBuffer.allocate(payloadSize);
+		this.memory = new boolean[memorySize];
+		this.beliefTable = new HashMap<>();
+
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "rw")) {
+			buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, 2 * slotSize);
+		}
+		this.sequence = 0;
+	}
+
+	/**
+	 * Write a checkpoint in the slot not holding the last one, and force it on
+	 * the storage
+	 *
+	 * @param time
+	 *            the agent internal time
+	 * @param memory
+	 *            the observation memory, must be locked by the caller
+	 * @param lastMemoryWrite
+	 *            the index of the last observation written
+	 * @param isBeliefValid
+	 *            true if the memory has been filled at least once
+	 * @param beliefTable
+	 *            the belief table, must be locked by the caller
+	 * @param isActionInProgress
+	 *            the action state
+	 * @param d
+	 *            the estimation of the state of the world
+	 */
+	public void write(int time, boolean[] memory, int lastMemoryWrite, boolean isBeliefValid,
+			Map<Integer, AgentBelief> beliefTable, boolean isActionInProgress, float d) {
+		payload.clear();
+		payload.putInt(time);
+		payload.putInt(lastMemoryWrite);
+		payload.put((byte) (isBeliefValid ? 1 : 0));
+		payload.put((byte) (isActionInProgress ? 1 : 0));
+		payload.putFloat(d);
+		payload.putInt(memory.length);
+		for (boolean observation : memory)
+			payload.put((byte) (observation ? 1 : 0));
+
+		int count = Math.min(beliefTable.size(), MAX_BELIEFS);
+		payload.putInt(count);
+		for (Map.Entry<Integer, AgentBelief> entry : beliefTable.entrySet()) {
+			if (count-- == 0)
+				break;
+			payload.putInt(entry.getKey());
+			payload.putInt(entry.getValue().getIncarnation());
+			payload.putInt(entry.getValue().getTimeStamp());
+			payload.putFloat((float) entry.getValue().getBelief());
+		}
+		payload.flip();
+
+		sequence++;
+		long wallTime = System.currentTimeMillis();
+		int offset = (int) (sequence % 2) * slotSize;
+
+		buffer.putLong(offset, sequence);
+		buffer.putLong(offset + 8, wallTime);
+		buffer.putInt(offset + 16, payload.remaining());
+		for (int i = 0; i < payload.remaining(); i++)
+			buffer.put(offset + HEADER_SIZE + i, payload.get(i));
+		buffer.putInt(offset + 20, checksum(offset, payload.remaining()));
+
+		buffer.force();
+	}
+
+	/**
+	 * Read the most recent valid checkpoint, if it is younger than the given
+	 * age
+	 *
+	 * @param maxAgeMillis
+	 *            the maximum age of the checkpoint, in milliseconds
+	 * @return true if a checkpoint has been read, false otherwise
+	 */
+	public boolean read(long maxAgeMillis) {
+		int newest = -1;
+		for (int slot = 0; slot < 2; slot++) {
+			int offset = slot * slotSize;
+			if (isValid(offset) && (newest == -1 || buffer.getLong(offset) > buffer.getLong(newest)))
+				newest = offset;
+		}
+
+		if (newest == -1)
+			return false;
+
+		/* Carrying on the sequence even if the checkpoint is too old */
+		sequence = buffer.getLong(newest);
+
+		long age = System.currentTimeMillis() - buffer.getLong(newest + 8);
+		if (age < 0 || age > maxAgeMillis)
+			return false;
+
+		int position = newest + HEADER_SIZE;
+		time = buffer.getInt(position);
+		lastMemoryWrite = buffer.getInt(position + 4);
+		isBeliefValid = buffer.get(position + 8) == 1;
+		isActionInProgress = buffer.get(position + 9) == 1;
+		d = buffer.getFloat(position + 10);
+		if (buffer.getInt(position + 14) != memory.length)
+			return false;
+		position += 18;
+		for (int i = 0; i < memory.length; i++)
+			memory[i] = buffer.get(position++) == 1;
+
+		beliefTable.clear();
+		int count = buffer.getInt(position);
+		/* Checkpoints of earlier versions have shorter entries */
+		if (count < 0 || count > MAX_BELIEFS
+				|| buffer.getInt(newest + 16) != 18 + memory.length + 4 + count * BELIEF_SIZE)
+			return false;
+		position += 4;
+		for (int i = 0; i < count; i++, position += BELIEF_SIZE)
+			beliefTable.put(buffer.getInt(position), new AgentBelief(buffer.getInt(position + 4),
+					buffer.getInt(position + 8), buffer.getFloat(position + 12), 0));
+
+		return true;
+	}
+
+	/**
+	 * @return the restored agent internal time
+	 */
+	public int getTime() {
+		return time;
+	}
+
+	/**
+	 * @return the restored index of the last observation written
+	 */
+	public int getLastMemoryWrite() {
+		return lastMemoryWrite;
+	}
+
+	/**
+	 * @return the restored belief validity
+	 */
+	public boolean isBeliefValid() {
+		return isBeliefValid;
+	}
+
+	/**
+	 * @return the restored action state
+	 */
+	public boolean isActionInProgress() {
+		return isActionInProgress;
+	}
+
+	/**
+	 * @return the restored estimation of the state of the world
+	 */
+	public float getD() {
+		return d;
+	}
+
+	/**
+	 * @return the restored observation memory
+	 */
+	public boolean[] getMemory() {
+		return memory;
+	}
+
+	/**
+	 * @return the restored belief table
+	 */
+	public Map<Integer, AgentBelief> getBeliefTable() {
+		return beliefTable;
+	}
+
+	/* True if the slot at the given offset holds a complete checkpoint */
+	private boolean isValid(int offset) {
+		int length = buffer.getInt(offset + 16);
+		if (buffer.getLong(offset) <= 0 || length <= 0 || length > slotSize - HEADER_SIZE)
+			return false;
+		return buffer.getInt(offset + 20) == checksum(offset, length);
+	}
+
+	/* CRC32 of the header (but the CRC itself) and of the payload of a slot */
+	private int checksum(int offset, int length) {
+		CRC32 crc = new CRC32();
+		for (int i = 0; i < 20; i++)
+			crc.update(buffer.get(offset + i));
+		for (int i = 0; i < length; i++)
+			crc.update(buffer.get(offset + HEADER_SIZE + i));
+		return (int) crc.getValue();
+	}
+}
@@ -0,0 +1,24 @@
+/**
+ * This class represents a correlated random walk: short forward legs, each
+ * followed by a small change of direction drawn from a normal distribution,
+ * so that the robot keeps its heading for a while and drifts across the floor
+ * instead of going round in loops.
+ */
+public class CorrelatedWalk implements ExplorationStrategy {
+
+	/* Time to go forward in every leg, in seconds */
+	private static final double FORWARD_TIME = 1;
+
+	/* Standard deviation of the change of direction, in radians */
+	private static final double TURN_DEVIATION = Math.PI / 6;
+
+	@Override
+	public double nextForwardTime(Agent agent) {
+		return FORWARD_TIME;
+	}
+
+	@Override
+	public double nextTurnTime(Agent agent) {
+		return ExplorationStrategy.turnTime(TURN_DEVIATION * ExplorationStrategy.nextGaussian(agent));
+	}
+}
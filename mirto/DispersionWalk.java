@@ -0,0 +1,26 @@
+/**
+ * This class represents a correlated random walk that keeps the robots apart,
+ * using the signal strength of the frames received as a hint of the proximity
+ * of the closest neighbour: when the strongest signal heard during a leg is
+ * above NEAR_SIGNAL and stronger than during the previous leg, the robot is
+ * getting closer to a neighbour and turns around. Robots spread over the
+ * floor, sampling cells the others do not.
+ */
+public class DispersionWalk extends CorrelatedWalk {
+
+	/* Strongest signal heard during the previous leg */
+	private int previousSignal = Agent.NO_SIGNAL;
+
+	@Override
+	public double nextTurnTime(Agent agent) {
+		int signal = agent.takeStrongestSignal();
+		boolean isApproaching = signal != Agent.NO_SIGNAL && signal >= agent.getParameters().getNearSignal()
+				&& signal > previousSignal;
+		previousSignal = signal;
+
+		if (isApproaching)
+			/* Turning around, with the deviation of the correlated walk */
+			return ExplorationStrategy.turnTime(Math.PI) + super.nextTurnTime(agent);
+		return super.nextTurnTime(agent);
+	}
+}
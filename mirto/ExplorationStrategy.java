@@ -0,0 +1,46 @@
+/**
+ * This interface represents how an agent explores the floor. The random walk
+ * of MotionControl is a sequence of legs, each going forward for some time and
+ * then spinning on the spot to change direction: a strategy chooses the length
+ * of both. The random draws of a strategy are taken from the agent inputs.
+ */
+public interface ExplorationStrategy {
+
+	/**
+	 * @param agent
+	 *            the agent exploring
+	 * @return the time to go forward in the next leg, in seconds
+	 */
+	double nextForwardTime(Agent agent);
+
+	/**
+	 * Called at the end of each forward leg
+	 * 
+	 * @param agent
+	 *            the agent exploring
+	 * @return the time to spin, in seconds, negative to spin the other way
+	 */
+	double nextTurnTime(Agent agent);
+
+	/**
+	 * @param angle
+	 *            an angle to spin of, in radians, negative for the other way
+	 * @return the time to spin of the angle, in seconds
+	 */
+	static double turnTime(double angle) {
+		return angle / (2 * Math.PI) * AgentParameters.FULL_TURN_TIME;
+	}
+
+	/**
+	 * @param agent
+	 *            the agent exploring
+	 * @return a random number normally distributed with mean 0 and standard
+	 *         deviation 1, drawn from the agent inputs
+	 */
+	static double nextGaussian(Agent agent) {
+		/* Box-Muller transform, avoiding the logarithm of 0 */
+		double u = 1 - agent.getInputs().nextFloat();
+		double v = agent.getInputs().nextFloat();
+		return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * v);
+	}
+}
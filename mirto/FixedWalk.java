@@ -0,0 +1,24 @@
+/**
+ * This class represents the original exploration of the agents: forward for
+ * FORWARD_TIME seconds, then a spin of TURNING_TIME seconds, always the same
+ * way. The robot tends to go round the same loop, sampling the same cells
+ * again.
+ */
+public class FixedWalk implements ExplorationStrategy {
+
+	/* Time steps to go forward */
+	private static final double FORWARD_TIME = 3;
+
+	/* Time to spin when it has to change direction */
+	private static final double TURNING_TIME = 0.75;
+
+	@Override
+	public double nextForwardTime(Agent agent) {
+		return FORWARD_TIME;
+	}
+
+	@Override
+	public double nextTurnTime(Agent agent) {
+		return TURNING_TIME;
+	}
+}
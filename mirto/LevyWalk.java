@@ -0,0 +1,27 @@
+/**
+ * This class represents a Levy walk: the forward times follow a power law, so
+ * that most legs are short but a few are long enough to carry the robot to
+ * another part of the floor, and every leg ends with a spin of a uniformly
+ * random angle.
+ */
+public class LevyWalk implements ExplorationStrategy {
+
+	/* Shortest and longest forward times, in seconds */
+	private static final double MIN_FORWARD_TIME = 1;
+	private static final double MAX_FORWARD_TIME = 30;
+
+	/* Exponent of the power law of the forward times, between 1 and 3 */
+	private static final double MU = 2;
+
+	@Override
+	public double nextForwardTime(Agent agent) {
+		/* Inverse transform of a Pareto distribution, cut at MAX_FORWARD_TIME */
+		double u = 1 - agent.getInputs().nextFloat();
+		return Math.min(MIN_FORWARD_TIME * Math.pow(u, -1 / (MU - 1)), MAX_FORWARD_TIME);
+	}
+
+	@Override
+	public double nextTurnTime(Agent agent) {
+		return ExplorationStrategy.turnTime((2 * agent.getInputs().nextFloat() - 1) * Math.PI);
+	}
+}
@@ -3,7 +3,8 @@ import com.digi.xbee.api.models.XBeeMessage;
 
 /**
  * This class represents a data receiver that wait for incoming messages, parses
- * their content and applies their effects to the agent.
+ * their content and applies their effects to the agent. The frames of other
+ * swarms, told by their first byte, are dropped before anything else.
  */
 public class MessageReceiver implements IDataReceiveListener {
 
@@ -21,12 +22,67 @@ public class MessageReceiver implements IDataReceiveListener {
 
 	@Override
 	public void dataReceived(XBeeMessage xbeeMessage) {
-		String data = xbeeMessage.getDataString();
-		
+		frameReceived(xbeeMessage.getData());
+	}
+
+	/**
+	 * Handle a frame received by the agent's radio
+	 * 
+	 * @param data
+	 *            the raw content of the frame
+	 */
+	public void frameReceived(byte[] data) {
+		receive(data);
+	}
+
+	/**
+	 * Handle a frame received by the agent's radio with its signal strength
+	 * 
+	 * @param data
+	 *            the raw content of the frame
+	 * @param signalStrength
+	 *            the signal strength the frame was received with, in dBm
+	 */
+	public void frameReceived(byte[] data, int signalStrength) {
+		/* Robots of other swarms are obstacles all the same */
+		thisAgent.recordSignal(signalStrength);
+		frameReceived(data);
+	}
+
+	/**
+	 * Parse the content of a frame of the agent's swarm and apply its effects
+	 * to the agent, recording it if the agent records its inputs
+	 * 
+	 * @param frame
+	 *            the raw content of the frame, the swarm ID followed by the
+	 *            message
+	 */
+	protected void receive(byte[] frame) {
+		/* Dropping the frames of other swarms first, with no allocation */
+		if (frame.length < 2 || frame[0] != thisAgent.getSwarmID())
+			return;
+		thisAgent.recordFrame(frame);
+
+		AgentEvents.RadioReceiveEvent event = new AgentEvents.RadioReceiveEvent();
+		event.begin();
+		apply(frame);
+		event.end();
+		if (event.shouldCommit()) {
+			event.messageType = AgentEvents.messageType(frame);
+			event.size = frame.length;
+			event.commit();
+		}
+	}
+
+	/* Parses the content of a frame and applies its effects */
+	private void apply(byte[] frame) {
+		String data = new String(frame, 1, frame.length - 1);
+
 		/* The fields are separated with whitespaces */
 		String[] fields = data.split(" ");
 
 		Integer otherAgentID = null;
+		Integer incarnation = null;
 		Integer timeStamp = null;
 		Float belief = null;
 
@@ -34,34 +90,77 @@ public class MessageReceiver implements IDataReceiveListener {
 			/* Belief message */
 			try {
 				otherAgentID = Integer.parseInt(fields[1]);
-				timeStamp = Integer.parseInt(fields[2]);
-				belief = Float.parseFloat(fields[3]);
+				incarnation = Integer.parseInt(fields[2]);
+				timeStamp = Integer.parseInt(fields[3]);
+				belief = Float.parseFloat(fields[4]);
+				Float confidence = fields.length > 5 ? Float.parseFloat(fields[5]) : 0f;
 
 				/* Adding the belief */
-				thisAgent.addBelief(otherAgentID, timeStamp, belief);
-			} catch (NumberFormatException e) {
+				thisAgent.addBelief(otherAgentID, incarnation, timeStamp, belief, confidence);
+			} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
 				System.out.println("Bad packet!");
 			}
 		} else if (fields[0].equals("1")) {
 			/* Action state change message */
-			thisAgent.debugMsg("Action change message received");
 			try {
+				int originID = Integer.parseInt(fields[3]);
+				int sequence = Integer.parseInt(fields[4]);
+
+				/* Dropping the action changes already heard first */
+				if (!thisAgent.isNewActionChange(originID, sequence))
+					return;
+				thisAgent.debugMsg("Action change message received");
+
 				Integer actionStateCode = Integer.parseInt(fields[1]);
 
 				Float d = Float.parseFloat(fields[2]);
 
-				/* Changing agent action state */
+				/* Changing agent action state, at once if in state ZERO */
 				if (actionStateCode.equals(1)) {
-					thisAgent.setNextActionState(true);
-					thisAgent.setD(d);
+					thisAgent.hearActionChange(true, d, originID, sequence);
 				} else if (actionStateCode.equals(0)) {
-					thisAgent.setNextActionState(false);
-					thisAgent.setD(-1);
+					thisAgent.hearActionChange(false, -1, originID, sequence);
 				} else {
 					System.out.println("Bad packet!");
 				}
 
-			} catch (NumberFormatException e) {
+			} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+				System.out.println("Bad packet!");
+			}
+		} else if (fields[0].equals("3")) {
+			/* Beliefs on several properties message */
+			try {
+				int senderID = Integer.parseInt(fields[1]);
+				int beliefIncarnation = Integer.parseInt(fields[2]);
+				int beliefTimeStamp = Integer.parseInt(fields[3]);
+				int count = Integer.parseInt(fields[4]);
+				if (count < 0 || 5 + count > fields.length) {
+					System.out.println("Bad packet!");
+					return;
+				}
+				float[] beliefs = new float[count];
+				for (int property = 0; property < count; property++)
+					beliefs[property] = Integer.parseInt(fields[5 + property]) / 100f;
+				float confidence = fields.length > 5 + count ? Float.parseFloat(fields[5 + count]) : 0f;
+
+				/* Adding the beliefs, ignoring the properties this agent does not judge */
+				thisAgent.addBeliefs(senderID, beliefIncarnation, beliefTimeStamp, beliefs,
+						Math.min(count, thisAgent.getPropertyCount()), confidence);
+			} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+				System.out.println("Bad packet!");
+			}
+		} else if (fields[0].equals("2")) {
+			/* Push-sum message */
+			try {
+				int senderID = Integer.parseInt(fields[1]);
+				int epoch = Integer.parseInt(fields[2]);
+				int targetID = Integer.parseInt(fields[3]);
+				double sum = Double.parseDouble(fields[4]);
+				double weight = Double.parseDouble(fields[5]);
+
+				/* Adding the half pair, if this agent is the target */
+				thisAgent.addPushSum(senderID, epoch, targetID, sum, weight);
+			} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
 				System.out.println("Bad packet!");
 			}
 		} else {
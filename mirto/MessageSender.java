@@ -1,30 +1,68 @@
+import java.io.IOException;
 import java.text.DecimalFormat;
 
-import com.digi.xbee.api.exceptions.TimeoutException;
-import com.digi.xbee.api.exceptions.XBeeException;
-
 /**
  * This runnable class, represents a message sender that broadcast the right
  * content depending on the agent state:
  * <ul>
  * <li>state 0 : the belief table, one belief at time, in the form:
  * <ul>
- * <li>"0 ID timeStamp belief"</li>
+ * <li>"0 ID incarnation timeStamp belief"</li>
+ * </ul>
+ * followed by " confidence" with the sequential probability ratio test decision
+ * mode. When several floor properties are judged, the beliefs of an agent on
+ * all of them share a message, in the form:
+ * <ul>
+ * <li>"3 ID incarnation timeStamp count belief..."</li>
+ * </ul>
+ * the beliefs being percentages, phi first, again followed by " confidence"
+ * on phi with the sequential probability ratio test decision mode. Every
+ * other message relays another agent's freshly learned belief, to spread it
+ * further than one hop. With push-sum aggregation, half of the push-sum pair
+ * instead, in the form:
+ * <ul>
+ * <li>"2 ID epoch targetID sum weight"</li>
  * </ul>
  * </li>
  * <li>state 1 : the current action state and world state estimation, in the
  * form:
  * <ul>
- * <li>"1 actionState worldStateEstimate"</li>
+ * <li>"1 actionState worldStateEstimate originID sequence"</li>
  * </ul>
- * </li> The decimal values have 2 decimal digits
+ * identifying the action change by the agent that started it and its sequence
+ * number, for the whole action broadcast time by the agent that started it and
+ * only a few times by the agents relaying it, the other messages being the
+ * ones of state 0. With push-sum aggregation every action message is followed
+ * by half of the push-sum pair, for the estimation to go on</li> The decimal
+ * values have 2 decimal digits. Every frame starts with the swarm ID byte,
+ * followed by the message, and fits Transport.MAX_PAYLOAD bytes, so an agent
+ * judges at most MAX_PROPERTIES properties.
  */
 public class MessageSender implements Runnable {
 
+	/*
+	 * Most bytes of a "3" frame apart from the beliefs: the swarm ID, the
+	 * type, a 16 bit ID, an incarnation and a time stamp of up to 5 and 7
+	 * digits, the count and the confidence, with their spaces
+	 */
+	private static final int BELIEFS_OVERHEAD = 31;
+
+	/**
+	 * Maximum number of floor properties whose beliefs fit a frame, each
+	 * taking up to 4 bytes
+	 */
+	public static final int MAX_PROPERTIES = (Transport.MAX_PAYLOAD - BELIEFS_OVERHEAD) / 4;
+
 	private Agent thisAgent;
 
 	private DecimalFormat df = new DecimalFormat("#0.00");
 
+	/* True if the last belief sent was this agent's own */
+	private boolean isRelayTurn;
+
+	/* True if the last message sent was an action message, with push-sum aggregation */
+	private boolean isPushSumTurn;
+
 	/**
 	 * Initialise the sender by indicating the agent it is attached to
 	 * 
@@ -33,55 +71,143 @@ public class MessageSender implements Runnable {
 	 */
 	public MessageSender(Agent agent) {
 		this.thisAgent = agent;
+		this.isRelayTurn = false;
 	}
 
 	@Override
 	public void run() {
 		while (thisAgent.isBroadcasting()) {
-			if (thisAgent.getStateCode() == Agent.StateCode.ZERO) {
-				/*
-				 * As long as the agent remain in state code ZERO, send its
-				 * belief
-				 */
-				while (thisAgent.getStateCode() == Agent.StateCode.ZERO) {
-					/* Retrieving the belief from the belief table */
-					if (thisAgent.getBeliefTable().containsKey(thisAgent.getId())) {
-						AgentBelief belief;
-						if (thisAgent.isBeliefValid())
-							belief = thisAgent.getBeliefTable().get(thisAgent.getId());
-						else
-							belief = new AgentBelief(thisAgent.getTime(),
-									(float) AgentParameters.NEUTRAL_BELIEF_DEGREE);
-
-						/* Sending the belief */
-						try {
-							String message = ("0" + " " + thisAgent.getId() + " " + belief.getTimeStamp() + " "
-									+ df.format(belief.getBelief()));
-							thisAgent.debugXBEEmsg("Broadcasting " + message);
-							thisAgent.broadcast(message.getBytes());
-						} catch (TimeoutException e) {
-							thisAgent.debugXBEEmsg("TIMEOUT while sending xbee broadcast message");
-						} catch (XBeeException e) {
-							thisAgent.debugXBEEmsg(e.getMessage());
-						}
-					}
-				}
-			} else {
-				/*
-				 * Send this agent action state and the estimation of the world
-				 * state d
-				 */
-				try {
-					String message = (("1" + " "
-							+ (thisAgent.isActionInProgress() ? ("1 " + df.format(thisAgent.getD())) : ("0 -1"))));
-					thisAgent.debugXBEEmsg("Broadcasting " + message);
-					thisAgent.broadcast(message.getBytes());
-				} catch (TimeoutException e) {
-					thisAgent.debugXBEEmsg("TIMEOUT while sending xbee broadcast message");
-				} catch (XBeeException e) {
-					thisAgent.debugXBEEmsg(e.getMessage());
+			String message = nextMessage();
+			if (message == null)
+				continue;
+
+			try {
+				thisAgent.debugXBEEmsg("Broadcasting " + message);
+				thisAgent.broadcast(frame(thisAgent.getSwarmID(), message));
+			} catch (IOException e) {
+				thisAgent.debugXBEEmsg(e.getMessage());
+			}
+			thisAgent.getActivity().pause(thisAgent.getParameters().getQuiescentBroadcastPause());
+		}
+	}
+
+	/**
+	 * Build the next message to broadcast, depending on the agent state
+	 * 
+	 * @return the message to broadcast, null if there is nothing to broadcast
+	 *         yet
+	 */
+	protected String nextMessage() {
+		/*
+		 * With push-sum, an action message is followed by half of the pair:
+		 * the agents all broadcasting an action for a whole epoch would end it
+		 * with the estimate of their own local belief
+		 */
+		boolean isPushSum = thisAgent.getAggregationMode() == Agent.AggregationMode.PUSH_SUM;
+		if (isPushSumTurn) {
+			isPushSumTurn = false;
+			if (isPushSum)
+				return pushSumMessage();
+		}
+
+		/* The action change being broadcast and its state, read together */
+		long state;
+		int originID, sequence;
+		synchronized (thisAgent) {
+			state = thisAgent.takeActionRepeat();
+			originID = thisAgent.getActionOriginID();
+			sequence = thisAgent.getActionSequence();
+		}
+
+		if (state != 0) {
+			/*
+			 * Send this agent action state and the estimation of the world
+			 * state d
+			 */
+			isPushSumTurn = isPushSum;
+			return "1" + " " + (AgentState.isActing(state) ? ("1 " + df.format(AgentState.getD(state))) : ("0 -1"))
+					+ " " + originID + " " + sequence;
+		} else if (isPushSum) {
+			return pushSumMessage();
+		} else {
+			/* Relaying another agent's belief every other message, if any */
+			if (isRelayTurn) {
+				isRelayTurn = false;
+				Integer relayID = thisAgent.nextRelayID();
+				AgentBelief relayed = relayID == null ? null : thisAgent.getBeliefTable().get(relayID);
+				if (relayed != null)
+					return thisAgent.getPropertyTable() != null ? beliefsMessage(relayID, relayed)
+							: beliefMessage(relayID, relayed);
+			}
+
+			/* Retrieving the belief from the belief table */
+			if (thisAgent.getBeliefTable().containsKey(thisAgent.getId())) {
+				AgentBelief belief = thisAgent.getBeliefTable().get(thisAgent.getId());
+				if (!thisAgent.isBeliefEstimated()) {
+					/* The confidence is meaningful from the first observation */
+					belief = new AgentBelief(thisAgent.getIncarnation(), thisAgent.getTime(),
+							(float) thisAgent.getParameters().getNeutralBeliefDegree(),
+							(float) belief.getConfidence());
 				}
+
+				isRelayTurn = true;
+				/* The beliefs on the other properties are neutral until valid too */
+				return thisAgent.getPropertyTable() != null ? beliefsMessage(thisAgent.getId(), belief)
+						: beliefMessage(thisAgent.getId(), belief);
 			}
+			return null;
+		}
+	}
+
+	/**
+	 * Build the frame of a message
+	 * 
+	 * @param swarmID
+	 *            the ID of the swarm the message is for
+	 * @param message
+	 *            the message, in ASCII
+	 * @return the swarm ID followed by the bytes of the message
+	 */
+	public static byte[] frame(byte swarmID, String message) {
+		byte[] frame = new byte[message.length() + 1];
+		frame[0] = swarmID;
+		for (int i = 0; i < message.length(); i++)
+			frame[i + 1] = (byte) message.charAt(i);
+		return frame;
+	}
+
+	/* Gives half of the push-sum pair to a neighbour */
+	private String pushSumMessage() {
+		PushSumEstimator pushSum = thisAgent.getPushSum();
+		synchronized (pushSum) {
+			int targetID = pushSum.share();
+			return "2" + " " + thisAgent.getId() + " " + pushSum.getEpoch() + " " + targetID + " "
+					+ (float) pushSum.getSum() + " " + (float) pushSum.getWeight();
 		}
 	}
+
+	/* Formats the belief of an agent, with its confidence if needed */
+	private String beliefMessage(Integer agentID, AgentBelief belief) {
+		String message = "0" + " " + agentID + " " + belief.getIncarnation() + " " + belief.getTimeStamp() + " "
+				+ df.format(belief.getBelief());
+		if (thisAgent.getDecisionMode() == Agent.DecisionMode.SPRT)
+			message += " " + df.format(belief.getConfidence());
+		return message;
+	}
+
+	/*
+	 * Formats the beliefs of an agent on every property, with the confidence
+	 * of its belief on phi if needed. Falls back to the belief on phi if they
+	 * do not fit a frame, e.g. past the time stamps counted on
+	 */
+	private String beliefsMessage(Integer agentID, AgentBelief belief) {
+		StringBuilder message = new StringBuilder("3 ");
+		if (!thisAgent.getPropertyTable().appendTo(agentID, message))
+			return beliefMessage(agentID, belief);
+		if (thisAgent.getDecisionMode() == Agent.DecisionMode.SPRT)
+			message.append(' ').append(df.format(belief.getConfidence()));
+		if (message.length() + 1 > Transport.MAX_PAYLOAD)
+			return beliefMessage(agentID, belief);
+		return message.toString();
+	}
 }
@@ -0,0 +1,51 @@
+import uk.ac.mdx.cs.asip.JMirtoRobot;
+
+/**
+ * This class represents the serial link to a MIRTO robot, through the ASIP
+ * library
+ */
+public class MirtoLink implements RobotLink {
+
+	/* The robot, initialised and set up */
+	private JMirtoRobot robot;
+
+	/**
+	 * Initialise the link by indicating the robot to talk to
+	 *
+	 * @param robot
+	 *            the robot, initialised and set up
+	 */
+	public MirtoLink(JMirtoRobot robot) {
+		this.robot = robot;
+	}
+
+	@Override
+	public void setMotors(int speedM1, int speedM2) {
+		robot.setMotors(speedM1, speedM2);
+	}
+
+	@Override
+	public void writeLCDLine(String text, int line) {
+		robot.writeLCDLine(text, line);
+	}
+
+	@Override
+	public void clearLCDScreen() {
+		robot.clearLCDScreen();
+	}
+
+	@Override
+	public void playNote(int note, int duration) {
+		robot.playNote(note, duration);
+	}
+
+	@Override
+	public int getIR(int sensor) {
+		return robot.getIR(sensor);
+	}
+
+	@Override
+	public boolean isPressed(int bumper) {
+		return robot.isPressed(bumper);
+	}
+}
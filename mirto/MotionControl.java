@@ -10,31 +10,66 @@ public class MotionControl implements Runnable {
 	/* Must be <255 && >0 */
 	private final int TURNING_SPEED = 150;
 
-	/* Time steps to go forward */
-	private final double FORWARD_TIME = 3;
+	/* The distance travelled, estimated from the motor speeds */
+	private Odometer odometer = new Odometer();
 
-	/* Time to spin when it has to change direction */
-	private final double TURNING_TIME = 0.75;
-
-	private final double ACTION_INTERVAL = 1;
+	/* Time and distance of the last observation */
+	private long lastSampleTime = System.nanoTime() - nano(AgentParameters.get().getQuiescentSampleInterval());
+	private double lastSampleDistance = -AgentParameters.get().getSampleDistance();
 
 	/* Time to spin when it hits a wall */
 	private final double WALL_TURNING_TIME = 0.25;
 
-	/* Infrared sensor value for black */
-	private final int BLACK_IR_VALUE = 130;
-
 	/* The agent that is moved by this motion control */
 	private Agent thisAgent;
 
+	/* How the floor is explored */
+	private ExplorationStrategy strategy;
+
+	/* The properties of the last cell read, reused for every observation */
+	private boolean[] cellsRead = new boolean[AgentParameters.PROPERTY_IR_THRESHOLDS.length];
+
 	/**
-	 * Initialise the controller by indicating the agent it is attached to
+	 * Initialise the controller by indicating the agent it is attached to,
+	 * exploring as its exploration mode says
 	 * 
 	 * @param agent
 	 *            the agent this controller is attached to
 	 */
 	public MotionControl(Agent thisAgent) {
+		this(thisAgent, strategy(thisAgent.getExplorationMode()));
+	}
+
+	/**
+	 * Initialise the controller by indicating the agent it is attached to and
+	 * how it explores the floor
+	 * 
+	 * @param agent
+	 *            the agent this controller is attached to
+	 * @param strategy
+	 *            how the agent explores the floor
+	 */
+	public MotionControl(Agent thisAgent, ExplorationStrategy strategy) {
 		this.thisAgent = thisAgent;
+		this.strategy = strategy;
+	}
+
+	/**
+	 * @param mode
+	 *            an exploration mode
+	 * @return a new strategy exploring as the mode says
+	 */
+	public static ExplorationStrategy strategy(Agent.ExplorationMode mode) {
+		switch (mode) {
+		case LEVY:
+			return new LevyWalk();
+		case CORRELATED:
+			return new CorrelatedWalk();
+		case DISPERSION:
+			return new DispersionWalk();
+		default:
+			return new FixedWalk();
+		}
 	}
 
 	@Override
@@ -42,68 +77,145 @@ public class MotionControl implements Runnable {
 		while (thisAgent.canMove()) {
 			randomWalkStep();
 		}
-		thisAgent.setMotors(0, 0);
+		setMotors(0, 0, System.nanoTime());
 	}
 
 	/**
 	 * This method will:
 	 * <ul>
-	 * <li>move forward for FORWARD_TIME seconds, turning randomly at the end,
-	 * or before if it hit something</li>
+	 * <li>move forward for the time the exploration strategy says, turning as
+	 * it says at the end, or before if it hit something</li>
 	 * <li>get a sample of the world state, simulating the assertion of the
-	 * state of a cell</li>
+	 * state of a cell, every SAMPLE_DISTANCE metres travelled</li>
 	 * <li>if isActionInProgress() returns true, it will signal the agent to
 	 * clean the cell it is standing on</li>
 	 * </ul>
 	 */
 	private void randomWalkStep() {
-		/* Going forward */
-		thisAgent.setMotors(SPEED, -SPEED);
-		readProperty();
+		AgentEvents.MotionPhaseEvent forwardEvent = new AgentEvents.MotionPhaseEvent();
+		forwardEvent.begin();
+
+		/* Going forward, observing once far enough from the last observation */
+		setMotors(SPEED, -SPEED, System.nanoTime());
+		sample(System.nanoTime());
 		long stepStartTime = System.nanoTime();
-		long lastActionTime = System.nanoTime();
-		while (System.nanoTime() < stepStartTime + nano(FORWARD_TIME)) {
-			if (System.nanoTime() > lastActionTime + nano(ACTION_INTERVAL)) {
-				readProperty();
-				lastActionTime = System.nanoTime();
-			}
+		long forwardTime = nano(strategy.nextForwardTime(thisAgent));
+		while (System.nanoTime() < stepStartTime + forwardTime) {
+			sample(System.nanoTime());
 			/* If it hits something, turn */
-			if (thisAgent.getRobot().isPressed(0) || thisAgent.getRobot().isPressed(1)) {
-				turn(TURNING_SPEED, WALL_TURNING_TIME);
-				thisAgent.setMotors(SPEED, -SPEED);
+			if (thisAgent.getInputs().isPressed(0) || thisAgent.getInputs().isPressed(1)) {
+				wallHit(System.nanoTime());
+				turn(TURNING_SPEED, WALL_TURNING_TIME, "wallTurn");
+				setMotors(SPEED, -SPEED, System.nanoTime());
 				thisAgent.debugMsg("Wall hit");
 			}
+			thisAgent.pause();
 		}
 
+		commitPhase(forwardEvent, "forward");
+
 		/* Turn after a forward step */
-		turn(TURNING_SPEED, TURNING_TIME);
+		turn(TURNING_SPEED, strategy.nextTurnTime(thisAgent), "turn");
 
 		if (thisAgent.isActionInProgress()) {
+			AgentEvents.MotionPhaseEvent actionEvent = new AgentEvents.MotionPhaseEvent();
+			actionEvent.begin();
 			thisAgent.action();
+			commitPhase(actionEvent, "action");
 		}
 	}
 
+	/**
+	 * Set the motor speeds, as Agent.setMotors(), keeping track of the
+	 * distance travelled
+	 *
+	 * @param speedM1
+	 *            the speed of the first motor
+	 * @param speedM2
+	 *            the speed of the second motor
+	 * @param nanoTime
+	 *            the current time, in nanoseconds
+	 */
+	void setMotors(int speedM1, int speedM2, long nanoTime) {
+		thisAgent.setMotors(speedM1, speedM2);
+		odometer.setMotors(speedM1, speedM2, nanoTime);
+	}
+
+	/**
+	 * Add an observation of the environment to memory if the robot travelled
+	 * SAMPLE_DISTANCE metres since the last one, and if quiescent only every
+	 * QUIESCENT_SAMPLE_INTERVAL seconds. Spinning on the spot does not count,
+	 * so the floor under the robot is not observed again after a turn
+	 *
+	 * @param nanoTime
+	 *            the current time, in nanoseconds
+	 * @return true if an observation was made
+	 */
+	boolean sample(long nanoTime) {
+		AgentParameters parameters = thisAgent.getParameters();
+		double distance = odometer.getDistance(nanoTime);
+		if (distance - lastSampleDistance < parameters.getSampleDistance())
+			return false;
+		if (thisAgent.getActivity().isQuiescent()
+				&& nanoTime - lastSampleTime < nano(parameters.getQuiescentSampleInterval()))
+			return false;
+		readProperty();
+		lastSampleTime = nanoTime;
+		lastSampleDistance = distance;
+		return true;
+	}
+
+	/**
+	 * Record a wall hit: the robot may have pushed against the wall since the
+	 * last observation, so the distance travelled since is discarded and the
+	 * next observation waits for the robot to move away from it
+	 *
+	 * @param nanoTime
+	 *            the current time, in nanoseconds
+	 */
+	void wallHit(long nanoTime) {
+		lastSampleDistance = odometer.getDistance(nanoTime);
+	}
+
 	/* Add an observation of the environment to memory */
-	private void readProperty() {
+	void readProperty() {
 		/* Read cell value */
-		double cellValue = thisAgent.getRobot().getIR(0);
-		cellValue += thisAgent.getRobot().getIR(1);
-		cellValue += thisAgent.getRobot().getIR(2);
+		double cellValue = thisAgent.getInputs().getIR(0);
+		cellValue += thisAgent.getInputs().getIR(1);
+		cellValue += thisAgent.getInputs().getIR(2);
 
 		cellValue = cellValue / 3;
 
-		/* Add it to memory */
-		thisAgent.writeToMemory(cellValue > BLACK_IR_VALUE ? true : false);
+		/* Judge every property from the same reading, and add them to memory */
+		for (int property = 0; property < cellsRead.length; property++)
+			cellsRead[property] = cellValue > AgentParameters.PROPERTY_IR_THRESHOLDS[property];
+		thisAgent.writeToMemory(cellsRead);
 	}
 
-	/* Turning */
-	private void turn(int turningSpeed, double seconds) {
-		thisAgent.setMotors(turningSpeed, turningSpeed);
+	/* Turning, the other way for negative times */
+	private void turn(int turningSpeed, double seconds, String phase) {
+		AgentEvents.MotionPhaseEvent event = new AgentEvents.MotionPhaseEvent();
+		event.begin();
+		if (seconds < 0)
+			setMotors(-turningSpeed, -turningSpeed, System.nanoTime());
+		else
+			setMotors(turningSpeed, turningSpeed, System.nanoTime());
 		long time = System.nanoTime();
-		while (System.nanoTime() < time + nano(TURNING_TIME)) {
+		while (System.nanoTime() < time + nano(Math.abs(seconds))) {
 			/* Wait */
+			thisAgent.pause();
 		}
+		commitPhase(event, phase);
+
+	}
 
+	/* Records the end of a motion phase */
+	private void commitPhase(AgentEvents.MotionPhaseEvent event, String phase) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.phase = phase;
+			event.commit();
+		}
 	}
 
 	private long nano(double seconds) {
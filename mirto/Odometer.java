@@ -0,0 +1,49 @@
+/**
+ * This class represents an estimation of the distance a robot travelled, made
+ * from the motor speeds it was set to and the time since: with no wheel
+ * encoders, the robot is taken to go forward at FORWARD_SPEED metres per
+ * second when its motors run at the motion control speed, in proportion at
+ * other speeds, and not to move when spinning on the spot.
+ * <p>
+ * The estimation counts no slip and no obstacle: the robot is taken to move
+ * while it pushes against a wall, so the caller discards the distance before
+ * a wall hit.
+ */
+public class Odometer {
+
+	/* Motor speed going forward at FORWARD_SPEED, as MotionControl */
+	private static final int REFERENCE_SPEED = 150;
+
+	/* Distance until the last motor change, in metres */
+	private double distance;
+
+	/* Forward speed since the last motor change, in metres per second, and its time */
+	private double speed;
+	private long since;
+
+	/**
+	 * Record a change of the motor speeds
+	 *
+	 * @param speedM1
+	 *            the speed of the first motor
+	 * @param speedM2
+	 *            the speed of the second motor, going backwards for the robot
+	 *            to go forward
+	 * @param nanoTime
+	 *            the time of the change, in nanoseconds
+	 */
+	public void setMotors(int speedM1, int speedM2, long nanoTime) {
+		distance = getDistance(nanoTime);
+		speed = Math.abs(speedM1 - speedM2) / 2.0 / REFERENCE_SPEED * AgentParameters.FORWARD_SPEED;
+		since = nanoTime;
+	}
+
+	/**
+	 * @param nanoTime
+	 *            the current time, in nanoseconds
+	 * @return the distance travelled since the robot started, in metres
+	 */
+	public double getDistance(long nanoTime) {
+		return distance + speed * Math.max(nanoTime - since, 0) / 1e9;
+	}
+}
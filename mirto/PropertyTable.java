@@ -0,0 +1,196 @@
+import java.util.Arrays;
+
+/**
+ * This class represents the beliefs of the agents of the swarm on several
+ * floor properties, as a struct of arrays: a row per agent, holding the
+ * incarnation and time stamp shared by all its beliefs, and a column of
+ * beliefs per property. An agent's beliefs on all properties are created and
+ * sent together, so a row is replaced as a whole, and the belief of the swarm
+ * on a property is computed over a contiguous column, with no boxing.
+ * <p>
+ * The methods are synchronized, the table being written by the receiver and
+ * the main loop and read by the sender.
+ */
+public class PropertyTable {
+
+	/* Rows allocated at first, doubled when full */
+	private static final int INITIAL_CAPACITY = 8;
+
+	private int propertyCount;
+
+	/* Number of rows in use */
+	private int size;
+
+	/* The rows: the agent, its incarnation and time stamp */
+	private int[] agentIDs;
+	private int[] incarnations;
+	private int[] timeStamps;
+
+	/* beliefs[property][row] is the belief of the agent of the row */
+	private float[][] beliefs;
+
+	/* The parameters of the agent, for the neutral belief */
+	private AgentParameters.Holder parameters;
+
+	/**
+	 * Initialise an empty table
+	 *
+	 * @param propertyCount
+	 *            the number of properties
+	 * @param parameters
+	 *            the parameters of the agent
+	 */
+	public PropertyTable(int propertyCount, AgentParameters.Holder parameters) {
+		this.propertyCount = propertyCount;
+		this.parameters = parameters;
+		this.agentIDs = new int[INITIAL_CAPACITY];
+		this.incarnations = new int[INITIAL_CAPACITY];
+		this.timeStamps = new int[INITIAL_CAPACITY];
+		this.beliefs = new float[propertyCount][INITIAL_CAPACITY];
+	}
+
+	/**
+	 * @return the number of properties
+	 */
+	public int getPropertyCount() {
+		return propertyCount;
+	}
+
+	/**
+	 * @return the number of agents in the table
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Puts the beliefs of an agent, if not present or present with an older
+	 * incarnation or time stamp. Properties missing from the values are set to
+	 * the neutral belief degree
+	 *
+	 * @param agentID
+	 *            the ID of the agent that created the beliefs
+	 * @param incarnation
+	 *            the incarnation of the agent when it created the beliefs
+	 * @param timeStamp
+	 *            the time the beliefs were created
+	 * @param values
+	 *            the beliefs, by property
+	 * @param count
+	 *            the number of beliefs in values
+	 * @return true if the beliefs were put
+	 */
+	public synchronized boolean put(int agentID, int incarnation, int timeStamp, float[] values, int count) {
+		int row = indexOf(agentID);
+		if (row >= 0 && (incarnations[row] > incarnation
+				|| (incarnations[row] == incarnation && timeStamps[row] >= timeStamp)))
+			return false;
+		set(agentID, incarnation, timeStamp, values, count);
+		return true;
+	}
+
+	/**
+	 * Sets the beliefs of an agent, replacing the ones present whatever their
+	 * time stamp, e.g. for the agent's own beliefs. Properties missing from the
+	 * values are set to the neutral belief degree
+	 *
+	 * @param agentID
+	 *            the ID of the agent that created the beliefs
+	 * @param incarnation
+	 *            the incarnation of the agent when it created the beliefs
+	 * @param timeStamp
+	 *            the time the beliefs were created
+	 * @param values
+	 *            the beliefs, by property
+	 * @param count
+	 *            the number of beliefs in values
+	 */
+	public synchronized void set(int agentID, int incarnation, int timeStamp, float[] values, int count) {
+		int row = indexOf(agentID);
+		if (row < 0) {
+			if (size == agentIDs.length)
+				grow();
+			row = size++;
+			agentIDs[row] = agentID;
+		}
+
+		incarnations[row] = incarnation;
+		timeStamps[row] = timeStamp;
+		for (int property = 0; property < propertyCount; property++)
+			beliefs[property][row] = property < count ? values[property]
+					: (float) parameters.get().getNeutralBeliefDegree();
+	}
+
+	/**
+	 * Appends the beliefs of an agent to a frame, in the form "ID incarnation
+	 * timeStamp count belief...", each belief as a percentage
+	 *
+	 * @param agentID
+	 *            the ID of the agent
+	 * @param frame
+	 *            the frame to append to
+	 * @return false if the agent is not in the table
+	 */
+	public synchronized boolean appendTo(int agentID, StringBuilder frame) {
+		int row = indexOf(agentID);
+		if (row < 0)
+			return false;
+
+		frame.append(agentID).append(' ').append(incarnations[row]).append(' ').append(timeStamps[row]).append(' ')
+				.append(propertyCount);
+		for (int property = 0; property < propertyCount; property++)
+			frame.append(' ').append(Math.round(beliefs[property][row] * 100));
+		return true;
+	}
+
+	/**
+	 * The belief of the swarm on a property: the average of the beliefs of
+	 * the agents in the table, assuming a neutral belief for the others
+	 *
+	 * @param property
+	 *            the property
+	 * @param swarmSize
+	 *            the number of agents deployed
+	 * @return the belief of the swarm on the property
+	 */
+	public synchronized double swarmBelief(int property, double swarmSize) {
+		float[] column = beliefs[property];
+		double accumulator = 0;
+		for (int row = 0; row < size; row++)
+			accumulator += column[row];
+		accumulator += parameters.get().getNeutralBeliefDegree() * (swarmSize - size);
+		return accumulator / swarmSize;
+	}
+
+	/**
+	 * @param agentID
+	 *            the ID of an agent
+	 * @param property
+	 *            a property
+	 * @return the belief of the agent on the property, -1 if the agent is not
+	 *         in the table
+	 */
+	public synchronized float get(int agentID, int property) {
+		int row = indexOf(agentID);
+		return row < 0 ? -1 : beliefs[property][row];
+	}
+
+	/* Returns the row of an agent, -1 if not present */
+	private int indexOf(int agentID) {
+		for (int row = 0; row < size; row++) {
+			if (agentIDs[row] == agentID)
+				return row;
+		}
+		return -1;
+	}
+
+	/* Doubles the rows allocated */
+	private void grow() {
+		int capacity = 2 * agentIDs.length;
+		agentIDs = Arrays.copyOf(agentIDs, capacity);
+		incarnations = Arrays.copyOf(incarnations, capacity);
+		timeStamps = Arrays.copyOf(timeStamps, capacity);
+		for (int property = 0; property < propertyCount; property++)
+			beliefs[property] = Arrays.copyOf(beliefs[property], capacity);
+	}
+}
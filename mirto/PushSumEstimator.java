@@ -0,0 +1,175 @@
+import java.util.Random;
+
+/**
+ * This class represents an estimation of the swarm belief by push-sum gossip:
+ * the agent holds a (sum, weight) pair, and every message it sends gives half
+ * of it to a neighbour, that adds it to its own. The ratio sum / weight of
+ * every agent converges to the average of the values the agents started from,
+ * with constant state and message size whatever the swarm size.
+ * <p>
+ * Time is divided in epochs of PUSH_SUM_EPOCH time steps. At
+ * the start of each epoch the pair is reset to (local belief, 1), so that the
+ * estimation follows the local beliefs as they change and the mass lost with
+ * lost messages is restored. The estimation used is the ratio reached at the
+ * end of the previous epoch. As agent clocks are not synchronised, an agent
+ * hearing a later epoch moves to it, and messages of earlier epochs are
+ * ignored.
+ */
+public class PushSumEstimator {
+
+	/** Target of the messages sent when no neighbour is known */
+	public static final int NO_TARGET = -1;
+
+	/* Number of recently heard neighbours to choose the targets from */
+	private static final int MAX_NEIGHBOURS = 8;
+
+	/* The pair of the current epoch */
+	private double sum;
+	private double weight;
+
+	/* The current epoch */
+	private int epoch;
+
+	/* The ratio reached at the end of the previous epoch */
+	private double estimate;
+
+	/* The local belief to start the next epoch from */
+	private double localBelief;
+
+	/* Ring of the IDs of the neighbours recently heard */
+	private int[] neighbours = new int[MAX_NEIGHBOURS];
+	private int neighbourCount;
+	private int nextNeighbour;
+
+	/* To choose the targets */
+	private Random random;
+
+	/* The parameters of the agent, for the epoch length */
+	private AgentParameters.Holder parameters;
+
+	/**
+	 * Initialise the estimator, assuming the neutral belief for the swarm
+	 *
+	 * @param parameters
+	 *            the parameters of the agent
+	 */
+	public PushSumEstimator(AgentParameters.Holder parameters) {
+		this.parameters = parameters;
+		this.localBelief = parameters.get().getNeutralBeliefDegree();
+		this.estimate = parameters.get().getNeutralBeliefDegree();
+		this.sum = localBelief;
+		this.weight = 1;
+		this.epoch = 0;
+		this.random = new Random();
+	}
+
+	/**
+	 * Set the local belief, that will be used from the next epoch
+	 *
+	 * @param localBelief
+	 *            the local belief of the agent
+	 */
+	public synchronized void setLocalBelief(double localBelief) {
+		this.localBelief = localBelief;
+	}
+
+	/**
+	 * Move to the epoch of the given time, if later than the current one
+	 *
+	 * @param time
+	 *            the agent internal time
+	 */
+	public synchronized void tick(int time) {
+		int timeEpoch = time / parameters.get().getPushSumEpoch();
+		if (timeEpoch > epoch)
+			startEpoch(timeEpoch);
+	}
+
+	/**
+	 * Remember a neighbour, as a target of the next messages
+	 *
+	 * @param neighbourID
+	 *            the ID of the agent heard
+	 */
+	public synchronized void heard(int neighbourID) {
+		for (int i = 0; i < neighbourCount; i++) {
+			if (neighbours[i] == neighbourID)
+				return;
+		}
+		neighbours[nextNeighbour] = neighbourID;
+		nextNeighbour = (nextNeighbour + 1) % MAX_NEIGHBOURS;
+		neighbourCount = Math.min(neighbourCount + 1, MAX_NEIGHBOURS);
+	}
+
+	/**
+	 * Choose the target of the next message among the neighbours heard and
+	 * halve the pair, the other half being the content of the message. The
+	 * pair is kept whole if no neighbour is known
+	 *
+	 * @return the ID of the target, NO_TARGET if no neighbour is known
+	 */
+	public synchronized int share() {
+		if (neighbourCount == 0)
+			return NO_TARGET;
+		sum /= 2;
+		weight /= 2;
+		return neighbours[random.nextInt(neighbourCount)];
+	}
+
+	/**
+	 * Add the half pair received from a neighbour
+	 *
+	 * @param messageEpoch
+	 *            the epoch of the sender
+	 * @param messageSum
+	 *            the sum received
+	 * @param messageWeight
+	 *            the weight received
+	 */
+	public synchronized void absorb(int messageEpoch, double messageSum, double messageWeight) {
+		if (messageEpoch < epoch || messageWeight <= 0)
+			return;
+		if (messageEpoch > epoch)
+			startEpoch(messageEpoch);
+		sum += messageSum;
+		weight += messageWeight;
+	}
+
+	/**
+	 * @return the current epoch
+	 */
+	public synchronized int getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * @return the sum of the current epoch
+	 */
+	public synchronized double getSum() {
+		return sum;
+	}
+
+	/**
+	 * @return the weight of the current epoch
+	 */
+	public synchronized double getWeight() {
+		return weight;
+	}
+
+	/**
+	 * @return the estimation of the swarm belief, reached at the end of the
+	 *         previous epoch
+	 */
+	public synchronized double getEstimate() {
+		return estimate;
+	}
+
+	/* Must hold the lock */
+	private void startEpoch(int newEpoch) {
+		if (weight > 0)
+			estimate = sum / weight;
+		epoch = newEpoch;
+		sum = localBelief;
+		weight = 1;
+	}
+}
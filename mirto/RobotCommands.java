@@ -0,0 +1,274 @@
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class represents the command layer in front of the serial link to the
+ * robot. The actuator commands are written asynchronously and in order by a
+ * writer thread, so that the motion control and the agent never wait for the
+ * link, and the redundant ones never reach it:
+ * <ul>
+ * <li>a motor command is dropped if the motors were last asked to run at the
+ * same speeds, and replaces the motor command before it if that one is still
+ * the last queued;</li>
+ * <li>a line of the LCD screen only keeps the last text asked for, written if
+ * it differs from the one on the screen and at most every LCD_LINE_INTERVAL
+ * milliseconds. The screen being independent of the other actuators, the
+ * lines are written when due rather than in the queue, but never before a
+ * screen clear asked for before them.</li>
+ * </ul>
+ * Sensor reads are made by the calling thread, ahead of the queued commands:
+ * the writer lets the waiting reads take the link first, so that a read waits
+ * at most for the command being written.
+ */
+public class RobotCommands implements RobotLink {
+
+	/* The kinds of commands queued */
+	private static final int MOTORS = 0;
+	private static final int CLEAR = 1;
+	private static final int NOTE = 2;
+
+	/* A command queued */
+	private static class Command {
+
+		private int kind;
+		private int first;
+		private int second;
+
+		Command(int kind, int first, int second) {
+			this.kind = kind;
+			this.first = first;
+			this.second = second;
+		}
+	}
+
+	/* The link, also locked by whoever uses it */
+	private RobotLink link;
+
+	/* The commands to write, in order, and the thread writing them */
+	private ArrayDeque<Command> queue = new ArrayDeque<>();
+	private Thread writer;
+
+	/* Set once closed, the commands asked for after being dropped */
+	private boolean isClosed;
+
+	/* The motor speeds last asked for, and their command if still queued last */
+	private int speedM1;
+	private int speedM2;
+	private boolean isMotorsKnown;
+	private Command queuedMotors;
+
+	/* By LCD line: the text asked for, the one on the screen and when it was written */
+	private Map<Integer, String> lcdRequested = new HashMap<>();
+	private Map<Integer, String> lcdShown = new HashMap<>();
+	private Map<Integer, Long> lcdWriteTimes = new HashMap<>();
+
+	/* Number of screen clears asked for, not to take a line cleared for shown */
+	private int clearCount;
+
+	/* Reads waiting for the link, that the writer lets go first */
+	private AtomicInteger readsWaiting = new AtomicInteger();
+
+	/* Counters for the link accounting, the read ones guarded by the link */
+	private long requestedCount;
+	private long writtenCount;
+	private long writeNanos;
+	private long readCount;
+	private long readNanos;
+
+	/**
+	 * Initialise the layer, starting its writer
+	 *
+	 * @param link
+	 *            the serial link to the robot
+	 */
+	public RobotCommands(RobotLink link) {
+		this.link = link;
+		this.writer = new Thread(this::write, "robotCommands");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	@Override
+	public synchronized void setMotors(int speedM1, int speedM2) {
+		requestedCount++;
+		if (isClosed || (isMotorsKnown && speedM1 == this.speedM1 && speedM2 == this.speedM2))
+			return;
+		this.speedM1 = speedM1;
+		this.speedM2 = speedM2;
+		this.isMotorsKnown = true;
+
+		/* Only the last speeds matter, if not overtaken by another command */
+		if (queuedMotors != null && queue.peekLast() == queuedMotors) {
+			queuedMotors.first = speedM1;
+			queuedMotors.second = speedM2;
+			return;
+		}
+		queuedMotors = new Command(MOTORS, speedM1, speedM2);
+		queue.add(queuedMotors);
+		notifyAll();
+	}
+
+	@Override
+	public synchronized void writeLCDLine(String text, int line) {
+		requestedCount++;
+		if (isClosed)
+			return;
+		lcdRequested.put(line, text);
+		notifyAll();
+	}
+
+	@Override
+	public synchronized void clearLCDScreen() {
+		requestedCount++;
+		if (isClosed)
+			return;
+		/* The lines asked for before are cleared anyway, the ones after follow the clear */
+		lcdRequested.clear();
+		lcdShown.clear();
+		clearCount++;
+		queue.add(new Command(CLEAR, 0, 0));
+		notifyAll();
+	}
+
+	@Override
+	public synchronized void playNote(int note, int duration) {
+		requestedCount++;
+		if (isClosed)
+			return;
+		queue.add(new Command(NOTE, note, duration));
+		notifyAll();
+	}
+
+	@Override
+	public int getIR(int sensor) {
+		readsWaiting.incrementAndGet();
+		synchronized (link) {
+			readsWaiting.decrementAndGet();
+			long start = System.nanoTime();
+			int value = link.getIR(sensor);
+			readNanos += System.nanoTime() - start;
+			readCount++;
+			return value;
+		}
+	}
+
+	@Override
+	public boolean isPressed(int bumper) {
+		readsWaiting.incrementAndGet();
+		synchronized (link) {
+			readsWaiting.decrementAndGet();
+			long start = System.nanoTime();
+			boolean value = link.isPressed(bumper);
+			readNanos += System.nanoTime() - start;
+			readCount++;
+			return value;
+		}
+	}
+
+	/**
+	 * Write the commands queued and the LCD lines not written yet, then stop
+	 * the writer. The commands asked for after are dropped
+	 */
+	public void close() {
+		synchronized (this) {
+			isClosed = true;
+			notifyAll();
+		}
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return a summary of the commands asked for and written, and of the
+	 *         time the link was busy
+	 */
+	public String getStatistics() {
+		long reads, readMillis;
+		synchronized (link) {
+			reads = readCount;
+			readMillis = readNanos / 1000000;
+		}
+		synchronized (this) {
+			return "Robot commands asked for: " + requestedCount + ", written: " + writtenCount + " in "
+					+ writeNanos / 1000000 + " ms, sensor reads: " + reads + " in " + readMillis + " ms";
+		}
+	}
+
+	/* Writes the commands queued and the LCD lines due, until closed */
+	private void write() {
+		while (true) {
+			Command command = null;
+			int line = 0;
+			String text = null;
+			int clears;
+
+			synchronized (this) {
+				while (true) {
+					if (!queue.isEmpty()) {
+						command = queue.poll();
+						if (command == queuedMotors)
+							queuedMotors = null;
+						break;
+					}
+					long now = System.nanoTime();
+					long wait = 0;
+					for (Map.Entry<Integer, String> requested : lcdRequested.entrySet()) {
+						if (requested.getValue().equals(lcdShown.get(requested.getKey())))
+							continue;
+						Long writeTime = lcdWriteTimes.get(requested.getKey());
+						long due = writeTime == null || isClosed ? now
+								: writeTime + AgentParameters.get().getLcdLineInterval() * 1000000;
+						if (due <= now) {
+							line = requested.getKey();
+							text = requested.getValue();
+							break;
+						}
+						wait = wait == 0 ? due - now : Math.min(wait, due - now);
+					}
+					if (text != null)
+						break;
+					if (isClosed)
+						return;
+					try {
+						/* Until a command is asked for or a line is due */
+						wait(wait / 1000000, (int) (wait % 1000000));
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				clears = clearCount;
+			}
+
+			/* Letting the reads go first */
+			while (readsWaiting.get() > 0)
+				Thread.yield();
+
+			long start = System.nanoTime();
+			synchronized (link) {
+				if (command == null)
+					link.writeLCDLine(text, line);
+				else if (command.kind == MOTORS)
+					link.setMotors(command.first, command.second);
+				else if (command.kind == CLEAR)
+					link.clearLCDScreen();
+				else
+					link.playNote(command.first, command.second);
+			}
+			long end = System.nanoTime();
+
+			synchronized (this) {
+				writtenCount++;
+				writeNanos += end - start;
+				if (command == null && clears == clearCount) {
+					lcdShown.put(line, text);
+					lcdWriteTimes.put(line, end);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,45 @@
+import java.util.Random;
+
+/**
+ * This class represents the inputs of an agent running on a robot: the system
+ * clock, the robot sensors and a random number generator
+ */
+public class RobotInputs implements AgentInputs {
+
+	/* The link to the robot to read the sensors of */
+	private RobotLink robot;
+
+	/* Random number generator */
+	private Random random;
+
+	/**
+	 * Initialise the inputs by indicating the robot to read the sensors of
+	 * 
+	 * @param robot
+	 *            the link to the robot to read the sensors of
+	 */
+	public RobotInputs(RobotLink robot) {
+		this.robot = robot;
+		this.random = new Random();
+	}
+
+	@Override
+	public long nanoTime() {
+		return System.nanoTime();
+	}
+
+	@Override
+	public int getIR(int sensor) {
+		return robot.getIR(sensor);
+	}
+
+	@Override
+	public boolean isPressed(int bumper) {
+		return robot.isPressed(bumper);
+	}
+
+	@Override
+	public float nextFloat() {
+		return random.nextFloat();
+	}
+}
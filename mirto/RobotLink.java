@@ -0,0 +1,56 @@
+/**
+ * This interface represents the serial link to the robot's microcontroller,
+ * over which the actuator commands are written and the sensors are read, one
+ * request at a time
+ */
+public interface RobotLink {
+
+	/**
+	 * Set the motor speed
+	 *
+	 * @param speedM1
+	 *            the speed of the first motor
+	 * @param speedM2
+	 *            the speed of the second motor
+	 */
+	void setMotors(int speedM1, int speedM2);
+
+	/**
+	 * Write a line of the LCD screen
+	 *
+	 * @param text
+	 *            the text of the line
+	 * @param line
+	 *            the index of the line
+	 */
+	void writeLCDLine(String text, int line);
+
+	/**
+	 * Clear the LCD screen
+	 */
+	void clearLCDScreen();
+
+	/**
+	 * Play a note
+	 *
+	 * @param note
+	 *            the frequency of the note, in hertz
+	 * @param duration
+	 *            the duration of the note, in milliseconds
+	 */
+	void playNote(int note, int duration);
+
+	/**
+	 * @param sensor
+	 *            the index of the infrared sensor
+	 * @return the value read by the infrared sensor
+	 */
+	int getIR(int sensor);
+
+	/**
+	 * @param bumper
+	 *            the index of the bumper
+	 * @return true if the bumper is pressed, false otherwise
+	 */
+	boolean isPressed(int bumper);
+}
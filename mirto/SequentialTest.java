@@ -0,0 +1,76 @@
+/**
+ * This class represents a sequential probability ratio test over a stream of
+ * binary observations, testing the hypothesis that the rate of cells with phi
+ * is over PHI_BELIEF_THRESHOLD against the hypothesis that it is under
+ * NOT_PHI_BELIEF_THRESHOLD (see AgentParameters). The log-likelihood ratio
+ * of the observations is accumulated, and the test can stop as soon as it
+ * crosses one of the bounds given by the error bound: then the probability of
+ * accepting the wrong hypothesis is at most the error bound.
+ * <p>
+ * The log-likelihood ratios of independent observation streams (e.g. from
+ * different agents) can be summed and compared with the same bounds.
+ */
+public class SequentialTest {
+
+	/* The accumulated log-likelihood ratio */
+	private double logLikelihoodRatio;
+
+	/* The parameters of the agent, for the hypotheses and the error bound */
+	private AgentParameters.Holder parameters;
+
+	/**
+	 * Initialise the test with no observations
+	 *
+	 * @param parameters
+	 *            the parameters of the agent
+	 */
+	public SequentialTest(AgentParameters.Holder parameters) {
+		this.logLikelihoodRatio = 0;
+		this.parameters = parameters;
+	}
+
+	/**
+	 * Add an observation to the test
+	 * 
+	 * @param cellRead
+	 *            the boolean value read in a point in space
+	 */
+	public synchronized void observe(boolean cellRead) {
+		/* Log-likelihood ratio of an observation with and without phi */
+		AgentParameters snapshot = parameters.get();
+		double phi = snapshot.getPhiBeliefThreshold();
+		double notPhi = snapshot.getNotPhiBeliefThreshold();
+		logLikelihoodRatio += Math.log(cellRead ? phi / notPhi : (1 - phi) / (1 - notPhi));
+	}
+
+	/**
+	 * Restart the test, forgetting the observations
+	 */
+	public synchronized void reset() {
+		logLikelihoodRatio = 0;
+	}
+
+	/**
+	 * @return the log-likelihood ratio of the observations, positive values
+	 *         being in favour of phi
+	 */
+	public synchronized double getLogLikelihoodRatio() {
+		return logLikelihoodRatio;
+	}
+
+	/**
+	 * @return the log-likelihood ratio over which phi is accepted
+	 */
+	public double upperBound() {
+		double errorBound = parameters.get().getSprtErrorBound();
+		return Math.log((1 - errorBound) / errorBound);
+	}
+
+	/**
+	 * @return the log-likelihood ratio under which not phi is accepted
+	 */
+	public double lowerBound() {
+		double errorBound = parameters.get().getSprtErrorBound();
+		return Math.log(errorBound / (1 - errorBound));
+	}
+}
@@ -0,0 +1,170 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This runnable class represents a sender of the agent's telemetry to the
+ * supervisor. Every record only holds what changed since the previous one, with
+ * a key record holding everything every KEY_RECORD_INTERVAL records.
+ * <p>
+ * The period between records adapts to the capacity of the link to the
+ * supervisor: as the socket write blocks once the send buffer is full, a write
+ * taking a sizeable part of the period doubles it, and every quick write
+ * shortens it by a step, down to MIN_PERIOD. The changes made while waiting
+ * are merged in the next record.
+ */
+public class TelemetrySender implements Runnable {
+
+	/* Bounds of the period between records, in milliseconds */
+	private static final long MIN_PERIOD = 250;
+	private static final long MAX_PERIOD = 8000;
+
+	/* Step the period is shortened by after a quick write, in milliseconds */
+	private static final long PERIOD_STEP = 250;
+
+	/* Records between two key records */
+	private static final int KEY_RECORD_INTERVAL = 40;
+
+	private Agent thisAgent;
+
+	/* Current period between records, in milliseconds */
+	private long period;
+
+	/* Number of records built */
+	private int sequence;
+
+	/* The values in the last record built */
+	private int time;
+	private int stateCode;
+	private boolean isActing;
+	private float d;
+	private boolean isBeliefValid;
+	private byte[] propertyDecisions = new byte[0];
+	private Map<Integer, AgentBelief> beliefs = new HashMap<>();
+
+	/**
+	 * Initialise the sender by indicating the agent it is attached to
+	 *
+	 * @param agent
+	 *            the agent this sender is attached to
+	 */
+	public TelemetrySender(Agent agent) {
+		this.thisAgent = agent;
+		this.period = MIN_PERIOD;
+		this.sequence = 0;
+	}
+
+	@Override
+	public void run() {
+		while (true) {
+			AgentTelemetry telemetry = nextTelemetry();
+
+			long start = System.nanoTime();
+			if (telemetry != null && !thisAgent.sendToSupervisor(telemetry))
+				return;
+			long writeMillis = (System.nanoTime() - start) / 1000000;
+
+			/* Backing off when the link does not keep up */
+			if (writeMillis > period / 4)
+				period = Math.min(period * 2, MAX_PERIOD);
+			else
+				period = Math.max(period - PERIOD_STEP, MIN_PERIOD);
+
+			try {
+				Thread.sleep(period);
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Build the next record, with the changes since the previous one
+	 *
+	 * @return the record, null if nothing changed
+	 */
+	protected AgentTelemetry nextTelemetry() {
+		boolean isKeyRecord = sequence % KEY_RECORD_INTERVAL == 0;
+		int changed = 0;
+
+		int newTime = thisAgent.getTime();
+		/* The action state fields read together */
+		long state = thisAgent.getActionState();
+		int newStateCode = AgentState.isBroadcasting(state) ? 1 : 0;
+		boolean newIsActing = AgentState.isActing(state);
+		float newD = AgentState.getD(state);
+		boolean newIsBeliefValid = thisAgent.isBeliefValid();
+		byte[] newPropertyDecisions = new byte[thisAgent.getPropertyCount()];
+		for (int property = 0; property < newPropertyDecisions.length; property++)
+			newPropertyDecisions[property] = (byte) thisAgent.getPropertyDecision(property);
+
+		if (isKeyRecord || newTime != time)
+			changed |= AgentTelemetry.TIME;
+		if (isKeyRecord || newStateCode != stateCode)
+			changed |= AgentTelemetry.STATE_CODE;
+		if (isKeyRecord || newIsActing != isActing)
+			changed |= AgentTelemetry.ACTING;
+		if (isKeyRecord || newD != d)
+			changed |= AgentTelemetry.D;
+		if (isKeyRecord || newIsBeliefValid != isBeliefValid)
+			changed |= AgentTelemetry.BELIEF_VALID;
+		if (isKeyRecord || !Arrays.equals(newPropertyDecisions, propertyDecisions))
+			changed |= AgentTelemetry.PROPERTIES;
+
+		List<Integer> changedIDs = new ArrayList<>();
+		List<AgentBelief> changedBeliefs = new ArrayList<>();
+		Map<Integer, AgentBelief> beliefTable = thisAgent.getBeliefTable();
+		synchronized (beliefTable) {
+			for (Map.Entry<Integer, AgentBelief> entry : beliefTable.entrySet()) {
+				AgentBelief belief = entry.getValue();
+				if (isKeyRecord || !isSame(beliefs.get(entry.getKey()), belief)) {
+					changedIDs.add(entry.getKey());
+					changedBeliefs.add(belief);
+					beliefs.put(entry.getKey(), belief);
+				}
+			}
+		}
+
+		if (changed == 0 && changedIDs.isEmpty())
+			return null;
+
+		time = newTime;
+		stateCode = newStateCode;
+		isActing = newIsActing;
+		d = newD;
+		isBeliefValid = newIsBeliefValid;
+		propertyDecisions = newPropertyDecisions;
+
+		int count = changedIDs.size();
+		int[] beliefIDs = new int[count];
+		int[] beliefTimeStamps = new int[count];
+		float[] beliefValues = new float[count];
+		float[] confidences = new float[count];
+		for (int i = 0; i < count; i++) {
+			AgentBelief belief = changedBeliefs.get(i);
+			beliefIDs[i] = changedIDs.get(i);
+			beliefTimeStamps[i] = belief.getTimeStamp();
+			beliefValues[i] = (float) belief.getBelief();
+			confidences[i] = (float) belief.getConfidence();
+		}
+
+		return new AgentTelemetry(thisAgent.getId(), sequence++, isKeyRecord, changed, time, stateCode, isActing, d,
+				isBeliefValid, propertyDecisions, beliefIDs, beliefTimeStamps, beliefValues, confidences);
+	}
+
+	/**
+	 * @return the current period between records, in milliseconds
+	 */
+	public long getPeriod() {
+		return period;
+	}
+
+	/* True if the belief was already sent as it is */
+	private static boolean isSame(AgentBelief sent, AgentBelief belief) {
+		return sent != null && sent.getIncarnation() == belief.getIncarnation()
+				&& sent.getTimeStamp() == belief.getTimeStamp()
+				&& sent.getBelief() == belief.getBelief() && sent.getConfidence() == belief.getConfidence();
+	}
+}
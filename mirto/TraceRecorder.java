@@ -0,0 +1,185 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * This class represents a recorder that captures every non-deterministic input
+ * of an agent into a compact binary trace, that can be replayed without any
+ * hardware by TraceReplay. It wraps the inputs the agent would use otherwise.
+ * <p>
+ * The trace starts with MAGIC, followed by records made of a tag byte and:
+ * <ul>
+ * <li>CLOCK : the milliseconds passed since the previous clock record;</li>
+ * <li>IR : the sensor index and the value read;</li>
+ * <li>BUMPER : the bumper index and its new state;</li>
+ * <li>FRAME : the length and the bytes of a received frame of the agent's
+ * swarm;</li>
+ * <li>RANDOM : the float drawn;</li>
+ * <li>ACTION : nothing, marks the motion control calling Agent.action().</li>
+ * </ul>
+ * Integers are written as unsigned varints. To keep the trace compact, clock
+ * readings are only recorded when the millisecond changes, and bumper reads
+ * only when the bumper state changes.
+ */
+public class TraceRecorder implements AgentInputs {
+
+	/** First bytes of a trace file */
+	public static final int MAGIC = 0x4d545232;
+
+	/** Record tags */
+	public static final byte CLOCK = 0;
+	public static final byte IR = 1;
+	public static final byte BUMPER = 2;
+	public static final byte FRAME = 3;
+	public static final byte RANDOM = 4;
+	public static final byte ACTION = 5;
+
+	/* The inputs to record */
+	private AgentInputs inputs;
+
+	/* The trace file */
+	private DataOutputStream out;
+
+	/* The last clock reading recorded, in milliseconds */
+	private long lastClock;
+
+	/* The last bumper states recorded */
+	private boolean[] lastPressed = new boolean[2];
+
+	/**
+	 * Initialise the recorder, creating the trace file
+	 *
+	 * @param inputs
+	 *            the inputs to record
+	 * @param fileName
+	 *            the path of the trace file
+	 */
+	public TraceRecorder(AgentInputs inputs, String fileName) throws IOException {
+		this.inputs = inputs;
+		this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16));
+		this.out.writeInt(MAGIC);
+		this.lastClock = 0;
+	}
+
+	@Override
+	public long nanoTime() {
+		long nanoTime = inputs.nanoTime();
+		long clock = nanoTime / 1000000;
+		synchronized (this) {
+			if (clock > lastClock) {
+				write(CLOCK);
+				writeVarint(clock - lastClock);
+				lastClock = clock;
+			}
+		}
+		return nanoTime;
+	}
+
+	@Override
+	public int getIR(int sensor) {
+		int value = inputs.getIR(sensor);
+		synchronized (this) {
+			write(IR);
+			write(sensor);
+			writeVarint(value);
+		}
+		return value;
+	}
+
+	@Override
+	public boolean isPressed(int bumper) {
+		boolean pressed = inputs.isPressed(bumper);
+		synchronized (this) {
+			if (lastPressed[bumper] != pressed) {
+				write(BUMPER);
+				write(bumper);
+				write(pressed ? 1 : 0);
+				lastPressed[bumper] = pressed;
+			}
+		}
+		return pressed;
+	}
+
+	@Override
+	public float nextFloat() {
+		float value = inputs.nextFloat();
+		synchronized (this) {
+			write(RANDOM);
+			try {
+				out.writeFloat(value);
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Record a frame received from another agent
+	 *
+	 * @param data
+	 *            the raw content of the frame
+	 */
+	public synchronized void recordFrame(byte[] data) {
+		write(FRAME);
+		writeVarint(data.length);
+		try {
+			out.write(data);
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * Record the motion control calling Agent.action()
+	 */
+	public synchronized void recordAction() {
+		write(ACTION);
+	}
+
+	/**
+	 * Write the buffered records to the trace file
+	 */
+	public synchronized void flush() {
+		try {
+			out.flush();
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * Write the buffered records and close the trace file
+	 */
+	public synchronized void close() {
+		try {
+			out.close();
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/* Must hold the lock */
+	private void write(int value) {
+		try {
+			out.write(value);
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/* Must hold the lock */
+	private void writeVarint(long value) {
+		while ((value & ~0x7FL) != 0) {
+			write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		write((int) value);
+	}
+
+	/* A broken trace must not stop the agent */
+	private void fail(IOException e) {
+		System.err.println("Trace recording failed: " + e.getMessage());
+	}
+}
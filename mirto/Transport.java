@@ -0,0 +1,44 @@
+import java.io.IOException;
+
+/**
+ * This interface represents the radio an agent broadcasts its messages on and
+ * receives the other agents' messages from
+ */
+public interface Transport {
+
+	/** Maximum bytes in a frame, the payload of a 802.15.4 XBee module */
+	int MAX_PAYLOAD = 100;
+
+	/**
+	 * @return the address of this agent on the radio, used as its ID
+	 */
+	int getAddress();
+
+	/**
+	 * Start delivering the frames received to a receiver
+	 *
+	 * @param receiver
+	 *            the receiver of the frames
+	 */
+	void setReceiver(MessageReceiver receiver);
+
+	/**
+	 * Broadcast a frame. Blocks while the radio cannot take more frames
+	 *
+	 * @param data
+	 *            the content of the frame
+	 * @throws IOException
+	 *             if the frame is over MAX_PAYLOAD bytes or cannot be sent
+	 */
+	void broadcast(byte[] data) throws IOException;
+
+	/**
+	 * @return a summary of the frames sent and received
+	 */
+	String getStatistics();
+
+	/**
+	 * Stop sending and receiving, releasing the radio
+	 */
+	void close();
+}
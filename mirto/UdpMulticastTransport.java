@@ -0,0 +1,260 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Enumeration;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * This class represents a radio emulated with UDP multicast, so that many agent
+ * processes on the same host (or network) can form a swarm with no XBee
+ * module. Every frame is a datagram to the multicast group, starting with the
+ * 16 bit address of the sender so that the sender's own frames are ignored.
+ * <p>
+ * The datagram channel is non-blocking: a single thread waits for the frames
+ * on a selector and delivers them. To mimic an XBee module on a serial port of
+ * baudRate baud, a frame of up to MAX_PAYLOAD bytes blocks the sender for the
+ * time its bytes and the module's overhead take on the serial port, each frame
+ * received is lost with probability lossRate, and it is delivered latency
+ * milliseconds after being received.
+ */
+public class UdpMulticastTransport implements Transport {
+
+	/* Bytes added to every frame by the XBee API frame */
+	private static final int FRAME_OVERHEAD = 9;
+
+	/* Bits on the serial port for every byte: start, 8 data, stop */
+	private static final int BITS_PER_BYTE = 10;
+
+	/* Bytes of the sender address in front of every datagram */
+	private static final int HEADER_SIZE = 2;
+
+	/* The address of this agent */
+	private int address;
+
+	/* The multicast group */
+	private InetSocketAddress group;
+
+	/* The channel and the selector waiting for frames on it */
+	private DatagramChannel channel;
+	private Selector selector;
+
+	/* The emulated radio */
+	private double lossRate;
+	private long latency;
+	private int baudRate;
+
+	/* Time until which the emulated serial port is busy sending */
+	private long busyUntil;
+
+	/* Frames received and waiting for their latency to pass */
+	private PriorityQueue<PendingFrame> pending = new PriorityQueue<>();
+
+	/* The receiver of the frames, and the thread delivering them */
+	private volatile MessageReceiver receiver;
+	private Thread receiveThread;
+	private volatile boolean isOpen;
+
+	/* Random number generator for the losses */
+	private Random random = new Random();
+
+	/* Counters */
+	private volatile long sentCount;
+	private volatile long droppedCount;
+	private volatile long receivedCount;
+	private volatile long lostCount;
+
+	/**
+	 * Join the multicast group
+	 *
+	 * @param address
+	 *            the 16 bit address of this agent
+	 * @param groupAddress
+	 *            the multicast group, e.g. 239.0.0.1
+	 * @param port
+	 *            the UDP port of the group
+	 * @param lossRate
+	 *            the probability of a frame received being lost
+	 * @param latency
+	 *            the milliseconds a frame received takes to be delivered
+	 * @param baudRate
+	 *            the baud rate of the emulated serial port, 0 for no limit
+	 */
+	public UdpMulticastTransport(int address, String groupAddress, int port, double lossRate, int latency,
+			int baudRate) throws IOException {
+		this.address = address & 0xffff;
+		this.group = new InetSocketAddress(InetAddress.getByName(groupAddress), port);
+		this.lossRate = lossRate;
+		this.latency = latency * 1000000L;
+		this.baudRate = baudRate;
+
+		NetworkInterface networkInterface = multicastInterface();
+		channel = DatagramChannel.open(StandardProtocolFamily.INET);
+		channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+		channel.bind(new InetSocketAddress(port));
+		channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface);
+		/* The other agents may be on this host, and only on this host */
+		channel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+		channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, 0);
+		channel.join(group.getAddress(), networkInterface);
+		channel.configureBlocking(false);
+
+		selector = Selector.open();
+		channel.register(selector, SelectionKey.OP_READ);
+
+		isOpen = true;
+		receiveThread = new Thread(this::receiveLoop, "udpReceiver");
+		receiveThread.setDaemon(true);
+		receiveThread.start();
+	}
+
+	@Override
+	public int getAddress() {
+		return address;
+	}
+
+	@Override
+	public void setReceiver(MessageReceiver receiver) {
+		this.receiver = receiver;
+	}
+
+	@Override
+	public synchronized void broadcast(byte[] data) throws IOException {
+		if (data.length > MAX_PAYLOAD)
+			throw new IOException("Frame of " + data.length + " bytes, more than " + MAX_PAYLOAD);
+
+		/* Waiting for the serial port to send the previous frames */
+		if (baudRate > 0) {
+			long now = System.nanoTime();
+			if (busyUntil > now) {
+				try {
+					Thread.sleep((busyUntil - now) / 1000000, (int) ((busyUntil - now) % 1000000));
+				} catch (InterruptedException e) {
+					throw new IOException("Interrupted while sending", e);
+				}
+			}
+			busyUntil = Math.max(now, busyUntil)
+					+ (data.length + FRAME_OVERHEAD) * BITS_PER_BYTE * 1000000000L / baudRate;
+		}
+
+		ByteBuffer datagram = ByteBuffer.allocate(HEADER_SIZE + data.length);
+		datagram.putShort((short) address);
+		datagram.put(data);
+		datagram.flip();
+		/* Not waiting for the socket buffer, as a radio would not */
+		if (channel.send(datagram, group) == 0)
+			droppedCount++;
+		else
+			sentCount++;
+	}
+
+	@Override
+	public String getStatistics() {
+		return "Frames sent: " + sentCount + ", dropped: " + droppedCount + ", received: " + receivedCount
+				+ ", lost: " + lostCount;
+	}
+
+	@Override
+	public void close() {
+		isOpen = false;
+		selector.wakeup();
+		try {
+			receiveThread.join(1000);
+			selector.close();
+			channel.close();
+		} catch (IOException | InterruptedException e) {
+			// nothing to do
+		}
+	}
+
+	/* Receives the frames and delivers them once their latency has passed */
+	private void receiveLoop() {
+		ByteBuffer datagram = ByteBuffer.allocate(HEADER_SIZE + MAX_PAYLOAD);
+		try {
+			while (isOpen) {
+				PendingFrame next = pending.peek();
+				if (next == null) {
+					selector.select();
+				} else {
+					long wait = (next.deliveryTime - System.nanoTime()) / 1000000;
+					if (wait > 0)
+						selector.select(wait);
+					else
+						selector.selectNow();
+				}
+				selector.selectedKeys().clear();
+
+				/* Reading every frame arrived */
+				while (channel.receive(datagram) != null) {
+					datagram.flip();
+					if (datagram.remaining() > HEADER_SIZE
+							&& (datagram.getShort() & 0xffff) != address) {
+						receivedCount++;
+						if (random.nextDouble() < lossRate) {
+							lostCount++;
+						} else {
+							byte[] data = new byte[datagram.remaining()];
+							datagram.get(data);
+							pending.add(new PendingFrame(System.nanoTime() + latency, data));
+						}
+					}
+					datagram.clear();
+				}
+
+				/* Delivering the frames whose latency has passed */
+				long now = System.nanoTime();
+				while (!pending.isEmpty() && pending.peek().deliveryTime <= now) {
+					byte[] data = pending.poll().data;
+					MessageReceiver currentReceiver = receiver;
+					if (currentReceiver != null)
+						currentReceiver.frameReceived(data);
+				}
+			}
+		} catch (IOException e) {
+			if (isOpen)
+				System.err.println("UDP transport stopped: " + e.getMessage());
+		}
+	}
+
+	/*
+	 * Returns the loopback interface if it supports multicast, as it keeps the
+	 * swarm on this host, the first interface up supporting it otherwise
+	 */
+	private static NetworkInterface multicastInterface() throws SocketException {
+		NetworkInterface loopback = NetworkInterface.getByName("lo");
+		if (loopback != null && loopback.supportsMulticast())
+			return loopback;
+		Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+		while (interfaces.hasMoreElements()) {
+			NetworkInterface networkInterface = interfaces.nextElement();
+			if (networkInterface.isUp() && networkInterface.supportsMulticast())
+				return networkInterface;
+		}
+		throw new SocketException("No network interface supports multicast");
+	}
+
+	/* Class to represent a frame received, waiting to be delivered */
+	private static class PendingFrame implements Comparable<PendingFrame> {
+
+		private long deliveryTime;
+		private byte[] data;
+
+		public PendingFrame(long deliveryTime, byte[] data) {
+			this.deliveryTime = deliveryTime;
+			this.data = data;
+		}
+
+		@Override
+		public int compareTo(PendingFrame other) {
+			return Long.compare(deliveryTime, other.deliveryTime);
+		}
+	}
+}
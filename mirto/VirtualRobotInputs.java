@@ -0,0 +1,79 @@
+import java.util.Random;
+
+/**
+ * This class represents the inputs of an agent with no robot: the system
+ * clock, a virtual floor whose cells have the property with a given
+ * probability, no obstacles and a random number generator
+ */
+public class VirtualRobotInputs implements AgentInputs {
+
+	/* Infrared values read on cells with and without the property */
+	private static final int PHI_IR_VALUE = 200;
+	private static final int NOT_PHI_IR_VALUE = 60;
+
+	/* The probability of a cell having the property */
+	private double floorRatio;
+
+	/* True if the cell under the robot has the property */
+	private boolean isPhiCell;
+
+	/* Random number generator */
+	private Random random;
+
+	/**
+	 * Initialise the inputs
+	 *
+	 * @param floorRatio
+	 *            the probability of a cell having the property
+	 */
+	public VirtualRobotInputs(double floorRatio) {
+		this.floorRatio = floorRatio;
+		this.random = new Random();
+	}
+
+	/**
+	 * Initialise the inputs with a seeded random number generator
+	 *
+	 * @param floorRatio
+	 *            the probability of a cell having the property
+	 * @param seed
+	 *            the seed of the random number generator
+	 */
+	public VirtualRobotInputs(double floorRatio, long seed) {
+		this.floorRatio = floorRatio;
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Set the probability of a cell having the property
+	 *
+	 * @param floorRatio
+	 *            the probability of a cell having the property
+	 */
+	public void setFloorRatio(double floorRatio) {
+		this.floorRatio = floorRatio;
+	}
+
+	@Override
+	public long nanoTime() {
+		return System.nanoTime();
+	}
+
+	/* The robot moves to a new cell every time the first sensor is read */
+	@Override
+	public int getIR(int sensor) {
+		if (sensor == 0)
+			isPhiCell = random.nextDouble() < floorRatio;
+		return isPhiCell ? PHI_IR_VALUE : NOT_PHI_IR_VALUE;
+	}
+
+	@Override
+	public boolean isPressed(int bumper) {
+		return false;
+	}
+
+	@Override
+	public float nextFloat() {
+		return random.nextFloat();
+	}
+}
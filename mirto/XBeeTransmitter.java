@@ -0,0 +1,210 @@
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.digi.xbee.api.XBeeDevice;
+import com.digi.xbee.api.exceptions.XBeeException;
+import com.digi.xbee.api.listeners.IPacketReceiveListener;
+import com.digi.xbee.api.models.XBee16BitAddress;
+import com.digi.xbee.api.models.XBeeTransmitOptions;
+import com.digi.xbee.api.models.XBeeTransmitStatus;
+import com.digi.xbee.api.packet.XBeePacket;
+import com.digi.xbee.api.packet.raw.TX16Packet;
+import com.digi.xbee.api.packet.raw.TXStatusPacket;
+
+/**
+ * This class represents a pipelined transmitter that sends broadcast frames
+ * through the XBee module without waiting for each transmit status. Up to
+ * WINDOW_SIZE frames can be in flight at the same time: the transmit status
+ * frames are matched back to their request by frame ID to count successes and
+ * failures, and the sender is blocked while the window is full.
+ */
+public class XBeeTransmitter implements IPacketReceiveListener {
+
+	/* Maximum number of frames waiting for a transmit status, must be <255 */
+	static final int WINDOW_SIZE = 4;
+
+	/* Seconds after which a frame with no transmit status is considered lost */
+	static final double STATUS_TIMEOUT = 2;
+
+	/* The communication module */
+	private XBeeDevice xBee;
+
+	/* The agent this transmitter is attached to */
+	private Agent thisAgent;
+
+	/* One permit for every free slot of the window */
+	private Semaphore window;
+
+	/*
+	 * Send time of the frames in flight, indexed by frame ID. 0 if no frame
+	 * with that ID is in flight
+	 */
+	private long[] sendTimes = new long[256];
+
+	/* The last frame ID used, frame ID 0 is never used (no status) */
+	private int lastFrameID;
+
+	/* Counters for the transmission accounting */
+	private long sentCount;
+	private long successCount;
+	private long failureCount;
+	private long lostCount;
+
+	/**
+	 * Initialise the transmitter, registering it to receive the transmit
+	 * status frames of the XBee module
+	 *
+	 * @param xBee
+	 *            the opened XBee module to transmit with
+	 * @param thisAgent
+	 *            the agent this transmitter is attached to
+	 */
+	public XBeeTransmitter(XBeeDevice xBee, Agent thisAgent) {
+		this.xBee = xBee;
+		this.thisAgent = thisAgent;
+		this.window = new Semaphore(WINDOW_SIZE);
+		this.lastFrameID = 0;
+		xBee.addPacketListener(this);
+	}
+
+	/**
+	 * Broadcast the data passed as parameter without waiting for its transmit
+	 * status. Blocks while WINDOW_SIZE frames are already in flight
+	 *
+	 * @param data
+	 *            the data to broadcast
+	 */
+	public void send(byte[] data) throws XBeeException {
+		try {
+			/* Backpressure: waiting for a free slot, reclaiming lost frames */
+			while (!window.tryAcquire(nano(STATUS_TIMEOUT), TimeUnit.NANOSECONDS)) {
+				expireLostFrames();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		int frameID;
+		synchronized (sendTimes) {
+			frameID = nextFreeFrameID();
+			sendTimes[frameID] = System.nanoTime();
+			sentCount++;
+		}
+
+		try {
+			xBee.sendPacketAsync(new TX16Packet(frameID, XBee16BitAddress.BROADCAST_ADDRESS,
+					XBeeTransmitOptions.NONE, data));
+		} catch (XBeeException e) {
+			/* The frame never left, freeing its slot */
+			synchronized (sendTimes) {
+				sendTimes[frameID] = 0;
+				sentCount--;
+			}
+			window.release();
+			throw e;
+		}
+	}
+
+	@Override
+	public void packetReceived(XBeePacket packet) {
+		if (!(packet instanceof TXStatusPacket))
+			return;
+
+		TXStatusPacket status = (TXStatusPacket) packet;
+		int frameID = status.getFrameID();
+
+		synchronized (sendTimes) {
+			/* Ignoring statuses of frames not sent (or already expired) here */
+			if (frameID <= 0 || frameID >= sendTimes.length || sendTimes[frameID] == 0)
+				return;
+
+			sendTimes[frameID] = 0;
+			if (status.getTransmitStatus() == XBeeTransmitStatus.SUCCESS)
+				successCount++;
+			else
+				failureCount++;
+		}
+		window.release();
+
+		if (status.getTransmitStatus() != XBeeTransmitStatus.SUCCESS)
+			thisAgent.debugXBEEmsg("Frame " + frameID + " failed: " + status.getTransmitStatus());
+	}
+
+	/**
+	 * @return the number of frames handed to the XBee module
+	 */
+	public long getSentCount() {
+		synchronized (sendTimes) {
+			return sentCount;
+		}
+	}
+
+	/**
+	 * @return the number of frames with a successful transmit status
+	 */
+	public long getSuccessCount() {
+		synchronized (sendTimes) {
+			return successCount;
+		}
+	}
+
+	/**
+	 * @return the number of frames with a failed transmit status
+	 */
+	public long getFailureCount() {
+		synchronized (sendTimes) {
+			return failureCount;
+		}
+	}
+
+	/**
+	 * @return the number of frames whose transmit status never arrived
+	 */
+	public long getLostCount() {
+		synchronized (sendTimes) {
+			return lostCount;
+		}
+	}
+
+	/**
+	 * Stop receiving the transmit status frames of the XBee module
+	 */
+	public void close() {
+		xBee.removePacketListener(this);
+	}
+
+	/* Frees the slots of the frames waiting for a status for too long */
+	private void expireLostFrames() {
+		long now = System.nanoTime();
+		for (int frameID = 1; frameID < sendTimes.length; frameID++) {
+			boolean lost;
+			synchronized (sendTimes) {
+				lost = sendTimes[frameID] != 0 && now - sendTimes[frameID] > nano(STATUS_TIMEOUT);
+				if (lost) {
+					sendTimes[frameID] = 0;
+					lostCount++;
+				}
+			}
+			if (lost) {
+				thisAgent.debugXBEEmsg("No transmit status for frame " + frameID);
+				window.release();
+			}
+		}
+	}
+
+	/*
+	 * Returns the next frame ID (1 to 255) with no frame in flight. One always
+	 * exists because WINDOW_SIZE < 255. Must hold the sendTimes lock
+	 */
+	private int nextFreeFrameID() {
+		do {
+			lastFrameID = lastFrameID % 255 + 1;
+		} while (sendTimes[lastFrameID] != 0);
+		return lastFrameID;
+	}
+
+	private long nano(double seconds) {
+		return (long) (seconds * 1000000000);
+	}
+}
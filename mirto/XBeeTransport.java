@@ -0,0 +1,79 @@
+import java.io.IOException;
+
+import com.digi.xbee.api.XBeeDevice;
+import com.digi.xbee.api.exceptions.TimeoutException;
+import com.digi.xbee.api.exceptions.XBeeException;
+import com.digi.xbee.api.packet.raw.RX16Packet;
+
+/**
+ * This class represents the XBee module of a robot as the agent's radio,
+ * broadcasting through a pipelined XBeeTransmitter
+ */
+public class XBeeTransport implements Transport {
+
+	/* The communication module */
+	private XBeeDevice xBee;
+
+	/* Pipelined transmitter in front of the communication module */
+	private XBeeTransmitter transmitter;
+
+	/**
+	 * Open the XBee module
+	 *
+	 * @param port
+	 *            the serial port of the module
+	 * @param baudRate
+	 *            the baud rate of the serial port
+	 * @param agent
+	 *            the agent the module is attached to
+	 */
+	public XBeeTransport(String port, int baudRate, Agent agent) throws XBeeException {
+		xBee = new XBeeDevice(port, baudRate);
+		while (!xBee.isOpen())
+			xBee.open();
+		transmitter = new XBeeTransmitter(xBee, agent);
+	}
+
+	/* The agent ID is the XBee's 16 bit address */
+	@Override
+	public int getAddress() {
+		return Integer.parseInt(xBee.get16BitAddress().toString(), 16);
+	}
+
+	/* Frames are taken from the receive packets, for their signal strength */
+	@Override
+	public void setReceiver(MessageReceiver receiver) {
+		xBee.addPacketListener(packet -> {
+			if (packet instanceof RX16Packet) {
+				RX16Packet received = (RX16Packet) packet;
+				/* The RSSI is given as -dBm */
+				receiver.frameReceived(received.getRFData(), -received.getRSSI());
+			}
+		});
+	}
+
+	@Override
+	public void broadcast(byte[] data) throws IOException {
+		if (data.length > MAX_PAYLOAD)
+			throw new IOException("Frame of " + data.length + " bytes, more than " + MAX_PAYLOAD);
+		try {
+			transmitter.send(data);
+		} catch (TimeoutException e) {
+			throw new IOException("TIMEOUT while sending xbee broadcast message", e);
+		} catch (XBeeException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public String getStatistics() {
+		return "Frames sent: " + transmitter.getSentCount() + ", succeeded: " + transmitter.getSuccessCount()
+				+ ", failed: " + transmitter.getFailureCount() + ", lost: " + transmitter.getLostCount();
+	}
+
+	@Override
+	public void close() {
+		transmitter.close();
+		xBee.close();
+	}
+}
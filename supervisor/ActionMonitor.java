@@ -7,15 +7,18 @@ import java.awt.event.WindowListener;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.util.Arrays;
 
 import javax.swing.BorderFactory;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.JTabbedPane;
 import javax.swing.SwingConstants;
 
 /**
@@ -26,13 +29,25 @@ public class ActionMonitor implements WindowListener {
 
 	private JFrame frame;
 	private JPanel mainPanel;
+	private TimelinePanel timelinePanel;
 	private ServerSocket serverSocket;
 	private boolean closing;
 
 	/**
-	 * Launching the application.
+	 * Launching the application, with no window if the first argument is
+	 * --headless (the other arguments are passed to HeadlessMonitor), or as
+	 * the supervisor of a region if it is --relay (the other arguments are
+	 * passed to SupervisorRelay).
 	 */
 	public static void main(String[] args) {
+		if (args.length > 0 && args[0].equals("--headless")) {
+			HeadlessMonitor.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if (args.length > 0 && args[0].equals("--relay")) {
+			SupervisorRelay.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
 		try {
 			ActionMonitor actionMonitor = new ActionMonitor();
 			actionMonitor.frame.setVisible(true);
@@ -104,8 +119,15 @@ public class ActionMonitor implements WindowListener {
 		legendPanel.add(yellowSquare);
 		legendPanel.add(new JLabel("= not acting"));
 
+		/* Timeline of the action states */
+		timelinePanel = new TimelinePanel();
+
+		JTabbedPane tabbedPane = new JTabbedPane();
+		tabbedPane.addTab("Agents", scrollPane);
+		tabbedPane.addTab("Timeline", timelinePanel);
+
 		/* Adding everything to the main panel */
-		frame.getContentPane().add(scrollPane, BorderLayout.CENTER);
+		frame.getContentPane().add(tabbedPane, BorderLayout.CENTER);
 		frame.getContentPane().add(lblMirtoActionState, BorderLayout.NORTH);
 		frame.getContentPane().add(legendPanel, BorderLayout.SOUTH);
 	}
@@ -192,7 +214,7 @@ public class ActionMonitor implements WindowListener {
 		}
 	}
 
-	/* Runnable class to handle each agent's socket */
+	/* Runnable class to handle each agent's, or regional supervisor's, socket */
 	private class ActionStateSocketHandler implements Runnable {
 
 		Socket socket;
@@ -207,51 +229,58 @@ public class ActionMonitor implements WindowListener {
 		@Override
 		public void run() {
 			ObjectInputStream in = null;
+			/* Opened on the first action state asking for an echo */
+			ObjectOutputStream echoOut = null;
+			/* The agent's state rebuilt from its telemetry */
+			AgentTelemetryState telemetryState = null;
 			try {
 				in = new ObjectInputStream(socket.getInputStream());
 				System.out.println("Inputstream opened");
 
 				/* Until closing signal */
 				while (!closing) {
-					ActionState state;
-					/* Waiting for an action state */
-					state = (ActionState) in.readObject();
-
-					System.out.println("Action state received");
+					/* Waiting for an action state or a telemetry record */
+					Object received = in.readObject();
+
+					if (received instanceof AgentTelemetry) {
+						AgentTelemetry telemetry = (AgentTelemetry) received;
+						if (telemetryState == null)
+							telemetryState = new AgentTelemetryState(telemetry.getAgentID());
+						telemetryState.apply(telemetry);
+						showTelemetry(telemetryState);
+						continue;
+					}
 
-					/* Only one update at time */
-					synchronized (actionMonitor.mainPanel.getTreeLock()) {
-
-						Component[] components = actionMonitor.mainPanel.getComponents();
-
-						/* Searching for the label to edit based on the action state*/
-						boolean foundID = false;
-						for (int i = 0; i < components.length && foundID == false; i++) {
-							System.out.println("Searching components for id " + state.getAgentID() + ", " + (i + 1)
-									+ " on " + components.length);
-							ActionStateLabel label = (ActionStateLabel) components[i];
-							System.out.println("label " + label.getID());
-							if (label.getID() == state.getAgentID()) {
-								if (state.getState() == 0)
-									label.setBackground(Color.YELLOW);
-								else if (state.getState() == 1)
-									label.setBackground(Color.GREEN);
-								else
-									label.setBackground(Color.BLACK);
-								foundID = true;
-								System.out.println("Component found");
-							}
+					if (received instanceof RegionSummary) {
+						/* Showing the agents of the region changed */
+						RegionSummary summary = (RegionSummary) received;
+						for (int i = 0; i < summary.getAgentCount(); i++) {
+							AgentStatus status = summary.getAgent(i);
+							actionMonitor.timelinePanel.record(status.getAgentID(), System.currentTimeMillis(),
+									status.getState());
+							showState(new ActionState(status.getAgentID(), status.getState()));
 						}
+						continue;
+					}
 
-						/* If there is no label, create a new one */
-						if (!foundID) {
-							ActionStateLabel label = actionMonitor.new ActionStateLabel(state);
+					/* Parameters are only rolled out by the headless monitor */
+					if (received instanceof ParameterAck)
+						continue;
 
-							actionMonitor.mainPanel.add(label);
-							System.out.println("Label " + label.getText() + " added");
-						}
+					ActionState state = (ActionState) received;
+					actionMonitor.timelinePanel.record(state.getAgentID(), System.currentTimeMillis(),
+							state.getState());
 
-						actionMonitor.mainPanel.validate();
+					System.out.println("Action state received");
+					showState(state);
+
+					/* Sending back probes, once shown */
+					if (state.getProbeTime() != 0) {
+						if (echoOut == null)
+							echoOut = new ObjectOutputStream(socket.getOutputStream());
+						echoOut.writeObject(state);
+						echoOut.reset();
+						echoOut.flush();
 					}
 				}
 			} catch (EOFException eofe) {
@@ -260,5 +289,56 @@ public class ActionMonitor implements WindowListener {
 				e.printStackTrace();
 			}
 		}
+
+		/* Shows the action state of an agent, creating its label if needed */
+		private void showState(ActionState state) {
+			/* Only one update at time */
+			synchronized (actionMonitor.mainPanel.getTreeLock()) {
+
+				Component[] components = actionMonitor.mainPanel.getComponents();
+
+				/* Searching for the label to edit based on the action state*/
+				boolean foundID = false;
+				for (int i = 0; i < components.length && foundID == false; i++) {
+					System.out.println("Searching components for id " + state.getAgentID() + ", " + (i + 1)
+							+ " on " + components.length);
+					ActionStateLabel label = (ActionStateLabel) components[i];
+					System.out.println("label " + label.getID());
+					if (label.getID() == state.getAgentID()) {
+						if (state.getState() == 0)
+							label.setBackground(Color.YELLOW);
+						else if (state.getState() == 1)
+							label.setBackground(Color.GREEN);
+						else
+							label.setBackground(Color.BLACK);
+						foundID = true;
+						System.out.println("Component found");
+					}
+				}
+
+				/* If there is no label, create a new one */
+				if (!foundID) {
+					ActionStateLabel label = actionMonitor.new ActionStateLabel(state);
+
+					actionMonitor.mainPanel.add(label);
+					System.out.println("Label " + label.getText() + " added");
+				}
+
+				actionMonitor.mainPanel.validate();
+			}
+		}
+
+		/* Shows the agent's state as the tool tip of its label, once created */
+		private void showTelemetry(AgentTelemetryState telemetryState) {
+			synchronized (actionMonitor.mainPanel.getTreeLock()) {
+				for (Component component : actionMonitor.mainPanel.getComponents()) {
+					ActionStateLabel label = (ActionStateLabel) component;
+					if (label.getID() == telemetryState.getAgentID()) {
+						label.setToolTipText(telemetryState.toHtml());
+						return;
+					}
+				}
+			}
+		}
 	}
 }
@@ -10,6 +10,7 @@ public class ActionState implements Serializable {
 
 	private int agentID;
 	private int state;
+	private long probeTime;
 
 	/**
 	 * Initialise an action state
@@ -18,8 +19,22 @@ public class ActionState implements Serializable {
 	 * @param state the action state value
 	 * */
 	public ActionState(int agentID, int state) {
+		this(agentID, state, 0);
+	}
+
+	/**
+	 * Initialise an action state that the supervisor will send back once
+	 * shown, to measure the end-to-end latency
+	 * 
+	 * @param agentID the ID of the agent this action state refers to
+	 * @param state the action state value
+	 * @param probeTime the sender's System.nanoTime() when sending, 0 for no
+	 *            echo
+	 * */
+	public ActionState(int agentID, int state, long probeTime) {
 		this.agentID = agentID;
 		this.state = state;
+		this.probeTime = probeTime;
 	}
 
 	/**
@@ -36,6 +51,13 @@ public class ActionState implements Serializable {
 		return state;
 	}
 
+	/**
+	 * @return the sender's time when sending, 0 if no echo is requested
+	 * */
+	public long getProbeTime() {
+		return probeTime;
+	}
+
 	@Override
 	/**
 	 * Equality is only based on the agent ID
@@ -0,0 +1,64 @@
+/**
+ * This class represents the immutable status of an agent as known by a
+ * supervisor: its last action state, when it was received and whether the
+ * agent is still connected
+ */
+public final class AgentStatus {
+
+	private final int agentID;
+	private final int state;
+	private final long lastSeen;
+	private final boolean connected;
+
+	/**
+	 * Initialise the status of an agent
+	 * 
+	 * @param agentID the ID of the agent
+	 * @param state the last action state of the agent
+	 * @param lastSeen the time the last action state was received, in
+	 *            milliseconds
+	 * @param connected true if the agent is still connected
+	 * */
+	public AgentStatus(int agentID, int state, long lastSeen, boolean connected) {
+		this.agentID = agentID;
+		this.state = state;
+		this.lastSeen = lastSeen;
+		this.connected = connected;
+	}
+
+	/**
+	 * @return the ID of the agent
+	 * */
+	public int getAgentID() {
+		return agentID;
+	}
+
+	/**
+	 * @return the last action state of the agent
+	 * */
+	public int getState() {
+		return state;
+	}
+
+	/**
+	 * @return the time the last action state was received, in milliseconds
+	 * */
+	public long getLastSeen() {
+		return lastSeen;
+	}
+
+	/**
+	 * @return true if the agent is still connected
+	 * */
+	public boolean isConnected() {
+		return connected;
+	}
+
+	/**
+	 * @return the status as a JSON object
+	 * */
+	public String toJson() {
+		return "{\"id\":" + agentID + ",\"state\":" + state + ",\"lastSeen\":" + lastSeen + ",\"connected\":"
+				+ connected + "}";
+	}
+}
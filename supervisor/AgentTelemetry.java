@@ -0,0 +1,209 @@
+import java.io.Serializable;
+
+/**
+ * This class represents a telemetry record of an agent, sent periodically to a
+ * supervisor over the socket to diagnose the convergence of the swarm. A
+ * record only holds the fields and the belief table entries that changed since
+ * the previous record of the same agent, apart from key records, that hold
+ * everything and let the supervisor start over. The agent's local belief is
+ * the entry of the belief table with its own ID
+ */
+public class AgentTelemetry implements Serializable {
+
+	private static final long serialVersionUID = 3926474512870951034L;
+
+	/** Bit of the changed fields mask for the internal time */
+	public static final int TIME = 1;
+
+	/** Bit of the changed fields mask for the state code */
+	public static final int STATE_CODE = 2;
+
+	/** Bit of the changed fields mask for the action state */
+	public static final int ACTING = 4;
+
+	/** Bit of the changed fields mask for the world state estimation d */
+	public static final int D = 8;
+
+	/** Bit of the changed fields mask for the local belief validity */
+	public static final int BELIEF_VALID = 16;
+
+	/** Bit of the changed fields mask for the decisions on the floor properties */
+	public static final int PROPERTIES = 32;
+
+	private int agentID;
+	private int sequence;
+	private boolean isKeyRecord;
+	private int changed;
+
+	private int time;
+	private int stateCode;
+	private boolean isActing;
+	private float d;
+	private boolean isBeliefValid;
+
+	/* By property, phi first: 1 if it holds, -1 if it does not, 0 if undecided */
+	private byte[] propertyDecisions;
+
+	/* The belief table entries changed, as parallel arrays */
+	private int[] beliefIDs;
+	private int[] beliefTimeStamps;
+	private float[] beliefs;
+	private float[] confidences;
+
+	/**
+	 * Initialise a telemetry record
+	 *
+	 * @param agentID the ID of the agent this record refers to
+	 * @param sequence the number of records the agent sent before this one
+	 * @param isKeyRecord true if the record holds all the fields and entries
+	 * @param changed the mask of the fields changed
+	 * @param time the agent internal time
+	 * @param stateCode 1 if broadcasting action, 0 if broadcasting beliefs
+	 * @param isActing the action state
+	 * @param d the estimation of the state of the world
+	 * @param isBeliefValid the validity of the local belief
+	 * @param propertyDecisions the decisions of the swarm on every property,
+	 *            as known by the agent
+	 * @param beliefIDs the IDs of the belief table entries changed
+	 * @param beliefTimeStamps the time stamps of the entries changed
+	 * @param beliefs the beliefs of the entries changed
+	 * @param confidences the confidences of the entries changed
+	 * */
+	public AgentTelemetry(int agentID, int sequence, boolean isKeyRecord, int changed, int time, int stateCode,
+			boolean isActing, float d, boolean isBeliefValid, byte[] propertyDecisions, int[] beliefIDs,
+			int[] beliefTimeStamps, float[] beliefs, float[] confidences) {
+		this.agentID = agentID;
+		this.sequence = sequence;
+		this.isKeyRecord = isKeyRecord;
+		this.changed = changed;
+		this.time = time;
+		this.stateCode = stateCode;
+		this.isActing = isActing;
+		this.d = d;
+		this.isBeliefValid = isBeliefValid;
+		this.propertyDecisions = propertyDecisions;
+		this.beliefIDs = beliefIDs;
+		this.beliefTimeStamps = beliefTimeStamps;
+		this.beliefs = beliefs;
+		this.confidences = confidences;
+	}
+
+	/**
+	 * @return the ID of the agent this record refers to
+	 * */
+	public int getAgentID() {
+		return agentID;
+	}
+
+	/**
+	 * @return the number of records the agent sent before this one
+	 * */
+	public int getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return true if the record holds all the fields and entries
+	 * */
+	public boolean isKeyRecord() {
+		return isKeyRecord;
+	}
+
+	/**
+	 * @param field the bit of the field
+	 * @return true if the field changed since the previous record
+	 * */
+	public boolean hasChanged(int field) {
+		return (changed & field) != 0;
+	}
+
+	/**
+	 * @return the agent internal time
+	 * */
+	public int getTime() {
+		return time;
+	}
+
+	/**
+	 * @return 1 if broadcasting action, 0 if broadcasting beliefs
+	 * */
+	public int getStateCode() {
+		return stateCode;
+	}
+
+	/**
+	 * @return the action state
+	 * */
+	public boolean isActing() {
+		return isActing;
+	}
+
+	/**
+	 * @return the estimation of the state of the world
+	 * */
+	public float getD() {
+		return d;
+	}
+
+	/**
+	 * @return the validity of the local belief
+	 * */
+	public boolean isBeliefValid() {
+		return isBeliefValid;
+	}
+
+	/**
+	 * @return the number of floor properties judged, the first being phi
+	 * */
+	public int getPropertyCount() {
+		return propertyDecisions.length;
+	}
+
+	/**
+	 * @param property the property, 0 for phi
+	 * @return 1 if the swarm holds the property true, -1 if false, 0 if
+	 *         undecided
+	 * */
+	public int getPropertyDecision(int property) {
+		return propertyDecisions[property];
+	}
+
+	/**
+	 * @return the number of belief table entries changed
+	 * */
+	public int getBeliefCount() {
+		return beliefIDs.length;
+	}
+
+	/**
+	 * @param i the index of the entry
+	 * @return the ID of the agent of a changed entry
+	 * */
+	public int getBeliefID(int i) {
+		return beliefIDs[i];
+	}
+
+	/**
+	 * @param i the index of the entry
+	 * @return the time stamp of a changed entry
+	 * */
+	public int getBeliefTimeStamp(int i) {
+		return beliefTimeStamps[i];
+	}
+
+	/**
+	 * @param i the index of the entry
+	 * @return the belief of a changed entry
+	 * */
+	public float getBelief(int i) {
+		return beliefs[i];
+	}
+
+	/**
+	 * @param i the index of the entry
+	 * @return the confidence of a changed entry
+	 * */
+	public float getConfidence(int i) {
+		return confidences[i];
+	}
+}
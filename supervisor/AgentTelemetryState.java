@@ -0,0 +1,176 @@
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This class represents the full state of an agent as rebuilt by a supervisor
+ * from the agent's telemetry records, applying each record's changes to the
+ * state built from the previous ones
+ */
+public class AgentTelemetryState {
+
+	private int agentID;
+
+	/* Sequence number of the last record applied, -1 if none */
+	private int lastSequence;
+
+	/* False from a missing record to the next key record */
+	private boolean isComplete;
+
+	private int time;
+	private int stateCode;
+	private boolean isActing;
+	private float d;
+	private boolean isBeliefValid;
+
+	/* The decisions of the swarm on the floor properties, phi first */
+	private int[] propertyDecisions = new int[0];
+
+	/* The belief table, by agent ID */
+	private Map<Integer, Entry> beliefTable = new TreeMap<>();
+
+	/**
+	 * Initialise the state of an agent, before any record
+	 *
+	 * @param agentID the ID of the agent
+	 * */
+	public AgentTelemetryState(int agentID) {
+		this.agentID = agentID;
+		this.lastSequence = -1;
+		this.isComplete = false;
+	}
+
+	/**
+	 * Apply the changes of the next record of the agent
+	 *
+	 * @param telemetry the record
+	 * */
+	public synchronized void apply(AgentTelemetry telemetry) {
+		if (telemetry.isKeyRecord()) {
+			beliefTable.clear();
+			isComplete = true;
+		} else if (telemetry.getSequence() != lastSequence + 1) {
+			isComplete = false;
+		}
+		lastSequence = telemetry.getSequence();
+
+		if (telemetry.hasChanged(AgentTelemetry.TIME))
+			time = telemetry.getTime();
+		if (telemetry.hasChanged(AgentTelemetry.STATE_CODE))
+			stateCode = telemetry.getStateCode();
+		if (telemetry.hasChanged(AgentTelemetry.ACTING))
+			isActing = telemetry.isActing();
+		if (telemetry.hasChanged(AgentTelemetry.D))
+			d = telemetry.getD();
+		if (telemetry.hasChanged(AgentTelemetry.BELIEF_VALID))
+			isBeliefValid = telemetry.isBeliefValid();
+		if (telemetry.hasChanged(AgentTelemetry.PROPERTIES)) {
+			propertyDecisions = new int[telemetry.getPropertyCount()];
+			for (int property = 0; property < propertyDecisions.length; property++)
+				propertyDecisions[property] = telemetry.getPropertyDecision(property);
+		}
+
+		for (int i = 0; i < telemetry.getBeliefCount(); i++)
+			beliefTable.put(telemetry.getBeliefID(i), new Entry(telemetry.getBeliefTimeStamp(i),
+					telemetry.getBelief(i), telemetry.getConfidence(i)));
+	}
+
+	/**
+	 * @return the ID of the agent
+	 * */
+	public int getAgentID() {
+		return agentID;
+	}
+
+	/**
+	 * @return false if a record was missed since the last key record
+	 * */
+	public synchronized boolean isComplete() {
+		return isComplete;
+	}
+
+	/**
+	 * @return the agent internal time
+	 * */
+	public synchronized int getTime() {
+		return time;
+	}
+
+	/**
+	 * @return 1 if broadcasting action, 0 if broadcasting beliefs
+	 * */
+	public synchronized int getStateCode() {
+		return stateCode;
+	}
+
+	/**
+	 * @return the action state
+	 * */
+	public synchronized boolean isActing() {
+		return isActing;
+	}
+
+	/**
+	 * @return the estimation of the state of the world
+	 * */
+	public synchronized float getD() {
+		return d;
+	}
+
+	/**
+	 * @return the validity of the local belief
+	 * */
+	public synchronized boolean isBeliefValid() {
+		return isBeliefValid;
+	}
+
+	/**
+	 * @param property the property, 0 for phi
+	 * @return 1 if the swarm holds the property true, -1 if false, 0 if
+	 *         undecided or unknown
+	 * */
+	public synchronized int getPropertyDecision(int property) {
+		return property < propertyDecisions.length ? propertyDecisions[property] : 0;
+	}
+
+	/**
+	 * @return the state as HTML, to be shown in a tool tip
+	 * */
+	public synchronized String toHtml() {
+		StringBuilder html = new StringBuilder("<html>");
+		html.append("Agent ").append(agentID).append(isComplete ? "" : " (incomplete)").append("<br>");
+		html.append("time ").append(time).append(", state code ").append(stateCode).append(", ")
+				.append(isActing ? "acting" : "not acting").append("<br>");
+		html.append("d = ").append(String.format("%.2f", d)).append(", local belief ")
+				.append(isBeliefValid ? "valid" : "not valid").append("<br>");
+		if (propertyDecisions.length > 1) {
+			html.append("properties:");
+			for (int property = 0; property < propertyDecisions.length; property++)
+				html.append(' ').append(property).append(propertyDecisions[property] > 0 ? " holds,"
+						: (propertyDecisions[property] < 0 ? " does not hold," : " undecided,"));
+			html.setLength(html.length() - 1);
+			html.append("<br>");
+		}
+		html.append("<table><tr><th>ID</th><th>time</th><th>belief</th><th>confidence</th></tr>");
+		for (Map.Entry<Integer, Entry> entry : beliefTable.entrySet()) {
+			Entry belief = entry.getValue();
+			html.append("<tr><td>").append(entry.getKey()).append("</td><td>").append(belief.timeStamp)
+					.append("</td><td>").append(String.format("%.2f", belief.belief)).append("</td><td>")
+					.append(String.format("%.2f", belief.confidence)).append("</td></tr>");
+		}
+		return html.append("</table></html>").toString();
+	}
+
+	/* Class to represent an entry of the belief table */
+	private static class Entry {
+
+		private int timeStamp;
+		private float belief;
+		private float confidence;
+
+		public Entry(int timeStamp, float belief, float confidence) {
+			this.timeStamp = timeStamp;
+			this.belief = belief;
+			this.confidence = confidence;
+		}
+	}
+}
@@ -0,0 +1,356 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This class represents a supervisor with no window, that receives the action
+ * states of the agents into a SwarmStateStore and streams the swarm state to
+ * any number of local subscribers over HTTP:
+ * <ul>
+ * <li>/snapshot : the whole swarm state, as a JSON object;</li>
+ * <li>/events : a Server-Sent Events stream, starting with the whole swarm
+ * state and followed by "agent" events for every agent status changed and
+ * "statistics" events for the aggregates;</li>
+ * <li>/parameters : the parameters of the swarm and of every agent, as a JSON
+ * object (see ParameterRollout). A POST with lines KEY=value rolls new
+ * parameters out, in the stages and with the soak time in milliseconds of the
+ * optional query, e.g. ?stages=0.1,0.5,1&amp;soak=30000.</li>
+ * </ul>
+ * Slow subscribers get their updates coalesced, never stalling the agents'
+ * connections. Regional supervisors (see SupervisorRelay) can connect in place
+ * of agents, making this the root supervisor of the whole swarm: their
+ * summaries are applied a whole summary at a time, and the aggregates of each
+ * region are added to the snapshot.
+ */
+public class HeadlessMonitor {
+
+	/* Default port of the HTTP server */
+	private static final int HTTP_PORT = 8080;
+
+	/* The swarm state */
+	private SwarmStateStore store;
+
+	/* The socket the agents connect to */
+	private ServerSocket serverSocket;
+
+	/* The last summary of every regional supervisor connected, by region */
+	private Map<Integer, RegionSummary> regions = new ConcurrentSkipListMap<>();
+
+	/* The rollouts of parameters to the agents connected */
+	private ParameterRollout rollout = new ParameterRollout();
+
+	/**
+	 * Launching the application, optionally with the HTTP port and the port
+	 * the agents connect to as arguments.
+	 */
+	public static void main(String[] args) {
+		try {
+			int httpPort = args.length > 0 ? Integer.parseInt(args[0]) : HTTP_PORT;
+			int agentPort = args.length > 1 ? Integer.parseInt(args[1]) : AgentParameters.PORT_NUMBER;
+			new HeadlessMonitor(agentPort, httpPort).acceptAgents();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Creating the application
+	 *
+	 * @param agentPort
+	 *            the port the agents, or the regional supervisors, connect to
+	 * @param httpPort
+	 *            the port of the HTTP server, 0 for no HTTP server
+	 */
+	public HeadlessMonitor(int agentPort, int httpPort) throws IOException {
+		store = new SwarmStateStore();
+		serverSocket = new ServerSocket(agentPort);
+
+		if (httpPort != 0) {
+			HttpServer httpServer = HttpServer.create(new InetSocketAddress(httpPort), 0);
+			httpServer.createContext("/snapshot", this::sendSnapshot);
+			httpServer.createContext("/events", this::streamEvents);
+			httpServer.createContext("/parameters", this::handleParameters);
+			/* One thread for every subscriber streaming */
+			httpServer.setExecutor(Executors.newCachedThreadPool());
+			httpServer.start();
+		}
+
+		/* Refreshing the transitions per second every second */
+		Thread ticker = new Thread(() -> {
+			while (true) {
+				try {
+					Thread.sleep(1000);
+				} catch (InterruptedException e) {
+					return;
+				}
+				store.tick();
+			}
+		}, "statisticsTicker");
+		ticker.setDaemon(true);
+		ticker.start();
+
+		System.out.println("Headless monitor: agents on port " + agentPort
+				+ (httpPort != 0 ? ", subscribers on http://localhost:" + httpPort + "/events" : ""));
+	}
+
+	/**
+	 * @return the swarm state
+	 */
+	public SwarmStateStore getStore() {
+		return store;
+	}
+
+	/**
+	 * @return the rollouts of parameters to the agents connected
+	 */
+	public ParameterRollout getRollout() {
+		return rollout;
+	}
+
+	/**
+	 * Start a thread for every agent's incoming socket, until the socket the
+	 * agents connect to fails
+	 */
+	public void acceptAgents() throws IOException {
+		while (true) {
+			Socket socket = serverSocket.accept();
+			new Thread(new ActionStateSocketHandler(socket)).start();
+		}
+	}
+
+	/* Writes the whole swarm state as a JSON object */
+	private void sendSnapshot(HttpExchange exchange) throws IOException {
+		byte[] body = snapshotJson(store.getSnapshot(), regions).getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	/* Writes the parameters of the swarm, or starts rolling new ones out */
+	private void handleParameters(HttpExchange exchange) throws IOException {
+		int code = 200;
+		String response;
+		if (exchange.getRequestMethod().equals("POST")) {
+			try {
+				Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+				Map<String, String> changes = new LinkedHashMap<>();
+				String body;
+				try (InputStream in = exchange.getRequestBody()) {
+					body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+				}
+				for (String line : body.split("\\R")) {
+					if (line.trim().isEmpty())
+						continue;
+					String[] change = line.split("=", 2);
+					if (change.length != 2)
+						throw new IllegalArgumentException("Bad line " + line);
+					changes.put(change[0].trim(), change[1].trim());
+				}
+				double[] stages = ParameterRollout.DEFAULT_STAGES;
+				if (query.containsKey("stages")) {
+					String[] shares = query.get("stages").split(",");
+					stages = new double[shares.length];
+					for (int i = 0; i < shares.length; i++)
+						stages[i] = Double.parseDouble(shares[i]);
+				}
+				long soakTime = query.containsKey("soak") ? Long.parseLong(query.get("soak"))
+						: ParameterRollout.DEFAULT_SOAK_TIME;
+				response = "{\"rollout\":" + rollout.start(changes, stages, soakTime).toJson() + "}";
+			} catch (IllegalArgumentException e) {
+				code = 400;
+				response = "{\"error\":\"" + e.getMessage().replace("\"", "'") + "\"}";
+			} catch (IllegalStateException e) {
+				code = 409;
+				response = "{\"error\":\"" + e.getMessage().replace("\"", "'") + "\"}";
+			}
+		} else {
+			response = rollout.statusJson();
+		}
+
+		byte[] body = response.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(code, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	/* Splits a URL query into its values, by name */
+	private static Map<String, String> parseQuery(String query) {
+		Map<String, String> values = new LinkedHashMap<>();
+		if (query == null)
+			return values;
+		for (String pair : query.split("&")) {
+			String[] value = pair.split("=", 2);
+			values.put(URLDecoder.decode(value[0], StandardCharsets.UTF_8),
+					value.length > 1 ? URLDecoder.decode(value[1], StandardCharsets.UTF_8) : "");
+		}
+		return values;
+	}
+
+	/* Streams the changes of the swarm state until the subscriber leaves */
+	private void streamEvents(HttpExchange exchange) throws IOException {
+		exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+		exchange.getResponseHeaders().add("Cache-Control", "no-cache");
+		exchange.sendResponseHeaders(200, 0);
+
+		SwarmStateStore.Subscriber subscriber = new SwarmStateStore.Subscriber();
+		/* Subscribing first, so no change is missed after the snapshot */
+		store.subscribe(subscriber);
+		List<AgentStatus> changes = new ArrayList<>();
+		StringBuilder events = new StringBuilder();
+
+		try (OutputStream out = exchange.getResponseBody()) {
+			SwarmStateStore.Snapshot snapshot = store.getSnapshot();
+			events.append("event: snapshot\ndata: ").append(snapshotJson(snapshot, regions)).append("\n\n");
+			out.write(events.toString().getBytes(StandardCharsets.UTF_8));
+			out.flush();
+
+			while (true) {
+				changes.clear();
+				boolean statistics = subscriber.take(changes, 15000);
+
+				events.setLength(0);
+				for (AgentStatus status : changes)
+					events.append("event: agent\ndata: ").append(status.toJson()).append("\n\n");
+				if (statistics)
+					events.append("event: statistics\ndata: ").append(store.getSnapshot().statisticsJson())
+							.append("\n\n");
+				/* Keeping the connection alive */
+				if (events.length() == 0)
+					events.append(":\n\n");
+
+				out.write(events.toString().getBytes(StandardCharsets.UTF_8));
+				out.flush();
+			}
+		} catch (IOException | InterruptedException e) {
+			// subscriber gone
+		} finally {
+			store.unsubscribe(subscriber);
+			System.out.println("Subscriber left, " + subscriber.getCoalesced() + " updates coalesced");
+		}
+	}
+
+	/* Formats the whole swarm state, with the aggregates of the regions, as a JSON object */
+	private static String snapshotJson(SwarmStateStore.Snapshot snapshot, Map<Integer, RegionSummary> regions) {
+		StringBuilder json = new StringBuilder();
+		json.append("{\"statistics\":").append(snapshot.statisticsJson()).append(",\"regions\":[");
+		boolean first = true;
+		for (RegionSummary region : regions.values()) {
+			if (!first)
+				json.append(',');
+			json.append(region.toJson());
+			first = false;
+		}
+		json.append("],\"agents\":[");
+		first = true;
+		for (AgentStatus status : snapshot.getAgents().values()) {
+			if (!first)
+				json.append(',');
+			json.append(status.toJson());
+			first = false;
+		}
+		return json.append("]}").toString();
+	}
+
+	/* Runnable class to handle each agent's, or regional supervisor's, socket */
+	private class ActionStateSocketHandler implements Runnable {
+
+		Socket socket;
+
+		/* Assigning the socket to this handler */
+		public ActionStateSocketHandler(Socket socket) {
+			this.socket = socket;
+		}
+
+		@Override
+		public void run() {
+			/* The agent on this socket, known from its first action state */
+			Integer agentID = null;
+			/* The region on this socket and the agents it reported */
+			Integer regionID = null;
+			Set<Integer> regionAgents = new HashSet<>();
+			/* Opened on the first action state asking for an echo, or parameters acknowledged */
+			ObjectOutputStream out = null;
+			try {
+				ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
+				while (true) {
+					Object received = in.readObject();
+
+					if (received instanceof RegionSummary) {
+						RegionSummary summary = (RegionSummary) received;
+						regionID = summary.getRegionID();
+						regions.put(regionID, summary);
+						for (int i = 0; i < summary.getAgentCount(); i++)
+							regionAgents.add(summary.getAgentID(i));
+						store.update(summary);
+						continue;
+					}
+
+					if (received instanceof ParameterAck) {
+						ParameterAck ack = (ParameterAck) received;
+						if (out == null)
+							out = new ObjectOutputStream(socket.getOutputStream());
+						rollout.acknowledged(ack, out);
+						continue;
+					}
+
+					/* Telemetry records are only shown by the window */
+					if (!(received instanceof ActionState))
+						continue;
+					ActionState state = (ActionState) received;
+					agentID = state.getAgentID();
+					store.update(state);
+
+					/* Sending back probes, once applied */
+					if (state.getProbeTime() != 0) {
+						if (out == null)
+							out = new ObjectOutputStream(socket.getOutputStream());
+						/* Shared with the rollouts */
+						synchronized (out) {
+							out.writeObject(state);
+							out.reset();
+							out.flush();
+						}
+					}
+				}
+			} catch (EOFException eofe) {
+				// do nothing
+			} catch (ClassNotFoundException | IOException e) {
+				e.printStackTrace();
+			} finally {
+				if (agentID != null) {
+					store.disconnected(agentID);
+					rollout.disconnected(agentID, out);
+				}
+				/* The agents of a region are silent as long as its supervisor is */
+				if (regionID != null) {
+					regions.remove(regionID);
+					for (int regionAgent : regionAgents)
+						store.disconnected(regionAgent);
+				}
+			}
+		}
+	}
+}
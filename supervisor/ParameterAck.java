@@ -0,0 +1,39 @@
+import java.io.Serializable;
+
+/**
+ * This class represents the parameters an agent runs with, sent to the
+ * supervisor when the agent connects and after every snapshot of the
+ * parameters the supervisor pushes, as an acknowledgement
+ */
+public class ParameterAck implements Serializable {
+
+	private static final long serialVersionUID = 5804417793262015617L;
+
+	private int agentID;
+	private AgentParameters parameters;
+
+	/**
+	 * Initialise an acknowledgement
+	 * 
+	 * @param agentID the ID of the agent
+	 * @param parameters the snapshot of the parameters the agent runs with
+	 * */
+	public ParameterAck(int agentID, AgentParameters parameters) {
+		this.agentID = agentID;
+		this.parameters = parameters;
+	}
+
+	/**
+	 * @return the ID of the agent
+	 * */
+	public int getAgentID() {
+		return agentID;
+	}
+
+	/**
+	 * @return the snapshot of the parameters the agent runs with
+	 * */
+	public AgentParameters getParameters() {
+		return parameters;
+	}
+}
@@ -0,0 +1,257 @@
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This class represents the rollout of new parameters to the agents connected
+ * to a supervisor, over their connections. An agent takes part once it reports
+ * the parameters it runs with (see ParameterAck), when it connects.
+ * <p>
+ * A rollout pushes a snapshot of the parameters, one version newer than the
+ * swarm's, in stages: to a share of the agents first, then to larger ones.
+ * After every stage it waits for the agents to acknowledge the snapshot and
+ * lets them run with it for a soak time; if an agent of the stage does not
+ * acknowledge it in time or leaves during the soak, the rollout stops and the
+ * agents updated are rolled back, with the previous parameters as an even
+ * newer snapshot. The agents connecting, or not acknowledging the swarm's
+ * snapshot, are brought to it, so that the swarm converges on one snapshot.
+ */
+public class ParameterRollout {
+
+	/* Default shares of the agents updated once each stage is over */
+	public static final double[] DEFAULT_STAGES = { 0.1, 0.5, 1 };
+
+	/* Default milliseconds the agents of a stage run with a snapshot before the next */
+	public static final long DEFAULT_SOAK_TIME = 30000;
+
+	/* Milliseconds an agent has to acknowledge a snapshot */
+	private static final long ACK_TIMEOUT = 10000;
+
+	/* The connections of the agents taking part, and the snapshot each acknowledged last */
+	private Map<Integer, ObjectOutputStream> connections = new TreeMap<>();
+	private Map<Integer, AgentParameters> acknowledged = new TreeMap<>();
+
+	/* The swarm's snapshot, the newest acknowledged out of a rollout */
+	private AgentParameters swarm = new AgentParameters();
+
+	/* The snapshot rolled out, null when no rollout is running */
+	private AgentParameters target;
+
+	/* How the last rollout went, and the stages done out of all */
+	private String status = "idle";
+	private int stagesDone;
+	private int stageCount;
+
+	/**
+	 * Record the parameters an agent runs with, making it take part in the
+	 * rollouts, and bring it to the swarm's snapshot if out of date
+	 *
+	 * @param ack
+	 *            the parameters of the agent
+	 * @param out
+	 *            the connection to the agent, locked by whoever writes to it
+	 */
+	public void acknowledged(ParameterAck ack, ObjectOutputStream out) {
+		AgentParameters behind = null;
+		synchronized (this) {
+			connections.put(ack.getAgentID(), out);
+			acknowledged.put(ack.getAgentID(), ack.getParameters());
+			long version = ack.getParameters().getVersion();
+			if (target == null && version > swarm.getVersion())
+				swarm = ack.getParameters();
+			else if (version < swarm.getVersion())
+				behind = swarm;
+			notifyAll();
+		}
+		if (behind != null)
+			send(out, behind);
+	}
+
+	/**
+	 * Forget an agent leaving
+	 *
+	 * @param agentID
+	 *            the ID of the agent
+	 * @param out
+	 *            the connection closed, not to forget the agent if reconnected
+	 */
+	public synchronized void disconnected(int agentID, ObjectOutputStream out) {
+		if (connections.get(agentID) != out)
+			return;
+		connections.remove(agentID);
+		acknowledged.remove(agentID);
+		notifyAll();
+	}
+
+	/**
+	 * Start rolling out new parameters in background
+	 *
+	 * @param changes
+	 *            the values of the parameters changed, by key (see
+	 *            AgentParameters.with)
+	 * @param stages
+	 *            the shares of the agents updated once each stage is over,
+	 *            increasing up to 1
+	 * @param soakTime
+	 *            the milliseconds the agents of a stage run with the new
+	 *            parameters before the next stage
+	 * @return the snapshot rolled out
+	 * @throws IllegalArgumentException
+	 *             if the parameters or the stages are wrong
+	 * @throws IllegalStateException
+	 *             if a rollout is running
+	 */
+	public synchronized AgentParameters start(Map<String, String> changes, double[] stages, long soakTime) {
+		if (target != null)
+			throw new IllegalStateException("Rollout of " + target + " running");
+		for (int i = 0; i < stages.length; i++) {
+			if (!(stages[i] > 0 && stages[i] <= 1) || (i > 0 && stages[i] <= stages[i - 1]))
+				throw new IllegalArgumentException("Stages must be increasing shares up to 1");
+		}
+		if (stages.length == 0 || stages[stages.length - 1] != 1)
+			throw new IllegalArgumentException("The last stage must update all the agents");
+		if (soakTime < 0)
+			throw new IllegalArgumentException("The soak time must not be negative");
+
+		AgentParameters previous = swarm;
+		AgentParameters next = previous.with(previous.getVersion() + 1, changes);
+		target = next;
+		stagesDone = 0;
+		stageCount = stages.length;
+		status = "running";
+
+		Thread rolloutThread = new Thread(() -> run(previous, next, stages, soakTime), "parameterRollout");
+		rolloutThread.setDaemon(true);
+		rolloutThread.start();
+		return next;
+	}
+
+	/* Rolls a snapshot out stage by stage, rolling back on the first failure */
+	private void run(AgentParameters previous, AgentParameters next, double[] stages, long soakTime) {
+		List<Integer> updated = new ArrayList<>();
+		String failure = null;
+		try {
+			for (int stage = 0; stage < stages.length && failure == null; stage++) {
+				/* The agents to update, in order of ID */
+				List<Integer> batch = new ArrayList<>();
+				synchronized (this) {
+					int count = (int) Math.ceil(stages[stage] * connections.size());
+					for (int agentID : connections.keySet()) {
+						if (updated.size() + batch.size() >= count)
+							break;
+						if (!updated.contains(agentID))
+							batch.add(agentID);
+					}
+				}
+				System.out.println("Rolling out " + next + " to agents " + batch);
+				for (int agentID : batch)
+					send(agentID, next);
+				updated.addAll(batch);
+
+				failure = awaitAcks(batch, next.getVersion());
+				if (failure == null && soakTime > 0) {
+					Thread.sleep(soakTime);
+					/* Healthy agents are still there, and still running the snapshot */
+					failure = awaitAcks(updated, next.getVersion());
+					if (failure != null)
+						failure = "during the soak, " + failure;
+				}
+				if (failure == null) {
+					synchronized (this) {
+						stagesDone = stage + 1;
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			failure = "interrupted";
+		}
+
+		List<Integer> behind = new ArrayList<>();
+		synchronized (this) {
+			if (failure == null) {
+				swarm = next;
+				status = "completed";
+			} else {
+				/* The previous parameters as a newer snapshot, to take over the one rolled out */
+				swarm = previous.withVersion(next.getVersion() + 1);
+				status = "rolled back at stage " + (stagesDone + 1) + ": " + failure;
+			}
+			target = null;
+			for (Map.Entry<Integer, AgentParameters> agent : acknowledged.entrySet()) {
+				if (agent.getValue().getVersion() < swarm.getVersion())
+					behind.add(agent.getKey());
+			}
+		}
+		System.out.println("Rollout of " + next + " " + status);
+		/* The agents updated, and those joined or left behind meanwhile */
+		for (int agentID : behind)
+			send(agentID, swarm);
+	}
+
+	/* Waits for agents to acknowledge a version, returning what went wrong if they do not */
+	private synchronized String awaitAcks(List<Integer> agentIDs, long version) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + ACK_TIMEOUT;
+		while (true) {
+			List<Integer> missing = new ArrayList<>();
+			for (int agentID : agentIDs) {
+				AgentParameters parameters = acknowledged.get(agentID);
+				if (parameters == null || parameters.getVersion() < version)
+					missing.add(agentID);
+			}
+			long left = deadline - System.currentTimeMillis();
+			if (missing.isEmpty())
+				return null;
+			if (left <= 0)
+				return "agents " + missing + " not running version " + version;
+			wait(left);
+		}
+	}
+
+	/* Pushes a snapshot to an agent, if still connected */
+	private void send(int agentID, AgentParameters parameters) {
+		ObjectOutputStream out;
+		synchronized (this) {
+			out = connections.get(agentID);
+		}
+		if (out != null)
+			send(out, parameters);
+	}
+
+	/* Pushes a snapshot over a connection, a failure left to its reader */
+	private static void send(ObjectOutputStream out, AgentParameters parameters) {
+		try {
+			synchronized (out) {
+				out.writeObject(parameters);
+				out.reset();
+				out.flush();
+			}
+		} catch (IOException e) {
+			System.out.println("Cannot push " + parameters + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return the state of the rollouts as a JSON object: the swarm's
+	 *         snapshot, the one rolled out if any, how the last rollout went
+	 *         and the version every agent runs
+	 */
+	public synchronized String statusJson() {
+		StringBuilder json = new StringBuilder();
+		json.append("{\"status\":\"").append(status.replace("\"", "'")).append("\",\"stagesDone\":")
+				.append(stagesDone).append(",\"stages\":").append(stageCount).append(",\"swarm\":")
+				.append(swarm.toJson()).append(",\"target\":").append(target == null ? "null" : target.toJson())
+				.append(",\"agents\":[");
+		boolean first = true;
+		for (Map.Entry<Integer, AgentParameters> agent : acknowledged.entrySet()) {
+			if (!first)
+				json.append(',');
+			json.append("{\"agentID\":").append(agent.getKey()).append(",\"version\":")
+					.append(agent.getValue().getVersion()).append('}');
+			first = false;
+		}
+		return json.append("]}").toString();
+	}
+}
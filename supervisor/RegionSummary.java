@@ -0,0 +1,143 @@
+import java.io.Serializable;
+
+/**
+ * This class represents a summary of a region of the swarm, sent periodically
+ * by a regional supervisor (see SupervisorRelay) to a root supervisor over the
+ * socket the agents would use. It holds the aggregates of the region and the
+ * status of the agents changed since the previous summary, coalesced to the
+ * last status of each agent, apart from key records, that hold every agent of
+ * the region and let the root start over
+ */
+public class RegionSummary implements Serializable {
+
+	private static final long serialVersionUID = -2871135504736412980L;
+
+	private int regionID;
+	private int sequence;
+	private boolean isKeyRecord;
+
+	private int acting;
+	private int notActing;
+	private int silent;
+	private long transitions;
+
+	/* The status of the agents changed, as parallel arrays */
+	private int[] agentIDs;
+	private byte[] states;
+	private long[] lastSeen;
+	private boolean[] connected;
+
+	/**
+	 * Initialise a region summary
+	 *
+	 * @param regionID the ID of the region
+	 * @param sequence the number of summaries the region sent before this one
+	 * @param isKeyRecord true if the summary holds every agent of the region
+	 * @param acting the number of connected agents acting in the region
+	 * @param notActing the number of connected agents not acting in the region
+	 * @param silent the number of agents of the region whose connection was
+	 *            closed
+	 * @param transitions the action state transitions in the region since the
+	 *            previous summary
+	 * @param agentIDs the IDs of the agents changed
+	 * @param states the action states of the agents changed
+	 * @param lastSeen the times the regional supervisor last heard from the
+	 *            agents changed, in milliseconds
+	 * @param connected true for the agents changed still connected
+	 * */
+	public RegionSummary(int regionID, int sequence, boolean isKeyRecord, int acting, int notActing, int silent,
+			long transitions, int[] agentIDs, byte[] states, long[] lastSeen, boolean[] connected) {
+		this.regionID = regionID;
+		this.sequence = sequence;
+		this.isKeyRecord = isKeyRecord;
+		this.acting = acting;
+		this.notActing = notActing;
+		this.silent = silent;
+		this.transitions = transitions;
+		this.agentIDs = agentIDs;
+		this.states = states;
+		this.lastSeen = lastSeen;
+		this.connected = connected;
+	}
+
+	/**
+	 * @return the ID of the region this summary refers to
+	 * */
+	public int getRegionID() {
+		return regionID;
+	}
+
+	/**
+	 * @return the number of summaries the region sent before this one
+	 * */
+	public int getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return true if the summary holds every agent of the region
+	 * */
+	public boolean isKeyRecord() {
+		return isKeyRecord;
+	}
+
+	/**
+	 * @return the number of connected agents acting in the region
+	 * */
+	public int getActing() {
+		return acting;
+	}
+
+	/**
+	 * @return the number of connected agents not acting in the region
+	 * */
+	public int getNotActing() {
+		return notActing;
+	}
+
+	/**
+	 * @return the number of agents of the region whose connection was closed
+	 * */
+	public int getSilent() {
+		return silent;
+	}
+
+	/**
+	 * @return the action state transitions in the region since the previous
+	 *         summary, including the ones coalesced
+	 * */
+	public long getTransitions() {
+		return transitions;
+	}
+
+	/**
+	 * @return the number of agents changed in this summary
+	 * */
+	public int getAgentCount() {
+		return agentIDs.length;
+	}
+
+	/**
+	 * @param i the index of an agent changed
+	 * @return the ID of the agent changed
+	 * */
+	public int getAgentID(int i) {
+		return agentIDs[i];
+	}
+
+	/**
+	 * @param i the index of an agent changed
+	 * @return the status of the agent changed
+	 * */
+	public AgentStatus getAgent(int i) {
+		return new AgentStatus(agentIDs[i], states[i], lastSeen[i], connected[i]);
+	}
+
+	/**
+	 * @return the aggregates as a JSON object
+	 * */
+	public String toJson() {
+		return "{\"region\":" + regionID + ",\"acting\":" + acting + ",\"notActing\":" + notActing + ",\"silent\":"
+				+ silent + "}";
+	}
+}
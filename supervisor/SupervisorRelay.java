@@ -0,0 +1,172 @@
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents a regional supervisor: a HeadlessMonitor that the
+ * agents of a region connect to, and that forwards the state of the region to
+ * a root supervisor (an ActionMonitor or a HeadlessMonitor) as RegionSummary
+ * objects. A summary is sent at most every FLUSH_PERIOD, with the aggregates of
+ * the region and the last status of every agent changed since the previous
+ * one, so that the root receives a few objects per second from each region
+ * however many transitions the agents send.
+ * <p>
+ * The region keeps working if the root is gone, serving its own subscribers
+ * if it has an HTTP port: the connection to the root is tried again with
+ * increasing delays, starting over with a key record holding every agent.
+ */
+public class SupervisorRelay implements Runnable {
+
+	/* Minimum time between two summaries, in milliseconds */
+	private static final int FLUSH_PERIOD = 250;
+
+	/* Delays before connecting to the root again, in milliseconds */
+	private static final int MIN_RECONNECT_DELAY = 500;
+	private static final int MAX_RECONNECT_DELAY = 16000;
+
+	/* The state of the region */
+	private SwarmStateStore store;
+
+	/* The region and the root supervisor */
+	private int regionID;
+	private String rootHost;
+	private int rootPort;
+
+	/* Summaries sent, and transitions of the region reported, since the start */
+	private int sequence;
+	private long transitionsSent;
+
+	/**
+	 * Launching a regional supervisor, with options as key=value pairs: root
+	 * (the address of the root supervisor, optionally followed by :port,
+	 * required), region (the region ID, 1), port (the port the agents connect
+	 * to, PORT_NUMBER) and http (the port of the HTTP server of the region, 0
+	 * for none)
+	 */
+	public static void main(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			String[] pair = arg.split("=", 2);
+			if (pair.length == 2)
+				options.put(pair[0], pair[1]);
+		}
+		if (!options.containsKey("root"))
+			throw new IllegalArgumentException("Missing root=<host[:port]>");
+
+		String[] root = options.get("root").split(":", 2);
+		int regionID = Integer.parseInt(options.getOrDefault("region", "1"));
+		try {
+			HeadlessMonitor monitor = new HeadlessMonitor(
+					Integer.parseInt(options.getOrDefault("port", "" + AgentParameters.PORT_NUMBER)),
+					Integer.parseInt(options.getOrDefault("http", "0")));
+
+			Thread relayThread = new Thread(new SupervisorRelay(monitor.getStore(), regionID, root[0],
+					root.length > 1 ? Integer.parseInt(root[1]) : AgentParameters.PORT_NUMBER), "supervisorRelay");
+			relayThread.setDaemon(true);
+			relayThread.start();
+
+			monitor.acceptAgents();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Initialise a relay of the state of a region to a root supervisor
+	 *
+	 * @param store
+	 *            the state of the region
+	 * @param regionID
+	 *            the ID of the region
+	 * @param rootHost
+	 *            the address of the root supervisor
+	 * @param rootPort
+	 *            the port of the root supervisor
+	 */
+	public SupervisorRelay(SwarmStateStore store, int regionID, String rootHost, int rootPort) {
+		this.store = store;
+		this.regionID = regionID;
+		this.rootHost = rootHost;
+		this.rootPort = rootPort;
+	}
+
+	@Override
+	public void run() {
+		SwarmStateStore.Subscriber subscriber = new SwarmStateStore.Subscriber();
+		/* Subscribing first, so no change is missed after a key record */
+		store.subscribe(subscriber);
+		List<AgentStatus> changes = new ArrayList<>();
+		int reconnectDelay = MIN_RECONNECT_DELAY;
+
+		try {
+			while (true) {
+				try (Socket socket = new Socket(rootHost, rootPort)) {
+					socket.setTcpNoDelay(true);
+					ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
+					System.out.println("Region " + regionID + " connected to the root supervisor");
+
+					/* Starting over, with every agent of the region */
+					changes.clear();
+					subscriber.take(changes, 0);
+					SwarmStateStore.Snapshot snapshot = store.getSnapshot();
+					transitionsSent = snapshot.getTransitions();
+					send(out, summary(true, snapshot, snapshot.getAgents().values()));
+					reconnectDelay = MIN_RECONNECT_DELAY;
+
+					while (true) {
+						/* Letting the changes coalesce */
+						Thread.sleep(FLUSH_PERIOD);
+						changes.clear();
+						/* The aggregates change at least every second, keeping the connection alive */
+						subscriber.take(changes, 2 * FLUSH_PERIOD);
+						send(out, summary(false, store.getSnapshot(), changes));
+					}
+				} catch (IOException e) {
+					System.out.println("Region " + regionID + ": root supervisor offline, " + e.getMessage());
+				}
+
+				Thread.sleep(reconnectDelay);
+				reconnectDelay = Math.min(2 * reconnectDelay, MAX_RECONNECT_DELAY);
+			}
+		} catch (InterruptedException e) {
+			// stopping
+		} finally {
+			store.unsubscribe(subscriber);
+		}
+	}
+
+	/* Builds a summary of the region, with the aggregates of a snapshot */
+	private RegionSummary summary(boolean isKeyRecord, SwarmStateStore.Snapshot snapshot,
+			Collection<AgentStatus> statuses) {
+		int count = statuses.size();
+		int[] agentIDs = new int[count];
+		byte[] states = new byte[count];
+		long[] lastSeen = new long[count];
+		boolean[] connected = new boolean[count];
+		int i = 0;
+		for (AgentStatus status : statuses) {
+			agentIDs[i] = status.getAgentID();
+			states[i] = (byte) status.getState();
+			lastSeen[i] = status.getLastSeen();
+			connected[i] = status.isConnected();
+			i++;
+		}
+
+		long transitions = snapshot.getTransitions() - transitionsSent;
+		transitionsSent = snapshot.getTransitions();
+		return new RegionSummary(regionID, sequence++, isKeyRecord, snapshot.getActing(), snapshot.getNotActing(),
+				snapshot.getSilent(), transitions, agentIDs, states, lastSeen, connected);
+	}
+
+	/* Writes a summary to the root, not keeping references to it */
+	private static void send(ObjectOutputStream out, RegionSummary summary) throws IOException {
+		out.writeObject(summary);
+		out.reset();
+		out.flush();
+	}
+}
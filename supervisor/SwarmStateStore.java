@@ -0,0 +1,339 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class represents the state of the swarm as known by a supervisor. It is
+ * kept as an immutable snapshot, replaced at every update (copy-on-write), so
+ * that any number of readers can read it without locking. Aggregates over the
+ * swarm are kept incrementally, and the changes are pushed to the
+ * subscribers, that are never waited for: the changes a slow subscriber has
+ * not written yet are coalesced, keeping only the last status of each agent.
+ * The store of a root supervisor is also updated with the summaries of the
+ * regional supervisors, a whole summary at a time.
+ */
+public class SwarmStateStore {
+
+	/* Seconds over which the transitions per second are averaged */
+	private static final int RATE_WINDOW = 10;
+
+	/* The current snapshot */
+	private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(
+			new Snapshot(Collections.emptyMap(), 0, 0, 0, 0, 0, 0));
+
+	/* The subscribers to the changes */
+	private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+	/* Transitions counted in each of the last RATE_WINDOW seconds */
+	private final long[] transitionBuckets = new long[RATE_WINDOW];
+	private final long[] bucketSeconds = new long[RATE_WINDOW];
+
+	/* Transitions counted since the start */
+	private long transitions;
+
+	/**
+	 * Apply an action state received from an agent
+	 *
+	 * @param state
+	 *            the action state received
+	 */
+	public void update(ActionState state) {
+		long now = System.currentTimeMillis();
+		AgentStatus status = new AgentStatus(state.getAgentID(), state.getState(), now, true);
+		synchronized (this) {
+			AgentStatus previous = snapshot.get().getAgents().get(state.getAgentID());
+			if (previous != null && previous.getState() != state.getState())
+				countTransitions(now, 1);
+			publish(Collections.singletonList(status), now);
+		}
+	}
+
+	/**
+	 * Apply the summary of a region received from a regional supervisor. The
+	 * agents changed are published at once, and the transitions of the region
+	 * are counted, including the ones coalesced by the regional supervisor
+	 *
+	 * @param summary
+	 *            the summary received
+	 */
+	public void update(RegionSummary summary) {
+		List<AgentStatus> statuses = new ArrayList<>(summary.getAgentCount());
+		for (int i = 0; i < summary.getAgentCount(); i++)
+			statuses.add(summary.getAgent(i));
+		long now = System.currentTimeMillis();
+		synchronized (this) {
+			if (summary.getTransitions() > 0)
+				countTransitions(now, summary.getTransitions());
+			if (!statuses.isEmpty())
+				publish(statuses, now);
+		}
+	}
+
+	/**
+	 * Mark an agent as silent, as its connection was closed
+	 *
+	 * @param agentID
+	 *            the ID of the agent
+	 */
+	public void disconnected(int agentID) {
+		synchronized (this) {
+			AgentStatus previous = snapshot.get().getAgents().get(agentID);
+			if (previous == null || !previous.isConnected())
+				return;
+			AgentStatus status = new AgentStatus(agentID, previous.getState(), previous.getLastSeen(), false);
+			publish(Collections.singletonList(status), System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * Refresh the transitions per second, that change with time only, and
+	 * push the aggregates to the subscribers
+	 */
+	public void tick() {
+		synchronized (this) {
+			Snapshot current = snapshot.get();
+			snapshot.set(new Snapshot(current.getAgents(), current.getActing(), current.getNotActing(),
+					current.getSilent(), transitionsPerSecond(System.currentTimeMillis()), transitions,
+					current.getVersion() + 1));
+		}
+		for (Subscriber subscriber : subscribers)
+			subscriber.offerStatistics();
+	}
+
+	/**
+	 * @return the current snapshot of the swarm state
+	 */
+	public Snapshot getSnapshot() {
+		return snapshot.get();
+	}
+
+	/**
+	 * Start pushing the changes to a subscriber
+	 *
+	 * @param subscriber
+	 *            the subscriber
+	 */
+	public void subscribe(Subscriber subscriber) {
+		subscribers.add(subscriber);
+	}
+
+	/**
+	 * Stop pushing the changes to a subscriber
+	 *
+	 * @param subscriber
+	 *            the subscriber
+	 */
+	public void unsubscribe(Subscriber subscriber) {
+		subscribers.remove(subscriber);
+	}
+
+	/*
+	 * Replaces the snapshot, updating the aggregates, and queues the changes
+	 * for the subscribers (in order, as the lock is held). The agents are
+	 * copied once, whatever the number of changes. Must hold the lock
+	 */
+	private void publish(List<AgentStatus> statuses, long now) {
+		Snapshot current = snapshot.get();
+		int acting = current.getActing();
+		int notActing = current.getNotActing();
+		int silent = current.getSilent();
+
+		Map<Integer, AgentStatus> agents = new HashMap<>(current.getAgents());
+		for (AgentStatus status : statuses) {
+			AgentStatus previous = agents.put(status.getAgentID(), status);
+			if (previous != null) {
+				if (!previous.isConnected())
+					silent--;
+				else if (previous.getState() == 1)
+					acting--;
+				else
+					notActing--;
+			}
+			if (!status.isConnected())
+				silent++;
+			else if (status.getState() == 1)
+				acting++;
+			else
+				notActing++;
+		}
+		snapshot.set(new Snapshot(Collections.unmodifiableMap(agents), acting, notActing, silent,
+				transitionsPerSecond(now), transitions, current.getVersion() + 1));
+
+		for (Subscriber subscriber : subscribers) {
+			for (AgentStatus status : statuses)
+				subscriber.offer(status);
+		}
+	}
+
+	/* Must hold the lock */
+	private void countTransitions(long now, long count) {
+		long second = now / 1000;
+		int bucket = (int) (second % RATE_WINDOW);
+		if (bucketSeconds[bucket] != second) {
+			bucketSeconds[bucket] = second;
+			transitionBuckets[bucket] = 0;
+		}
+		transitionBuckets[bucket] += count;
+		transitions += count;
+	}
+
+	/* Must hold the lock */
+	private double transitionsPerSecond(long now) {
+		long second = now / 1000;
+		long transitions = 0;
+		for (int bucket = 0; bucket < RATE_WINDOW; bucket++) {
+			if (second - bucketSeconds[bucket] < RATE_WINDOW)
+				transitions += transitionBuckets[bucket];
+		}
+		return (double) transitions / RATE_WINDOW;
+	}
+
+	/**
+	 * This class represents an immutable snapshot of the swarm state, with
+	 * its aggregates
+	 */
+	public static final class Snapshot {
+
+		private final Map<Integer, AgentStatus> agents;
+		private final int acting;
+		private final int notActing;
+		private final int silent;
+		private final double transitionsPerSecond;
+		private final long transitions;
+		private final long version;
+
+		private Snapshot(Map<Integer, AgentStatus> agents, int acting, int notActing, int silent,
+				double transitionsPerSecond, long transitions, long version) {
+			this.agents = agents;
+			this.acting = acting;
+			this.notActing = notActing;
+			this.silent = silent;
+			this.transitionsPerSecond = transitionsPerSecond;
+			this.transitions = transitions;
+			this.version = version;
+		}
+
+		/**
+		 * @return the status of every agent known, by ID
+		 */
+		public Map<Integer, AgentStatus> getAgents() {
+			return agents;
+		}
+
+		/**
+		 * @return the number of connected agents acting
+		 */
+		public int getActing() {
+			return acting;
+		}
+
+		/**
+		 * @return the number of connected agents not acting
+		 */
+		public int getNotActing() {
+			return notActing;
+		}
+
+		/**
+		 * @return the number of agents whose connection was closed
+		 */
+		public int getSilent() {
+			return silent;
+		}
+
+		/**
+		 * @return the action state transitions per second, averaged over the
+		 *         last seconds
+		 */
+		public double getTransitionsPerSecond() {
+			return transitionsPerSecond;
+		}
+
+		/**
+		 * @return the action state transitions counted since the start
+		 */
+		public long getTransitions() {
+			return transitions;
+		}
+
+		/**
+		 * @return the number of updates before this snapshot
+		 */
+		public long getVersion() {
+			return version;
+		}
+
+		/**
+		 * @return the aggregates as a JSON object
+		 */
+		public String statisticsJson() {
+			return "{\"version\":" + version + ",\"acting\":" + acting + ",\"notActing\":" + notActing
+					+ ",\"silent\":" + silent + ",\"transitionsPerSecond\":" + transitionsPerSecond
+					+ ",\"transitions\":" + transitions + "}";
+		}
+	}
+
+	/**
+	 * This class represents a subscriber to the changes of the swarm state.
+	 * The changes are queued without waiting, coalescing the ones of the same
+	 * agent, and taken by the thread writing them to the subscriber
+	 */
+	public static class Subscriber {
+
+		/* Last status of the agents changed since the last take, in order */
+		private LinkedHashMap<Integer, AgentStatus> pending = new LinkedHashMap<>();
+
+		/* True if the aggregates changed since the last take */
+		private boolean isStatisticsPending;
+
+		/* Number of changes replaced by a later one before being taken */
+		private long coalesced;
+
+		/* Queues the status of an agent, replacing the one not taken yet */
+		private synchronized void offer(AgentStatus status) {
+			if (pending.remove(status.getAgentID()) != null)
+				coalesced++;
+			pending.put(status.getAgentID(), status);
+			isStatisticsPending = true;
+			notifyAll();
+		}
+
+		/* Queues the aggregates */
+		private synchronized void offerStatistics() {
+			isStatisticsPending = true;
+			notifyAll();
+		}
+
+		/**
+		 * Wait for changes and take them
+		 *
+		 * @param changes
+		 *            the list to add the statuses changed to
+		 * @param timeoutMillis
+		 *            the maximum time to wait, 0 not to wait
+		 * @return true if the aggregates changed too
+		 */
+		public synchronized boolean take(List<AgentStatus> changes, long timeoutMillis) throws InterruptedException {
+			if (pending.isEmpty() && !isStatisticsPending && timeoutMillis > 0)
+				wait(timeoutMillis);
+			changes.addAll(pending.values());
+			pending.clear();
+			boolean statistics = isStatisticsPending;
+			isStatisticsPending = false;
+			return statistics;
+		}
+
+		/**
+		 * @return the number of changes replaced by a later one before being
+		 *         written
+		 */
+		public synchronized long getCoalesced() {
+			return coalesced;
+		}
+	}
+}
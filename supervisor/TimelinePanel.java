@@ -0,0 +1,251 @@
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * This class represents a panel showing the action state history of every
+ * agent as a timeline, one row for each agent, over a selectable time window.
+ * The window follows the current time, or can be panned back by dragging.
+ * Only the visible rows are drawn, each summarised one pixel column at a time
+ * by its TransitionHistory, so that the cost of drawing does not depend on the
+ * number of agents or transitions.
+ */
+public class TimelinePanel extends JPanel {
+
+	private static final long serialVersionUID = 2270517930416376614L;
+
+	/* Height of an agent's row and width of its ID, in pixels */
+	private static final int ROW_HEIGHT = 12;
+	private static final int ID_WIDTH = 50;
+
+	/* The windows that can be selected, in milliseconds */
+	private static final String[] WINDOW_NAMES = { "1 minute", "10 minutes", "1 hour", "6 hours", "24 hours" };
+	private static final long[] WINDOWS = { 60000L, 600000L, 3600000L, 6 * 3600000L, 24 * 3600000L };
+
+	/* Colour of the columns where the state changes */
+	private static final Color MIXED_COLOR = Color.ORANGE;
+
+	/* The history of every agent, and the agents' IDs in row order */
+	private Map<Integer, TransitionHistory> histories = new ConcurrentHashMap<>();
+	private List<Integer> rows = new ArrayList<>();
+
+	/* The window shown, and its end time, 0 to follow the current time */
+	private long window = WINDOWS[1];
+	private long end = 0;
+
+	/* The rows, and the label showing the window */
+	private Rows rowsComponent = new Rows();
+	private JLabel windowLabel = new JLabel();
+
+	/* Reused by the drawing */
+	private byte[] columns = new byte[0];
+
+	private SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
+
+	/**
+	 * Initialise the panel, with its controls
+	 */
+	public TimelinePanel() {
+		super(new BorderLayout());
+
+		JComboBox<String> windowBox = new JComboBox<>(WINDOW_NAMES);
+		windowBox.setSelectedIndex(1);
+		windowBox.addActionListener(e -> {
+			window = WINDOWS[windowBox.getSelectedIndex()];
+			rowsComponent.repaint();
+		});
+
+		JButton liveButton = new JButton("Live");
+		liveButton.addActionListener(e -> {
+			end = 0;
+			rowsComponent.repaint();
+		});
+
+		JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 5));
+		controls.add(new JLabel("Window:"));
+		controls.add(windowBox);
+		controls.add(liveButton);
+		controls.add(windowLabel);
+
+		/* Dragging pans the window */
+		MouseAdapter panning = new MouseAdapter() {
+
+			private int lastX;
+
+			@Override
+			public void mousePressed(MouseEvent e) {
+				lastX = e.getX();
+			}
+
+			@Override
+			public void mouseDragged(MouseEvent e) {
+				int width = rowsComponent.getWidth() - ID_WIDTH;
+				if (width <= 0)
+					return;
+				long shownEnd = end == 0 ? System.currentTimeMillis() : end;
+				end = Math.min(shownEnd - (e.getX() - lastX) * window / width, System.currentTimeMillis());
+				lastX = e.getX();
+				rowsComponent.repaint();
+			}
+		};
+		rowsComponent.addMouseListener(panning);
+		rowsComponent.addMouseMotionListener(panning);
+
+		add(controls, BorderLayout.NORTH);
+		add(new JScrollPane(rowsComponent, JScrollPane.VERTICAL_SCROLLBAR_ALWAYS,
+				JScrollPane.HORIZONTAL_SCROLLBAR_NEVER), BorderLayout.CENTER);
+
+		/* Following the current time */
+		new Timer(1000, e -> {
+			if (end == 0 && isShowing())
+				rowsComponent.repaint();
+		}).start();
+	}
+
+	/**
+	 * Record the action state of an agent. Can be called from any thread
+	 *
+	 * @param agentID
+	 *            the ID of the agent
+	 * @param time
+	 *            the time the state was received, in milliseconds
+	 * @param state
+	 *            the action state
+	 */
+	public void record(int agentID, long time, int state) {
+		TransitionHistory history = histories.get(agentID);
+		if (history == null) {
+			history = histories.computeIfAbsent(agentID, id -> {
+				/* Adding the row on the event dispatch thread */
+				SwingUtilities.invokeLater(() -> addRow(id));
+				return new TransitionHistory();
+			});
+		}
+		history.record(time, state);
+	}
+
+	/* Adds the row of an agent, in ID order */
+	private void addRow(int agentID) {
+		int index = Collections.binarySearch(rows, agentID);
+		if (index < 0)
+			rows.add(-index - 1, agentID);
+		rowsComponent.revalidate();
+		rowsComponent.repaint();
+	}
+
+	/* Component drawing the visible rows */
+	private class Rows extends JComponent implements Scrollable {
+
+		private static final long serialVersionUID = -3184361542932069415L;
+
+		@Override
+		protected void paintComponent(Graphics g) {
+			Rectangle clip = g.getClipBounds();
+			g.setColor(Color.LIGHT_GRAY);
+			g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+			int width = getWidth() - ID_WIDTH;
+			if (width <= 0)
+				return;
+			if (columns.length != width)
+				columns = new byte[width];
+
+			long to = end == 0 ? System.currentTimeMillis() : end;
+			long from = to - window;
+			windowLabel.setText(timeFormat.format(new Date(from)) + " - " + timeFormat.format(new Date(to))
+					+ (end == 0 ? " (live)" : ""));
+
+			int firstRow = Math.max(clip.y / ROW_HEIGHT, 0);
+			int lastRow = Math.min((clip.y + clip.height) / ROW_HEIGHT, rows.size() - 1);
+			for (int row = firstRow; row <= lastRow; row++) {
+				int agentID = rows.get(row);
+				int y = row * ROW_HEIGHT;
+
+				g.setColor(Color.BLACK);
+				g.drawString("" + agentID, 2, y + ROW_HEIGHT - 2);
+
+				histories.get(agentID).summarise(from, to, columns);
+
+				/* Drawing the runs of columns of the same state */
+				int runStart = 0;
+				for (int column = 1; column <= width; column++) {
+					if (column < width && columns[column] == columns[runStart])
+						continue;
+					Color color = colour(columns[runStart]);
+					if (color != null) {
+						g.setColor(color);
+						g.fillRect(ID_WIDTH + runStart, y + 1, column - runStart, ROW_HEIGHT - 2);
+					}
+					runStart = column;
+				}
+			}
+		}
+
+		@Override
+		public Dimension getPreferredSize() {
+			return new Dimension(ID_WIDTH + 600, rows.size() * ROW_HEIGHT);
+		}
+
+		@Override
+		public Dimension getPreferredScrollableViewportSize() {
+			return new Dimension(ID_WIDTH + 600, 30 * ROW_HEIGHT);
+		}
+
+		@Override
+		public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+			return ROW_HEIGHT;
+		}
+
+		@Override
+		public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+			return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+		}
+
+		@Override
+		public boolean getScrollableTracksViewportWidth() {
+			return true;
+		}
+
+		@Override
+		public boolean getScrollableTracksViewportHeight() {
+			return false;
+		}
+	}
+
+	/* Returns the colour of a column, null for no colour */
+	private static Color colour(byte state) {
+		switch (state) {
+		case 0:
+			return Color.YELLOW;
+		case 1:
+			return Color.GREEN;
+		case TransitionHistory.MIXED:
+			return MIXED_COLOR;
+		default:
+			return null;
+		}
+	}
+}
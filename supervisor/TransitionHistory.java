@@ -0,0 +1,117 @@
+import java.util.Arrays;
+
+/**
+ * This class represents the history of an agent's action state, as a ring
+ * buffer of the last CAPACITY state transitions and their times, kept in
+ * primitive arrays. The oldest transitions are overwritten once full.
+ * <p>
+ * The history is summarised over a time window one pixel column at a time:
+ * each column is found with a binary search on the transition times, so the
+ * cost only depends on the number of columns, whatever the number of
+ * transitions in the window.
+ */
+public class TransitionHistory {
+
+	/** State of a column where the state is not known */
+	public static final byte UNKNOWN = -1;
+
+	/** State of a column where the state changes */
+	public static final byte MIXED = 2;
+
+	/* Number of transitions kept */
+	private static final int CAPACITY = 4096;
+
+	/* Transition times in milliseconds and the states entered */
+	private final long[] times = new long[CAPACITY];
+	private final byte[] states = new byte[CAPACITY];
+
+	/* Physical index of the oldest transition and number of transitions */
+	private int start;
+	private int count;
+
+	/**
+	 * Record the state of the agent, if it changed. Times going back are
+	 * taken as the last time recorded
+	 *
+	 * @param time
+	 *            the time of the state, in milliseconds
+	 * @param state
+	 *            the action state
+	 */
+	public synchronized void record(long time, int state) {
+		if (count > 0) {
+			int last = physical(count - 1);
+			if (states[last] == state)
+				return;
+			time = Math.max(time, times[last]);
+		}
+
+		int index;
+		if (count < CAPACITY) {
+			index = physical(count);
+			count++;
+		} else {
+			index = start;
+			start = (start + 1) % CAPACITY;
+		}
+		times[index] = time;
+		states[index] = (byte) state;
+	}
+
+	/**
+	 * Summarise the history over a time window, one value for each column:
+	 * the state over the column, MIXED if it changes within the column or
+	 * UNKNOWN if it is before the oldest transition kept
+	 *
+	 * @param from
+	 *            the time of the start of the window, in milliseconds
+	 * @param to
+	 *            the time of the end of the window, in milliseconds
+	 * @param columns
+	 *            the array to write the value of each column to
+	 */
+	public synchronized void summarise(long from, long to, byte[] columns) {
+		int width = columns.length;
+		if (count == 0 || to <= from) {
+			Arrays.fill(columns, UNKNOWN);
+			return;
+		}
+
+		double millisPerColumn = (double) (to - from) / width;
+		/* Logical index of the last transition before the column start */
+		int current = lastBefore(from);
+
+		for (int column = 0; column < width; column++) {
+			long columnEnd = from + (long) ((column + 1) * millisPerColumn);
+			int next = current + 1;
+
+			if (next < count && times[physical(next)] < columnEnd) {
+				/* At least a transition in the column */
+				columns[column] = MIXED;
+				current = lastBefore(columnEnd);
+			} else {
+				columns[column] = current < 0 ? UNKNOWN : states[physical(current)];
+			}
+		}
+	}
+
+	/* Returns the logical index of the last transition before time, -1 if none. Must hold the lock */
+	private int lastBefore(long time) {
+		int low = 0, high = count - 1, result = -1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (times[physical(middle)] < time) {
+				result = middle;
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return result;
+	}
+
+	/* Must hold the lock */
+	private int physical(int logical) {
+		return (start + logical) % CAPACITY;
+	}
+}
@@ -0,0 +1,321 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class represents a concurrency stress test of the action state of an
+ * agent (see AgentState), run with no hardware:
+ * <ul>
+ * <li>threads apply random transitions to a bare state, each counting the
+ * starts and stops of the action its transitions made, and the counts must
+ * add up to the final action state, as no transition is lost;</li>
+ * <li>an agent runs its main loop, its continuation decisions and its sender,
+ * each on its own thread, while receivers deliver action changes and beliefs
+ * that start and stop the action, from their own threads. Every action state
+ * read must be well formed, every action message must carry the action state
+ * of the change it names, and, once the threads are stopped, the last action
+ * change heard must become the action state, at once or when the broadcast is
+ * over;</li>
+ * <li>the time from an action change received to the agent acting on it is
+ * measured, with the main loop pausing as the one of an agent with no
+ * robot.</li>
+ * </ul>
+ * The exit status is 1 if a check failed.
+ * <p>
+ * Usage: ActionStateStress [rounds=50] [millis=200] [receivers=2]
+ */
+public class ActionStateStress {
+
+	/* Transitions applied by each thread to the bare state */
+	private static final int TRANSITIONS = 200000;
+
+	/* Simulated milliseconds a main loop pass takes */
+	private static final int PASS_MILLIS = 250;
+
+	/* Main loop pause for the latency, as the agents with no robot */
+	private static final int LOOP_PAUSE = 5;
+
+	/* Action changes received for the latency */
+	private static final int LATENCY_SAMPLES = 100;
+
+	/* The origin of the last action change of a round, outside the swarm */
+	private static final int LAST_ORIGIN = 99;
+
+	/* Number of failed checks */
+	private static int failures;
+
+	/* Set at the end of a stress round to stop its threads */
+	private static volatile boolean isStopping;
+
+	/* The inputs of the stressed agent, its clock read by several threads */
+	private static class SteppedInputs extends SimulatedInputs {
+
+		private volatile long clock;
+
+		SteppedInputs(long seed) {
+			super(0.5, seed);
+		}
+
+		@Override
+		public void advance(long millis) {
+			clock += millis * 1000000;
+		}
+
+		@Override
+		public long nanoTime() {
+			return clock;
+		}
+	}
+
+	/* Entry point to the application */
+	public static void main(String[] args) throws InterruptedException {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		int millis = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		int receivers = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+
+		stressState(receivers + 2);
+		stressAgent(rounds, millis, receivers);
+		measureLatency();
+
+		System.out.println(failures == 0 ? "All checks passed" : failures + " checks failed");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	/* Applies random transitions to a bare state from several threads */
+	private static void stressState(int threadCount) throws InterruptedException {
+		AgentState state = new AgentState(false, -1);
+		AtomicLong clock = new AtomicLong();
+		AgentState.Transition[] transitions = AgentState.Transition.values();
+		long[] starts = new long[threadCount], stops = new long[threadCount];
+
+		Thread[] threads = new Thread[threadCount];
+		for (int t = 0; t < threadCount; t++) {
+			int thread = t;
+			threads[t] = new Thread(() -> {
+				Random random = new Random(thread);
+				for (int i = 0; i < TRANSITIONS; i++) {
+					AgentState.Transition transition = transitions[random.nextInt(transitions.length)];
+					float d = random.nextFloat();
+					int time = (int) (thread == 0 ? clock.incrementAndGet() / 10 : clock.get() / 10);
+					long before;
+					long after;
+					if (transition == AgentState.Transition.CONTINUE
+							|| transition == AgentState.Transition.CONTINUATION_STOP) {
+						/* Decided on a word read before, dropped if overtaken */
+						before = state.get();
+						Thread.yield();
+						if (!state.apply(before, transition, d, time))
+							continue;
+					} else {
+						before = state.apply(transition, d, time);
+					}
+					after = AgentState.next(before, transition, d, time);
+					check(before);
+					check(after);
+					if (!AgentState.isActing(before) && AgentState.isActing(after))
+						starts[thread]++;
+					else if (AgentState.isActing(before) && !AgentState.isActing(after))
+						stops[thread]++;
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+
+		long started = Arrays.stream(starts).sum(), stopped = Arrays.stream(stops).sum();
+		boolean isCounted = started - stopped == (AgentState.isActing(state.get()) ? 1 : 0);
+		failures += isCounted ? 0 : 1;
+		System.out.println(String.format("state: %d threads, %d transitions, %d starts, %d stops%s", threadCount,
+				threadCount * TRANSITIONS, started, stopped, isCounted ? "" : "  TRANSITIONS LOST"));
+	}
+
+	/* Runs an agent with all its threads changing the action state */
+	private static void stressAgent(int rounds, int millis, int receiverCount) throws InterruptedException {
+		SteppedInputs inputs = new SteppedInputs(1);
+		Agent agent = new Agent(1, inputs);
+		agent.setDebug(false);
+		MessageReceiver receiver = new MessageReceiver(agent);
+		MessageSender sender = new MessageSender(agent);
+		neutralise(agent, receiver, 0);
+
+		/* The action state of every change heard, by origin and sequence number */
+		Map<Long, Boolean> changes = new ConcurrentHashMap<>();
+		long[] messages = new long[1], mismatches = new long[1];
+		int sequence = 0, lastWrong = 0, beliefTime = 1;
+
+		for (int round = 0; round < rounds; round++) {
+			int firstSequence = sequence;
+			int firstBeliefTime = beliefTime;
+			sequence += 1000000;
+			beliefTime += 1000000;
+			isStopping = false;
+
+			Thread[] threads = new Thread[receiverCount + 4];
+			/* The main loop */
+			threads[0] = new Thread(() -> {
+				while (!isStopping) {
+					inputs.advance(PASS_MILLIS);
+					agent.step();
+					check(agent.getActionState());
+				}
+			});
+			/* The motion control's continuation decisions */
+			threads[1] = new Thread(() -> {
+				while (!isStopping) {
+					if (agent.isActionInProgress())
+						agent.action();
+					check(agent.getActionState());
+					Thread.yield();
+				}
+			});
+			/* The sender, checking the action messages */
+			threads[2] = new Thread(() -> {
+				while (!isStopping) {
+					String message = sender.nextMessage();
+					if (message == null || !message.startsWith("1 "))
+						continue;
+					String[] fields = message.split(" ");
+					int originID = Integer.parseInt(fields[3]);
+					Boolean isStart = changes.get(key(originID, Integer.parseInt(fields[4])));
+					messages[0]++;
+					if (originID != agent.getId() && (isStart == null || isStart != fields[1].equals("1")))
+						mismatches[0]++;
+				}
+			});
+			/* Beliefs of the other agents calling for the action and against it */
+			threads[3] = new Thread(() -> {
+				Random random = new Random(firstBeliefTime);
+				for (int time = firstBeliefTime; !isStopping; time++) {
+					String belief = random.nextBoolean() ? "0.95" : "0.20";
+					for (int id = 2; id <= AgentParameters.get().getSwarmSize(); id++)
+						receiver.receive(MessageSender.frame(agent.getSwarmID(), "0 " + id + " 0 " + time + " " + belief));
+					Thread.yield();
+				}
+			});
+			/* The receivers of action changes */
+			for (int r = 0; r < receiverCount; r++) {
+				int originID = 100 + r;
+				threads[4 + r] = new Thread(() -> {
+					Random random = new Random(originID + firstSequence);
+					for (int s = firstSequence + 1; !isStopping; s++) {
+						boolean isStart = random.nextBoolean();
+						changes.put(key(originID, s), isStart);
+						receiver.receive(MessageSender.frame(agent.getSwarmID(), "1 "
+								+ (isStart ? "1 " + (0.6f + 0.4f * random.nextFloat()) : "0 -1") + " " + originID + " " + s));
+						Thread.yield();
+					}
+				});
+			}
+
+			for (Thread thread : threads)
+				thread.start();
+			Thread.sleep(millis);
+			isStopping = true;
+			for (Thread thread : threads)
+				thread.join();
+
+			/* The last change heard, with no other transition but the main loop's */
+			beliefTime = neutralise(agent, receiver, beliefTime);
+			boolean isStart = round % 2 == 0;
+			changes.put(key(LAST_ORIGIN, round + 1), isStart);
+			receiver.receive(MessageSender.frame(agent.getSwarmID(),
+					"1 " + (isStart ? "1 0.90" : "0 -1") + " " + LAST_ORIGIN + " " + (round + 1)));
+			for (int pass = 0; AgentState.isPending(agent.getActionState()) && pass < 100; pass++) {
+				inputs.advance(PASS_MILLIS);
+				agent.step();
+			}
+			if (agent.isActionInProgress() != isStart || AgentState.isPending(agent.getActionState()))
+				lastWrong++;
+		}
+
+		failures += (mismatches[0] > 0 ? 1 : 0) + (lastWrong > 0 ? 1 : 0);
+		System.out.println(String.format("agent: %d rounds of %d ms, %d receivers, %d action messages, "
+				+ "%d with the state of another change, last change lost in %d rounds", rounds, millis,
+				receiverCount, messages[0], mismatches[0], lastWrong));
+	}
+
+	/*
+	 * Gives the agent and the other agents neutral beliefs, for the agent not
+	 * to decide, returning the next belief time stamp
+	 */
+	private static int neutralise(Agent agent, MessageReceiver receiver, int beliefTime) {
+		/* Own belief 0.6, between the thresholds with neutral other agents */
+		boolean[] cellsRead = new boolean[1];
+		for (int i = 0; i < AgentParameters.get().getMemorySize(); i++) {
+			cellsRead[0] = i < 6;
+			agent.writeToMemory(cellsRead);
+		}
+		for (int id = 2; id <= AgentParameters.get().getSwarmSize(); id++)
+			receiver.receive(MessageSender.frame(agent.getSwarmID(), "0 " + id + " 0 " + (beliefTime + 1000000) + " "
+					+ (float) AgentParameters.get().getNeutralBeliefDegree()));
+		return beliefTime + 1000001;
+	}
+
+	/* Measures the time from an action change received to the agent acting on it */
+	private static void measureLatency() throws InterruptedException {
+		SteppedInputs inputs = new SteppedInputs(2);
+		Agent agent = new Agent(1, inputs);
+		agent.setDebug(false);
+		MessageReceiver receiver = new MessageReceiver(agent);
+		neutralise(agent, receiver, 0);
+
+		Thread loop = new Thread(() -> {
+			while (!Thread.currentThread().isInterrupted()) {
+				agent.step();
+				try {
+					Thread.sleep(LOOP_PAUSE);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		});
+		loop.start();
+
+		long[] latencies = new long[LATENCY_SAMPLES];
+		for (int i = 0; i < LATENCY_SAMPLES; i++) {
+			/* Waiting for the broadcast of the previous change to be over */
+			while (agent.getStateCode() != Agent.StateCode.ZERO) {
+				inputs.advance(1000);
+				Thread.sleep(LOOP_PAUSE);
+			}
+			/* Receiving at any point of the main loop pause */
+			Thread.sleep(i % LOOP_PAUSE);
+
+			boolean isStart = !agent.isActionInProgress();
+			byte[] frame = MessageSender.frame(agent.getSwarmID(),
+					"1 " + (isStart ? "1 0.90" : "0 -1") + " " + LAST_ORIGIN + " " + (i + 1));
+			long start = System.nanoTime();
+			receiver.receive(frame);
+			while (agent.isActionInProgress() != isStart)
+				Thread.yield();
+			latencies[i] = System.nanoTime() - start;
+		}
+		loop.interrupt();
+		loop.join();
+
+		Arrays.sort(latencies);
+		System.out.println(String.format("latency: %d action changes received, acted on after %.3f ms median, "
+				+ "%.3f ms at the 90th percentile", LATENCY_SAMPLES, latencies[LATENCY_SAMPLES / 2] / 1e6,
+				latencies[LATENCY_SAMPLES * 9 / 10] / 1e6));
+	}
+
+	/* Counts a failure if a word is not well formed */
+	private static void check(long word) {
+		boolean isWellFormed = (!AgentState.isPending(word) || AgentState.isBroadcasting(word))
+				&& (AgentState.isBroadcasting(word) || AgentState.getBroadcastStart(word) == 0);
+		if (!isWellFormed) {
+			synchronized (ActionStateStress.class) {
+				if (failures++ == 0)
+					System.out.println("Malformed action state word " + Long.toHexString(word));
+			}
+		}
+	}
+
+	/* The key of an action change */
+	private static long key(int originID, int sequence) {
+		return ((long) originID << 32) | (sequence & 0xffffffffL);
+	}
+}
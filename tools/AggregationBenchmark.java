@@ -0,0 +1,173 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class represents a benchmark of the hierarchical supervisors, run with
+ * several supervisor processes on one host: it sends the same load, from
+ * LoadGenerator processes, first directly to a root HeadlessMonitor and then
+ * to regional supervisors (see SupervisorRelay) forwarding to the root, and
+ * compares the CPU time the root process takes and the swarm state it ends up
+ * with.
+ * <p>
+ * Usage: AggregationBenchmark [agents=2000] [rate=2000] [regions=4]
+ * [duration=20] [port=9100] [http=9180]
+ */
+public class AggregationBenchmark {
+
+	/* Time given to a process to open its port, in milliseconds */
+	private static final int START_TIMEOUT = 10000;
+
+	/* Time given to the last summaries to reach the root, in milliseconds */
+	private static final int SETTLE_TIME = 1000;
+
+	/* The benchmark options */
+	private int agentCount;
+	private double rate;
+	private int regionCount;
+	private int duration;
+	private int port;
+	private int httpPort;
+
+	/* The processes started by the current run */
+	private List<Process> processes = new ArrayList<>();
+
+	/**
+	 * Initialise the benchmark with the options passed as key=value pairs
+	 *
+	 * @param args
+	 *            the options
+	 */
+	public AggregationBenchmark(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			String[] pair = arg.split("=", 2);
+			if (pair.length == 2)
+				options.put(pair[0], pair[1]);
+		}
+
+		agentCount = Integer.parseInt(options.getOrDefault("agents", "2000"));
+		rate = Double.parseDouble(options.getOrDefault("rate", "2000"));
+		regionCount = Integer.parseInt(options.getOrDefault("regions", "4"));
+		duration = Integer.parseInt(options.getOrDefault("duration", "20"));
+		port = Integer.parseInt(options.getOrDefault("port", "9100"));
+		httpPort = Integer.parseInt(options.getOrDefault("http", "9180"));
+	}
+
+	/* Entry point to the application */
+	public static void main(String[] args) throws Exception {
+		AggregationBenchmark benchmark = new AggregationBenchmark(args);
+		System.out.println(benchmark.agentCount + " agents, " + benchmark.rate + " transitions/s for "
+				+ benchmark.duration + " s");
+		System.out.println(String.format("%-22s %12s %14s %8s %12s %12s", "ingestion", "root CPU s",
+				"root us/trans", "agents", "transitions", "relays CPU s"));
+		benchmark.run(false);
+		benchmark.run(true);
+	}
+
+	/* Runs the load against the root, directly or through the regions, and prints the result */
+	private void run(boolean isHierarchical) throws Exception {
+		try {
+			Process root = start(Arrays.asList("ActionMonitor", "--headless", "" + httpPort, "" + port));
+			awaitPort(port);
+
+			List<Process> relays = new ArrayList<>();
+			int regions = isHierarchical ? regionCount : 1;
+			for (int region = 1; isHierarchical && region <= regions; region++) {
+				relays.add(start(Arrays.asList("ActionMonitor", "--relay", "root=127.0.0.1:" + port,
+						"region=" + region, "port=" + (port + region))));
+				awaitPort(port + region);
+			}
+
+			Duration rootStart = cpu(root);
+			List<Process> generators = new ArrayList<>();
+			for (int region = 1; region <= regions; region++) {
+				generators.add(start(Arrays.asList("LoadGenerator", "host=127.0.0.1",
+						"port=" + (isHierarchical ? port + region : port), "agents=" + agentCount / regions,
+						"firstID=" + (0x10000 + (region - 1) * (agentCount / regions)), "rate=" + rate / regions,
+						"duration=" + duration, "probeEvery=0")));
+			}
+			for (Process generator : generators)
+				generator.waitFor();
+			Thread.sleep(SETTLE_TIME);
+
+			double rootSeconds = cpu(root).minus(rootStart).toMillis() / 1000.0;
+			double relaySeconds = 0;
+			for (Process relay : relays)
+				relaySeconds += cpu(relay).toMillis() / 1000.0;
+
+			String statistics = statistics();
+			long transitions = field(statistics, "transitions");
+			/* The generators are gone, so are the agents, but the root knows them */
+			long agents = field(statistics, "acting") + field(statistics, "notActing") + field(statistics, "silent");
+			System.out.println(String.format("%-22s %12.2f %14.1f %8d %12d %12s",
+					isHierarchical ? regions + " regions" : "direct", rootSeconds,
+					rootSeconds * 1e6 / Math.max(transitions, 1), agents, transitions,
+					isHierarchical ? String.format("%.2f", relaySeconds) : "-"));
+		} finally {
+			for (Process process : processes)
+				process.destroy();
+			for (Process process : processes)
+				process.waitFor();
+			processes.clear();
+		}
+	}
+
+	/* Starts a Java process with the classpath of this one, discarding its output */
+	private Process start(List<String> arguments) throws IOException {
+		List<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.addAll(arguments);
+		Process process = new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.DISCARD)
+				.redirectError(ProcessBuilder.Redirect.INHERIT).start();
+		processes.add(process);
+		return process;
+	}
+
+	/* Waits for a local port to accept connections */
+	private static void awaitPort(int port) throws InterruptedException, IOException {
+		long deadline = System.currentTimeMillis() + START_TIMEOUT;
+		while (true) {
+			try {
+				new Socket("127.0.0.1", port).close();
+				return;
+			} catch (IOException e) {
+				if (System.currentTimeMillis() > deadline)
+					throw e;
+				Thread.sleep(100);
+			}
+		}
+	}
+
+	/* Returns the CPU time a process took so far */
+	private static Duration cpu(Process process) {
+		return process.info().totalCpuDuration().orElse(Duration.ZERO);
+	}
+
+	/* Returns the aggregates of the swarm state of the root */
+	private String statistics() throws IOException {
+		try (InputStream in = new URL("http://127.0.0.1:" + httpPort + "/snapshot").openStream()) {
+			String snapshot = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+			return snapshot.substring(0, snapshot.indexOf('}') + 1);
+		}
+	}
+
+	/* Returns an integer field of a JSON object */
+	private static long field(String json, String name) {
+		Matcher matcher = Pattern.compile("\"" + name + "\":(\\d+)").matcher(json);
+		return matcher.find() ? Long.parseLong(matcher.group(1)) : 0;
+	}
+}
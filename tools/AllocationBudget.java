@@ -0,0 +1,110 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ * This class represents a regression check of the memory allocated by the
+ * agent hot paths, run with no hardware: each path is driven against
+ * SimulatedInputs, first to let the JIT compile it and then measured with the
+ * thread allocation counter, and the bytes allocated per operation are
+ * compared with the path's budget in BUDGETS. The exit status is 1 if a path
+ * allocates more than its budget, so the check can be run before deploying to
+ * the robots, where the small heap turns allocations into GC pauses.
+ * <p>
+ * A budget is only raised on purpose, when a change of the path needs it, and
+ * lowered when a change saves allocations.
+ * <p>
+ * Usage: AllocationBudget [operations=200000]
+ */
+public class AllocationBudget {
+
+	/* Operations run before measuring, for the JIT to compile the paths */
+	private static final int WARMUP = 100000;
+
+	/*
+	 * The paths and their budgets, in bytes allocated per operation, about a
+	 * quarter above what they allocated on a 64-bit JVM when recorded
+	 */
+	private static final String[] PATHS = { "step", "checkDistKnowledge", "nextMessage", "receiveBelief",
+			"receiveAction", "addBelief", "readProperty" };
+	private static final double[] BUDGETS = { 128, 56, 320, 800, 680, 160, 16 };
+
+	/* Bytes of allocation the thread counter can be off by over a measure */
+	private static final long COUNTER_SLACK = 1024;
+
+	/* The thread allocation counter */
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+			.getThreadMXBean();
+
+	/* Interface of a hot path, run once per operation */
+	private interface HotPath {
+		void run(int operation);
+	}
+
+	/* Entry point to the application */
+	public static void main(String[] args) {
+		int operations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int size = (int) AgentParameters.get().getSwarmSize();
+
+		if (!THREADS.isThreadAllocatedMemorySupported()) {
+			System.out.println("Thread allocation counters not supported by this JVM");
+			System.exit(2);
+		}
+		THREADS.setThreadAllocatedMemoryEnabled(true);
+
+		/* An agent knowing every agent of the swarm, with a full memory */
+		SimulatedInputs inputs = new SimulatedInputs(0.5, 1);
+		Agent agent = new Agent(1, inputs);
+		MessageSender sender = new MessageSender(agent);
+		MessageReceiver receiver = new MessageReceiver(agent);
+		MotionControl motion = new MotionControl(agent);
+		for (int i = 0; i < AgentParameters.get().getMemorySize(); i++)
+			motion.readProperty();
+		for (int id = 2; id <= size; id++)
+			agent.addBelief(id, 0, 1, 0.5f);
+		agent.step();
+
+		/* The frames received, built beforehand: newer beliefs and new action changes */
+		byte[][] beliefFrames = new byte[WARMUP + operations][];
+		byte[][] actionFrames = new byte[WARMUP + operations][];
+		for (int i = 0; i < beliefFrames.length; i++) {
+			beliefFrames[i] = MessageSender.frame(agent.getSwarmID(),
+					"0 " + (2 + i % (size - 1)) + " 0 " + (2 + i) + " 0.50");
+			actionFrames[i] = MessageSender.frame(agent.getSwarmID(),
+					"1 0 -1 " + (2 + i % (size - 1)) + " " + (1 + i));
+		}
+
+		HotPath[] paths = { operation -> {
+			inputs.advance(SwarmSimulation.ROUND_MILLIS);
+			agent.step();
+		}, operation -> agent.checkDistKnowledge(), operation -> sender.nextMessage(),
+				operation -> receiver.receive(beliefFrames[operation]),
+				operation -> receiver.receive(actionFrames[operation]),
+				operation -> agent.addBelief(2 + operation % (size - 1), 1, operation, 0.5f),
+				operation -> motion.readProperty() };
+
+		System.out.println(String.format("%-20s %12s %12s", "path", "bytes/op", "budget"));
+		boolean isOver = false;
+		for (int p = 0; p < paths.length; p++) {
+			double bytes = measure(paths[p], operations);
+			boolean isPathOver = bytes > BUDGETS[p];
+			isOver |= isPathOver;
+			System.out.println(String.format("%-20s %12.1f %12.1f%s", PATHS[p], bytes, BUDGETS[p],
+					isPathOver ? "  OVER BUDGET" : ""));
+		}
+
+		System.exit(isOver ? 1 : 0);
+	}
+
+	/* Returns the bytes a path allocates per operation, once compiled */
+	private static double measure(HotPath path, int operations) {
+		for (int operation = 0; operation < WARMUP; operation++)
+			path.run(operation);
+
+		long thread = Thread.currentThread().getId();
+		long before = THREADS.getThreadAllocatedBytes(thread);
+		for (int operation = WARMUP; operation < WARMUP + operations; operation++)
+			path.run(operation);
+		long allocated = THREADS.getThreadAllocatedBytes(thread) - before;
+
+		return Math.max(allocated - COUNTER_SLACK, 0) / (double) operations;
+	}
+}
@@ -0,0 +1,272 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * This class represents a benchmark of the exploration strategies, on a
+ * synthetic grid world: a square arena of ARENA_CELLS cells per side, whose
+ * floor is made of square patches that have the property or not as a whole,
+ * as on the arena of the robots. A few robots move over it with their real
+ * agent, exploration strategy and observations, timed as MotionControl does,
+ * and hear each other with a signal strength falling with the distance.
+ * <p>
+ * For each strategy it reports the distinct cells sampled per minute, by a
+ * robot and by the swarm, the time for a robot to hold a valid belief, and
+ * the error of the local beliefs once valid, and of their mean, with respect
+ * to the share of the arena having the property.
+ * <p>
+ * Usage: CoverageBenchmark [runs=20] [seconds=300] [floorRatio=0.5]
+ */
+public class CoverageBenchmark {
+
+	/* The arena: side in metres, cells per side and cells per patch side */
+	private static final double ARENA_SIDE = 3;
+	private static final int ARENA_CELLS = 60;
+	private static final int PATCH_CELLS = 6;
+
+	/* Simulated time step, in milliseconds */
+	private static final int STEP_MILLIS = SwarmSimulation.ROUND_MILLIS;
+
+	/* Motor speeds and time to spin on a wall hit, as in MotionControl */
+	private static final int MOTOR_SPEED = 150;
+	private static final int TURNING_SPEED = 150;
+	private static final double WALL_TURNING_TIME = 0.25;
+
+	/* Signal strength at 1 metre, in dBm, falling by 20 dB per decade */
+	private static final double SIGNAL_AT_METRE = -45;
+
+	/* Entry point to the application */
+	public static void main(String[] args) {
+		int runs = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+		double floorRatio = args.length > 2 ? Double.parseDouble(args[2]) : 0.5;
+		int size = (int) AgentParameters.get().getSwarmSize();
+
+		System.out.println(size + " robots on a " + ARENA_SIDE + " m arena of " + ARENA_CELLS + "x" + ARENA_CELLS
+				+ " cells in patches of " + PATCH_CELLS + "x" + PATCH_CELLS + ", floor ratio " + floorRatio + ", "
+				+ runs + " runs of " + seconds + " s");
+		System.out.println(String.format("%-12s %14s %14s %12s %12s %12s", "strategy", "cells/min/robot",
+				"cells/min swarm", "valid (s)", "local error", "mean error"));
+
+		for (Agent.ExplorationMode mode : Agent.ExplorationMode.values()) {
+			double robotCells = 0, swarmCells = 0, validTime = 0, localError = 0, meanError = 0;
+			for (int run = 0; run < runs; run++) {
+				Arena arena = new Arena(mode, size, floorRatio, run);
+				arena.run(seconds * 1000 / STEP_MILLIS);
+				robotCells += arena.robotCells / size / (seconds / 60.0);
+				swarmCells += arena.swarmCells.size() / (seconds / 60.0);
+				validTime += arena.validTime;
+				localError += arena.localError / Math.max(arena.localErrorCount, 1);
+				meanError += arena.meanError / Math.max(arena.meanErrorCount, 1);
+			}
+			System.out.println(String.format("%-12s %14.1f %14.1f %12.1f %12.3f %12.3f", mode, robotCells / runs,
+					swarmCells / runs, validTime / runs, localError / runs, meanError / runs));
+		}
+	}
+
+	/* The inputs of a robot of the arena: its sensors read the cell under it */
+	private static class WorldInputs extends SimulatedInputs {
+
+		/* Infrared values read on cells with and without the property */
+		private static final int PHI_IR_VALUE = 200;
+		private static final int NOT_PHI_IR_VALUE = 60;
+
+		private boolean[][] floor;
+
+		/* Position in metres, heading in radians, and whether a bumper is pressed */
+		private double x, y, heading;
+		private boolean isPressed;
+
+		WorldInputs(boolean[][] floor, long seed) {
+			super(0, seed);
+			this.floor = floor;
+		}
+
+		int cell() {
+			int column = Math.min((int) (x / ARENA_SIDE * ARENA_CELLS), ARENA_CELLS - 1);
+			int row = Math.min((int) (y / ARENA_SIDE * ARENA_CELLS), ARENA_CELLS - 1);
+			return row * ARENA_CELLS + column;
+		}
+
+		@Override
+		public int getIR(int sensor) {
+			int cell = cell();
+			return floor[cell / ARENA_CELLS][cell % ARENA_CELLS] ? PHI_IR_VALUE : NOT_PHI_IR_VALUE;
+		}
+
+		@Override
+		public boolean isPressed(int bumper) {
+			return isPressed;
+		}
+	}
+
+	/* A run of the robots of a strategy on an arena */
+	private static class Arena {
+
+		private boolean[][] floor = new boolean[ARENA_CELLS][ARENA_CELLS];
+		private double trueRatio;
+
+		/* The robots, and the state of their walk */
+		private WorldInputs[] inputs;
+		private Agent[] agents;
+		private MotionControl[] motions;
+		private ExplorationStrategy[] strategies;
+		private boolean[] isLeg;
+		private double[] forwardLeft, turnLeft;
+
+		/* Results */
+		private long robotCells;
+		private Set<Integer> swarmCells = new HashSet<>();
+		private double validTime;
+		private double localError, meanError;
+		private long localErrorCount, meanErrorCount;
+
+		Arena(Agent.ExplorationMode mode, int size, double floorRatio, long seed) {
+			Random random = new Random(seed);
+			int phiCells = 0;
+			for (int row = 0; row < ARENA_CELLS; row += PATCH_CELLS) {
+				for (int column = 0; column < ARENA_CELLS; column += PATCH_CELLS) {
+					boolean isPhi = random.nextDouble() < floorRatio;
+					for (int i = 0; i < PATCH_CELLS * PATCH_CELLS; i++)
+						floor[row + i / PATCH_CELLS][column + i % PATCH_CELLS] = isPhi;
+					phiCells += isPhi ? PATCH_CELLS * PATCH_CELLS : 0;
+				}
+			}
+			trueRatio = phiCells / (double) (ARENA_CELLS * ARENA_CELLS);
+
+			inputs = new WorldInputs[size];
+			agents = new Agent[size];
+			motions = new MotionControl[size];
+			strategies = new ExplorationStrategy[size];
+			isLeg = new boolean[size];
+			forwardLeft = new double[size];
+			turnLeft = new double[size];
+			for (int i = 0; i < size; i++) {
+				inputs[i] = new WorldInputs(floor, random.nextLong());
+				inputs[i].x = random.nextDouble() * ARENA_SIDE;
+				inputs[i].y = random.nextDouble() * ARENA_SIDE;
+				inputs[i].heading = random.nextDouble() * 2 * Math.PI;
+				agents[i] = new Agent(i + 1, inputs[i]);
+				agents[i].setExplorationMode(mode);
+				strategies[i] = MotionControl.strategy(mode);
+				motions[i] = new MotionControl(agents[i], strategies[i]);
+			}
+		}
+
+		/* Runs the robots for a number of steps */
+		void run(int steps) {
+			int size = agents.length;
+			List<Set<Integer>> robotSets = new ArrayList<>();
+			for (int i = 0; i < size; i++)
+				robotSets.add(new HashSet<>());
+			double[] validTimes = new double[size];
+
+			for (int step = 0; step < steps; step++) {
+				hear();
+				for (int i = 0; i < size; i++) {
+					inputs[i].advance(STEP_MILLIS);
+					move(i, robotSets.get(i));
+					agents[i].step();
+				}
+
+				double sum = 0;
+				int valid = 0;
+				for (int i = 0; i < size; i++) {
+					if (!agents[i].isBeliefValid())
+						continue;
+					if (validTimes[i] == 0)
+						validTimes[i] = (step + 1) * STEP_MILLIS / 1000.0;
+					double belief = agents[i].getBeliefTable().get(agents[i].getId()).getBelief();
+					localError += Math.abs(belief - trueRatio);
+					localErrorCount++;
+					sum += belief;
+					valid++;
+				}
+				if (valid == size) {
+					meanError += Math.abs(sum / size - trueRatio);
+					meanErrorCount++;
+				}
+			}
+
+			double validSum = 0;
+			for (int i = 0; i < size; i++) {
+				robotCells += robotSets.get(i).size();
+				swarmCells.addAll(robotSets.get(i));
+				validSum += validTimes[i] == 0 ? steps * STEP_MILLIS / 1000.0 : validTimes[i];
+			}
+			validTime = validSum / size;
+		}
+
+		/* Feeds every robot the signal strength of the frames of the others */
+		private void hear() {
+			for (int i = 0; i < agents.length; i++) {
+				for (int j = 0; j < agents.length; j++) {
+					if (i == j)
+						continue;
+					double distance = Math.max(Math.hypot(inputs[i].x - inputs[j].x, inputs[i].y - inputs[j].y),
+							0.1);
+					agents[i].recordSignal((int) Math.round(SIGNAL_AT_METRE - 20 * Math.log10(distance)));
+				}
+			}
+		}
+
+		/* Moves a robot of one step, as the random walk of MotionControl does */
+		private void move(int i, Set<Integer> cells) {
+			WorldInputs robot = inputs[i];
+			double dt = STEP_MILLIS / 1000.0;
+
+			if (turnLeft[i] != 0) {
+				double turn = Math.signum(turnLeft[i]) * Math.min(Math.abs(turnLeft[i]), dt);
+				robot.heading += 2 * Math.PI / AgentParameters.FULL_TURN_TIME * turn;
+				turnLeft[i] -= turn;
+				/* A wall turn takes time of the forward leg */
+				if (isLeg[i])
+					forwardLeft[i] -= Math.abs(turn);
+				if (turnLeft[i] == 0 && isLeg[i])
+					motions[i].setMotors(MOTOR_SPEED, -MOTOR_SPEED, robot.nanoTime());
+				return;
+			}
+
+			if (isLeg[i] && forwardLeft[i] <= 0) {
+				/* End of a leg */
+				isLeg[i] = false;
+				turnLeft[i] = strategies[i].nextTurnTime(agents[i]);
+				int direction = turnLeft[i] < 0 ? -1 : 1;
+				motions[i].setMotors(direction * TURNING_SPEED, direction * TURNING_SPEED, robot.nanoTime());
+				return;
+			}
+
+			if (!isLeg[i]) {
+				/* Start of a leg */
+				isLeg[i] = true;
+				forwardLeft[i] = strategies[i].nextForwardTime(agents[i]);
+				motions[i].setMotors(MOTOR_SPEED, -MOTOR_SPEED, robot.nanoTime());
+				sample(i, cells);
+			}
+
+			double x = robot.x + AgentParameters.FORWARD_SPEED * dt * Math.cos(robot.heading);
+			double y = robot.y + AgentParameters.FORWARD_SPEED * dt * Math.sin(robot.heading);
+			robot.isPressed = x < 0 || x > ARENA_SIDE || y < 0 || y > ARENA_SIDE;
+			if (robot.isPressed) {
+				motions[i].wallHit(robot.nanoTime());
+				turnLeft[i] = WALL_TURNING_TIME;
+				motions[i].setMotors(TURNING_SPEED, TURNING_SPEED, robot.nanoTime());
+			} else {
+				robot.x = x;
+				robot.y = y;
+			}
+
+			forwardLeft[i] -= dt;
+			if (forwardLeft[i] > 0)
+				sample(i, cells);
+		}
+
+		/* Samples the cell under a robot, once it travelled far enough */
+		private void sample(int i, Set<Integer> cells) {
+			if (motions[i].sample(inputs[i].nanoTime()))
+				cells.add(inputs[i].cell());
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/**
+ * This class represents a benchmark of the decision modes. For every floor it
+ * runs a swarm for the simulated time and measures the time until the first
+ * agent and every agent act, and the time to a stable decision: the start of
+ * the last stretch of every agent acting, if it lasts until the end of the
+ * run. It also counts the times per run the swarm went from every agent
+ * acting to some not acting, the runs ending with every agent acting and, for
+ * floors where not phi holds, the runs where some agent wrongly acted.
+ * <p>
+ * Usage: DecisionBenchmark [runs=50] [seconds=120]
+ */
+public class DecisionBenchmark {
+
+	/* Entry point to the application */
+	public static void main(String[] args) {
+		int runs = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 120;
+		int size = (int) AgentParameters.get().getSwarmSize();
+		int maxRounds = seconds * 1000 / SwarmSimulation.ROUND_MILLIS;
+
+		System.out.println(size + " agents, fully connected, " + runs + " runs of " + seconds
+				+ " s each, SPRT error bound " + AgentParameters.get().getSprtErrorBound());
+		System.out.println(String.format("%-10s  %5s  %10s  %9s  %10s  %9s  %11s  %11s", "mode", "floor",
+				"first (s)", "all (s)", "stable (s)", "drops", "all at end", "any acted"));
+
+		for (Agent.DecisionMode mode : Agent.DecisionMode.values()) {
+			for (double floorRatio : new double[] { 0.9, 0.8, 0.5, 0.4 }) {
+				double firstSum = 0, allSum = 0, stableSum = 0;
+				int firstRuns = 0, allRuns = 0, stableRuns = 0;
+				long drops = 0;
+
+				for (int run = 0; run < runs; run++) {
+					SwarmSimulation swarm = new SwarmSimulation(SwarmSimulation.full(size), floorRatio, run);
+					for (int i = 0; i < size; i++)
+						swarm.getAgent(i).setDecisionMode(mode);
+
+					double firstTime = -1, allTime = -1, allSince = -1;
+					while (swarm.getRound() < maxRounds) {
+						swarm.round();
+						int acting = swarm.actingCount();
+						if (firstTime < 0 && acting > 0)
+							firstTime = swarm.getSeconds();
+						if (acting == size) {
+							if (allTime < 0)
+								allTime = swarm.getSeconds();
+							if (allSince < 0)
+								allSince = swarm.getSeconds();
+						} else if (allSince >= 0) {
+							allSince = -1;
+							drops++;
+						}
+					}
+
+					if (firstTime >= 0) {
+						firstSum += firstTime;
+						firstRuns++;
+					}
+					if (allTime >= 0) {
+						allSum += allTime;
+						allRuns++;
+					}
+					if (allSince >= 0) {
+						stableSum += allSince;
+						stableRuns++;
+					}
+				}
+
+				System.out.println(String.format("%-10s  %5.1f  %10s  %9s  %10s  %9.1f  %5d/%-5d  %5d/%-5d", mode,
+						floorRatio, mean(firstSum, firstRuns), mean(allSum, allRuns), mean(stableSum, stableRuns),
+						drops / (double) runs, stableRuns, runs, firstRuns, runs));
+			}
+		}
+	}
+
+	private static String mean(double sum, int count) {
+		return count == 0 ? "-" : String.format("%.1f", sum / count);
+	}
+}
@@ -0,0 +1,77 @@
+/**
+ * This class represents a benchmark of the relaying of action state changes: an
+ * agent outside a grid swarm starts an action change heard by the agent in a
+ * corner only, and for several relay probabilities and repeats it measures
+ * how fast the change reaches every agent, and the share of the airtime the
+ * action messages take from the belief messages during the action broadcast
+ * time. Relaying with probability 1 for the whole action broadcast time is
+ * how every agent relayed an action change before sequence numbers.
+ * <p>
+ * Usage: FloodingBenchmark [runs=20] [width=6] [lossRate=0.1]
+ */
+public class FloodingBenchmark {
+
+	/* ID of the agent starting the action change, outside the swarm */
+	private static final int ORIGIN_ID = 0;
+
+	/* Relay probabilities and repeats compared */
+	private static final double[] PROBABILITIES = { 1, 1, 1, 1, 0.7, 0.5 };
+	private static final int[] REPEATS = { Integer.MAX_VALUE, 10, 5, 2, 5, 5 };
+
+	/* Entry point to the application */
+	public static void main(String[] args) {
+		int runs = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		int width = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+		double lossRate = args.length > 2 ? Double.parseDouble(args[2]) : 0.1;
+		int size = width * width;
+		int broadcastRounds = AgentParameters.get().getActionBroadcastTime() * 1000 / SwarmSimulation.ROUND_MILLIS;
+
+		/* The origin's message, sent for the whole action broadcast time */
+		byte[] originFrame = MessageSender.frame(AgentParameters.SWARM_ID, "1 1 1.00 " + ORIGIN_ID + " 1");
+
+		System.out.println(size + " agents on a " + width + "x" + width + " grid, loss rate " + lossRate + ", "
+				+ runs + " runs each, over the first " + AgentParameters.get().getActionBroadcastTime() + " s");
+		System.out.println("probability repeats  all reached (s)  agents reached  action airtime");
+
+		for (int c = 0; c < PROBABILITIES.length; c++) {
+			double reachedSum = 0, coverage = 0, airtime = 0;
+			int reachedRuns = 0;
+
+			for (int run = 0; run < runs; run++) {
+				/* Nobody decides to act on its own on an empty floor */
+				SwarmSimulation swarm = new SwarmSimulation(SwarmSimulation.grid(width, width), 0, run);
+				swarm.setLossRate(lossRate);
+				for (int i = 0; i < size; i++)
+					swarm.getAgent(i).setActionRelay(PROBABILITIES[c], REPEATS[c]);
+
+				boolean[] reached = new boolean[size];
+				int reachedCount = 0;
+				double allTime = -1;
+				while (swarm.getRound() < broadcastRounds) {
+					swarm.inject(0, originFrame);
+					swarm.round();
+					for (int i = 0; i < size; i++) {
+						if (!reached[i] && swarm.getAgent(i).isActionInProgress()) {
+							reached[i] = true;
+							reachedCount++;
+						}
+					}
+					if (allTime < 0 && reachedCount == size)
+						allTime = swarm.getSeconds();
+				}
+
+				if (allTime >= 0) {
+					reachedSum += allTime;
+					reachedRuns++;
+				}
+				coverage += (double) reachedCount / size / runs;
+				airtime += (double) swarm.getActionFramesSent() / swarm.getFramesSent() / runs;
+			}
+
+			System.out.println(String.format("%11.1f %7s  %10s (%2d)  %13.0f%%  %13.1f%%", PROBABILITIES[c],
+					REPEATS[c] == Integer.MAX_VALUE ? "all" : "" + REPEATS[c],
+					reachedRuns == 0 ? "never" : String.format("%.1f", reachedSum / reachedRuns), reachedRuns,
+					coverage * 100, airtime * 100));
+		}
+	}
+}
@@ -0,0 +1,89 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ * This class represents a benchmark of the receive path when two swarms share
+ * the radio channel: an agent receives a stream of belief frames, half of them
+ * from the agents of another swarm, and the benchmark measures the time and
+ * the bytes allocated per frame received, and the beliefs of the other swarm
+ * the agent ends up holding. The other swarm is given a swarm ID of its own,
+ * as it should, then the same one, as if swarms could not be told apart, and
+ * both are compared with a stream of frames of the agent's swarm only.
+ * <p>
+ * Usage: ForeignTrafficBenchmark [frames=500000]
+ */
+public class ForeignTrafficBenchmark {
+
+	/* Frames received before measuring, for the JIT to compile the path */
+	private static final int WARMUP = 200000;
+
+	/* Passes over the three traffics, only the last one being printed */
+	private static final int PASSES = 3;
+
+	/* The swarm of the agent, and the first ID of the agents of the other swarm */
+	private static final byte SWARM_ID = 1;
+	private static final int FOREIGN_FIRST_ID = 101;
+
+	/* The thread allocation counter */
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+			.getThreadMXBean();
+
+	/* Entry point to the application */
+	public static void main(String[] args) {
+		int frameCount = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+		int size = (int) AgentParameters.get().getSwarmSize();
+		THREADS.setThreadAllocatedMemoryEnabled(true);
+
+		System.out.println(frameCount + " belief frames received by an agent of a swarm of " + size);
+		System.out.println(String.format("%-28s %10s %12s %16s", "traffic", "ns/frame", "bytes/frame",
+				"foreign beliefs"));
+
+		/* The compilations of a traffic change the timings of the others at first */
+		for (int pass = 1; pass <= PASSES; pass++) {
+			boolean isPrinted = pass == PASSES;
+			run("own swarm only", 0, SWARM_ID, frameCount, isPrinted);
+			run("50% foreign, own swarm ID", 0.5, (byte) (SWARM_ID + 1), frameCount, isPrinted);
+			run("50% foreign, same swarm ID", 0.5, SWARM_ID, frameCount, isPrinted);
+		}
+	}
+
+	/* Measures the receive path of a fresh agent, for a share of foreign frames */
+	private static void run(String name, double foreignShare, byte foreignSwarmID, int frameCount,
+			boolean isPrinted) {
+		int size = (int) AgentParameters.get().getSwarmSize();
+		Agent agent = new Agent(1, new SimulatedInputs(0.5, 1));
+		agent.setSwarmID(SWARM_ID);
+		MessageReceiver receiver = new MessageReceiver(agent);
+
+		/* The frames, built beforehand, each one a newer belief of its sender */
+		byte[][] frames = new byte[WARMUP + frameCount][];
+		int foreignEvery = foreignShare == 0 ? 0 : (int) Math.round(1 / foreignShare);
+		int ownCount = 0, foreignCount = 0;
+		for (int i = 0; i < frames.length; i++) {
+			boolean isForeign = foreignEvery > 0 && i % foreignEvery == 0;
+			/* The agents of each swarm take turns */
+			int senderID = isForeign ? FOREIGN_FIRST_ID + foreignCount++ % (size - 1) : 2 + ownCount++ % (size - 1);
+			frames[i] = MessageSender.frame(isForeign ? foreignSwarmID : SWARM_ID,
+					"0 " + senderID + " 0 " + (1 + i) + " 0.50");
+		}
+
+		for (int i = 0; i < WARMUP; i++)
+			receiver.receive(frames[i]);
+
+		long thread = Thread.currentThread().getId();
+		long allocated = THREADS.getThreadAllocatedBytes(thread);
+		long start = System.nanoTime();
+		for (int i = WARMUP; i < frames.length; i++)
+			receiver.receive(frames[i]);
+		long elapsed = System.nanoTime() - start;
+		allocated = THREADS.getThreadAllocatedBytes(thread) - allocated;
+
+		int foreignBeliefs = 0;
+		for (Integer agentID : agent.getBeliefTable().keySet()) {
+			if (agentID >= FOREIGN_FIRST_ID)
+				foreignBeliefs++;
+		}
+		if (isPrinted)
+			System.out.println(String.format("%-28s %10.1f %12.1f %16d", name, elapsed / (double) frameCount,
+					allocated / (double) frameCount, foreignBeliefs));
+	}
+}
@@ -0,0 +1,288 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class represents a load generator that opens many simulated agent
+ * connections to a supervisor and sends action state transitions on them, to
+ * size the supervisor host before large deployments.
+ * <p>
+ * Transitions are sent in bursts of burst transitions, with exponentially
+ * distributed time between the bursts so that rate transitions per second are
+ * sent on average. Every second, churn random connections are closed and
+ * opened again. One connection in probeEvery sends probes: action states that
+ * the supervisor sends back once shown, to measure the end-to-end latency.
+ * <p>
+ * Usage: LoadGenerator [host=127.0.0.1] [port=PORT_NUMBER] [agents=1000]
+ * [firstID=65536] [rate=500] [burst=1] [churn=0] [duration=60] [probeEvery=10]
+ * [threads=8]
+ */
+public class LoadGenerator {
+
+	/* Maximum number of latencies kept for the percentiles */
+	private static final int MAX_LATENCIES = 1 << 22;
+
+	/* The generator options */
+	private String host;
+	private int port;
+	private int agentCount;
+	private int firstID;
+	private double rate;
+	private int burst;
+	private double churn;
+	private int duration;
+	private int probeEvery;
+	private int threads;
+
+	/* The simulated agents */
+	private SimulatedAgent[] agents;
+
+	/* To send the transitions and to reconnect */
+	private ExecutorService workers;
+
+	/* Counters */
+	private AtomicLong sent = new AtomicLong();
+	private AtomicLong failed = new AtomicLong();
+	private AtomicLong reconnects = new AtomicLong();
+
+	/* End-to-end latencies of the probes, in nanoseconds, at most one per transition */
+	private long[] latencies;
+	private int latencyCount;
+
+	/* Set when the run is over, to stop the echo readers */
+	private volatile boolean stopping;
+
+	/**
+	 * Initialise the generator with the options passed as key=value pairs
+	 *
+	 * @param args
+	 *            the options
+	 */
+	public LoadGenerator(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			String[] pair = arg.split("=", 2);
+			if (pair.length == 2)
+				options.put(pair[0], pair[1]);
+		}
+
+		host = options.getOrDefault("host", "127.0.0.1");
+		port = Integer.parseInt(options.getOrDefault("port", "" + AgentParameters.PORT_NUMBER));
+		agentCount = Integer.parseInt(options.getOrDefault("agents", "1000"));
+		firstID = Integer.parseInt(options.getOrDefault("firstID", "" + 0x10000));
+		rate = Double.parseDouble(options.getOrDefault("rate", "500"));
+		burst = Integer.parseInt(options.getOrDefault("burst", "1"));
+		churn = Double.parseDouble(options.getOrDefault("churn", "0"));
+		duration = Integer.parseInt(options.getOrDefault("duration", "60"));
+		probeEvery = Integer.parseInt(options.getOrDefault("probeEvery", "10"));
+		threads = Integer.parseInt(options.getOrDefault("threads", "8"));
+		latencies = new long[(int) Math.min(MAX_LATENCIES, Math.ceil(rate * duration))];
+	}
+
+	/* Entry point to the application */
+	public static void main(String[] args) throws Exception {
+		new LoadGenerator(args).run();
+	}
+
+	/* Connects the agents, sends the load for the duration and reports */
+	private void run() throws InterruptedException {
+		System.out.println("Connecting " + agentCount + " agents to " + host + ":" + port);
+		agents = new SimulatedAgent[agentCount];
+		long connectStart = System.nanoTime();
+		for (int i = 0; i < agentCount; i++) {
+			agents[i] = new SimulatedAgent(firstID + i, probeEvery > 0 && i % probeEvery == 0);
+			try {
+				agents[i].connect();
+			} catch (IOException e) {
+				System.err.println("Agent " + i + " cannot connect: " + e.getMessage());
+			}
+		}
+		System.out.println("Connected in " + (System.nanoTime() - connectStart) / 1000000 + " ms");
+
+		workers = Executors.newFixedThreadPool(threads);
+		Random random = new Random();
+
+		long start = System.nanoTime();
+		long end = start + TimeUnit.SECONDS.toNanos(duration);
+		long nextBurst = start;
+		long nextChurn = start;
+		long nextReport = start + TimeUnit.SECONDS.toNanos(1);
+		long lastSent = 0;
+
+		while (System.nanoTime() < end) {
+			long now = System.nanoTime();
+
+			while (now >= nextBurst) {
+				for (int i = 0; i < burst; i++) {
+					SimulatedAgent agent = agents[random.nextInt(agentCount)];
+					workers.execute(agent::transition);
+				}
+				/* Exponential time to the next burst, for rate / burst bursts per second */
+				nextBurst += (long) (-Math.log(1 - random.nextDouble()) * burst / rate * 1e9);
+			}
+
+			while (churn > 0 && now >= nextChurn) {
+				SimulatedAgent agent = agents[random.nextInt(agentCount)];
+				workers.execute(agent::reconnect);
+				nextChurn += (long) (1e9 / churn);
+			}
+
+			if (now >= nextReport) {
+				long total = sent.get();
+				System.out.println("sent " + (total - lastSent) + "/s, failed " + failed.get() + ", reconnects "
+						+ reconnects.get() + ", probes back " + latencyCount());
+				lastSent = total;
+				nextReport += TimeUnit.SECONDS.toNanos(1);
+			}
+
+			long sleep = Math.min(nextBurst, Math.min(churn > 0 ? nextChurn : Long.MAX_VALUE, nextReport))
+					- System.nanoTime();
+			if (sleep > 0)
+				TimeUnit.NANOSECONDS.sleep(sleep);
+		}
+
+		workers.shutdown();
+		workers.awaitTermination(10, TimeUnit.SECONDS);
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		/* Giving the last probes the time to come back */
+		Thread.sleep(1000);
+		stopping = true;
+		for (SimulatedAgent agent : agents)
+			agent.close();
+
+		report(seconds);
+	}
+
+	/* Prints the sustained throughput and the latency percentiles */
+	private void report(double seconds) {
+		System.out.println();
+		System.out.println("Sent " + sent.get() + " transitions in " + seconds + " s: "
+				+ (long) (sent.get() / seconds) + " transitions/s sustained");
+		System.out.println("Failed sends: " + failed.get() + ", reconnects: " + reconnects.get());
+
+		long[] sorted;
+		synchronized (latencies) {
+			sorted = Arrays.copyOf(latencies, latencyCount);
+		}
+		if (sorted.length == 0) {
+			System.out.println("No probe came back");
+			return;
+		}
+		Arrays.sort(sorted);
+		System.out.println("End-to-end latency over " + sorted.length + " probes (ms):");
+		for (double percentile : new double[] { 50, 90, 99, 99.9 }) {
+			int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+			System.out.println("  p" + percentile + " = " + sorted[Math.max(index, 0)] / 1e6);
+		}
+		System.out.println("  max = " + sorted[sorted.length - 1] / 1e6);
+	}
+
+	private int latencyCount() {
+		synchronized (latencies) {
+			return latencyCount;
+		}
+	}
+
+	/* Class to represent an agent connected to the supervisor */
+	private class SimulatedAgent {
+
+		private int ID;
+		private boolean isProbe;
+		private int state;
+		private Socket socket;
+		private ObjectOutputStream out;
+
+		public SimulatedAgent(int ID, boolean isProbe) {
+			this.ID = ID;
+			this.isProbe = isProbe;
+		}
+
+		/* Opens the socket and, for probes, starts reading the echoes */
+		public synchronized void connect() throws IOException {
+			socket = new Socket(host, port);
+			socket.setTcpNoDelay(true);
+			out = new ObjectOutputStream(socket.getOutputStream());
+			out.flush();
+
+			if (isProbe) {
+				Socket echoSocket = socket;
+				Thread reader = new Thread(() -> readEchoes(echoSocket), "echo-" + ID);
+				reader.setDaemon(true);
+				reader.start();
+			}
+		}
+
+		/* Sends the opposite action state */
+		public synchronized void transition() {
+			if (out == null) {
+				failed.incrementAndGet();
+				return;
+			}
+			state = 1 - state;
+			try {
+				out.writeObject(new ActionState(ID, state, isProbe ? System.nanoTime() : 0));
+				/* Not keeping references to the states sent */
+				out.reset();
+				out.flush();
+				sent.incrementAndGet();
+			} catch (IOException e) {
+				failed.incrementAndGet();
+				out = null;
+			}
+		}
+
+		/* Closes the socket and opens a new one */
+		public void reconnect() {
+			close();
+			try {
+				connect();
+				reconnects.incrementAndGet();
+			} catch (IOException e) {
+				failed.incrementAndGet();
+			}
+		}
+
+		public synchronized void close() {
+			if (socket == null)
+				return;
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// nothing to do
+			}
+			socket = null;
+			out = null;
+		}
+
+		/* Records the latency of every probe sent back by the supervisor */
+		private void readEchoes(Socket echoSocket) {
+			try {
+				ObjectInputStream in = new ObjectInputStream(echoSocket.getInputStream());
+				while (!stopping) {
+					ActionState echo = (ActionState) in.readObject();
+					long latency = System.nanoTime() - echo.getProbeTime();
+					synchronized (latencies) {
+						if (latencyCount < latencies.length)
+							latencies[latencyCount++] = latency;
+					}
+				}
+			} catch (EOFException e) {
+				// connection closed
+			} catch (IOException | ClassNotFoundException e) {
+				if (!stopping && !echoSocket.isClosed())
+					System.err.println("Agent " + ID + ": " + e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,229 @@
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class represents a check of the live reconfiguration of the agents
+ * (see AgentParameters and ParameterRollout), with no hardware:
+ * <ul>
+ * <li>a swarm on a ring runs for a while, then the memory of an agent grows
+ * and shrinks with new snapshots of its parameters, checking that it keeps its
+ * belief table, its time and the latest observations, with no restart, and
+ * that the other agents keep their parameters;</li>
+ * <li>agents connect to a headless monitor, which rolls new parameters out in
+ * stages, checking that after the first stage only its share of the agents
+ * acknowledge and run them, and that every agent ends up running them; then
+ * it rolls out parameters that an agent does not acknowledge, checking that
+ * this agent never runs them, that the rollout stops and that every agent
+ * ends up running the previous parameters again.</li>
+ * </ul>
+ * Every agent holds its own parameters, as on the robots.
+ * It exits with status 1 if a check failed.
+ * <p>
+ * Usage: ParameterRolloutCheck [agents=10] [uptime=120]
+ */
+public class ParameterRolloutCheck {
+
+	/* Milliseconds the agents of a stage run with the new parameters, the first stage checked meanwhile */
+	private static final long SOAK_TIME = 2000;
+
+	/* Stages of the rollouts */
+	private static final double[] STAGES = { 0.25, 0.5, 1 };
+
+	/* Set once a check failed */
+	private static boolean failed;
+
+	/* An agent that ignores the parameters from a version on, not acknowledging them */
+	private static class DeafAgent extends Agent {
+
+		private long deafVersion;
+
+		DeafAgent(int ID, long deafVersion) {
+			super(ID, new SimulatedInputs(0.5, ID));
+			this.deafVersion = deafVersion;
+		}
+
+		@Override
+		protected void applyParameters(AgentParameters next) {
+			if (next.getVersion() != deafVersion)
+				super.applyParameters(next);
+		}
+	}
+
+	/* Entry point to the application */
+	public static void main(String[] args) throws Exception {
+		int agents = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		int uptime = args.length > 1 ? Integer.parseInt(args[1]) : 120;
+
+		resize(uptime);
+		rollout(agents);
+
+		System.out.println(failed ? "FAILED" : "All checks passed");
+		System.exit(failed ? 1 : 0);
+	}
+
+	/* Grows and shrinks the memory of a running swarm */
+	private static void resize(int uptime) {
+		int size = (int) AgentParameters.get().getSwarmSize();
+		int memorySize = AgentParameters.get().getMemorySize();
+		int originalSize = memorySize;
+		SwarmSimulation swarm = new SwarmSimulation(SwarmSimulation.ring(size), 0.5, 1);
+		for (int round = 0; round < uptime * 1000 / SwarmSimulation.ROUND_MILLIS; round++)
+			swarm.round();
+		Agent agent = swarm.getAgent(0);
+		System.out.println(size + " agents on a ring, memory of " + memorySize + " observations, after " + uptime
+				+ " s: belief " + belief(agent) + ", " + agent.getBeliefTable().size() + " beliefs held");
+
+		/* Growing, keeping all the observations and the belief, then shrinking to the latest ones */
+		int[] sizes = { 2 * memorySize, memorySize / 2 };
+		for (int next : sizes) {
+			double before = belief(agent);
+			int beliefs = agent.getBeliefTable().size();
+			int time = agent.getTime();
+			Map<String, String> changes = new HashMap<>();
+			changes.put(AgentParameters.Key.MEMORY_SIZE.name(), "" + next);
+			agent.applyParameters(agent.getParameters().with(agent.getParameters().getVersion() + 1, changes));
+			for (int i = 0; i < swarm.size(); i++)
+				swarm.getAgent(i).step();
+			double after = belief(agent);
+			System.out.println("Memory of " + next + " observations: belief " + after + ", "
+					+ agent.getBeliefTable().size() + " beliefs held, valid " + agent.isBeliefValid());
+			check(agent.getBeliefTable().size() == beliefs, "belief table kept");
+			check(agent.getTime() >= time, "time kept");
+			check(agent.isBeliefValid(), "belief still valid");
+			check(swarm.getAgent(1).getParameters().getMemorySize() == originalSize, "other agents' parameters kept");
+			if (next > memorySize)
+				check(after == before, "observations kept");
+			memorySize = next;
+		}
+
+		/* Running on, the memory filling up */
+		for (int round = 0; round < 2 * memorySize * SwarmSimulation.OBSERVATION_ROUNDS; round++)
+			swarm.round();
+		System.out.println("After " + (2 * memorySize) + " s more: belief " + belief(agent) + ", knowledge complete "
+				+ swarm.isKnowledgeComplete());
+		check(swarm.isKnowledgeComplete(), "distributed knowledge after the resize");
+	}
+
+	/* Rolls parameters out to agents connected to a headless monitor */
+	private static void rollout(int agents) throws Exception {
+		int port;
+		try (ServerSocket probe = new ServerSocket(0)) {
+			port = probe.getLocalPort();
+		}
+		HeadlessMonitor monitor = new HeadlessMonitor(port, 0);
+		Thread acceptThread = new Thread(() -> {
+			try {
+				monitor.acceptAgents();
+			} catch (IOException e) {
+				// stopping
+			}
+		}, "acceptAgents");
+		acceptThread.setDaemon(true);
+		acceptThread.start();
+
+		/* The last agent not acknowledging the second rollout */
+		Agent[] swarm = new Agent[agents];
+		long version = AgentParameters.get().getVersion();
+		for (int i = 0; i < agents; i++) {
+			swarm[i] = i == agents - 1 ? new DeafAgent(i + 1, version + 2)
+					: new Agent(i + 1, new SimulatedInputs(0.5, i + 1));
+			swarm[i].connectSupervisor("localhost:" + port);
+		}
+		ParameterRollout rollout = monitor.getRollout();
+		awaitVersion(rollout, swarm, version, 5000);
+		int firstStage = (int) Math.ceil(STAGES[0] * agents);
+
+		Map<String, String> changes = new HashMap<>();
+		changes.put(AgentParameters.Key.ACTION_RELAY_PROBABILITY.name(), "0.5");
+		long start = System.nanoTime();
+		AgentParameters next = rollout.start(changes, STAGES, SOAK_TIME);
+		checkFirstStage(rollout, swarm, next, firstStage);
+		boolean done = awaitVersion(rollout, swarm, next.getVersion(), 60000);
+		System.out.println("Rollout of " + next + " to " + agents + " agents in " + STAGES.length + " stages: "
+				+ (System.nanoTime() - start) / 1000000 + " ms, " + rollout.statusJson().split(",\"swarm\"")[0] + "}");
+		check(done && rollout.statusJson().contains("\"completed\""), "rollout completed");
+		check(running(swarm, next.getVersion()) == agents, "every agent running the rollout");
+
+		changes.put(AgentParameters.Key.ACTION_RELAY_PROBABILITY.name(), "0.9");
+		start = System.nanoTime();
+		AgentParameters failing = rollout.start(changes, STAGES, SOAK_TIME);
+		checkFirstStage(rollout, swarm, failing, firstStage);
+		/* Rolled back as a newer version, the deaf agent never running the one rolled out */
+		long deadline = System.currentTimeMillis() + 60000;
+		boolean isDeaf = true;
+		done = false;
+		while (!done && System.currentTimeMillis() < deadline) {
+			isDeaf &= swarm[agents - 1].getParameters().getVersion() != failing.getVersion();
+			done = awaitVersion(rollout, swarm, failing.getVersion() + 1, 50);
+		}
+		System.out.println("Rollout of " + failing + " an agent does not acknowledge: "
+				+ (System.nanoTime() - start) / 1000000 + " ms, " + rollout.statusJson().split(",\"swarm\"")[0] + "}");
+		check(done && rollout.statusJson().contains("rolled back"), "rollout rolled back");
+		check(isDeaf, "the deaf agent never running the rollout");
+		boolean isPrevious = true;
+		for (Agent agent : swarm)
+			isPrevious &= agent.getParameters().getActionRelayProbability() == 0.5;
+		check(isPrevious, "every agent running the previous parameters");
+	}
+
+	/* Checks that only the agents of the first stage run a snapshot, during its soak */
+	private static void checkFirstStage(ParameterRollout rollout, Agent[] swarm, AgentParameters next, int firstStage)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + SOAK_TIME / 2;
+		while (running(swarm, next.getVersion()) < firstStage && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+		/* Leaving time for a wrong push to others to show */
+		Thread.sleep(SOAK_TIME / 4);
+		String status = rollout.statusJson();
+		int running = running(swarm, next.getVersion());
+		System.out.println("First stage of " + next + ": " + running + " agents running it, "
+				+ count(status, "\"version\":" + next.getVersion() + "}") + " acknowledged");
+		check(running == firstStage && count(status, "\"version\":" + next.getVersion() + "}") == firstStage
+				&& status.contains("\"stagesDone\":0"), "only the first stage running " + next);
+	}
+
+	/* Counts the agents running a version */
+	private static int running(Agent[] swarm, long version) {
+		int running = 0;
+		for (Agent agent : swarm)
+			running += agent.getParameters().getVersion() == version ? 1 : 0;
+		return running;
+	}
+
+	/* Waits for every agent to acknowledge a version, and no rollout to be running */
+	private static boolean awaitVersion(ParameterRollout rollout, Agent[] swarm, long version, long timeout)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeout;
+		while (true) {
+			String status = rollout.statusJson();
+			if (status.contains("\"target\":null") && count(status, "\"version\":" + version + "}") == swarm.length)
+				return true;
+			if (System.currentTimeMillis() >= deadline)
+				return false;
+			Thread.sleep(Math.min(50, timeout));
+		}
+	}
+
+	/* Counts the occurrences of a string in another */
+	private static int count(String text, String part) {
+		int count = 0;
+		for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1))
+			count++;
+		return count;
+	}
+
+	/* The local belief of an agent */
+	private static double belief(Agent agent) {
+		return agent.getBeliefTable().get(agent.getId()).getBelief();
+	}
+
+	/* Records a check */
+	private static void check(boolean isPassed, String name) {
+		if (!isPassed) {
+			System.out.println("CHECK FAILED: " + name);
+			failed = true;
+		}
+	}
+}
@@ -0,0 +1,81 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * This class represents a benchmark of the cost of judging several floor
+ * properties at once: for an increasing number of properties it runs a
+ * SwarmSimulation whose agents send the beliefs on all properties in one
+ * message, and measures the airtime, as bytes on the serial port of the XBee
+ * module per frame, and the CPU time of an agent per round (observations,
+ * main loop pass, building its message and parsing the ones it hears). Both
+ * are compared with judging each property with a separate message, as many
+ * times the cost of a single property. It also shows the share of the
+ * properties the agents decided on at the end, the properties past phi never
+ * being read on the simulated floor, and that an agent rejects more
+ * properties than its frames carry.
+ * <p>
+ * Usage: PropertyBenchmark [rounds=20000]
+ */
+public class PropertyBenchmark {
+
+	/* Bytes added to every frame by the XBee API frame, as in UdpMulticastTransport */
+	private static final int FRAME_OVERHEAD = 9;
+
+	/* Property counts compared */
+	private static final int[] PROPERTY_COUNTS = { 1, 2, 4, 8, MessageSender.MAX_PROPERTIES };
+
+	/* Entry point to the application */
+	public static void main(String[] args) {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int size = (int) AgentParameters.get().getSwarmSize();
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+		System.out.println(size + " agents, fully connected, " + rounds + " rounds per property count");
+		System.out.println(String.format("%-10s %12s %10s %12s %14s %10s %12s %8s", "properties", "bytes/frame",
+				"x single", "x separate", "CPU us/round", "x single", "x separate", "decided"));
+
+		double singleBytes = 0, singleMicros = 0;
+		for (int propertyCount : PROPERTY_COUNTS) {
+			SwarmSimulation swarm = new SwarmSimulation(SwarmSimulation.full(size), 0.8, propertyCount);
+			for (int i = 0; i < size; i++)
+				swarm.getAgent(i).setPropertyCount(propertyCount);
+
+			/* Warming up, and filling the memories and the tables */
+			for (int round = 0; round < rounds; round++)
+				swarm.round();
+
+			long frames = swarm.getFramesSent();
+			long bytes = swarm.getBytesSent();
+			long cpu = threads.getCurrentThreadCpuTime();
+			for (int round = 0; round < rounds; round++)
+				swarm.round();
+			cpu = threads.getCurrentThreadCpuTime() - cpu;
+			frames = swarm.getFramesSent() - frames;
+			bytes = swarm.getBytesSent() - bytes;
+
+			double frameBytes = (bytes + frames * FRAME_OVERHEAD) / (double) frames;
+			double micros = cpu / 1000.0 / rounds / size;
+			if (propertyCount == 1) {
+				singleBytes = frameBytes;
+				singleMicros = micros;
+			}
+			int decided = 0;
+			for (int i = 0; i < size; i++) {
+				for (int property = 0; property < propertyCount; property++)
+					decided += swarm.getAgent(i).getPropertyDecision(property) != 0 ? 1 : 0;
+			}
+			System.out.println(String.format("%-10d %12.1f %10.2f %12.2f %14.2f %10.2f %12.2f %7.0f%%", propertyCount,
+					frameBytes, frameBytes / singleBytes, frameBytes / singleBytes / propertyCount, micros,
+					micros / singleMicros, micros / singleMicros / propertyCount, 100.0 * decided / size / propertyCount));
+		}
+
+		/* Past the properties a frame carries, the agent refuses to start */
+		try {
+			new SwarmSimulation(SwarmSimulation.full(size), 0.8, 0).getAgent(0)
+					.setPropertyCount(MessageSender.MAX_PROPERTIES + 1);
+			System.out.println("CHECK FAILED: " + (MessageSender.MAX_PROPERTIES + 1) + " properties accepted");
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+}
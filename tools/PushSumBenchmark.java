@@ -0,0 +1,167 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class represents a benchmark of the aggregation of the beliefs by
+ * push-sum gossip (see PushSumEstimator) against the belief table, run with
+ * SwarmSimulation on grids of increasing size, with and without frames lost.
+ * For each it measures:
+ * <ul>
+ * <li>the error of the swarm belief every agent estimates, against the
+ * average of the local beliefs, sampled every second once the memories are
+ * full, on average and at worst, and the widest spread of the estimates of
+ * the agents at a time;</li>
+ * <li>the time until every agent acts, on a floor where phi holds;</li>
+ * <li>the bytes per frame, on average and at most, and the largest belief
+ * table an agent holds.</li>
+ * </ul>
+ * It checks that with push-sum the estimates of the agents spread less than
+ * the gap between the belief thresholds, so that no agent can judge phi to
+ * hold while another judges it not to, that every agent ends up acting, and
+ * that the frames and the state of an agent stay the same size as the swarm
+ * grows, but for the digits of the IDs. It exits with status 1 if a check failed.
+ * <p>
+ * Usage: PushSumBenchmark [runs=5] [seconds=120] [floorRatio=0.9]
+ */
+public class PushSumBenchmark {
+
+	/* Widths of the grids compared */
+	private static final int[] WIDTHS = { 3, 5, 8, 12 };
+
+	/* Loss rates compared */
+	private static final double[] LOSS_RATES = { 0, 0.3 };
+
+	/* Seconds before the errors are sampled, for the memories to fill */
+	private static final int WARM_UP = 30;
+
+	/* Set once a check failed */
+	private static boolean failed;
+
+	/* The results of the runs of a configuration */
+	private static class Result {
+		private double errorSum;
+		private int errorCount;
+		private double maxError;
+		private double maxSpread;
+		private double allTimeSum;
+		private int allRuns;
+		private int endRuns;
+		private long frames;
+		private long bytes;
+		private int maxFrameBytes;
+		private int maxTable;
+	}
+
+	/* Entry point to the application */
+	public static void main(String[] args) {
+		int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 120;
+		double floorRatio = args.length > 2 ? Double.parseDouble(args[2]) : 0.9;
+
+		System.out.println("Grids, floor ratio " + floorRatio + ", " + runs + " runs of " + seconds + " s each");
+		System.out.println(String.format("%-12s %6s %5s %8s %10s %8s %12s %8s %10s %11s %7s", "aggregation",
+				"agents", "loss", "error", "max error", "spread", "all act (s)", "bytes", "max bytes", "table size",
+				"acting"));
+
+		for (double lossRate : LOSS_RATES) {
+			int smallestFrame = 0;
+			for (int width : WIDTHS) {
+				for (Agent.AggregationMode mode : Agent.AggregationMode.values()) {
+					Result result = new Result();
+					for (int run = 0; run < runs; run++)
+						run(result, mode, width, lossRate, floorRatio, seconds, run);
+					print(result, mode, width * width, lossRate, runs);
+
+					if (mode == Agent.AggregationMode.PUSH_SUM) {
+						String name = "push-sum, " + width * width + " agents, loss " + lossRate + ": ";
+						check(result.maxSpread < AgentParameters.get().getPhiBeliefThreshold()
+								- AgentParameters.get().getNotPhiBeliefThreshold(), name + "estimates agreeing");
+						check(result.endRuns == runs, name + "every agent acting");
+						check(result.maxTable == 1, name + "no belief table");
+						/* Two IDs in a frame, of up to 3 digits instead of 1 */
+						if (smallestFrame == 0)
+							smallestFrame = result.maxFrameBytes;
+						check(result.maxFrameBytes <= smallestFrame + 4, name + "frames of the same size");
+					}
+				}
+			}
+		}
+
+		System.out.println(failed ? "FAILED" : "All checks passed");
+		System.exit(failed ? 1 : 0);
+	}
+
+	/* Runs a swarm on a grid, adding its measures to the result */
+	private static void run(Result result, Agent.AggregationMode mode, int width, double lossRate,
+			double floorRatio, int seconds, int seed) {
+		int size = width * width;
+		/* The agents taking the swarm size from the process snapshot */
+		Map<String, String> changes = new HashMap<>();
+		changes.put(AgentParameters.Key.SWARM_SIZE.name(), "" + size);
+		AgentParameters.set(AgentParameters.get().with(AgentParameters.get().getVersion() + 1, changes));
+		SwarmSimulation swarm = new SwarmSimulation(SwarmSimulation.grid(width, width), floorRatio, seed);
+		swarm.setLossRate(lossRate);
+		for (int i = 0; i < size; i++)
+			swarm.getAgent(i).setAggregationMode(mode);
+
+		double allTime = -1;
+		int roundsPerSecond = 1000 / SwarmSimulation.ROUND_MILLIS;
+		while (swarm.getSeconds() < seconds) {
+			swarm.round();
+			if (allTime < 0 && swarm.actingCount() == size)
+				allTime = swarm.getSeconds();
+			if (swarm.getSeconds() < WARM_UP || swarm.getRound() % roundsPerSecond != 0)
+				continue;
+
+			/* The estimates against the average the agents aggregate */
+			double average = 0;
+			for (int i = 0; i < size; i++)
+				average += swarm.getAgent(i).getBeliefTable().get(i + 1).getBelief();
+			average /= size;
+			double lowest = 1, highest = 0;
+			for (int i = 0; i < size; i++) {
+				double estimate = estimate(swarm.getAgent(i), mode);
+				double error = Math.abs(estimate - average);
+				result.errorSum += error;
+				result.errorCount++;
+				result.maxError = Math.max(result.maxError, error);
+				lowest = Math.min(lowest, estimate);
+				highest = Math.max(highest, estimate);
+			}
+			result.maxSpread = Math.max(result.maxSpread, highest - lowest);
+		}
+
+		if (allTime >= 0) {
+			result.allTimeSum += allTime;
+			result.allRuns++;
+		}
+		result.endRuns += swarm.actingCount() == size ? 1 : 0;
+		result.frames += swarm.getFramesSent();
+		result.bytes += swarm.getBytesSent();
+		result.maxFrameBytes = Math.max(result.maxFrameBytes, swarm.getMaxFrameBytes());
+		for (int i = 0; i < size; i++)
+			result.maxTable = Math.max(result.maxTable, swarm.getAgent(i).getBeliefTable().size());
+	}
+
+	/* The swarm belief an agent decides with */
+	private static double estimate(Agent agent, Agent.AggregationMode mode) {
+		return mode == Agent.AggregationMode.PUSH_SUM ? agent.getPushSum().getEstimate() : agent.getSwarmBelief(0);
+	}
+
+	/* Prints the results of a configuration */
+	private static void print(Result result, Agent.AggregationMode mode, int size, double lossRate, int runs) {
+		System.out.println(String.format("%-12s %6d %5.2f %8.3f %10.3f %8.3f %12s %8.1f %10d %11d %7s", mode,
+				size, lossRate, result.errorSum / result.errorCount, result.maxError, result.maxSpread,
+				result.allRuns == 0 ? "-" : String.format("%.1f", result.allTimeSum / result.allRuns),
+				(double) result.bytes / result.frames, result.maxFrameBytes, result.maxTable,
+				result.endRuns + "/" + runs));
+	}
+
+	/* Records a check */
+	private static void check(boolean isPassed, String name) {
+		if (!isPassed) {
+			System.out.println("CHECK FAILED: " + name);
+			failed = true;
+		}
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ * This class represents a benchmark of the quiescent mode of the agents (see
+ * ActivityController): a swarm settles on a floor, and the benchmark measures
+ * the frames sent, the observations made and the main loop passes run per
+ * agent and second once settled, and the share of the time the agents are
+ * quiescent. Then the floor changes, and it measures how long the swarm takes
+ * to reverse its decision. Both are compared with the agents always running
+ * at full rate. A floor that does not change shows the swarm settled on phi,
+ * the agents acting with their continuation decisions.
+ * <p>
+ * Usage: QuiescenceBenchmark [runs=10] [settle=300] [seconds=300]
+ */
+public class QuiescenceBenchmark {
+
+	/* Simulated seconds after which the swarm is considered settled */
+	private static final int SETTLED_TIME = 60;
+
+	/* The floor ratios before and after the change, the same for a static floor */
+	private static final double[][] CHANGES = { { 0.9, 0.9 }, { 0.9, 0.3 }, { 0.3, 0.9 } };
+
+	/* Entry point to the application */
+	public static void main(String[] args) {
+		int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		int settle = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+		int size = (int) AgentParameters.get().getSwarmSize();
+		int roundsPerSecond = 1000 / SwarmSimulation.ROUND_MILLIS;
+
+		System.out.println(size + " agents, fully connected, " + runs + " runs settling for " + settle
+				+ " s, then the floor changes (per agent and second once settled)");
+		System.out.println(String.format("%-12s %-10s %9s %13s %9s %11s %13s", "activity", "floor", "frames",
+				"observations", "passes", "quiescent", "reversal (s)"));
+
+		for (boolean isEnabled : new boolean[] { false, true }) {
+			for (double[] change : CHANGES) {
+				double frames = 0, observations = 0, passes = 0, quiescent = 0, reversal = 0;
+				int reversals = 0;
+
+				for (int run = 0; run < runs; run++) {
+					SwarmSimulation swarm = new SwarmSimulation(SwarmSimulation.full(size), change[0], run);
+					for (int i = 0; i < size; i++)
+						swarm.getAgent(i).getActivity().setEnabled(isEnabled);
+
+					while (swarm.getRound() < SETTLED_TIME * roundsPerSecond)
+						swarm.round();
+					long startFrames = swarm.getFramesSent(), startObservations = swarm.getObservations(),
+							startSteps = swarm.getSteps();
+					long quiescentRounds = 0;
+					while (swarm.getRound() < settle * roundsPerSecond) {
+						swarm.round();
+						for (int i = 0; i < size; i++)
+							quiescentRounds += swarm.getAgent(i).getActivity().isQuiescent() ? 1 : 0;
+					}
+					double agentSeconds = (double) size * (settle - SETTLED_TIME);
+					frames += (swarm.getFramesSent() - startFrames) / agentSeconds;
+					observations += (swarm.getObservations() - startObservations) / agentSeconds;
+					passes += (swarm.getSteps() - startSteps) / agentSeconds;
+					quiescent += quiescentRounds / (agentSeconds * roundsPerSecond);
+
+					if (change[1] == change[0])
+						continue;
+
+					/* Changing the floor, and waiting for the opposite decision */
+					for (int i = 0; i < size; i++)
+						swarm.getInputs(i).setFloorRatio(change[1]);
+					int changeRound = swarm.getRound();
+					int target = change[1] > change[0] ? size : 0;
+					while (swarm.actingCount() != target && swarm.getRound() - changeRound < seconds * roundsPerSecond)
+						swarm.round();
+					if (swarm.actingCount() == target) {
+						reversal += (swarm.getRound() - changeRound) / (double) roundsPerSecond;
+						reversals++;
+					}
+				}
+
+				System.out.println(String.format("%-12s %-10s %9.2f %13.2f %9.2f %10.0f%% %13s",
+						isEnabled ? "adaptive" : "full rate",
+						change[1] == change[0] ? "" + change[0] : change[0] + "->" + change[1], frames / runs,
+						observations / runs, passes / runs, 100 * quiescent / runs,
+						change[1] == change[0] ? "-"
+								: reversals == 0 ? "never"
+										: String.format("%.1f (%d/%d)", reversal / reversals, reversals, runs)));
+			}
+		}
+	}
+}
@@ -0,0 +1,111 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * This class represents an analyzer of the JDK Flight Recorder recordings of
+ * an agent (see mirto.jfc): for every agent event, grouped by phase, message
+ * type, branch, outcome or report type, it prints the number of events, their
+ * rate and the percentiles of their duration, and the bytes per second of the
+ * radio events.
+ * <p>
+ * Usage: RecordingAnalyzer recording.jfr
+ */
+public class RecordingAnalyzer {
+
+	/* Prefix of the names of the agent events */
+	private static final String EVENT_PREFIX = "mirto.";
+
+	/* Fields the events are grouped by, the first one present being used */
+	private static final String[] GROUP_FIELDS = { "phase", "messageType", "branch", "outcome", "reportType" };
+
+	/* Entry point to the application */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: RecordingAnalyzer recording.jfr");
+			return;
+		}
+
+		Map<String, Group> groups = new TreeMap<>();
+		Instant first = null, last = null;
+
+		try (RecordingFile recording = new RecordingFile(Paths.get(args[0]))) {
+			while (recording.hasMoreEvents()) {
+				RecordedEvent event = recording.readEvent();
+				String name = event.getEventType().getName();
+				if (!name.startsWith(EVENT_PREFIX))
+					continue;
+
+				String key = name.substring(EVENT_PREFIX.length());
+				for (String field : GROUP_FIELDS) {
+					if (event.hasField(field)) {
+						key += " " + event.getString(field);
+						break;
+					}
+				}
+				Group group = groups.get(key);
+				if (group == null) {
+					group = new Group();
+					groups.put(key, group);
+				}
+				group.add(event.getDuration().toNanos(), event.hasField("size") ? event.getInt("size") : 0);
+
+				if (first == null || event.getStartTime().isBefore(first))
+					first = event.getStartTime();
+				if (last == null || event.getEndTime().isAfter(last))
+					last = event.getEndTime();
+			}
+		}
+
+		if (groups.isEmpty()) {
+			System.out.println("No agent event in " + args[0]);
+			return;
+		}
+
+		double seconds = Math.max((last.toEpochMilli() - first.toEpochMilli()) / 1000.0, 0.001);
+		System.out.println(String.format("%.1f s of agent events", seconds));
+		System.out.println(String.format("%-34s %8s %8s %9s %9s %9s %9s %8s", "event", "count", "per s",
+				"p50 ms", "p90 ms", "p99 ms", "max ms", "bytes/s"));
+		for (Map.Entry<String, Group> entry : groups.entrySet()) {
+			Group group = entry.getValue();
+			long[] durations = group.sortedDurations();
+			System.out.println(String.format("%-34s %8d %8.2f %9.3f %9.3f %9.3f %9.3f %8s", entry.getKey(),
+					durations.length, durations.length / seconds, percentile(durations, 50),
+					percentile(durations, 90), percentile(durations, 99), durations[durations.length - 1] / 1e6,
+					group.bytes == 0 ? "-" : String.format("%.0f", group.bytes / seconds)));
+		}
+	}
+
+	/* Returns a percentile of sorted durations, in milliseconds */
+	private static double percentile(long[] sorted, double percentile) {
+		int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+		return sorted[Math.max(index, 0)] / 1e6;
+	}
+
+	/* Class to represent the events of a group */
+	private static class Group {
+
+		private long[] durations = new long[64];
+		private int count;
+		private long bytes;
+
+		public void add(long duration, int size) {
+			if (count == durations.length)
+				durations = Arrays.copyOf(durations, count * 2);
+			durations[count++] = duration;
+			bytes += size;
+		}
+
+		public long[] sortedDurations() {
+			long[] sorted = Arrays.copyOf(durations, count);
+			Arrays.sort(sorted);
+			return sorted;
+		}
+	}
+}
@@ -0,0 +1,68 @@
+/**
+ * This class represents a benchmark of the relaying of other agents' beliefs:
+ * it measures, with and without relaying, the simulated time a swarm on a
+ * sparse topology takes for every agent to know every agent's belief, and for
+ * every agent to act on a floor where the property holds.
+ * <p>
+ * Usage: RelayBenchmark [runs=20] [floorRatio=0.9] [lossRate=0.1]
+ */
+public class RelayBenchmark {
+
+	/* Rounds after which a run is stopped */
+	private static final int MAX_ROUNDS = 20 * 60 * 1000 / SwarmSimulation.ROUND_MILLIS;
+
+	/* Entry point to the application */
+	public static void main(String[] args) {
+		int runs = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		double floorRatio = args.length > 1 ? Double.parseDouble(args[1]) : 0.9;
+		double lossRate = args.length > 2 ? Double.parseDouble(args[2]) : 0.1;
+		int size = (int) AgentParameters.get().getSwarmSize();
+
+		System.out.println(size + " agents, floor ratio " + floorRatio + ", loss rate " + lossRate + ", " + runs
+				+ " runs each (seconds, mean over the runs reaching the goal)");
+		System.out.println("topology  relay  full knowledge (runs)   all acting (runs)   frames/agent/s");
+
+		String[] names = { "line", "ring" };
+		boolean[][][] topologies = { SwarmSimulation.line(size), SwarmSimulation.ring(size) };
+		for (int t = 0; t < topologies.length; t++) {
+			for (int relayBudget : new int[] { 0, AgentParameters.get().getRelayBudget() }) {
+				double knowledgeSum = 0, actingSum = 0, frameRate = 0;
+				int knowledgeRuns = 0, actingRuns = 0;
+
+				for (int run = 0; run < runs; run++) {
+					SwarmSimulation swarm = new SwarmSimulation(topologies[t], floorRatio, run);
+					swarm.setLossRate(lossRate);
+					for (int i = 0; i < size; i++)
+						swarm.getAgent(i).setRelayBudget(relayBudget);
+
+					double knowledgeTime = -1, actingTime = -1;
+					while (swarm.getRound() < MAX_ROUNDS && (knowledgeTime < 0 || actingTime < 0)) {
+						swarm.round();
+						if (knowledgeTime < 0 && swarm.isKnowledgeComplete())
+							knowledgeTime = swarm.getSeconds();
+						if (actingTime < 0 && swarm.actingCount() == size)
+							actingTime = swarm.getSeconds();
+					}
+
+					if (knowledgeTime >= 0) {
+						knowledgeSum += knowledgeTime;
+						knowledgeRuns++;
+					}
+					if (actingTime >= 0) {
+						actingSum += actingTime;
+						actingRuns++;
+					}
+					frameRate += swarm.getFramesSent() / swarm.getSeconds() / size / runs;
+				}
+
+				System.out.println(String.format("%-9s %5d  %13s (%2d)  %13s (%2d)   %.1f", names[t], relayBudget,
+						mean(knowledgeSum, knowledgeRuns), knowledgeRuns, mean(actingSum, actingRuns), actingRuns,
+						frameRate));
+			}
+		}
+	}
+
+	private static String mean(double sum, int count) {
+		return count == 0 ? "never" : String.format("%.1f", sum / count);
+	}
+}
@@ -0,0 +1,94 @@
+/**
+ * This class represents a benchmark of the restart of an agent: once a swarm
+ * on a ring has been running for a while, an agent restarts with no
+ * checkpoint, its time stamps starting over from 0, and the benchmark
+ * measures how long the other agents take to hold a belief from its new run.
+ * The restart is made with the same incarnation, as every restart was before
+ * incarnations, and with the next one, and compared with the time the swarm
+ * takes to learn the belief of the agent when it first starts.
+ * <p>
+ * Usage: RestartBenchmark [runs=10] [uptime=600] [lossRate=0.1]
+ */
+public class RestartBenchmark {
+
+	/* Rounds after which an agent is not waited for anymore */
+	private static final int MAX_ROUNDS = 30 * 60 * 1000 / SwarmSimulation.ROUND_MILLIS;
+
+	/* Index of the agent restarting */
+	private static final int RESTARTED = 0;
+
+	/* Entry point to the application */
+	public static void main(String[] args) {
+		int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		int uptime = args.length > 1 ? Integer.parseInt(args[1]) : 600;
+		double lossRate = args.length > 2 ? Double.parseDouble(args[2]) : 0.1;
+		int size = (int) AgentParameters.get().getSwarmSize();
+		int uptimeRounds = uptime * 1000 / SwarmSimulation.ROUND_MILLIS;
+
+		System.out.println(size + " agents on a ring, restart after " + uptime + " s, loss rate " + lossRate + ", "
+				+ runs + " runs (seconds for every agent to hear the agent, mean and worst)");
+
+		double firstSum = 0, firstWorst = 0;
+		double[] restartSums = new double[2], restartWorsts = new double[2];
+		int[] restartMissed = new int[2];
+
+		for (int run = 0; run < runs; run++) {
+			for (int next = 0; next < 2; next++) {
+				SwarmSimulation swarm = new SwarmSimulation(SwarmSimulation.ring(size), 0.5, run);
+				swarm.setLossRate(lossRate);
+
+				/* First start, measured once per run */
+				double first = timeToHear(swarm, new AgentBelief[size]);
+				if (next == 0) {
+					firstSum += first;
+					firstWorst = Math.max(firstWorst, first);
+				}
+				while (swarm.getRound() < uptimeRounds)
+					swarm.round();
+
+				/* The beliefs of the previous run the other agents hold */
+				AgentBelief[] previous = new AgentBelief[size];
+				for (int i = 0; i < size; i++)
+					previous[i] = swarm.getAgent(i).getBeliefTable().get(RESTARTED + 1);
+
+				swarm.restart(RESTARTED, swarm.getAgent(RESTARTED).getIncarnation() + next);
+				double restart = timeToHear(swarm, previous);
+				if (restart < 0) {
+					restartMissed[next]++;
+					restart = MAX_ROUNDS * SwarmSimulation.ROUND_MILLIS / 1000.0;
+				}
+				restartSums[next] += restart;
+				restartWorsts[next] = Math.max(restartWorsts[next], restart);
+			}
+		}
+
+		System.out.println(String.format("%-28s %8.1f %8.1f", "first start", firstSum / runs, firstWorst));
+		String[] names = { "restart, same incarnation", "restart, next incarnation" };
+		for (int next = 0; next < 2; next++) {
+			System.out.println(String.format("%-28s %8.1f %8.1f%s", names[next], restartSums[next] / runs,
+					restartWorsts[next], restartMissed[next] == 0 ? ""
+							: " (" + restartMissed[next] + " runs stopped after " + MAX_ROUNDS
+									* SwarmSimulation.ROUND_MILLIS / 1000 + " s)"));
+		}
+	}
+
+	/*
+	 * Runs the swarm until every other agent holds a belief of the restarted
+	 * agent other than the one it held before, returning the seconds it took,
+	 * -1 if it did not happen within MAX_ROUNDS
+	 */
+	private static double timeToHear(SwarmSimulation swarm, AgentBelief[] previous) {
+		int start = swarm.getRound();
+		while (swarm.getRound() - start < MAX_ROUNDS) {
+			swarm.round();
+			boolean isHeard = true;
+			for (int i = 0; i < swarm.size() && isHeard; i++) {
+				AgentBelief belief = swarm.getAgent(i).getBeliefTable().get(RESTARTED + 1);
+				isHeard = i == RESTARTED || (belief != null && belief != previous[i]);
+			}
+			if (isHeard)
+				return (swarm.getRound() - start) * SwarmSimulation.ROUND_MILLIS / 1000.0;
+		}
+		return -1;
+	}
+}
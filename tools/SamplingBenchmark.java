@@ -0,0 +1,279 @@
+import java.util.Random;
+
+/**
+ * This class represents a benchmark of when a robot observes the floor, on the
+ * synthetic arena of CoverageBenchmark: a square of ARENA_CELLS cells per side
+ * whose floor is made of square patches that have the property or not as a
+ * whole. A robot walks over it with its real agent and exploration strategy,
+ * in simulated time, and observes the floor in two ways from the same walk:
+ * <ul>
+ * <li>time: at the start of every forward leg and every second, as
+ * MotionControl used to;</li>
+ * <li>distance: every SAMPLE_DISTANCE metres estimated from the motor speeds,
+ * discarding the distance before a wall hit, as MotionControl does.</li>
+ * </ul>
+ * When it reaches a wall the robot pushes against it for WALL_PUSH_TIME
+ * before a bumper closes, its motors still going forward.
+ * <p>
+ * For each way it reports the observations per minute, the share of them made
+ * on the cell of the observation before, the time for the memory to fill up
+ * and the error of the local belief with respect to the share of the arena
+ * having the property, after one and two minutes and over the run once valid.
+ * <p>
+ * Usage: SamplingBenchmark [runs=200] [seconds=300] [floorRatio=0.5]
+ */
+public class SamplingBenchmark {
+
+	/* The arena: side in metres, cells per side and cells per patch side */
+	private static final double ARENA_SIDE = 3;
+	private static final int ARENA_CELLS = 60;
+	private static final int PATCH_CELLS = 6;
+
+	/* Simulated time step, in milliseconds */
+	private static final int STEP_MILLIS = SwarmSimulation.ROUND_MILLIS;
+
+	/* Speeds and times, as MotionControl */
+	private static final int SPEED = 150;
+	private static final int TURNING_SPEED = 150;
+	private static final double SAMPLE_INTERVAL = 1;
+	private static final double WALL_TURNING_TIME = 0.25;
+
+	/* Seconds a robot pushes against a wall before a bumper closes */
+	private static final double WALL_PUSH_TIME = 0.5;
+
+	/* The ways of observing */
+	private static final String[] SAMPLINGS = { "time", "distance" };
+
+	/* Entry point to the application */
+	public static void main(String[] args) {
+		int runs = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+		double floorRatio = args.length > 2 ? Double.parseDouble(args[2]) : 0.5;
+
+		System.out.println("A robot on a " + ARENA_SIDE + " m arena of " + ARENA_CELLS + "x" + ARENA_CELLS
+				+ " cells in patches of " + PATCH_CELLS + "x" + PATCH_CELLS + ", floor ratio " + floorRatio + ", "
+				+ AgentParameters.EXPLORATION_MODE + " walk, " + runs + " runs of " + seconds + " s");
+		System.out.println(String.format("%-10s %12s %12s %10s %10s %10s %10s", "sampling", "samples/min",
+				"same cell", "valid (s)", "error 60s", "error 120s", "error"));
+
+		for (int sampling = 0; sampling < SAMPLINGS.length; sampling++) {
+			double samples = 0, repeated = 0, validTime = 0, error60 = 0, error120 = 0, error = 0;
+			int valid60 = 0, valid120 = 0;
+			for (int run = 0; run < runs; run++) {
+				Walk walk = new Walk(sampling == 1, floorRatio, run);
+				walk.run(seconds * 1000 / STEP_MILLIS);
+				samples += walk.samples / (seconds / 60.0);
+				repeated += walk.repeated / (double) Math.max(walk.samples, 1);
+				validTime += walk.validTime;
+				error += walk.error / Math.max(walk.errorCount, 1);
+				if (walk.error60 >= 0) {
+					error60 += walk.error60;
+					valid60++;
+				}
+				if (walk.error120 >= 0) {
+					error120 += walk.error120;
+					valid120++;
+				}
+			}
+			System.out.println(String.format("%-10s %12.1f %11.1f%% %10.1f %10.3f %10.3f %10.3f", SAMPLINGS[sampling],
+					samples / runs, 100 * repeated / runs, validTime / runs, error60 / Math.max(valid60, 1),
+					error120 / Math.max(valid120, 1), error / runs));
+		}
+	}
+
+	/* The inputs of the robot: its sensors read the cell under it */
+	private static class WorldInputs extends SimulatedInputs {
+
+		/* Infrared values read on cells with and without the property */
+		private static final int PHI_IR_VALUE = 200;
+		private static final int NOT_PHI_IR_VALUE = 60;
+
+		private boolean[][] floor;
+
+		/* Position in metres, heading in radians, and whether a bumper is pressed */
+		private double x, y, heading;
+		private boolean isPressed;
+
+		WorldInputs(boolean[][] floor, long seed) {
+			super(0, seed);
+			this.floor = floor;
+		}
+
+		int cell() {
+			int column = Math.min((int) (x / ARENA_SIDE * ARENA_CELLS), ARENA_CELLS - 1);
+			int row = Math.min((int) (y / ARENA_SIDE * ARENA_CELLS), ARENA_CELLS - 1);
+			return row * ARENA_CELLS + column;
+		}
+
+		@Override
+		public int getIR(int sensor) {
+			int cell = cell();
+			return floor[cell / ARENA_CELLS][cell % ARENA_CELLS] ? PHI_IR_VALUE : NOT_PHI_IR_VALUE;
+		}
+
+		@Override
+		public boolean isPressed(int bumper) {
+			return isPressed;
+		}
+	}
+
+	/* A walk of a robot over an arena, observing one way */
+	private static class Walk {
+
+		private boolean isDistance;
+		private double trueRatio;
+
+		/* The robot and the state of its walk */
+		private WorldInputs inputs;
+		private Agent agent;
+		private MotionControl motion;
+		private ExplorationStrategy strategy;
+		private boolean isLeg;
+		private double forwardLeft, turnLeft, sampleLeft, pushLeft;
+		private int lastCell = -1;
+
+		/* Results, the errors after one and two minutes negative if not valid yet */
+		private long samples, repeated;
+		private double validTime;
+		private double error, error60 = -1, error120 = -1;
+		private long errorCount;
+
+		Walk(boolean isDistance, double floorRatio, long seed) {
+			this.isDistance = isDistance;
+			boolean[][] floor = new boolean[ARENA_CELLS][ARENA_CELLS];
+			Random random = new Random(seed);
+			int phiCells = 0;
+			for (int row = 0; row < ARENA_CELLS; row += PATCH_CELLS) {
+				for (int column = 0; column < ARENA_CELLS; column += PATCH_CELLS) {
+					boolean isPhi = random.nextDouble() < floorRatio;
+					for (int i = 0; i < PATCH_CELLS * PATCH_CELLS; i++)
+						floor[row + i / PATCH_CELLS][column + i % PATCH_CELLS] = isPhi;
+					phiCells += isPhi ? PATCH_CELLS * PATCH_CELLS : 0;
+				}
+			}
+			trueRatio = phiCells / (double) (ARENA_CELLS * ARENA_CELLS);
+
+			inputs = new WorldInputs(floor, random.nextLong());
+			inputs.x = random.nextDouble() * ARENA_SIDE;
+			inputs.y = random.nextDouble() * ARENA_SIDE;
+			inputs.heading = random.nextDouble() * 2 * Math.PI;
+			agent = new Agent(1, inputs);
+			strategy = MotionControl.strategy(AgentParameters.EXPLORATION_MODE);
+			motion = new MotionControl(agent, strategy);
+		}
+
+		/* Runs the walk for a number of steps */
+		void run(int steps) {
+			for (int step = 0; step < steps; step++) {
+				inputs.advance(STEP_MILLIS);
+				move();
+				agent.step();
+
+				if (!agent.isBeliefValid())
+					continue;
+				double time = (step + 1) * STEP_MILLIS / 1000.0;
+				if (validTime == 0)
+					validTime = time;
+				double belief = agent.getBeliefTable().get(agent.getId()).getBelief();
+				error += Math.abs(belief - trueRatio);
+				errorCount++;
+				if (time == 60)
+					error60 = Math.abs(belief - trueRatio);
+				if (time == 120)
+					error120 = Math.abs(belief - trueRatio);
+			}
+			if (validTime == 0)
+				validTime = steps * STEP_MILLIS / 1000.0;
+		}
+
+		/* Moves the robot of one step, as the random walk of MotionControl does */
+		private void move() {
+			double dt = STEP_MILLIS / 1000.0;
+
+			if (turnLeft != 0) {
+				double turn = Math.signum(turnLeft) * Math.min(Math.abs(turnLeft), dt);
+				inputs.heading += 2 * Math.PI / AgentParameters.FULL_TURN_TIME * turn;
+				turnLeft -= turn;
+				/* A wall turn takes time of the forward leg */
+				if (isLeg)
+					forwardLeft -= Math.abs(turn);
+				if (turnLeft == 0 && isLeg)
+					setMotors(SPEED, -SPEED);
+				return;
+			}
+
+			if (isLeg && forwardLeft <= 0) {
+				/* End of a leg */
+				isLeg = false;
+				turnLeft = strategy.nextTurnTime(agent);
+				setMotors(TURNING_SPEED * (turnLeft < 0 ? -1 : 1), TURNING_SPEED * (turnLeft < 0 ? -1 : 1));
+				return;
+			}
+
+			if (!isLeg) {
+				/* Start of a leg */
+				isLeg = true;
+				forwardLeft = strategy.nextForwardTime(agent);
+				setMotors(SPEED, -SPEED);
+				if (isDistance) {
+					sample(motion.sample(inputs.nanoTime()));
+				} else {
+					sample(true);
+					sampleLeft = sampleInterval();
+				}
+			}
+
+			double x = inputs.x + AgentParameters.FORWARD_SPEED * dt * Math.cos(inputs.heading);
+			double y = inputs.y + AgentParameters.FORWARD_SPEED * dt * Math.sin(inputs.heading);
+			if (x < 0 || x > ARENA_SIDE || y < 0 || y > ARENA_SIDE) {
+				/* Pushing against the wall until a bumper closes */
+				if (pushLeft <= 0)
+					pushLeft = WALL_PUSH_TIME;
+				pushLeft -= dt;
+				inputs.isPressed = pushLeft <= 0;
+			} else {
+				inputs.x = x;
+				inputs.y = y;
+			}
+
+			forwardLeft -= dt;
+			sampleLeft -= dt;
+			if (isDistance) {
+				sample(motion.sample(inputs.nanoTime()));
+			} else if (sampleLeft <= 0 && forwardLeft > 0) {
+				sample(true);
+				sampleLeft = sampleInterval();
+			}
+
+			if (inputs.isPressed) {
+				if (isDistance)
+					motion.wallHit(inputs.nanoTime());
+				inputs.isPressed = false;
+				turnLeft = WALL_TURNING_TIME;
+				setMotors(TURNING_SPEED, TURNING_SPEED);
+			}
+		}
+
+		/* The seconds between two observations of the time sampling, longer when quiescent */
+		private double sampleInterval() {
+			return agent.getActivity().isQuiescent() ? agent.getParameters().getQuiescentSampleInterval() : SAMPLE_INTERVAL;
+		}
+
+		/* Sets the motors of the robot, for the odometry */
+		private void setMotors(int speedM1, int speedM2) {
+			motion.setMotors(speedM1, speedM2, inputs.nanoTime());
+		}
+
+		/* Counts an observation, made by the distance sampling or to make now */
+		private void sample(boolean isObserved) {
+			if (!isObserved)
+				return;
+			if (!isDistance)
+				motion.readProperty();
+			samples++;
+			if (inputs.cell() == lastCell)
+				repeated++;
+			lastCell = inputs.cell();
+		}
+	}
+}
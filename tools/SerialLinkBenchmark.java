@@ -0,0 +1,286 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class represents a benchmark of the command layer in front of the
+ * serial link to the robot (see RobotCommands), run with a stand-in robot
+ * whose link takes the time the ASIP messages take at 57600 baud. For the
+ * given seconds, in real time, a motion thread moves as MotionControl does
+ * with the correlated walk, polling the bumpers, sampling the infrared sensors
+ * every second, spinning on the wall hits and playing the note of the action
+ * after its turns, while an agent thread starts and stops the action every few
+ * seconds, sometimes twice in a row, as the continuation decisions and the
+ * belief table do, writing the LCD line. The run ends with the shutdown, stopping
+ * the motors.
+ * <p>
+ * The same run is made with the commands sent straight to the link and
+ * through the layer, and for each it reports the commands that reached the
+ * link and the time it was busy with them, the time the motion thread waited
+ * for its commands and the time a sensor read took, and checks that the robot
+ * ends up in the same state.
+ * <p>
+ * Usage: SerialLinkBenchmark [seconds=30]
+ */
+public class SerialLinkBenchmark {
+
+	/* Microseconds a byte takes on the link, 10 bits at 57600 baud */
+	private static final double BYTE_MICROS = 10 * 1e6 / 57600;
+
+	/* Bytes of the ASIP messages, the motor speeds being one message per motor */
+	private static final int MOTORS_BYTES = 2 * 11;
+	private static final int LCD_BYTES = 8;
+	private static final int CLEAR_BYTES = 4;
+	private static final int NOTE_BYTES = 13;
+	private static final int READ_BYTES = 12;
+
+	/* Milliseconds between two bumper polls of the motion thread */
+	private static final int POLL_MILLIS = 10;
+
+	/* Mean seconds between two wall hits */
+	private static final double WALL_HIT_INTERVAL = 8;
+
+	/* Mean seconds between two action changes, and the chance of a second at once */
+	private static final double ACTION_INTERVAL = 3;
+	private static final double FLAP_PROBABILITY = 0.3;
+
+	/* Speeds, as MotionControl */
+	private static final int SPEED = 150;
+	private static final int TURNING_SPEED = 150;
+	private static final double WALL_TURNING_TIME = 0.25;
+
+	/* The stand-in robot: every request holds the link for its bytes */
+	private static class StandInRobot implements RobotLink {
+
+		/* Time the link was busy with commands, and the requests made */
+		private long busyNanos;
+		private long commands;
+		private long reads;
+
+		/* The state of the robot */
+		private int speedM1, speedM2;
+		private Map<Integer, String> lcd = new HashMap<>();
+		private volatile boolean isPressed;
+
+		/* Holds the link for a number of bytes */
+		private synchronized void transfer(int bytes, boolean isRead) {
+			long start = System.nanoTime();
+			long end = start + (long) (bytes * BYTE_MICROS * 1000);
+			while (System.nanoTime() < end)
+				LockSupport.parkNanos(end - System.nanoTime());
+			if (isRead) {
+				reads++;
+			} else {
+				busyNanos += System.nanoTime() - start;
+				commands++;
+			}
+		}
+
+		@Override
+		public synchronized void setMotors(int speedM1, int speedM2) {
+			transfer(MOTORS_BYTES, false);
+			this.speedM1 = speedM1;
+			this.speedM2 = speedM2;
+		}
+
+		@Override
+		public synchronized void writeLCDLine(String text, int line) {
+			transfer(LCD_BYTES + text.length(), false);
+			lcd.put(line, text);
+		}
+
+		@Override
+		public synchronized void clearLCDScreen() {
+			transfer(CLEAR_BYTES, false);
+			lcd.clear();
+		}
+
+		@Override
+		public synchronized void playNote(int note, int duration) {
+			transfer(NOTE_BYTES, false);
+		}
+
+		@Override
+		public int getIR(int sensor) {
+			transfer(READ_BYTES, true);
+			return 100;
+		}
+
+		@Override
+		public boolean isPressed(int bumper) {
+			transfer(READ_BYTES, true);
+			return isPressed;
+		}
+
+		/* The state of the robot, to compare the runs */
+		synchronized String state() {
+			return speedM1 + "," + speedM2 + " " + lcd;
+		}
+	}
+
+	/* The results of a run */
+	private static class Run {
+		private long blockedNanos;
+		private long[] readNanos = new long[1 << 16];
+		private int readCount;
+	}
+
+	/* Entry point to the application */
+	public static void main(String[] args) throws InterruptedException {
+		int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+
+		System.out.println("Stand-in robot at 57600 baud, " + seconds + " s runs");
+		System.out.println(String.format("%-8s %10s %10s %12s %12s %12s %12s", "link", "asked", "written",
+				"busy (ms)", "blocked (ms)", "read (ms)", "read p99 (ms)"));
+
+		String directState = run("direct", seconds, false);
+		String layerState = run("layer", seconds, true);
+		System.out.println(directState.equals(layerState) ? "Same final robot state: " + layerState
+				: "DIFFERENT FINAL ROBOT STATE: " + directState + " / " + layerState);
+	}
+
+	/* Runs the workload, straight on the link or through the layer, returning the final robot state */
+	private static String run(String name, int seconds, boolean isLayered) throws InterruptedException {
+		StandInRobot standIn = new StandInRobot();
+		RobotCommands commands = isLayered ? new RobotCommands(standIn) : null;
+		RobotLink robot = isLayered ? commands : standIn;
+		Run run = new Run();
+		AtomicLong asked = new AtomicLong();
+		long end = System.nanoTime() + seconds * 1000000000L;
+
+		/* Start up, as Agent */
+		robot.clearLCDScreen();
+		robot.writeLCDLine("trust4swarmrobotics", 0);
+		robot.writeLCDLine("MIRTO", 2);
+		robot.writeLCDLine("cleaning program", 3);
+		robot.writeLCDLine("NOT CLEANING", 0);
+		asked.addAndGet(5);
+
+		boolean[] isActing = new boolean[1];
+		Thread agent = new Thread(() -> {
+			Random random = new Random(1);
+			while (System.nanoTime() < end) {
+				sleep((long) (-Math.log(1 - random.nextDouble()) * ACTION_INTERVAL * 1000));
+				int changes = random.nextDouble() < FLAP_PROBABILITY ? 2 : 1;
+				for (int change = 0; change < changes && System.nanoTime() < end; change++) {
+					synchronized (isActing) {
+						isActing[0] = !isActing[0];
+						robot.writeLCDLine(isActing[0] ? "CLEANING" : "NOT CLEANING", 0);
+						asked.incrementAndGet();
+					}
+					sleep(50);
+				}
+			}
+		});
+
+		Thread motion = new Thread(() -> {
+			Random random = new Random(2);
+			Agent walker = new Agent(1, new SimulatedInputs(0.5, 3));
+			walker.setDebug(false);
+			ExplorationStrategy strategy = new CorrelatedWalk();
+			long nextHit = System.nanoTime() + nextInterval(random, WALL_HIT_INTERVAL);
+
+			while (System.nanoTime() < end) {
+				/* A forward leg, sampling every second and spinning on the wall hits */
+				command(run, asked, () -> robot.setMotors(SPEED, -SPEED));
+				long legEnd = System.nanoTime() + (long) (strategy.nextForwardTime(walker) * 1e9);
+				long nextSample = System.nanoTime();
+				while (System.nanoTime() < legEnd && System.nanoTime() < end) {
+					if (System.nanoTime() >= nextSample) {
+						for (int s = 0; s < 3; s++) {
+							int sensor = s;
+							read(run, () -> robot.getIR(sensor));
+						}
+						nextSample += 1000000000L;
+					}
+					if (System.nanoTime() >= nextHit) {
+						/* Hitting a wall, the bumper released by the spin */
+						standIn.isPressed = true;
+						nextHit = System.nanoTime() + nextInterval(random, WALL_HIT_INTERVAL);
+					}
+					boolean isHit = read(run, () -> robot.isPressed(0) ? 1 : 0) == 1;
+					isHit |= read(run, () -> robot.isPressed(1) ? 1 : 0) == 1;
+					if (isHit) {
+						command(run, asked, () -> robot.setMotors(TURNING_SPEED, TURNING_SPEED));
+						sleep((long) (WALL_TURNING_TIME * 1000));
+						standIn.isPressed = false;
+						command(run, asked, () -> robot.setMotors(SPEED, -SPEED));
+					}
+					sleep(POLL_MILLIS);
+				}
+
+				/* The turn, then the action */
+				double turn = strategy.nextTurnTime(walker);
+				int direction = turn < 0 ? -1 : 1;
+				command(run, asked, () -> robot.setMotors(direction * TURNING_SPEED, direction * TURNING_SPEED));
+				sleep((long) (Math.abs(turn) * 1000));
+				boolean isActingNow;
+				synchronized (isActing) {
+					isActingNow = isActing[0];
+				}
+				if (isActingNow)
+					command(run, asked, () -> robot.playNote(256, 500));
+			}
+			/* MotionControl.run() stopping */
+			command(run, asked, () -> robot.setMotors(0, 0));
+		});
+
+		agent.start();
+		motion.start();
+		agent.join();
+		motion.join();
+
+		/* Shutdown, as Agent: stopMotion() and shutDown() stop the motors again */
+		robot.setMotors(0, 0);
+		robot.setMotors(0, 0);
+		asked.addAndGet(2);
+		if (isLayered)
+			commands.close();
+
+		long[] reads = Arrays.copyOf(run.readNanos, run.readCount);
+		Arrays.sort(reads);
+		double readMean = Arrays.stream(reads).average().orElse(0) / 1e6;
+		System.out.println(String.format("%-8s %10d %10d %12.0f %12.0f %12.2f %12.2f", name, asked.get(),
+				standIn.commands, standIn.busyNanos / 1e6, run.blockedNanos / 1e6, readMean,
+				reads.length == 0 ? 0 : reads[reads.length * 99 / 100] / 1e6));
+		return standIn.state();
+	}
+
+	/* Interface of a call to the robot */
+	private interface Call {
+		int call();
+	}
+
+	/* Times a command of the motion thread */
+	private static void command(Run run, AtomicLong asked, Runnable command) {
+		long start = System.nanoTime();
+		command.run();
+		run.blockedNanos += System.nanoTime() - start;
+		asked.incrementAndGet();
+	}
+
+	/* Times a read of the motion thread */
+	private static int read(Run run, Call read) {
+		long start = System.nanoTime();
+		int value = read.call();
+		if (run.readCount < run.readNanos.length)
+			run.readNanos[run.readCount++] = System.nanoTime() - start;
+		return value;
+	}
+
+	/* Returns an exponentially distributed interval, in nanoseconds */
+	private static long nextInterval(Random random, double mean) {
+		return (long) (-Math.log(1 - random.nextDouble()) * mean * 1e9);
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
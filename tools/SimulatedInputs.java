@@ -0,0 +1,38 @@
+/**
+ * This class represents the inputs of a simulated agent: a clock advanced by
+ * the simulation, a floor whose cells have the property with a given
+ * probability, no obstacles and a seeded random number generator
+ */
+public class SimulatedInputs extends VirtualRobotInputs {
+
+	/* The simulated time in nanoseconds */
+	private long clock;
+
+	/**
+	 * Initialise the inputs
+	 * 
+	 * @param floorRatio
+	 *            the probability of a cell having the property
+	 * @param seed
+	 *            the seed of the random number generator
+	 */
+	public SimulatedInputs(double floorRatio, long seed) {
+		super(floorRatio, seed);
+		this.clock = 0;
+	}
+
+	/**
+	 * Advance the simulated clock
+	 * 
+	 * @param millis
+	 *            the milliseconds to advance the clock of
+	 */
+	public void advance(long millis) {
+		clock += millis * 1000000;
+	}
+
+	@Override
+	public long nanoTime() {
+		return clock;
+	}
+}
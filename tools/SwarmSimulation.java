@@ -0,0 +1,374 @@
+import java.util.Random;
+
+/**
+ * This class represents a simulated swarm of agents running their real logic
+ * with no hardware, in rounds of ROUND_MILLIS simulated milliseconds. In every
+ * round each agent broadcasts one message, that is received by its neighbours
+ * in the topology unless lost, and runs one main loop pass. Every
+ * OBSERVATION_ROUNDS rounds each agent observes a new cell of the floor, and
+ * every ACTION_ROUNDS rounds the acting agents call Agent.action(), as their
+ * motion control would. Quiescent agents pause their main loop and their
+ * broadcasts and observe less often, as their loops would (see
+ * ActivityController).
+ */
+public class SwarmSimulation {
+
+	/** Simulated milliseconds in a round, about the airtime of a frame */
+	public static final int ROUND_MILLIS = 50;
+
+	/** Rounds between two observations of an agent */
+	public static final int OBSERVATION_ROUNDS = 1000 / ROUND_MILLIS;
+
+	/** Rounds between two action calls of an acting agent */
+	public static final int ACTION_ROUNDS = 3750 / ROUND_MILLIS;
+
+	/* Rounds between two observations, main loop passes and broadcasts of a quiescent agent */
+	private static final int QUIESCENT_OBSERVATION_ROUNDS = (int) (AgentParameters.get().getQuiescentSampleInterval() * 1000
+			/ ROUND_MILLIS);
+	private static final int QUIESCENT_STEP_ROUNDS = 1 + (int) AgentParameters.get().getQuiescentLoopPause() / ROUND_MILLIS;
+	private static final int QUIESCENT_SEND_ROUNDS = 1
+			+ (int) AgentParameters.get().getQuiescentBroadcastPause() / ROUND_MILLIS;
+
+	/* The agents and their components */
+	private Agent[] agents;
+	private SimulatedInputs[] inputs;
+	private MessageSender[] senders;
+	private MessageReceiver[] receivers;
+	private MotionControl[] motions;
+
+	/* links[i][j] is true if agent j can hear agent i */
+	private boolean[][] links;
+
+	/* The order the frames of a round are received in */
+	private int[] order;
+
+	/* The last rounds each agent observed, ran a main loop pass and sent in */
+	private int[] lastObservations;
+	private int[] lastSteps;
+	private int[] lastSends;
+
+	/* The probability of a frame being lost by a receiver */
+	private double lossRate;
+
+	private Random random;
+
+	/* Counters */
+	private int round;
+	private long framesSent;
+	private long bytesSent;
+	private int maxFrameBytes;
+	private long actionFramesSent;
+	private long observations;
+	private long steps;
+
+	/**
+	 * Initialise the swarm, agent i having ID i + 1
+	 * 
+	 * @param links
+	 *            links[i][j] is true if agent j can hear agent i
+	 * @param floorRatio
+	 *            the probability of a floor cell having the property
+	 * @param seed
+	 *            the seed of the simulation
+	 */
+	public SwarmSimulation(boolean[][] links, double floorRatio, long seed) {
+		int size = links.length;
+		this.links = links;
+		this.random = new Random(seed);
+		this.agents = new Agent[size];
+		this.inputs = new SimulatedInputs[size];
+		this.senders = new MessageSender[size];
+		this.receivers = new MessageReceiver[size];
+		this.motions = new MotionControl[size];
+		this.order = new int[size];
+		this.lastObservations = new int[size];
+		this.lastSteps = new int[size];
+		this.lastSends = new int[size];
+
+		for (int i = 0; i < size; i++) {
+			inputs[i] = new SimulatedInputs(floorRatio, random.nextLong());
+			agents[i] = new Agent(i + 1, inputs[i]);
+			senders[i] = new MessageSender(agents[i]);
+			receivers[i] = new MessageReceiver(agents[i]);
+			motions[i] = new MotionControl(agents[i]);
+			order[i] = i;
+			/* Agents do not observe all at the same time */
+			lastObservations[i] = -(i % OBSERVATION_ROUNDS);
+		}
+	}
+
+	/**
+	 * Set the probability of a frame being lost by a receiver
+	 * 
+	 * @param lossRate
+	 *            the probability of a frame being lost
+	 */
+	public void setLossRate(double lossRate) {
+		this.lossRate = lossRate;
+	}
+
+	/**
+	 * Run a round of the simulation
+	 */
+	public void round() {
+		round++;
+		int size = agents.length;
+
+		for (int i = 0; i < size; i++) {
+			inputs[i].advance(ROUND_MILLIS);
+			if (round - lastObservations[i] >= (isQuiescent(i) ? QUIESCENT_OBSERVATION_ROUNDS
+					: OBSERVATION_ROUNDS)) {
+				motions[i].readProperty();
+				lastObservations[i] = round;
+				observations++;
+			}
+			if ((round + i) % ACTION_ROUNDS == 0 && agents[i].isActionInProgress())
+				agents[i].action();
+		}
+
+		/* Everybody sends, then everybody receives */
+		byte[][] frames = new byte[size][];
+		for (int i = 0; i < size; i++) {
+			if (isQuiescent(i) && round - lastSends[i] < QUIESCENT_SEND_ROUNDS)
+				continue;
+			lastSends[i] = round;
+			String message = senders[i].nextMessage();
+			if (message != null) {
+				frames[i] = MessageSender.frame(agents[i].getSwarmID(), message);
+				framesSent++;
+				bytesSent += frames[i].length;
+				maxFrameBytes = Math.max(maxFrameBytes, frames[i].length);
+				if (message.startsWith("1 "))
+					actionFramesSent++;
+			}
+		}
+		/* Frames reach the receivers in random order */
+		for (int k = size - 1; k > 0; k--) {
+			int swap = random.nextInt(k + 1);
+			int other = order[k];
+			order[k] = order[swap];
+			order[swap] = other;
+		}
+		for (int k = 0; k < size; k++) {
+			int i = order[k];
+			if (frames[i] == null)
+				continue;
+			for (int j = 0; j < size; j++) {
+				if (links[i][j] && random.nextDouble() >= lossRate)
+					receivers[j].receive(frames[i]);
+			}
+		}
+
+		for (int i = 0; i < size; i++) {
+			boolean isPassDue = agents[i].getActivity().isPassDue(agents[i].isActionInProgress());
+			if (isQuiescent(i) && !isPassDue && round - lastSteps[i] < QUIESCENT_STEP_ROUNDS)
+				continue;
+			lastSteps[i] = round;
+			agents[i].step();
+			steps++;
+		}
+	}
+
+	/* Returns true if an agent is quiescent */
+	private boolean isQuiescent(int i) {
+		return agents[i].getActivity().isQuiescent();
+	}
+
+	/**
+	 * Deliver a frame sent from outside the swarm to an agent, before its
+	 * next main loop pass
+	 * 
+	 * @param index
+	 *            the index of the agent
+	 * @param frame
+	 *            the frame
+	 */
+	public void inject(int index, byte[] frame) {
+		receivers[index].receive(frame);
+	}
+
+	/**
+	 * Restart an agent, as after a reboot with no checkpoint: the agent starts
+	 * over from time 0 with an empty belief table, on the same floor
+	 * 
+	 * @param index
+	 *            the index of the agent
+	 * @param incarnation
+	 *            the number of times the agent started before
+	 */
+	public void restart(int index, int incarnation) {
+		agents[index] = new Agent(index + 1, inputs[index]);
+		agents[index].setIncarnation(incarnation);
+		senders[index] = new MessageSender(agents[index]);
+		receivers[index] = new MessageReceiver(agents[index]);
+		motions[index] = new MotionControl(agents[index]);
+	}
+
+	/**
+	 * @param index
+	 *            the index of the agent
+	 * @return the agent
+	 */
+	public Agent getAgent(int index) {
+		return agents[index];
+	}
+
+	/**
+	 * @param index
+	 *            the index of the agent
+	 * @return the inputs of the agent
+	 */
+	public SimulatedInputs getInputs(int index) {
+		return inputs[index];
+	}
+
+	/**
+	 * @return the number of agents
+	 */
+	public int size() {
+		return agents.length;
+	}
+
+	/**
+	 * @return the number of rounds run
+	 */
+	public int getRound() {
+		return round;
+	}
+
+	/**
+	 * @return the simulated seconds passed
+	 */
+	public double getSeconds() {
+		return round * ROUND_MILLIS / 1000.0;
+	}
+
+	/**
+	 * @return the number of frames broadcast
+	 */
+	public long getFramesSent() {
+		return framesSent;
+	}
+
+	/**
+	 * @return the number of bytes broadcast
+	 */
+	public long getBytesSent() {
+		return bytesSent;
+	}
+
+	/**
+	 * @return the number of bytes of the largest frame broadcast
+	 */
+	public int getMaxFrameBytes() {
+		return maxFrameBytes;
+	}
+
+	/**
+	 * @return the number of observations made
+	 */
+	public long getObservations() {
+		return observations;
+	}
+
+	/**
+	 * @return the number of main loop passes run
+	 */
+	public long getSteps() {
+		return steps;
+	}
+
+	/**
+	 * @return the number of action state change frames broadcast
+	 */
+	public long getActionFramesSent() {
+		return actionFramesSent;
+	}
+
+	/**
+	 * @return true if every agent holds a belief of every agent
+	 */
+	public boolean isKnowledgeComplete() {
+		for (Agent agent : agents) {
+			if (agent.getBeliefTable().size() < agents.length)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of agents acting
+	 */
+	public int actingCount() {
+		int count = 0;
+		for (Agent agent : agents) {
+			if (agent.isActionInProgress())
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * @param size
+	 *            the number of agents
+	 * @return a line topology, each agent hearing its two neighbours
+	 */
+	public static boolean[][] line(int size) {
+		boolean[][] links = new boolean[size][size];
+		for (int i = 0; i < size - 1; i++) {
+			links[i][i + 1] = true;
+			links[i + 1][i] = true;
+		}
+		return links;
+	}
+
+	/**
+	 * @param size
+	 *            the number of agents
+	 * @return a ring topology
+	 */
+	public static boolean[][] ring(int size) {
+		boolean[][] links = line(size);
+		links[0][size - 1] = true;
+		links[size - 1][0] = true;
+		return links;
+	}
+
+	/**
+	 * @param width
+	 *            the number of agents in a row
+	 * @param height
+	 *            the number of rows
+	 * @return a grid topology, each agent hearing the agents next to it in
+	 *         its row and column
+	 */
+	public static boolean[][] grid(int width, int height) {
+		int size = width * height;
+		boolean[][] links = new boolean[size][size];
+		for (int i = 0; i < size; i++) {
+			if (i % width < width - 1) {
+				links[i][i + 1] = true;
+				links[i + 1][i] = true;
+			}
+			if (i + width < size) {
+				links[i][i + width] = true;
+				links[i + width][i] = true;
+			}
+		}
+		return links;
+	}
+
+	/**
+	 * @param size
+	 *            the number of agents
+	 * @return a fully connected topology
+	 */
+	public static boolean[][] full(int size) {
+		boolean[][] links = new boolean[size][size];
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++)
+				links[i][j] = i != j;
+		}
+		return links;
+	}
+}
@@ -0,0 +1,237 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class represents a replay driver that runs the agent logic against a
+ * trace recorded by TraceRecorder, as fast as possible and with no hardware.
+ * The records are applied in the order they were recorded:
+ * <ul>
+ * <li>clock readings advance the agent clock and run a main loop pass;</li>
+ * <li>infrared reads are turned into observations by MotionControl;</li>
+ * <li>frames are passed to a MessageReceiver, followed by a main loop pass;
+ * </li>
+ * <li>action marks call Agent.action(), that consumes the random draws.</li>
+ * </ul>
+ * The timing of the receive and decision paths is reported, so the driver
+ * doubles as a throughput benchmark.
+ * <p>
+ * Usage: TraceReplay traceFile [agentID]
+ */
+public class TraceReplay implements AgentInputs {
+
+	/* The records of the trace */
+	private byte[] tags;
+	private byte[] indexes;
+	private long[] values;
+	private List<byte[]> frames;
+	private int size;
+
+	/* The clock and bumpers state at the current record */
+	private long clock;
+	private boolean[] pressed = new boolean[2];
+
+	/* Next record to serve for infrared reads and random draws */
+	private int irCursor;
+	private int randomCursor;
+
+	/**
+	 * Load a trace in memory
+	 *
+	 * @param fileName
+	 *            the path of the trace file
+	 */
+	public TraceReplay(String fileName) throws IOException {
+		tags = new byte[1024];
+		indexes = new byte[1024];
+		values = new long[1024];
+		frames = new ArrayList<>();
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)))) {
+			if (in.readInt() != TraceRecorder.MAGIC)
+				throw new IOException(fileName + " is not an agent trace");
+
+			long traceClock = 0;
+			while (true) {
+				int tag = in.read();
+				if (tag == -1)
+					break;
+
+				if (size == tags.length)
+					grow();
+
+				tags[size] = (byte) tag;
+				switch (tag) {
+				case TraceRecorder.CLOCK:
+					traceClock += readVarint(in);
+					values[size] = traceClock;
+					break;
+				case TraceRecorder.IR:
+					indexes[size] = in.readByte();
+					values[size] = readVarint(in);
+					break;
+				case TraceRecorder.BUMPER:
+					indexes[size] = in.readByte();
+					values[size] = in.readByte();
+					break;
+				case TraceRecorder.FRAME:
+					byte[] frame = new byte[(int) readVarint(in)];
+					in.readFully(frame);
+					values[size] = frames.size();
+					frames.add(frame);
+					break;
+				case TraceRecorder.RANDOM:
+					values[size] = Float.floatToIntBits(in.readFloat());
+					break;
+				case TraceRecorder.ACTION:
+					break;
+				default:
+					throw new IOException("Unknown record " + tag + " at record " + size);
+				}
+				size++;
+			}
+		} catch (EOFException e) {
+			/* Trace truncated by a crash, replaying the complete records */
+		}
+	}
+
+	@Override
+	public long nanoTime() {
+		return clock * 1000000;
+	}
+
+	@Override
+	public int getIR(int sensor) {
+		while (irCursor < size && tags[irCursor] != TraceRecorder.IR)
+			irCursor++;
+		if (irCursor == size)
+			return 0;
+		return (int) values[irCursor++];
+	}
+
+	@Override
+	public boolean isPressed(int bumper) {
+		return pressed[bumper];
+	}
+
+	@Override
+	public float nextFloat() {
+		while (randomCursor < size && tags[randomCursor] != TraceRecorder.RANDOM)
+			randomCursor++;
+		if (randomCursor == size)
+			return 0;
+		return Float.intBitsToFloat((int) values[randomCursor++]);
+	}
+
+	/* Entry point to the application */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: TraceReplay traceFile [agentID]");
+			return;
+		}
+
+		long loadStart = System.nanoTime();
+		TraceReplay replay = new TraceReplay(args[0]);
+		long loadTime = System.nanoTime() - loadStart;
+
+		/* Starting from the first clock reading, as the recorded agent did */
+		for (int i = 0; i < replay.size; i++) {
+			if (replay.tags[i] == TraceRecorder.CLOCK) {
+				replay.clock = replay.values[i];
+				break;
+			}
+		}
+		long firstClock = replay.clock;
+
+		Agent agent = new Agent(args.length > 1 ? Integer.parseInt(args[1]) : 0, replay);
+		agent.setDebug(false);
+		MessageReceiver receiver = new MessageReceiver(agent);
+		MotionControl motion = new MotionControl(agent);
+
+		long steps = 0, observations = 0, frameCount = 0, actions = 0;
+		long receiveTime = 0, stepTime = 0;
+
+		long replayStart = System.nanoTime();
+		for (int i = 0; i < replay.size; i++) {
+			switch (replay.tags[i]) {
+			case TraceRecorder.CLOCK:
+				replay.clock = replay.values[i];
+				long stepStart = System.nanoTime();
+				agent.step();
+				stepTime += System.nanoTime() - stepStart;
+				steps++;
+				break;
+			case TraceRecorder.IR:
+				/* The first read of an observation, the others are consumed by it */
+				if (i >= replay.irCursor) {
+					replay.irCursor = i;
+					motion.readProperty();
+					observations++;
+				}
+				break;
+			case TraceRecorder.BUMPER:
+				replay.pressed[replay.indexes[i]] = replay.values[i] == 1;
+				break;
+			case TraceRecorder.FRAME:
+				long receiveStart = System.nanoTime();
+				receiver.receive(replay.frames.get((int) replay.values[i]));
+				receiveTime += System.nanoTime() - receiveStart;
+				frameCount++;
+				stepStart = System.nanoTime();
+				agent.step();
+				stepTime += System.nanoTime() - stepStart;
+				steps++;
+				break;
+			case TraceRecorder.ACTION:
+				agent.action();
+				actions++;
+				break;
+			default:
+				/* Random draws are consumed by Agent.action() */
+				break;
+			}
+		}
+		long replayTime = System.nanoTime() - replayStart;
+
+		double traceSeconds = (replay.clock - firstClock) / 1000.0;
+		double replaySeconds = replayTime / 1e9;
+
+		System.out.println("Trace: " + replay.size + " records, " + traceSeconds + " s recorded, loaded in "
+				+ loadTime / 1000000 + " ms");
+		System.out.println("Replay: " + replaySeconds + " s, " + (long) (traceSeconds / replaySeconds)
+				+ "x faster than real time");
+		System.out.println("Main loop passes: " + steps + ", " + (long) (steps / replaySeconds) + "/s, "
+				+ (steps == 0 ? 0 : stepTime / steps) + " ns each");
+		System.out.println("Frames received: " + frameCount + ", " + (long) (frameCount / replaySeconds)
+				+ "/s, " + (frameCount == 0 ? 0 : receiveTime / frameCount) + " ns each");
+		System.out.println("Observations: " + observations + ", action calls: " + actions);
+		System.out.println("Final state: time " + agent.getTime() + ", "
+				+ (agent.isActionInProgress() ? "ACTING, d = " + agent.getD() : "NOT ACTING"));
+		for (Integer beliefID : agent.getBeliefTable().keySet())
+			System.out.println(beliefID + " " + agent.getBeliefTable().get(beliefID).getBelief());
+	}
+
+	/* Doubles the records capacity */
+	private void grow() {
+		tags = Arrays.copyOf(tags, tags.length * 2);
+		indexes = Arrays.copyOf(indexes, indexes.length * 2);
+		values = Arrays.copyOf(values, values.length * 2);
+	}
+
+	private static long readVarint(DataInputStream in) throws IOException {
+		long value = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+}
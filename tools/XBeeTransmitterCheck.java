@@ -0,0 +1,214 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import com.digi.xbee.api.XBeeDevice;
+import com.digi.xbee.api.exceptions.XBeeException;
+import com.digi.xbee.api.listeners.IPacketReceiveListener;
+import com.digi.xbee.api.models.XBeeTransmitStatus;
+import com.digi.xbee.api.packet.XBeeAPIPacket;
+import com.digi.xbee.api.packet.XBeePacket;
+import com.digi.xbee.api.packet.raw.TXStatusPacket;
+
+/**
+ * This class represents a check of the pipelined transmitter in front of the
+ * XBee module (see XBeeTransmitter), run with a stand-in module that records
+ * the frames handed to it and sends back the transmit status frames the check
+ * asks for, as the module would once a frame is on air:
+ * <ul>
+ * <li>the sender blocks once WINDOW_SIZE frames wait for their status, and
+ * resumes when a status frees a slot;</li>
+ * <li>the statuses are matched to their frame by frame ID, in any order,
+ * ignoring the ones of frames not in flight, and the frame IDs wrap around
+ * after 255, never using 0 nor the ID of a frame still in flight;</li>
+ * <li>the failed statuses are counted apart from the successful ones;</li>
+ * <li>a frame whose status never arrives frees its slot after STATUS_TIMEOUT
+ * seconds, counted as lost, its late status being ignored.</li>
+ * </ul>
+ * It exits with status 1 if a check failed.
+ * <p>
+ * Usage: XBeeTransmitterCheck
+ */
+public class XBeeTransmitterCheck {
+
+	/* Milliseconds a blocked sender is given to show it is not blocked */
+	private static final long BLOCK_WAIT = 200;
+
+	/* Frames sent in the wrap around check, more than the frame IDs */
+	private static final int WRAP_FRAMES = 600;
+
+	/* Set once a check failed */
+	private static boolean failed;
+
+	/* The stand-in module: records the frames sent, the statuses are sent by the check */
+	private static class StandInXBee extends XBeeDevice {
+
+		private IPacketReceiveListener listener;
+
+		/* The frame IDs of the frames sent, in order */
+		private List<Integer> frameIDs = new ArrayList<>();
+
+		StandInXBee() {
+			super("stand-in", 115200);
+		}
+
+		@Override
+		public synchronized void addPacketListener(IPacketReceiveListener listener) {
+			this.listener = listener;
+		}
+
+		@Override
+		public synchronized void removePacketListener(IPacketReceiveListener listener) {
+			if (this.listener == listener)
+				this.listener = null;
+		}
+
+		@Override
+		public synchronized void sendPacketAsync(XBeePacket packet) throws XBeeException {
+			frameIDs.add(((XBeeAPIPacket) packet).getFrameID());
+		}
+
+		/* Sends back the transmit status of a frame, as the reading thread of the library */
+		void status(int frameID, XBeeTransmitStatus status) {
+			IPacketReceiveListener receiver;
+			synchronized (this) {
+				receiver = listener;
+			}
+			if (receiver != null)
+				receiver.packetReceived(new TXStatusPacket(frameID, status));
+		}
+
+		synchronized int sent() {
+			return frameIDs.size();
+		}
+
+		synchronized int frameID(int frame) {
+			return frameIDs.get(frame);
+		}
+	}
+
+	/* Entry point to the application */
+	public static void main(String[] args) throws Exception {
+		Agent agent = new Agent(1, new SimulatedInputs(0.5, 1));
+
+		backpressure(agent);
+		matching(agent);
+		expiry(agent);
+
+		System.out.println(failed ? "FAILED" : "All checks passed");
+		System.exit(failed ? 1 : 0);
+	}
+
+	/* Fills the window, checking that the next frame waits for a status */
+	private static void backpressure(Agent agent) throws Exception {
+		StandInXBee xBee = new StandInXBee();
+		XBeeTransmitter transmitter = new XBeeTransmitter(xBee, agent);
+		for (int frame = 0; frame < XBeeTransmitter.WINDOW_SIZE; frame++)
+			transmitter.send(new byte[] { 1 });
+
+		Thread sender = send(transmitter);
+		sender.join(BLOCK_WAIT);
+		System.out.println("Window of " + XBeeTransmitter.WINDOW_SIZE + " frames full: sender "
+				+ (sender.isAlive() ? "blocked" : "not blocked") + ", " + xBee.sent() + " frames sent");
+		check(sender.isAlive() && xBee.sent() == XBeeTransmitter.WINDOW_SIZE, "sender blocked by a full window");
+
+		xBee.status(xBee.frameID(0), XBeeTransmitStatus.SUCCESS);
+		sender.join(BLOCK_WAIT);
+		System.out.println("A status received: sender " + (sender.isAlive() ? "blocked" : "resumed") + ", "
+				+ xBee.sent() + " frames sent");
+		check(!sender.isAlive() && xBee.sent() == XBeeTransmitter.WINDOW_SIZE + 1, "sender resumed by a status");
+		transmitter.close();
+	}
+
+	/*
+	 * Sends frames beyond frame ID 255, answering them out of order and
+	 * failing every third, one frame being left in flight the whole time
+	 */
+	private static void matching(Agent agent) throws Exception {
+		StandInXBee xBee = new StandInXBee();
+		XBeeTransmitter transmitter = new XBeeTransmitter(xBee, agent);
+		transmitter.send(new byte[] { 1 });
+		int pending = xBee.frameID(0);
+
+		long successes = 0, failures = 0;
+		boolean isIDValid = true;
+		for (int frame = 1; frame <= WRAP_FRAMES; frame += 2) {
+			transmitter.send(new byte[] { 1 });
+			transmitter.send(new byte[] { 1 });
+			int first = xBee.frameID(frame);
+			int second = xBee.frameID(frame + 1);
+			isIDValid &= first >= 1 && first <= 255 && second >= 1 && second <= 255 && first != pending
+					&& second != pending && first != second;
+
+			/* The second answered first, then a stray status, then the first */
+			XBeeTransmitStatus status = frame % 3 == 0 ? XBeeTransmitStatus.NO_ACK : XBeeTransmitStatus.SUCCESS;
+			xBee.status(second, status);
+			xBee.status(second, XBeeTransmitStatus.SUCCESS);
+			xBee.status(0, XBeeTransmitStatus.SUCCESS);
+			xBee.status(first, XBeeTransmitStatus.SUCCESS);
+			successes += status == XBeeTransmitStatus.SUCCESS ? 2 : 1;
+			failures += status == XBeeTransmitStatus.SUCCESS ? 0 : 1;
+		}
+		xBee.status(pending, XBeeTransmitStatus.NO_ACK);
+		failures++;
+
+		/* 254 frame IDs free per turn, the pending frame holding one */
+		int wraps = 0;
+		for (int frame = 2; frame < xBee.sent(); frame++)
+			wraps += xBee.frameID(frame) < xBee.frameID(frame - 1) ? 1 : 0;
+
+		System.out.println(transmitter.getSentCount() + " frames sent, frame IDs wrapped " + wraps + " times: "
+				+ transmitter.getSuccessCount() + " succeeded, " + transmitter.getFailureCount() + " failed, "
+				+ transmitter.getLostCount() + " lost");
+		check(isIDValid, "frame IDs from 1 to 255, not in flight");
+		check(wraps == (WRAP_FRAMES - 1) / 254, "frame IDs wrapped around");
+		check(transmitter.getSuccessCount() == successes, "successes matched to their frames");
+		check(transmitter.getFailureCount() == failures, "failures counted");
+		check(transmitter.getLostCount() == 0, "no frame lost");
+		transmitter.close();
+	}
+
+	/* Never answers a full window, checking that the next frame gets through once expired */
+	private static void expiry(Agent agent) throws Exception {
+		StandInXBee xBee = new StandInXBee();
+		XBeeTransmitter transmitter = new XBeeTransmitter(xBee, agent);
+		for (int frame = 0; frame < XBeeTransmitter.WINDOW_SIZE; frame++)
+			transmitter.send(new byte[] { 1 });
+
+		long start = System.nanoTime();
+		Thread sender = send(transmitter);
+		sender.join((long) (2 * XBeeTransmitter.STATUS_TIMEOUT * 1000));
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println("No status for " + XBeeTransmitter.WINDOW_SIZE + " frames: sender "
+				+ (sender.isAlive() ? "still blocked" : "resumed") + " after " + String.format("%.2f", seconds)
+				+ " s, " + transmitter.getLostCount() + " lost");
+		check(!sender.isAlive() && seconds >= XBeeTransmitter.STATUS_TIMEOUT, "sender resumed after the timeout");
+		check(transmitter.getLostCount() == XBeeTransmitter.WINDOW_SIZE, "frames with no status lost");
+
+		/* A late status matches no frame */
+		xBee.status(xBee.frameID(0), XBeeTransmitStatus.SUCCESS);
+		check(transmitter.getSuccessCount() == 0, "late status ignored");
+		transmitter.close();
+	}
+
+	/* Sends a frame from another thread, to watch it block */
+	private static Thread send(XBeeTransmitter transmitter) {
+		Thread sender = new Thread(() -> {
+			try {
+				transmitter.send(new byte[] { 1 });
+			} catch (XBeeException e) {
+				System.out.println("Cannot send: " + e.getMessage());
+			}
+		}, "sender");
+		sender.setDaemon(true);
+		sender.start();
+		return sender;
+	}
+
+	/* Records a check */
+	private static void check(boolean isPassed, String name) {
+		if (!isPassed) {
+			System.out.println("CHECK FAILED: " + name);
+			failed = true;
+		}
+	}
+}